@@ -2,6 +2,8 @@ package com.github.tutertlob.im920wireless.packet;
 
 import com.github.tutertlob.subghz.AckPacketInterface;
 import com.github.tutertlob.subghz.PacketImplementation;
+import com.github.tutertlob.subghz.TlvReader;
+import com.github.tutertlob.subghz.TlvWriter;
 
 import java.util.Arrays;
 import java.nio.ByteBuffer;
@@ -16,26 +18,39 @@ public final class Im920Ack extends Im920Packet implements AckPacketInterface {
 
 	private final byte cmd;
 
-	private final String response;
+	// Rendered from responseRecords on first use when the response is TLV encoded.
+	private String response;
+
+	private final ByteBuffer responseRecords;
 
 	public Im920Ack(byte command, String response) {
 		super(false, false);
 		this.cmd = command;
 		this.response = response;
+		this.responseRecords = null;
+	}
+
+	public Im920Ack(byte command, TlvWriter response) {
+		super(false, false);
+		setTlvEncoded(true);
+		this.cmd = command;
+		this.responseRecords = ByteBuffer.wrap(response.toByteArray());
 	}
 
 	public Im920Ack(byte[] packetRaw) {
 		super(packetRaw);
 		cmd = packetRaw[COMMAND_I];
-		byte[] stringByte = Arrays.copyOfRange(packetRaw, Im920Packet.PACKET_BODY_I, packetRaw.length);
-		response = new String(stringByte, StandardCharsets.US_ASCII);
+		byte[] stringByte = Arrays.copyOfRange(packetRaw, COMMAND_I + COMMAND_SIZE, packetRaw.length);
+		responseRecords = isTlvEncoded() ? ByteBuffer.wrap(stringByte) : null;
+		response = isTlvEncoded() ? null : new String(stringByte, StandardCharsets.US_ASCII);
 	}
 
 	public Im920Ack(Im920Frame frame, byte[] packetRaw) {
 		super(frame, packetRaw);
 		cmd = packetRaw[COMMAND_I];
-		byte[] stringByte = Arrays.copyOfRange(packetRaw, Im920Packet.PACKET_BODY_I, packetRaw.length);
-		response = new String(stringByte, StandardCharsets.US_ASCII);
+		byte[] stringByte = Arrays.copyOfRange(packetRaw, COMMAND_I + COMMAND_SIZE, packetRaw.length);
+		responseRecords = isTlvEncoded() ? ByteBuffer.wrap(stringByte) : null;
+		response = isTlvEncoded() ? null : new String(stringByte, StandardCharsets.US_ASCII);
 	}
 
 	public static int capacityOfResponse() {
@@ -54,20 +69,28 @@ public final class Im920Ack extends Im920Packet implements AckPacketInterface {
 
 	@Override
 	public String getResponse() {
+		if (response == null)
+			response = new TlvReader().wrap(responseRecords).toString();
 		return response;
 	}
 
 	@Override
-	byte[] getBodyBytes() {
-		int size = getBodyLength();
-		ByteBuffer buf = ByteBuffer.allocate(size);
-		buf.put(cmd).put(response.getBytes(StandardCharsets.US_ASCII)).flip();
-		return buf.array();
+	public TlvReader readResponseParams(TlvReader reader) {
+		return reader.wrap(records(responseRecords));
+	}
+
+	@Override
+	void writeBodyTo(ByteBuffer dst) {
+		dst.put(cmd);
+		if (responseRecords != null)
+			dst.put(responseRecords.array());
+		else
+			putAscii(dst, response);
 	}
 
 	@Override
 	int getBodyLength() {
-		return COMMAND_SIZE + response.length();
+		return COMMAND_SIZE + (responseRecords != null ? responseRecords.capacity() : response.length());
 	}
 
 	@Override
@@ -77,7 +100,7 @@ public final class Im920Ack extends Im920Packet implements AckPacketInterface {
 		builder.append(super.toString())
 				.append("IM920 Ack packet:")
 				.append("\n Command: ").append(cmd)
-				.append("\n Response: ").append(response)
+				.append("\n Response: ").append(getResponse())
 				.append("\n");
 		return builder.toString();
 	}
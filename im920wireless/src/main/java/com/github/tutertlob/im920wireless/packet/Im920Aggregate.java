@@ -0,0 +1,130 @@
+package com.github.tutertlob.im920wireless.packet;
+
+import com.github.tutertlob.subghz.AggregatePacketInterface;
+import com.github.tutertlob.subghz.PacketAggregator;
+import com.github.tutertlob.subghz.PacketImplementation;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Several small packets sharing one frame. Each entry of the body is a length byte followed by the whole packet.
+public final class Im920Aggregate extends Im920Packet implements AggregatePacketInterface {
+
+	private static final Logger logger = Logger.getLogger(Im920Aggregate.class.getName());
+
+	private final List<Im920Packet> packets;
+
+	private final List<byte[]> packetRaws;
+
+	public Im920Aggregate(List<? extends Im920Packet> packets) {
+		super(false, false);
+		if (packets == null)
+			throw new NullPointerException("The argument packets is null.");
+
+		int length = 0;
+		for (Im920Packet packet : packets) {
+			if (packet.getPacketType() == Type.AGGREGATE)
+				throw new IllegalArgumentException("Aggregates can't be nested.");
+			length += PacketAggregator.entrySize(packet);
+		}
+		if (packets.isEmpty() || length > capacityOfAggregate()) {
+			String msg = String.format("%d packets of %d bytes in total don't make an aggregate.", packets.size(), length);
+			logger.log(Level.WARNING, msg);
+			throw new IllegalArgumentException(msg);
+		}
+
+		this.packets = Collections.unmodifiableList(new ArrayList<>(packets));
+		this.packetRaws = null;
+	}
+
+	public Im920Aggregate(byte[] packetRaw) {
+		this(null, packetRaw);
+	}
+
+	public Im920Aggregate(Im920Frame frame, byte[] packetRaw) {
+		super(frame, packetRaw);
+
+		List<byte[]> raws = new ArrayList<>();
+		List<Im920Packet> decoded = new ArrayList<>();
+		for (int pos = Im920Packet.PACKET_BODY_I; pos < packetRaw.length;) {
+			int length = packetRaw[pos] & 0xFF;
+			if (length < Im920Packet.PACKET_HEADER_SIZE || pos + 1 + length > packetRaw.length) {
+				String msg = String.format("A packet in the aggregate claims %d bytes, but only %d remain.", length,
+						packetRaw.length - pos - 1);
+				logger.log(Level.WARNING, msg);
+				throw new IllegalArgumentException(msg);
+			}
+			byte[] raw = Arrays.copyOfRange(packetRaw, pos + 1, pos + 1 + length);
+			// The packets travelled in the aggregate's frame, so they carry its sequence number.
+			raw[Im920Packet.PACKET_SEQ_NUM_I] = packetRaw[Im920Packet.PACKET_SEQ_NUM_I];
+			if ((raw[Im920Packet.PACKET_TYPE_I] & Im920Packet.PACKET_TYPE_MASK) == Type.AGGREGATE.id())
+				throw new IllegalArgumentException("Aggregates can't be nested.");
+			raws.add(raw);
+			decoded.add(Im920Packet.newInstance(frame, raw));
+			pos += 1 + length;
+		}
+
+		this.packets = Collections.unmodifiableList(decoded);
+		this.packetRaws = raws;
+	}
+
+	public static int capacityOfAggregate() {
+		return capacityOfBody();
+	}
+
+	@Override
+	public final PacketImplementation.Type getPacketType() {
+		return Type.AGGREGATE;
+	}
+
+	@Override
+	public int getPacketCount() {
+		return packets.size();
+	}
+
+	@Override
+	public List<Im920Packet> getPackets() {
+		return packets;
+	}
+
+	// The received bytes of each packet, or null for an aggregate built to be sent.
+	List<byte[]> getPacketRaws() {
+		return packetRaws;
+	}
+
+	@Override
+	void writeBodyTo(ByteBuffer dst) {
+		for (Im920Packet packet : packets) {
+			dst.put((byte) packet.getPacketLength());
+			packet.writeTo(dst);
+		}
+	}
+
+	@Override
+	int getBodyLength() {
+		int length = 0;
+		for (Im920Packet packet : packets) {
+			length += PacketAggregator.entrySize(packet);
+		}
+		return length;
+	}
+
+	@Override
+	public final String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(super.toString())
+				.append("IM920 Aggregate packet:")
+				.append("\n Packets: ").append(packets.size())
+				.append("\n");
+		for (Im920Packet packet : packets) {
+			builder.append(packet.toString());
+		}
+		return builder.toString();
+	}
+
+}
@@ -2,6 +2,8 @@ package com.github.tutertlob.im920wireless.packet;
 
 import com.github.tutertlob.subghz.PacketImplementation;
 import com.github.tutertlob.subghz.CommandPacketInterface;
+import com.github.tutertlob.subghz.TlvReader;
+import com.github.tutertlob.subghz.TlvWriter;
 
 import java.util.Arrays;
 import java.nio.ByteBuffer;
@@ -16,26 +18,39 @@ public final class Im920Command extends Im920Packet implements CommandPacketInte
 
 	private final byte command;
 
-	private final String commandParam;
+	// Rendered from paramRecords on first use when the parameters are TLV encoded.
+	private String commandParam;
+
+	private final ByteBuffer paramRecords;
 
 	public Im920Command(byte command, String param, boolean responseRequested) {
 		super(false, responseRequested);
 		this.command = command;
 		this.commandParam = param;
+		this.paramRecords = null;
+	}
+
+	public Im920Command(byte command, TlvWriter params, boolean responseRequested) {
+		super(false, responseRequested);
+		setTlvEncoded(true);
+		this.command = command;
+		this.paramRecords = ByteBuffer.wrap(params.toByteArray());
 	}
 
 	public Im920Command(byte[] packetRaw) {
 		super(packetRaw);
 		command = packetRaw[COMMAND_I];
-		byte[] stringByte = Arrays.copyOfRange(packetRaw, Im920Packet.PACKET_BODY_I, packetRaw.length);
-		commandParam = new String(stringByte, StandardCharsets.US_ASCII);
+		byte[] stringByte = Arrays.copyOfRange(packetRaw, COMMAND_I + COMMAND_SIZE, packetRaw.length);
+		paramRecords = isTlvEncoded() ? ByteBuffer.wrap(stringByte) : null;
+		commandParam = isTlvEncoded() ? null : new String(stringByte, StandardCharsets.US_ASCII);
 	}
 
 	public Im920Command(Im920Frame frame, byte[] packetRaw) {
 		super(frame, packetRaw);
 		command = packetRaw[COMMAND_I];
-		byte[] stringByte = Arrays.copyOfRange(packetRaw, Im920Packet.PACKET_BODY_I, packetRaw.length);
-		commandParam = new String(stringByte, StandardCharsets.US_ASCII);
+		byte[] stringByte = Arrays.copyOfRange(packetRaw, COMMAND_I + COMMAND_SIZE, packetRaw.length);
+		paramRecords = isTlvEncoded() ? ByteBuffer.wrap(stringByte) : null;
+		commandParam = isTlvEncoded() ? null : new String(stringByte, StandardCharsets.US_ASCII);
 	}
 
 	public static int capacityOfParam() {
@@ -54,20 +69,28 @@ public final class Im920Command extends Im920Packet implements CommandPacketInte
 
 	@Override
 	public String getCommandParam() {
+		if (commandParam == null)
+			commandParam = new TlvReader().wrap(paramRecords).toString();
 		return commandParam;
 	}
 
 	@Override
-	byte[] getBodyBytes() {
-		int size = getBodyLength();
-		ByteBuffer buf = ByteBuffer.allocate(size);
-		buf.put(command).put(commandParam.getBytes(StandardCharsets.US_ASCII)).flip();
-		return buf.array();
+	public TlvReader readCommandParams(TlvReader reader) {
+		return reader.wrap(records(paramRecords));
+	}
+
+	@Override
+	void writeBodyTo(ByteBuffer dst) {
+		dst.put(command);
+		if (paramRecords != null)
+			dst.put(paramRecords.array());
+		else
+			putAscii(dst, commandParam);
 	}
 
 	@Override
 	int getBodyLength() {
-		return COMMAND_SIZE + commandParam.length();
+		return COMMAND_SIZE + (paramRecords != null ? paramRecords.capacity() : commandParam.length());
 	}
 
 	@Override
@@ -77,7 +100,7 @@ public final class Im920Command extends Im920Packet implements CommandPacketInte
 		builder.append(super.toString())
 				.append("IM920 Command packet:")
 				.append("\n Command: ").append(command)
-				.append("\n Parameter: ").append(commandParam)
+				.append("\n Parameter: ").append(getCommandParam())
 				.append("\n");
 		return builder.toString();
 	}
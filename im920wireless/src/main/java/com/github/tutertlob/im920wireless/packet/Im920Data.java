@@ -4,6 +4,7 @@ import com.github.tutertlob.subghz.PacketImplementation;
 import com.github.tutertlob.subghz.DataPacketInterface;
 
 import java.util.Arrays;
+import java.nio.ByteBuffer;
 import java.lang.StringBuilder;
 
 public final class Im920Data extends Im920Packet implements DataPacketInterface {
@@ -11,7 +12,17 @@ public final class Im920Data extends Im920Packet implements DataPacketInterface
 	private final byte[] data;
 
 	public Im920Data(byte[] data, boolean fragmented) {
-		super(fragmented, false);
+		this(data, fragmented, false);
+	}
+
+	// data is sent as given, so a compressed message must already have been run through Lzss.
+	public Im920Data(byte[] data, boolean fragmented, boolean compressed) {
+		this(data, fragmented, false, compressed);
+	}
+
+	public Im920Data(byte[] data, boolean fragmented, boolean responseRequested, boolean compressed) {
+		super(fragmented, responseRequested);
+		setCompressed(compressed);
 		this.data = data.clone();
 	}
 
@@ -41,14 +52,19 @@ public final class Im920Data extends Im920Packet implements DataPacketInterface
 		return data.clone();
 	}
 
+	@Override
+	public void getData(ByteBuffer dst) {
+		dst.put(data);
+	}
+
 	@Override
 	public int getDataSize() {
 		return data.length;
 	}
 
 	@Override
-	byte[] getBodyBytes() {
-		return data.clone();
+	void writeBodyTo(ByteBuffer dst) {
+		dst.put(data);
 	}
 
 	@Override
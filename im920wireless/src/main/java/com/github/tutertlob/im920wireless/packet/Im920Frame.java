@@ -3,8 +3,11 @@ package com.github.tutertlob.im920wireless.packet;
 import com.github.tutertlob.subghz.SubGHzFrame;
 import com.github.tutertlob.subghz.PacketImplementation;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 
 public class Im920Frame extends SubGHzFrame {
@@ -33,7 +36,8 @@ public class Im920Frame extends SubGHzFrame {
 
 		frameBytes = frameRaw.array().clone();
 
-		packet = Im920Packet.newInstance(this, getPayloadBytes());
+		// Packets copy what they keep, so the frame bytes can be shared with them.
+		packet = Im920Packet.newInstance(this, frameBytes);
 
 		txAddr = Integer.toHexString(moduleId);
 	}
@@ -43,24 +47,58 @@ public class Im920Frame extends SubGHzFrame {
 		nodeId = 0;
 		moduleId = 0;
 		rssi = 0;
-		this.frameBytes = getFrameBytesFrom(packet);
+		// Frames to be sent are encoded from the packet on demand.
+		this.frameBytes = null;
 		this.packet = Objects.requireNonNull(packet, "Argument packet is null.");
 		this.txAddr = "";
 	}
 
-	private byte[] getFrameBytesFrom(Im920Packet packet) {
+	// A frame for one packet out of a received aggregate, as if it had come in on its own.
+	private Im920Frame(Im920Frame aggregate, byte[] packetRaw) {
+		super();
+		nodeId = aggregate.nodeId;
+		moduleId = aggregate.moduleId;
+		rssi = aggregate.rssi;
+		frameBytes = packetRaw;
+		packet = Im920Packet.newInstance(this, frameBytes);
+		txAddr = aggregate.txAddr;
+	}
+
+	// Splits a received aggregate into one frame per packet. Any other frame comes back on its own.
+	public final List<Im920Frame> unpack() {
+		if (!(packet instanceof Im920Aggregate) || Objects.isNull(frameBytes))
+			return Collections.singletonList(this);
+
+		List<byte[]> raws = ((Im920Aggregate) packet).getPacketRaws();
+		List<Im920Frame> frames = new ArrayList<>(raws.size());
+		for (byte[] raw : raws) {
+			frames.add(new Im920Frame(this, raw));
+		}
+		return frames;
+	}
+
+	private byte[] frameBytes() {
 		// frame byte array is equall with packet(payload) byte array for this version.
-		return packet.getPacketBytes();
+		return Objects.nonNull(frameBytes) ? frameBytes.clone() : packet.getPacketBytes();
 	}
 
 	@Override
 	public final byte[] getFrameBytes() {
-		return frameBytes.clone();
+		return frameBytes();
 	}
 
 	@Override
 	public final int getFrameLength() {
-		return frameBytes.length;
+		return Objects.nonNull(frameBytes) ? frameBytes.length : packet.getPacketLength();
+	}
+
+	@Override
+	public final void writeTo(ByteBuffer dst) {
+		if (Objects.nonNull(frameBytes)) {
+			dst.put(frameBytes);
+		} else {
+			packet.writeTo(dst);
+		}
 	}
 
 	@Override
@@ -72,13 +110,18 @@ public class Im920Frame extends SubGHzFrame {
 	public final byte[] getPayloadBytes() {
 		// frame byte array is handled equally with packet(payload) byte array for this version.
 		// This means a frame has no header.
-		return frameBytes.clone();
+		return frameBytes();
+	}
+
+	@Override
+	public final ByteBuffer getPayloadBuffer() {
+		return ByteBuffer.wrap(Objects.nonNull(frameBytes) ? frameBytes : packet.getPacketBytes()).asReadOnlyBuffer();
 	}
 
 	@Override
 	public final int getPayloadLength() {
 		// frame byte array is handled equally with packet(payload) byte array for this version.
-		return frameBytes.length;
+		return getFrameLength();
 	}
 
 	@Override
@@ -2,29 +2,44 @@ package com.github.tutertlob.im920wireless.packet;
 
 import com.github.tutertlob.subghz.PacketImplementation;
 import com.github.tutertlob.subghz.NoticePacketInterface;
+import com.github.tutertlob.subghz.TlvReader;
+import com.github.tutertlob.subghz.TlvWriter;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
 public final class Im920Notice extends Im920Packet implements NoticePacketInterface {
 
-	private final String notice;
+	// Rendered from noticeRecords on first use when the notice is TLV encoded.
+	private String notice;
+
+	private final ByteBuffer noticeRecords;
 
 	public Im920Notice(String notice) {
 		super(false, false);
 		this.notice = notice;
+		this.noticeRecords = null;
+	}
+
+	public Im920Notice(TlvWriter notice) {
+		super(false, false);
+		setTlvEncoded(true);
+		this.noticeRecords = ByteBuffer.wrap(notice.toByteArray());
 	}
 
 	public Im920Notice(byte[] packetRaw) {
 		super(packetRaw);
 		byte[] stringByte = Arrays.copyOfRange(packetRaw, Im920Packet.PACKET_BODY_I, packetRaw.length);
-		notice = new String(stringByte, StandardCharsets.US_ASCII);
+		noticeRecords = isTlvEncoded() ? ByteBuffer.wrap(stringByte) : null;
+		notice = isTlvEncoded() ? null : new String(stringByte, StandardCharsets.US_ASCII);
 	}
 
 	public Im920Notice(Im920Frame frame, byte[] packetRaw) {
 		super(frame, packetRaw);
 		byte[] stringByte = Arrays.copyOfRange(packetRaw, Im920Packet.PACKET_BODY_I, packetRaw.length);
-		notice = new String(stringByte, StandardCharsets.US_ASCII);
+		noticeRecords = isTlvEncoded() ? ByteBuffer.wrap(stringByte) : null;
+		notice = isTlvEncoded() ? null : new String(stringByte, StandardCharsets.US_ASCII);
 	}
 
 	public static int capacityOfNotice() {
@@ -38,17 +53,27 @@ public final class Im920Notice extends Im920Packet implements NoticePacketInterf
 
 	@Override
 	public String getNotice() {
+		if (notice == null)
+			notice = new TlvReader().wrap(noticeRecords).toString();
 		return notice;
 	}
 
 	@Override
-	byte[] getBodyBytes() {
-		return notice.getBytes(StandardCharsets.US_ASCII);
+	public TlvReader readNoticeParams(TlvReader reader) {
+		return reader.wrap(records(noticeRecords));
+	}
+
+	@Override
+	void writeBodyTo(ByteBuffer dst) {
+		if (noticeRecords != null)
+			dst.put(noticeRecords.array());
+		else
+			putAscii(dst, notice);
 	}
 
 	@Override
 	int getBodyLength() {
-		return notice.length();
+		return noticeRecords != null ? noticeRecords.capacity() : notice.length();
 	}
 
 	@Override
@@ -56,7 +81,7 @@ public final class Im920Notice extends Im920Packet implements NoticePacketInterf
 		StringBuilder builder = new StringBuilder();
 		builder.append(super.toString())
 				.append("IM920 Notice packet:")
-				.append("\n Notice: ").append(notice)
+				.append("\n Notice: ").append(getNotice())
 				.append("\n");
 		return builder.toString();
 	}
@@ -1,9 +1,11 @@
 package com.github.tutertlob.im920wireless.packet;
 
 import com.github.tutertlob.subghz.PacketImplementation;
+import com.github.tutertlob.subghz.PacketLayout;
 
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.lang.StringBuilder;
 
@@ -27,7 +29,11 @@ public abstract class Im920Packet extends PacketImplementation {
 
 	protected static final byte PACKET_LENGTH_MASK = 0x3F;
 
-	protected static final byte PACKET_FLAG_MASK = 0x18;
+	protected static final byte PACKET_FLAG_MASK = 0x78;
+
+	protected static final byte PACKET_FLAG_MASK_TLV = 0x40;
+
+	protected static final byte PACKET_FLAG_MASK_COMP = 0x20;
 
 	protected static final byte PACKET_FLAG_MASK_FRAG = 0x10;
 
@@ -35,41 +41,45 @@ public abstract class Im920Packet extends PacketImplementation {
 
 	protected static final byte PACKET_TYPE_MASK = 0x07;
 
-	private final int length;
+	public static final PacketLayout LAYOUT = new PacketLayout(PACKET_FLAG_I, PACKET_BODY_I, PACKET_SEQ_NUM_I);
 
 	private boolean fragmented = false;
 
 	private boolean acknoledgement = false;
 
+	private boolean compressed = false;
+
+	private boolean tlvEncoded = false;
+
 	private byte seq = 0;
 
 	private final Im920Frame frame;
 
 	public Im920Packet(byte[] packetRaw) {
 		super();
-		length = packetRaw[PACKET_LENGTH_I];
 		byte flag = packetRaw[PACKET_FLAG_I];
 		fragmented = (flag & PACKET_FLAG_MASK_FRAG) != 0 ? true : false;
 		acknoledgement = (flag & PACKET_FLAG_MASK_ACK) != 0 ? true : false;
+		compressed = (flag & PACKET_FLAG_MASK_COMP) != 0 ? true : false;
+		tlvEncoded = (flag & PACKET_FLAG_MASK_TLV) != 0 ? true : false;
 		seq = packetRaw[PACKET_SEQ_NUM_I];
 		frame = null;
-		assert length == getPacketLength();
 	}
 
 	public Im920Packet(boolean fragmented, boolean responseRequested) {
 		super();
 		this.fragmented = fragmented;
 		this.acknoledgement = responseRequested;
-		this.length = getBodyLength();
 		frame = null;
 	}
 
 	public Im920Packet(Im920Frame frame, byte[] packetRaw) {
 		super();
-		length = packetRaw[PACKET_LENGTH_I];
 		byte flag = packetRaw[PACKET_FLAG_I];
 		fragmented = (flag & PACKET_FLAG_MASK_FRAG) != 0 ? true : false;
 		acknoledgement = (flag & PACKET_FLAG_MASK_ACK) != 0 ? true : false;
+		compressed = (flag & PACKET_FLAG_MASK_COMP) != 0 ? true : false;
+		tlvEncoded = (flag & PACKET_FLAG_MASK_TLV) != 0 ? true : false;
 		seq = packetRaw[PACKET_SEQ_NUM_I];
 		this.frame = frame;
 	}
@@ -85,6 +95,8 @@ public abstract class Im920Packet extends PacketImplementation {
 				return new Im920Ack(frame, packetRaw);
 			case NOTICE:
 				return new Im920Notice(frame, packetRaw);
+			case AGGREGATE:
+				return new Im920Aggregate(frame, packetRaw);
 			default:
 				logger.log(Level.WARNING, "Unknown packet type.");
 				throw new IllegalArgumentException("Unknown packet type.");
@@ -101,28 +113,28 @@ public abstract class Im920Packet extends PacketImplementation {
 
 	@Override
 	public final byte[] getPacketBytes() {
-		int size = sizeOfHeader() + getBodyLength();
-		ByteBuffer buf = ByteBuffer.allocate(size);
+		ByteBuffer buf = ByteBuffer.allocate(getPacketLength());
+		writeTo(buf);
+		return buf.array();
+	}
 
-		byte[] header = new byte[sizeOfHeader()];
-		byte length = (byte)getPacketLength();
-		header[PACKET_LENGTH_I] = length;
+	@Override
+	public final void writeTo(ByteBuffer dst) {
+		int length = getPacketLength();
+		if (dst.remaining() < length)
+			throw new BufferOverflowException();
 
-		byte type = getPacketType().id();
 		byte flag = 0;
 		flag |= fragmented ? PACKET_FLAG_MASK_FRAG : 0;
 		flag |= acknoledgement ? PACKET_FLAG_MASK_ACK : 0;
-		header[PACKET_FLAG_I] = 0;
-		header[PACKET_TYPE_I] = 0;
-		header[PACKET_FLAG_I] |= flag;
-		header[PACKET_TYPE_I] |= type;
-
-		byte seq = (byte)getSeqNum();
-		header[PACKET_SEQ_NUM_I] = seq;
-
-		buf.put(header).put(getBodyBytes());
+		flag |= compressed ? PACKET_FLAG_MASK_COMP : 0;
+		flag |= tlvEncoded ? PACKET_FLAG_MASK_TLV : 0;
 
-		return buf.array();
+		// The flag and the packet type share the same header byte.
+		dst.put((byte) length)
+				.put((byte) (flag | getPacketType().id()))
+				.put(getSeqNum());
+		writeBodyTo(dst);
 	}
 
 	@Override
@@ -138,6 +150,11 @@ public abstract class Im920Packet extends PacketImplementation {
 		return seq;
 	}
 
+	@Override
+	public final int getSequenceNumber() {
+		return seq & 0xFF;
+	}
+
 	public final boolean isFragmented() {
 		return fragmented;
 	}
@@ -146,6 +163,14 @@ public abstract class Im920Packet extends PacketImplementation {
 		return acknoledgement;
 	}
 
+	public final boolean isCompressed() {
+		return compressed;
+	}
+
+	public final boolean isTlvEncoded() {
+		return tlvEncoded;
+	}
+
 	public final void setFragment(boolean fragmented) {
 		this.fragmented  = fragmented;
 	}
@@ -154,11 +179,29 @@ public abstract class Im920Packet extends PacketImplementation {
 		this.acknoledgement = requested;
 	}
 
+	public final void setCompressed(boolean compressed) {
+		this.compressed = compressed;
+	}
+
+	final void setTlvEncoded(boolean tlvEncoded) {
+		this.tlvEncoded = tlvEncoded;
+	}
+
 	public final void setSeqNum(byte seqNo) {
 		this.seq = seqNo;
 	}
 
-	abstract byte[] getBodyBytes();
+	// The TLV records of a Command, Ack or Notice packet, checked to be there.
+	static ByteBuffer records(ByteBuffer records) {
+		if (records == null) {
+			String msg = "The parameters of this packet aren't TLV encoded.";
+			logger.log(Level.WARNING, msg);
+			throw new IllegalStateException(msg);
+		}
+		return records;
+	}
+
+	abstract void writeBodyTo(ByteBuffer dst);
 
 	abstract int getBodyLength();
 
@@ -169,6 +212,8 @@ public abstract class Im920Packet extends PacketImplementation {
 				.append("\n Length: ").append(getPacketLength())
 				.append("\n Flag response requested: ").append(acknoledgement)
 				.append("\n Flag fragmented: ").append(fragmented)
+				.append("\n Flag compressed: ").append(compressed)
+				.append("\n Flag TLV encoded: ").append(tlvEncoded)
 				.append("\n Sequence Number: ").append(seq)
 				.append("\n");
 		return builder.toString();
@@ -1,15 +1,42 @@
 package com.github.tutertlob.im920wireless.util;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.github.tutertlob.im920wireless.packet.Im920Aggregate;
 import com.github.tutertlob.im920wireless.packet.Im920Ack;
 import com.github.tutertlob.im920wireless.packet.Im920Command;
 import com.github.tutertlob.im920wireless.packet.Im920Data;
 import com.github.tutertlob.im920wireless.packet.Im920Frame;
 import com.github.tutertlob.im920wireless.packet.Im920Notice;
 import com.github.tutertlob.im920wireless.packet.Im920Packet;
+import com.github.tutertlob.subghz.DuplicateFilter;
+import com.github.tutertlob.subghz.LinkQualityTracker;
+import com.github.tutertlob.subghz.Lzss;
+import com.github.tutertlob.subghz.PacketAggregator;
+import com.github.tutertlob.subghz.PacketImplementation;
+import com.github.tutertlob.subghz.PacketLayout;
+import com.github.tutertlob.subghz.ReliableControl;
+import com.github.tutertlob.subghz.ReliableReceiver;
+import com.github.tutertlob.subghz.ReliableSender;
+import com.github.tutertlob.subghz.StreamTransfer;
+import com.github.tutertlob.subghz.TlvWriter;
 
 public final class Im920 {
 
@@ -19,22 +46,255 @@ public final class Im920 {
 
 	public static final byte IM920_MODULE_COMMAND = 1;
 
+	// Numbers commands, ACKs, notices and aggregates. Guarded by this Im920.
 	private byte sequence = 0;
 
+	// Data has a counter of its own, so the fragments of a message stay consecutive for FragmentReassembler
+	// while other packets go out in between. Guarded by dataLock.
+	private byte dataSequence = 0;
+
+	// Held for a whole Data message, so no other one gets in between its fragments. A lock rather than a monitor,
+	// so a long stream doesn't pin the carrier of a virtual thread, and it doesn't hold up the other packets.
+	private final ReentrantLock dataLock = new ReentrantLock();
+
+	// Data frames are told apart from the other packets of a sender by this bit of the key, as they are numbered
+	// by their own counter.
+	private static final long DATA_SEQUENCE_SPACE = 0x10000L;
+
+	private volatile Executor transferExecutor = null;
+
+	// TXDA commands of a stream queued in Im920Interface at a time.
+	private static final int STREAM_MAX_IN_FLIGHT = 4;
+
+	private static final ThreadLocal<ByteBuffer> txBuffer = ThreadLocal
+			.withInitial(() -> ByteBuffer.allocate(Im920Packet.PACKET_HEADER_SIZE + Im920Packet.PACKET_MAX_LENGTH));
+
+	// The packets of a received aggregate which readFrame() hasn't returned yet.
+	private final Queue<Im920Frame> unpackedFrames = new ConcurrentLinkedQueue<>();
+
+	// IM920 frames are broadcast, so all packets share one batch.
+	private static final String BROADCAST = "";
+
+	private volatile PacketAggregator<String, Im920Packet> aggregator = null;
+
+	private final Object aggregationLock = new Object();
+
+	private volatile boolean compressionEnabled = false;
+
+	private volatile DuplicateFilter duplicateFilter = null;
+
+	private volatile LinkQualityTracker linkQuality = null;
+
+	// Reliable transfers, keyed by the module id of the peer as moduleId() gives it.
+	private final Map<Integer, ReliableSender> reliableSenders = new ConcurrentHashMap<>();
+
+	private volatile ReliableReceiver<String, Im920Frame> reliableReceiver = null;
+
+	// IM920 frames are broadcast, so a sync names the receiver it is meant for.
+	private volatile String reliableLocalId = null;
+
 	public Im920(Im920Interface im920interface) {
 		this.im920Interface = im920interface;
 	}
 
+	// Aggregates are unpacked here, so callers only ever see the packets they carried.
+	// The control packets of reliable transfers are consumed here too, and their segments come out in order.
 	public Im920Frame readFrame() throws InterruptedException {
-		ByteBuffer[] macFrame = this.im920Interface.takeReceivedFrame();
-		Im920Frame frame = new Im920Frame(macFrame[0], macFrame[1]);
-		return frame;
+		Im920Frame unpacked;
+		while ((unpacked = unpackedFrames.poll()) == null) {
+			ByteBuffer[] macFrame = this.im920Interface.takeReceivedFrame();
+			trackLinkQuality(macFrame[0], macFrame[1]);
+			if (isDuplicate(macFrame[0], macFrame[1])) {
+				this.im920Interface.releaseReceivedFrame(macFrame);
+				continue;
+			}
+			Im920Frame frame;
+			try {
+				// Im920Frame copies what it needs, so the buffers can go back to the pool right away.
+				frame = new Im920Frame(macFrame[0], macFrame[1]);
+			} finally {
+				this.im920Interface.releaseReceivedFrame(macFrame);
+			}
+
+			for (Im920Frame packet : frame.unpack()) {
+				if (!consumeReliable(packet))
+					unpackedFrames.add(packet);
+			}
+		}
+		return unpacked;
+	}
+
+	// Frames resent by the application carry the sequence number they were first sent with.
+	// Enabled, duplicates are dropped straight from the receive buffers, before any packet is parsed.
+	public void enableDuplicateFilter(long expiry, TimeUnit unit) {
+		duplicateFilter = new DuplicateFilter(expiry, unit, DuplicateFilter.DEFAULT_MAX_SENDERS);
+	}
+
+	public void disableDuplicateFilter() {
+		duplicateFilter = null;
+	}
+
+	public DuplicateFilter getDuplicateFilter() {
+		return duplicateFilter;
+	}
+
+	// Tracks the RSSI and the loss of every module heard from, keyed by module id, as readFrame() takes frames.
+	public LinkQualityTracker enableLinkQuality() {
+		LinkQualityTracker tracker = new LinkQualityTracker();
+		linkQuality = tracker;
+		return tracker;
+	}
+
+	public void disableLinkQuality() {
+		linkQuality = null;
+	}
+
+	public LinkQualityTracker getLinkQuality() {
+		return linkQuality;
+	}
+
+	// Data and reliable segments count towards the RSSI only, as their sequence numbers aren't the frame counter
+	// of the other packets.
+	private void trackLinkQuality(ByteBuffer macHeader, ByteBuffer frameRaw) {
+		LinkQualityTracker tracker = linkQuality;
+		PacketLayout layout = Im920Packet.LAYOUT;
+		if (tracker == null || frameRaw.limit() < layout.headerSize())
+			return;
+		byte flag = frameRaw.get(layout.flagIndex());
+		int seqNum = (flag & PacketLayout.TYPE_MASK) == PacketImplementation.Type.DATA.id()
+				? PacketLayout.NO_SEQUENCE_NUMBER
+				: frameRaw.get(layout.seqNumIndex()) & 0xFF;
+		tracker.update(macHeader.getShort(1) & 0xFFFF, seqNum, macHeader.get(3));
+	}
+
+	// Reliable segments are numbered by their transfer rather than by the frame counter and are
+	// told apart from their duplicates by ReliableReceiver, so they pass.
+	private boolean isDuplicate(ByteBuffer macHeader, ByteBuffer frameRaw) {
+		DuplicateFilter filter = duplicateFilter;
+		PacketLayout layout = Im920Packet.LAYOUT;
+		if (filter == null || frameRaw.limit() < layout.headerSize())
+			return false;
+		byte flag = frameRaw.get(layout.flagIndex());
+		if ((flag & PacketLayout.TYPE_MASK) == PacketImplementation.Type.DATA.id()
+				&& (flag & PacketLayout.FLAG_MASK_ACK) != 0)
+			return false;
+		// The MAC header is the node id, the module id and the RSSI.
+		long key = macHeader.getShort(1) & 0xFFFF;
+		if ((flag & PacketLayout.TYPE_MASK) == PacketImplementation.Type.DATA.id())
+			key |= DATA_SEQUENCE_SPACE;
+		return filter.isDuplicate(key, frameRaw.get(layout.seqNumIndex()));
 	}
 
-	public void send(Im920Packet packet) {
-		packet.setSeqNum(getNextFrameID());
+	private boolean consumeReliable(Im920Frame frame) {
+		PacketImplementation packet = frame.getPacket();
+		if (packet instanceof Im920Ack) {
+			// ACKs of transfers to other modules are consumed as well.
+			ReliableSender sender = reliableSenders.get(Integer.valueOf(frame.getModuleId() & 0xFFFF));
+			return sender != null ? sender.onAck((Im920Ack) packet) : ReliableControl.isAck((Im920Ack) packet);
+		}
+
+		ReliableReceiver<String, Im920Frame> receiver = reliableReceiver;
+		if (receiver == null)
+			return false;
+		if (packet instanceof Im920Command)
+			return receiver.onSync(frame.getSender(), (Im920Command) packet, reliableLocalId);
+		if (ReliableControl.isSegment(packet)) {
+			receiver.onSegment(frame.getSender(), packet.getSequenceNumber(), packet.isFragmented(), frame);
+			return true;
+		}
+		return false;
+	}
+
+	// Commands, ACKs and notices sent within the delay budget of each other go out together in one frame.
+	// Not under the Im920 lock: the aggregator's timer takes its own lock before sending.
+	public void enableAggregation(long delay, TimeUnit unit) {
+		synchronized (aggregationLock) {
+			disableAggregation();
+			aggregator = new PacketAggregator<>(Im920Aggregate.capacityOfAggregate(), delay, unit, this::sendAggregated);
+		}
+	}
+
+	// Packets still waiting are sent right away.
+	public void disableAggregation() {
+		synchronized (aggregationLock) {
+			PacketAggregator<String, Im920Packet> current = aggregator;
+			aggregator = null;
+			if (current != null)
+				current.close();
+		}
+	}
+
+	private void sendAggregated(String destination, List<Im920Packet> packets) {
+		send(packets.size() == 1 ? packets.get(0) : new Im920Aggregate(packets));
+	}
+
+	private void sendSmall(Im920Packet packet) {
+		PacketAggregator<String, Im920Packet> current = aggregator;
+		if (current != null) {
+			try {
+				current.add(BROADCAST, packet);
+				return;
+			} catch (IllegalStateException e) {
+				// Aggregation has just been disabled.
+			}
+		}
+		send(packet);
+	}
+
+	// Data is numbered by its own counter, and waits for any Data message being sent to end.
+	public CompletableFuture<String[]> send(Im920Packet packet) {
+		if (packet.getPacketType() == PacketImplementation.Type.DATA) {
+			dataLock.lock();
+			try {
+				packet.setSeqNum(dataSequence++);
+				return transmit(packet);
+			} finally {
+				dataLock.unlock();
+			}
+		}
+		synchronized (this) {
+			packet.setSeqNum(getNextFrameID());
+			return transmit(packet);
+		}
+	}
+
+	// Sends the fragments of one message with consecutive sequence numbers and no other Data in between.
+	// Im920Pool tracks each fragment through its own future.
+	List<CompletableFuture<String[]>> sendFragments(List<Im920Data> fragments) {
+		dataLock.lock();
+		try {
+			List<ByteBuffer> frames = new ArrayList<>(fragments.size());
+			for (Im920Data fragment : fragments) {
+				frames.add(fragment(fragment));
+			}
+			return im920Interface.sendDataAsync(frames, Im920Interface.Priority.BULK);
+		} finally {
+			dataLock.unlock();
+		}
+	}
+
+	// Sends the packet with the sequence number it already carries.
+	private CompletableFuture<String[]> transmit(Im920Packet packet) {
 		Im920Frame frame = new Im920Frame(packet);
-		im920Interface.sendDataAsync(frame.getFrameBytes());
+		ByteBuffer buf = txBuffer.get();
+		buf.clear();
+		frame.writeTo(buf);
+		buf.flip();
+		// Data goes behind ACKs, commands and notices, so a bulk transfer doesn't hold up the conversation.
+		Im920Interface.Priority priority = packet.getPacketType() == PacketImplementation.Type.DATA
+				? Im920Interface.Priority.BULK
+				: Im920Interface.Priority.COMMAND;
+		return im920Interface.sendDataAsync(buf, priority);
+	}
+
+	// Data sent from now on is compressed with Lzss and flagged as such, unless compression doesn't make it smaller.
+	// The receiver has to put messages back together with FragmentReassembler, which decompresses them.
+	public void setCompressionEnabled(boolean enabled) {
+		this.compressionEnabled = enabled;
+	}
+
+	public boolean isCompressionEnabled() {
+		return compressionEnabled;
 	}
 
 	public void sendData(byte[] data, boolean fragment) {
@@ -44,38 +304,296 @@ public final class Im920 {
 			throw new NullPointerException(msg);
 		}
 
-		ByteBuffer buf;
-		for (buf = ByteBuffer.wrap(data); buf.remaining() > Im920Data.capacityOfData();) {
-			byte[] chopped = new byte[Im920Data.capacityOfData()];
+		boolean compressed = false;
+		if (compressionEnabled) {
+			byte[] packed = Lzss.compress(data);
+			if (packed.length < data.length) {
+				data = packed;
+				compressed = true;
+			}
+		}
+
+		// The fragments go to the interface together, so the first one the module refuses stops the rest.
+		dataLock.lock();
+		try {
+			List<ByteBuffer> frames = new ArrayList<>();
+			ByteBuffer buf;
+			for (buf = ByteBuffer.wrap(data); buf.remaining() > Im920Data.capacityOfData();) {
+				byte[] chopped = new byte[Im920Data.capacityOfData()];
+				buf.get(chopped, 0, chopped.length);
+				frames.add(fragment(new Im920Data(chopped, true, compressed)));
+			}
+			byte[] chopped = new byte[buf.remaining()];
 			buf.get(chopped, 0, chopped.length);
-			Im920Data packet = new Im920Data(chopped, true);
+			frames.add(fragment(new Im920Data(chopped, false, compressed)));
+			im920Interface.sendDataAsync(frames, Im920Interface.Priority.BULK);
+		} finally {
+			dataLock.unlock();
+		}
+	}
+
+	private ByteBuffer fragment(Im920Data packet) {
+		packet.setSeqNum(dataSequence++);
+		ByteBuffer buf = ByteBuffer.allocate(Im920Packet.PACKET_HEADER_SIZE + Im920Packet.PACKET_MAX_LENGTH);
+		new Im920Frame(packet).writeTo(buf);
+		buf.flip();
+		return buf;
+	}
+
+	// A compressed stream is compressed as it is read, so its length is unknown and it can't fall back to raw bytes.
+	public StreamTransfer sendStream(InputStream data) {
+		if (compressionEnabled)
+			return sendStream(Channels.newChannel(data), StreamTransfer.UNKNOWN_LENGTH);
+		return startStream(new StreamTransfer(data, Im920Data.capacityOfData(), STREAM_MAX_IN_FLIGHT, this::sendFragment));
+	}
+
+	public StreamTransfer sendStream(ReadableByteChannel data, long length) {
+		if (compressionEnabled)
+			return startStream(new StreamTransfer(Lzss.compressing(data), StreamTransfer.UNKNOWN_LENGTH,
+					Im920Data.capacityOfData(), STREAM_MAX_IN_FLIGHT, this::sendCompressedFragment));
+		return startStream(
+				new StreamTransfer(data, length, Im920Data.capacityOfData(), STREAM_MAX_IN_FLIGHT, this::sendFragment));
+	}
+
+	// A buffer is compressed in one go, so it is sent raw when compression doesn't help.
+	public StreamTransfer sendStream(ByteBuffer data) {
+		byte[] packed = compress(data);
+		if (packed != null)
+			return startStream(new StreamTransfer(ByteBuffer.wrap(packed), Im920Data.capacityOfData(),
+					STREAM_MAX_IN_FLIGHT, this::sendCompressedFragment));
+		return startStream(new StreamTransfer(data, Im920Data.capacityOfData(), STREAM_MAX_IN_FLIGHT, this::sendFragment));
+	}
+
+	// The remaining bytes of data compressed, or null if compression is disabled or doesn't make them smaller.
+	// data is only consumed when they are compressed.
+	private byte[] compress(ByteBuffer data) {
+		if (!compressionEnabled || data == null)
+			return null;
+		byte[] raw = new byte[data.remaining()];
+		data.duplicate().get(raw);
+		byte[] packed = Lzss.compress(raw);
+		if (packed.length >= raw.length)
+			return null;
+		data.position(data.limit());
+		return packed;
+	}
+
+	private StreamTransfer startStream(StreamTransfer transfer) {
+		// The stream holds dataLock throughout, so that its fragments get consecutive sequence numbers, while
+		// commands, ACKs and notices go on; each fragment only takes the lock again to be numbered and queued.
+		Runnable task = () -> {
+			dataLock.lock();
+			try {
+				transfer.run();
+			} finally {
+				dataLock.unlock();
+			}
+		};
+		Executor executor = transferExecutor;
+		if (executor != null)
+			executor.execute(task);
+		else
+			new Thread(task, "Im920-stream").start();
+		return transfer;
+	}
+
+	private CompletableFuture<String[]> sendFragment(ByteBuffer fragment, boolean more) {
+		return sendFragment(fragment, more, false);
+	}
+
+	private CompletableFuture<String[]> sendCompressedFragment(ByteBuffer fragment, boolean more) {
+		return sendFragment(fragment, more, true);
+	}
+
+	private CompletableFuture<String[]> sendFragment(ByteBuffer fragment, boolean more, boolean compressed) {
+		byte[] chopped = new byte[fragment.remaining()];
+		fragment.get(chopped);
+		return send(new Im920Data(chopped, more, compressed)).thenApply(responses -> {
+			if (responses.length == 0 || !responses[responses.length - 1].startsWith("OK"))
+				throw new CompletionException(new IOException("The IM920 module didn't accept a fragment."));
+			return responses;
+		});
+	}
 
-			send(packet);
+	// Opens reliable transfers to the module peer, keeping up to window segments in flight.
+	// The segments take their sequence numbers from the transfer, not from the frame counter of send().
+	public ReliableSender openReliable(String peer, int window) {
+		if (peer == null) {
+			String msg = "Argument peer is null.";
+			logger.log(Level.WARNING, msg);
+			throw new NullPointerException(msg);
 		}
-		byte[] chopped = new byte[buf.remaining()];
-		buf.get(chopped, 0, chopped.length);
-		Im920Data packet = new Im920Data(chopped, false);
-		send(packet);
+		Integer moduleId = Integer.valueOf(moduleId(peer));
+		ReliableSender sender = new ReliableSender(reliableTransport(Integer.toHexString(moduleId)), window);
+		ReliableSender previous = reliableSenders.put(moduleId, sender);
+		if (previous != null)
+			previous.close();
+		return sender;
+	}
+
+	public void closeReliable(String peer) {
+		ReliableSender sender = reliableSenders.remove(Integer.valueOf(moduleId(peer)));
+		if (sender != null)
+			sender.close();
+	}
+
+	// A module id given in hex, as Im920Frame.getSender() gives it or with leading zeros, a 0x prefix or in
+	// upper case, as the 16-bit number it names.
+	static int moduleId(String id) {
+		if (id == null) {
+			String msg = "Argument id is null.";
+			logger.log(Level.WARNING, msg);
+			throw new NullPointerException(msg);
+		}
+
+		String digits = id.trim();
+		if (digits.startsWith("0x") || digits.startsWith("0X"))
+			digits = digits.substring(2);
+		long value = -1;
+		try {
+			if (!digits.isEmpty() && digits.length() <= 8 && digits.charAt(0) != '-' && digits.charAt(0) != '+')
+				value = Long.parseLong(digits, 16);
+		} catch (NumberFormatException e) {
+			// Reported below.
+		}
+		// getSender() gives module ids from 0x8000 sign-extended.
+		if (value >= 0xFFFF8000L)
+			value &= 0xFFFF;
+		if (value < 0 || value > 0xFFFF) {
+			String msg = String.format("Invalid IM920 module id %s", id);
+			logger.log(Level.WARNING, msg);
+			throw new IllegalArgumentException(msg);
+		}
+		return (int) value;
+	}
+
+	// peer is the module id as Integer.toHexString() gives it, which is what the receiver compares its own with.
+	private ReliableSender.Transport reliableTransport(String peer) {
+		return new ReliableSender.Transport() {
+			@Override
+			public void sendSegment(int seqNum, ByteBuffer segment, boolean more, boolean compressed) {
+				byte[] chopped = new byte[segment.remaining()];
+				segment.get(chopped);
+				Im920Data packet = new Im920Data(chopped, more, true, compressed);
+				packet.setSeqNum((byte) seqNum);
+				transmit(packet);
+			}
+
+			@Override
+			public void sendSync(int session, int base) {
+				send(new Im920Command(ReliableControl.COMMAND,
+						ReliableControl.writeSync(new TlvWriter(32), session, base, peer), false));
+			}
+		};
+	}
+
+	// The transfer is pipelined over the window given to openReliable(), which must have been called for peer.
+	// Its future completes once the peer has acknowledged every fragment.
+	public StreamTransfer sendReliable(String peer, ByteBuffer data) {
+		ReliableSender sender = reliableSender(peer);
+		byte[] packed = compress(data);
+		if (packed != null)
+			return startReliable(new StreamTransfer(ByteBuffer.wrap(packed), Im920Data.capacityOfData(),
+					sender.getWindow(), (fragment, more) -> sender.send(fragment, more, true)));
+		return startReliable(new StreamTransfer(data, Im920Data.capacityOfData(), sender.getWindow(), sender));
+	}
+
+	public StreamTransfer sendReliable(String peer, ReadableByteChannel data, long length) {
+		ReliableSender sender = reliableSender(peer);
+		if (compressionEnabled)
+			return startReliable(new StreamTransfer(Lzss.compressing(data), StreamTransfer.UNKNOWN_LENGTH,
+					Im920Data.capacityOfData(), sender.getWindow(), (fragment, more) -> sender.send(fragment, more, true)));
+		return startReliable(new StreamTransfer(data, length, Im920Data.capacityOfData(), sender.getWindow(), sender));
+	}
+
+	private ReliableSender reliableSender(String peer) {
+		ReliableSender sender = peer == null ? null : reliableSenders.get(Integer.valueOf(moduleId(peer)));
+		if (sender == null) {
+			String msg = String.format("No reliable transfer to %s has been opened.", peer);
+			logger.log(Level.WARNING, msg);
+			throw new IllegalStateException(msg);
+		}
+		return sender;
+	}
+
+	// Reliable segments don't use the frame counter, so the transfer doesn't hold the Im920 lock.
+	private StreamTransfer startReliable(StreamTransfer transfer) {
+		Executor executor = transferExecutor;
+		if (executor != null)
+			executor.execute(transfer);
+		else
+			new Thread(transfer, "Im920-reliable").start();
+		return transfer;
+	}
+
+	// Streams and reliable transfers run on executor, e.g. RadioThreads.perTask(RadioThreads.virtual("Im920")),
+	// as they mostly wait for room in the transmit queue. Null starts a thread of its own per transfer.
+	public void setTransferExecutor(Executor executor) {
+		transferExecutor = executor;
+	}
+
+	public Executor getTransferExecutor() {
+		return transferExecutor;
+	}
+
+	// Accepts reliable transfers meant for localId, the module id of this IM920 in hex in any form moduleId() reads.
+	// Their segments come out of readFrame() in order, and FragmentReassembler puts messages together as usual.
+	public void enableReliableReceive(String localId) {
+		if (localId == null) {
+			String msg = "Argument localId is null.";
+			logger.log(Level.WARNING, msg);
+			throw new NullPointerException(msg);
+		}
+		String canonical = Integer.toHexString(moduleId(localId));
+		disableReliableReceive();
+		reliableLocalId = canonical;
+		reliableReceiver = new ReliableReceiver<>(unpackedFrames::add, (peer, session, cumulative, selective) -> {
+			sendSmall(new Im920Ack(ReliableControl.COMMAND,
+					ReliableControl.writeAck(new TlvWriter(32), session, cumulative, selective)));
+		});
+	}
+
+	public void disableReliableReceive() {
+		ReliableReceiver<String, Im920Frame> current = reliableReceiver;
+		reliableReceiver = null;
+		if (current != null)
+			current.close();
 	}
 
 	public void sendCommand(byte cmd, String param) {
 		Im920Command packet = new Im920Command(cmd, param, false);
-		send(packet);
+		sendSmall(packet);
 	}
 
 	public void sendCommandWithAck(byte cmd, String param) {
 		Im920Command packet = new Im920Command(cmd, param, true);
-		send(packet);
+		sendSmall(packet);
 	}
 
 	public void sendAck(byte cmd, String response) {
 		Im920Ack packet = new Im920Ack(cmd, response);
-		send(packet);
+		sendSmall(packet);
 	}
 
 	public void sendNotice(String notice) {
 		Im920Notice packet = new Im920Notice(notice);
-		send(packet);
+		sendSmall(packet);
+	}
+
+	public void sendCommand(byte cmd, TlvWriter params) {
+		sendSmall(new Im920Command(cmd, params, false));
+	}
+
+	public void sendCommandWithAck(byte cmd, TlvWriter params) {
+		sendSmall(new Im920Command(cmd, params, true));
+	}
+
+	public void sendAck(byte cmd, TlvWriter response) {
+		sendSmall(new Im920Ack(cmd, response));
+	}
+
+	public void sendNotice(TlvWriter notice) {
+		sendSmall(new Im920Notice(notice));
 	}
 
 	private synchronized byte getNextFrameID() {
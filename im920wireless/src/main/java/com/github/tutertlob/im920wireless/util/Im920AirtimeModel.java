@@ -0,0 +1,37 @@
+package com.github.tutertlob.im920wireless.util;
+
+import com.github.tutertlob.subghz.AirtimeModel;
+
+// Airtime of a TXDA frame. The radio adds preamble, sync word, its own header and CRC to the payload;
+// OVERHEAD_BYTES approximates them.
+public final class Im920AirtimeModel implements AirtimeModel {
+
+	public static final int HIGH_SPEED_BPS = 50000;
+
+	public static final int LONG_RANGE_BPS = 1250;
+
+	static final int OVERHEAD_BYTES = 16;
+
+	private final int bitRate;
+
+	public Im920AirtimeModel() {
+		this(HIGH_SPEED_BPS);
+	}
+
+	public Im920AirtimeModel(int bitRate) {
+		if (bitRate <= 0)
+			throw new IllegalArgumentException("The bit rate must be positive.");
+
+		this.bitRate = bitRate;
+	}
+
+	@Override
+	public long airtimeNanos(int payloadLength) {
+		return (OVERHEAD_BYTES + payloadLength) * 8L * 1000000000L / bitRate;
+	}
+
+	public int getBitRate() {
+		return bitRate;
+	}
+
+}
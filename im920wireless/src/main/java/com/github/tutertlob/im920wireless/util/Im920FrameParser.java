@@ -0,0 +1,206 @@
+package com.github.tutertlob.im920wireless.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class Im920FrameParser {
+
+	private static final Logger logger = Logger.getLogger(Im920FrameParser.class.getName());
+
+	public interface Handler {
+
+		public void frameReceived(ByteBuffer[] frame) throws InterruptedException;
+
+		public void responseReceived(byte[] line, int length) throws InterruptedException;
+
+	}
+
+	public static final int LINE_MAX_LENGTH = 256;
+
+	// Received frames look like "NN,MMMM,RR:xx,xx,...,xx".
+	// The header part is checked against this template; 'H' stands for a hex digit.
+	private static final byte[] HEADER_TEMPLATE = "HH,HHHH,HH:".getBytes(StandardCharsets.US_ASCII);
+
+	private static final int STATE_HEADER = 0;
+
+	private static final int STATE_DATA_HIGH = 1;
+
+	private static final int STATE_DATA_LOW = 2;
+
+	private static final int STATE_DATA_SEPARATOR = 3;
+
+	private static final int STATE_NOT_FRAME = 4;
+
+	private final Im920FramePool pool;
+
+	private final Handler handler;
+
+	private final byte[] line = new byte[LINE_MAX_LENGTH];
+
+	private int lineLength = 0;
+
+	private final byte[] header = new byte[Im920FramePool.HEADER_LENGTH];
+
+	private final byte[] body = new byte[Im920FramePool.BODY_MAX_LENGTH];
+
+	private int bodyLength = 0;
+
+	private int state = STATE_HEADER;
+
+	private int nibble = 0;
+
+	private int headerPos = 0;
+
+	private int headerNibbles = 0;
+
+	// Only the parsing thread writes it.
+	private volatile long malformedFrames = 0;
+
+	public Im920FrameParser(Im920FramePool pool, Handler handler) {
+		if (pool == null)
+			throw new NullPointerException("The argument pool is null.");
+		if (handler == null)
+			throw new NullPointerException("The argument handler is null.");
+
+		this.pool = pool;
+		this.handler = handler;
+	}
+
+	public void parse(byte[] buf, int offset, int length) throws InterruptedException {
+		for (int i = offset, end = offset + length; i < end; i++) {
+			byte c = buf[i];
+			if (c == '\r' || c == '\n') {
+				endOfLine();
+			} else {
+				accept(c);
+			}
+		}
+	}
+
+	public void reset() {
+		lineLength = 0;
+		bodyLength = 0;
+		state = STATE_HEADER;
+		nibble = 0;
+		headerPos = 0;
+		headerNibbles = 0;
+	}
+
+	public long getMalformedFrames() {
+		return malformedFrames;
+	}
+
+	private void accept(byte c) {
+		if (lineLength < LINE_MAX_LENGTH) {
+			line[lineLength] = c;
+		}
+		lineLength++;
+
+		switch (state) {
+			case STATE_HEADER:
+				acceptHeader(c);
+				break;
+			case STATE_DATA_HIGH:
+			case STATE_DATA_LOW:
+				acceptData(c);
+				break;
+			case STATE_DATA_SEPARATOR:
+				if (c == ',') {
+					state = STATE_DATA_HIGH;
+				} else {
+					malformed();
+				}
+				break;
+			default:
+				break;
+		}
+	}
+
+	private void acceptHeader(byte c) {
+		byte expected = HEADER_TEMPLATE[headerPos];
+		if (expected == 'H') {
+			int value = hexValue(c);
+			if (value < 0) {
+				// Lines which break the header grammar are command responses, not frames.
+				state = STATE_NOT_FRAME;
+				return;
+			}
+			if ((headerNibbles & 1) == 0) {
+				nibble = value;
+			} else {
+				header[headerNibbles >> 1] = (byte) ((nibble << 4) | value);
+			}
+			headerNibbles++;
+		} else if (c != expected) {
+			state = STATE_NOT_FRAME;
+			return;
+		}
+
+		if (++headerPos == HEADER_TEMPLATE.length) {
+			state = STATE_DATA_HIGH;
+		}
+	}
+
+	private void acceptData(byte c) {
+		int value = hexValue(c);
+		if (value < 0) {
+			malformed();
+			return;
+		}
+
+		if (state == STATE_DATA_HIGH) {
+			if (bodyLength == body.length) {
+				malformed();
+				return;
+			}
+			nibble = value;
+			state = STATE_DATA_LOW;
+		} else {
+			body[bodyLength++] = (byte) ((nibble << 4) | value);
+			state = STATE_DATA_SEPARATOR;
+		}
+	}
+
+	private void malformed() {
+		malformedFrames++;
+		state = STATE_NOT_FRAME;
+	}
+
+	private void endOfLine() throws InterruptedException {
+		if (lineLength == 0)
+			return;
+
+		try {
+			if (state == STATE_DATA_SEPARATOR) {
+				ByteBuffer[] frame = pool.acquire(bodyLength);
+				frame[0].put(header, 0, header.length).flip();
+				frame[1].put(body, 0, bodyLength).flip();
+				handler.frameReceived(frame);
+			} else {
+				if (state == STATE_DATA_HIGH || state == STATE_DATA_LOW) {
+					malformedFrames++;
+				}
+				if (lineLength > LINE_MAX_LENGTH) {
+					logger.log(Level.WARNING,
+							String.format("A received line is too long (%d bytes) and is truncated.", lineLength));
+				}
+				handler.responseReceived(line, Math.min(lineLength, LINE_MAX_LENGTH));
+			}
+		} finally {
+			reset();
+		}
+	}
+
+	private static int hexValue(byte c) {
+		if (c >= '0' && c <= '9')
+			return c - '0';
+		if (c >= 'A' && c <= 'F')
+			return c - 'A' + 10;
+		if (c >= 'a' && c <= 'f')
+			return c - 'a' + 10;
+		return -1;
+	}
+
+}
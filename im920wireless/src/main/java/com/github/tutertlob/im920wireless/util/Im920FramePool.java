@@ -0,0 +1,67 @@
+package com.github.tutertlob.im920wireless.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class Im920FramePool {
+
+	private static final Logger logger = Logger.getLogger(Im920FramePool.class.getName());
+
+	public static final int HEADER_LENGTH = 4;
+
+	public static final int BODY_MAX_LENGTH = 64;
+
+	private static final int DEFAULT_CAPACITY_PER_LENGTH = 8;
+
+	// One free list per body length so that each body buffer is backed by an array of the exact frame length.
+	private final List<BlockingQueue<ByteBuffer[]>> free = new ArrayList<>(BODY_MAX_LENGTH + 1);
+
+	public Im920FramePool() {
+		this(DEFAULT_CAPACITY_PER_LENGTH);
+	}
+
+	public Im920FramePool(int capacityPerLength) {
+		if (capacityPerLength < 1)
+			throw new IllegalArgumentException("The capacity of the frame pool must be positive.");
+
+		for (int i = 0; i <= BODY_MAX_LENGTH; i++) {
+			free.add(new ArrayBlockingQueue<>(capacityPerLength));
+		}
+	}
+
+	public ByteBuffer[] acquire(int bodyLength) {
+		if (bodyLength < 1 || bodyLength > BODY_MAX_LENGTH) {
+			String msg = String.format("Invalid frame body length %d", bodyLength);
+			logger.log(Level.WARNING, msg);
+			throw new IllegalArgumentException(msg);
+		}
+
+		ByteBuffer[] frame = free.get(bodyLength).poll();
+		if (frame == null) {
+			return new ByteBuffer[] { ByteBuffer.allocate(HEADER_LENGTH), ByteBuffer.allocate(bodyLength) };
+		}
+		frame[0].clear();
+		frame[1].clear();
+		return frame;
+	}
+
+	public void release(ByteBuffer[] frame) {
+		if (frame == null || frame.length != 2 || frame[0] == null || frame[1] == null)
+			return;
+
+		if (frame[0].capacity() != HEADER_LENGTH || !frame[0].hasArray() || !frame[1].hasArray())
+			return;
+
+		int bodyLength = frame[1].capacity();
+		if (bodyLength < 1 || bodyLength > BODY_MAX_LENGTH)
+			return;
+
+		free.get(bodyLength).offer(frame);
+	}
+
+}
@@ -1,32 +1,44 @@
 package com.github.tutertlob.im920wireless.util;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.apache.commons.codec.binary.Hex;
-import org.apache.commons.codec.DecoderException;
+import javax.management.ObjectName;
+
+import com.github.tutertlob.im920wireless.packet.Im920Packet;
+import com.github.tutertlob.subghz.CaptureRecord;
+import com.github.tutertlob.subghz.CaptureWriter;
+import com.github.tutertlob.subghz.DurableQueue;
+import com.github.tutertlob.subghz.DutyCycleScheduler;
+import com.github.tutertlob.subghz.PacketLayout;
+import com.github.tutertlob.subghz.RadioMetrics;
+import com.github.tutertlob.subghz.RadioThreads;
 
-import gnu.io.CommPort;
-import gnu.io.CommPortIdentifier;
 import gnu.io.NoSuchPortException;
 import gnu.io.PortInUseException;
-import gnu.io.SerialPort;
-import gnu.io.UnsupportedCommOperationException;
 
 public final class Im920Interface {
 
@@ -67,85 +79,149 @@ public final class Im920Interface {
 
 	private int usTxTimePerByte;
 
-	private OutputStream out;
-
-	private InputStream in;
-
-	private SerialPort serial;
+	private Im920Transport transport;
 
 	private BlockingQueue<ByteBuffer[]> incomingFrames = new LinkedBlockingQueue<>();
 
+	private final Im920FramePool framePool = new Im920FramePool();
+
 	private BlockingQueue<String[]> commandResponse = new LinkedBlockingQueue<>();
 
-	private BlockingQueue<Ticket> commandQueue = new LinkedBlockingQueue<>();
+	private final Im920TxQueue<Ticket> commandQueue = new Im920TxQueue<>(defaultQueueCapacities(), OverflowPolicy.BLOCK);
+
+	public static final long DEFAULT_COMMAND_TIMEOUT_MS = 3000;
+
+	private static final long RESPONSE_POLL_INTERVAL_MS = 10;
+
+	private volatile long commandTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_COMMAND_TIMEOUT_MS);
+
+	public static final long DEFAULT_QUEUE_WAIT_MS = 30000;
+
+	// How long a blocking call waits for its command to be written, on top of the command timeout.
+	private volatile long queueWaitNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_QUEUE_WAIT_MS);
+
+	private final ScheduledThreadPoolExecutor commandTimer = newCommandTimer();
+
+	// A multi-line response whose end can't be told from its contents is over once the line has been
+	// quiet for this many byte times.
+	private static final int RESPONSE_GAP_BYTES = 10;
+
+	private long responseGapNanos;
+
+	// Written by SerialWriter just before each command goes out, read by SerialReader.
+	private volatile Im920ResponseGrammar expectedResponse = Im920ResponseGrammar.SINGLE_LINE;
+
+	private volatile long commandSequence = 0;
+
+	// Null leaves pacing to the module.
+	private volatile DutyCycleScheduler transmitScheduler = new DutyCycleScheduler(new Im920AirtimeModel());
+
+	private final Im920InterfaceMetrics metrics = new Im920InterfaceMetrics(this);
+
+	private ObjectName metricsName;
+
+	// Set by SerialReader, which owns it.
+	private volatile Im920FrameParser parser;
+
+	// Null captures nothing.
+	private volatile CaptureWriter capture;
+
+	// Null keeps the frames waiting to be sent in memory only.
+	private volatile DurableQueue outbound;
+
+	// Times a journaled entry is sent before it is given up on and taken off the queue as dead-lettered.
+	public static final int DURABLE_MAX_ATTEMPTS = 5;
+
+	// The wait before sending an entry again, doubled on every attempt up to the maximum.
+	private static final long DURABLE_RETRY_BASE_MS = 500;
+
+	private static final long DURABLE_RETRY_MAX_MS = 30000;
+
+	// Entries are sent again on threads of their own, as queueing them may block while the timer must not.
+	private final ThreadFactory retryThreads = RadioThreads.virtual("Im920Interface-retry");
 
 	private Thread serialReader;
 
 	private Thread serialWriter;
 
-	public static Im920Interface open(String portName, BaudRate baud)
-			throws IOException, NoSuchPortException, PortInUseException {
-		Im920Interface im920Interface;
-		CommPortIdentifier commPortIdentifier;
-
-		try {
-			commPortIdentifier = CommPortIdentifier.getPortIdentifier(portName);
-		} catch (NoSuchPortException e) {
-			logger.warning(portName + ": No such port.");
-			throw e;
-		}
+	// Served strictly in this order: module control, then ACKs and commands for the peers, then bulk data.
+	public enum Priority {
+		CONTROL, COMMAND, BULK
+	}
 
-		if (commPortIdentifier.isCurrentlyOwned()) {
-			logger.warning(portName + " is currently in use.");
-			throw new PortInUseException();
-		}
+	// What a producer gets when its priority class is full.
+	public enum OverflowPolicy {
+		// Waits until SerialWriter makes room.
+		BLOCK,
+		// The new command fails at once with a RejectedExecutionException.
+		FAIL,
+		// The oldest queued command of the class fails with a RejectedExecutionException and makes room.
+		DROP_OLDEST
+	}
 
-		CommPort commPort;
-		try {
-			commPort = commPortIdentifier.open(Im920Interface.class.getName(), 2000);
-		} catch (PortInUseException e) {
-			logger.warning(portName + " is currently in use.");
-			throw e;
-		}
+	private static Map<Priority, Integer> defaultQueueCapacities() {
+		Map<Priority, Integer> capacities = new EnumMap<>(Priority.class);
+		capacities.put(Priority.CONTROL, 16);
+		capacities.put(Priority.COMMAND, 64);
+		capacities.put(Priority.BULK, 256);
+		return capacities;
+	}
 
-		if (commPort instanceof SerialPort) {
-			SerialPort serial = (SerialPort) commPort;
-			try {
-				serial.setSerialPortParams(baud.baud(), SerialPort.DATABITS_8, SerialPort.STOPBITS_1,
-						SerialPort.PARITY_NONE);
-			} catch (UnsupportedCommOperationException e) {
-				logger.log(Level.WARNING, "Attemped to do setSerialPortParams with unsupported parameters.", e);
-				// Keep running.
-			}
+	public static Im920Interface open(String portName, BaudRate baud)
+			throws IOException, NoSuchPortException, PortInUseException {
+		return open(portName, baud, RadioThreads.platform("Im920Interface", false));
+	}
 
-			im920Interface = new Im920Interface();
-			im920Interface.serial = serial;
-			im920Interface.usTxTimePerByte = (int) ((1000000 / baud.baud()) + 1) * 10;
+	public static Im920Interface open(String portName, BaudRate baud, ThreadFactory threadFactory)
+			throws IOException, NoSuchPortException, PortInUseException {
+		Im920SerialTransport transport = new Im920SerialTransport(portName, baud);
+		transport.openPort();
+		return open(transport, baud, threadFactory);
+	}
 
-			try {
-				im920Interface.in = serial.getInputStream();
-				im920Interface.out = serial.getOutputStream();
-			} catch (IOException e) {
-				im920Interface.serial.close();
-				im920Interface.serial = null;
-				logger.log(Level.WARNING, "Couldn't get I/O streams for the serial port.", e);
-				throw new UncheckedIOException("Couldn't get I/O streams for the serial port.", e);
-			}
-		} else {
-			logger.warning("Only serial ports are handled by this program.");
-			throw new IOException("Only serial ports are handled by this program.");
-		}
+	public static Im920Interface open(Im920Transport transport, BaudRate baud) throws IOException {
+		return open(transport, baud, RadioThreads.platform("Im920Interface", false));
+	}
 
-		(im920Interface.serialReader = new Thread(new Im920Interface.SerialReader(im920Interface))).start();
-		(im920Interface.serialWriter = new Thread(new Im920Interface.SerialWriter(im920Interface))).start();
+	// threadFactory makes the serial reader and writer threads, e.g. to name, prioritize or pin them.
+	public static Im920Interface open(Im920Transport transport, BaudRate baud, ThreadFactory threadFactory)
+			throws IOException {
+		if (transport == null)
+			throw new NullPointerException("The argument transport is null.");
+		if (baud == null)
+			throw new NullPointerException("The argument baud is null.");
+		if (threadFactory == null)
+			throw new NullPointerException("The argument threadFactory is null.");
+
+		transport.open();
+
+		Im920Interface im920Interface = new Im920Interface();
+		im920Interface.transport = transport;
+		im920Interface.usTxTimePerByte = (int) ((1000000 / baud.baud()) + 1) * 10;
+		im920Interface.responseGapNanos = TimeUnit.MICROSECONDS.toNanos(im920Interface.usTxTimePerByte)
+				* RESPONSE_GAP_BYTES;
+
+		(im920Interface.serialReader = threadFactory.newThread(new Im920Interface.SerialReader(im920Interface))).start();
+		(im920Interface.serialWriter = threadFactory.newThread(new Im920Interface.SerialWriter(im920Interface))).start();
+		im920Interface.metricsName = RadioMetrics.register(im920Interface.metrics, Im920InterfaceMetricsMXBean.class,
+				"com.github.tutertlob.im920wireless", "Im920Interface", transport.toString());
 
 		return im920Interface;
 	}
 
+	private static ScheduledThreadPoolExecutor newCommandTimer() {
+		ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+			Thread t = new Thread(r, "Im920Interface-timer");
+			t.setDaemon(true);
+			return t;
+		});
+		timer.setRemoveOnCancelPolicy(true);
+		return timer;
+	}
+
 	synchronized public void close() {
 		try {
-			this.in.close();
-			this.out.close();
+			transport.close();
 			serialReader.interrupt();
 			serialWriter.interrupt();
 		} catch (SecurityException e) {
@@ -153,45 +229,210 @@ public final class Im920Interface {
 		} catch (IOException e) {
 			logger.log(Level.INFO, "Input/Output Serial streams has been closed.", e);
 		} finally {
-			serial.close();
+			RadioMetrics.unregister(metricsName, metrics);
+			commandTimer.shutdownNow();
+			List<Ticket> pending = new ArrayList<>();
+			commandQueue.close(pending);
+			for (Ticket ticket : pending) {
+				ticket.fail(new IOException("The interface has been closed."));
+				ticket.release();
+			}
 		}
 	}
 
 	private boolean isAvailable() throws IOException {
-		return in.available() > 0 ? true : false;
+		return transport.available() > 0 ? true : false;
 	}
 
 	private int readSerial(byte[] buf) throws IOException {
-		return in.read(buf);
+		return transport.read(buf, 0, buf.length);
 	}
 
 	private void writeSerial(String cmd) throws IOException {
 		byte[] hex = cmd.getBytes(StandardCharsets.US_ASCII);
-		out.write(hex);
-		out.flush();
+		transport.write(hex, 0, hex.length);
 	}
 
 	public ByteBuffer[] takeReceivedFrame() throws InterruptedException {
 		return incomingFrames.take();
 	}
 
+	public void releaseReceivedFrame(ByteBuffer[] frame) {
+		framePool.release(frame);
+	}
+
 	private void putReceivedFrame(ByteBuffer[] frame) throws InterruptedException {
+		CaptureWriter capture = this.capture;
+		if (capture != null)
+			capture.append(CaptureRecord.Direction.RECEIVED, CaptureRecord.Radio.IM920, frame[0], frame[1]);
+		countReceivedFrame(frame[1]);
 		incomingFrames.put(frame);
 	}
 
-	private String[] checkinCommand(String cmd) throws InterruptedException {
-		Ticket ticket = Ticket.checkin(cmd, true);
-		commandQueue.put(ticket);
-		return ticket.checkout();
+	private void countReceivedFrame(ByteBuffer packet) {
+		if (packet.remaining() > Im920Packet.LAYOUT.flagIndex())
+			metrics.frameReceived(packet.get(packet.position() + Im920Packet.LAYOUT.flagIndex()), packet.remaining());
+	}
+
+	// Hands a frame to takeReceivedFrame as if the module had received it, e.g. one replayed from a capture.
+	// mac holds the node id, the module id and the RSSI as the module reports them. Injected frames aren't captured.
+	public void injectReceivedFrame(ByteBuffer mac, ByteBuffer packet) throws InterruptedException {
+		if (mac == null)
+			throw new NullPointerException("The argument mac is null.");
+		if (packet == null)
+			throw new NullPointerException("The argument packet is null.");
+		if (mac.remaining() != Im920FramePool.HEADER_LENGTH) {
+			String msg = String.format("Invalid frame header length %d", mac.remaining());
+			logger.log(Level.WARNING, msg);
+			throw new IllegalArgumentException(msg);
+		}
+
+		ByteBuffer[] frame = framePool.acquire(packet.remaining());
+		frame[0].put(mac.duplicate()).flip();
+		frame[1].put(packet.duplicate()).flip();
+		countReceivedFrame(frame[1]);
+		incomingFrames.put(frame);
+	}
+
+	// Injects a received IM920 frame out of a capture; returns false for any other record.
+	public boolean injectReceivedFrame(CaptureRecord record) throws InterruptedException {
+		if (record == null)
+			throw new NullPointerException("The argument record is null.");
+		if (record.getRadio() != CaptureRecord.Radio.IM920 || record.getDirection() != CaptureRecord.Direction.RECEIVED)
+			return false;
+
+		injectReceivedFrame(record.getMacBuffer(), record.getPayloadBuffer());
+		return true;
 	}
 
-	private void checkinCommandWithoutRes(String cmd) {
-		Ticket ticket = Ticket.checkin(cmd, false);
+	// Frames received and sent from now on are appended to capture; null stops capturing.
+	// The capture is not closed here.
+	public void setCapture(CaptureWriter capture) {
+		this.capture = capture;
+	}
+
+	public CaptureWriter getCapture() {
+		return capture;
+	}
+
+	public Im920InterfaceMetrics getMetrics() {
+		return metrics;
+	}
+
+	int getIncomingFrameDepth() {
+		return incomingFrames.size();
+	}
+
+	long getMalformedFrames() {
+		Im920FrameParser current = parser;
+		return current == null ? 0 : current.getMalformedFrames();
+	}
+
+	public void setCommandTimeout(long timeout, TimeUnit unit) {
+		if (unit == null)
+			throw new NullPointerException("The argument unit is null.");
+		if (timeout <= 0)
+			throw new IllegalArgumentException("The command timeout must be positive.");
+
+		commandTimeoutNanos = unit.toNanos(timeout);
+	}
+
+	public long getCommandTimeout(TimeUnit unit) {
+		return unit.convert(commandTimeoutNanos, TimeUnit.NANOSECONDS);
+	}
+
+	public void setQueueWaitTimeout(long timeout, TimeUnit unit) {
+		if (unit == null)
+			throw new NullPointerException("The argument unit is null.");
+		if (timeout <= 0)
+			throw new IllegalArgumentException("The queue wait timeout must be positive.");
+
+		queueWaitNanos = unit.toNanos(timeout);
+	}
+
+	public long getQueueWaitTimeout(TimeUnit unit) {
+		return unit.convert(queueWaitNanos, TimeUnit.NANOSECONDS);
+	}
+
+	public void setQueuePolicy(Priority priority, int capacity, OverflowPolicy policy) {
+		if (priority == null)
+			throw new NullPointerException("The argument priority is null.");
+		if (policy == null)
+			throw new NullPointerException("The argument policy is null.");
+		if (capacity < 1)
+			throw new IllegalArgumentException("The queue capacity must be positive.");
+
+		commandQueue.configure(priority, capacity, policy);
+	}
+
+	public Im920QueueStats getQueueStats(Priority priority) {
+		if (priority == null)
+			throw new NullPointerException("The argument priority is null.");
+
+		return commandQueue.stats(priority);
+	}
+
+	private CompletableFuture<String[]> checkinCommand(String cmd, long timeoutNanos) {
+		return checkinCommand(cmd, timeoutNanos, Priority.CONTROL);
+	}
+
+	// Commands refused by the queue come back as failed futures, so the caller sees them like any other failure.
+	private CompletableFuture<String[]> checkinCommand(String cmd, long timeoutNanos, Priority priority) {
+		Ticket ticket = Ticket.checkin(cmd, timeoutNanos);
+		CompletableFuture<String[]> future = ticket.getFuture();
+		try {
+			Ticket dropped = commandQueue.put(priority, ticket);
+			if (dropped != null) {
+				logger.log(Level.WARNING, String.format("The %s queue is full. Command %s was dropped.", priority,
+						dropped.getCmd().trim()));
+				dropped.fail(new RejectedExecutionException("Dropped from the full " + priority + " queue."));
+				dropped.release();
+			}
+		} catch (RejectedExecutionException e) {
+			logger.log(Level.WARNING, String.format("Command %s was refused.", cmd.trim()), e);
+			ticket.fail(e);
+			ticket.release();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			ticket.fail(e);
+			ticket.release();
+		}
+		return future;
+	}
+
+	// The timeout runs from the moment the command is written, so a slow command doesn't eat into the deadlines of
+	// those queued behind it. When it passes, the future fails with a TimeoutException and SerialWriter moves on.
+	private void startDeadline(Ticket ticket) {
+		CompletableFuture<String[]> future = ticket.getFuture();
+		String cmd = ticket.getCmd().trim();
+		try {
+			ScheduledFuture<?> timeout = commandTimer.schedule(() -> future.completeExceptionally(
+					new TimeoutException(String.format("IM920 command %s timed out.", cmd))), ticket.getTimeout(),
+					TimeUnit.NANOSECONDS);
+			future.whenComplete((responses, e) -> timeout.cancel(false));
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(new IOException("The interface has been closed.", e));
+		}
+	}
+
+	// Waits for the command to be written and answered, so no longer than the queue wait plus timeoutNanos.
+	// A command still queued by then is cancelled and kept off the serial line.
+	private String[] awaitResponses(CompletableFuture<String[]> future, long timeoutNanos) throws InterruptedException {
 		try {
-			commandQueue.put(ticket);
+			return future.get(queueWaitNanos + timeoutNanos, TimeUnit.NANOSECONDS);
 		} catch (InterruptedException e) {
-			logger.log(Level.WARNING, String.format("The commandQueue must be full (%d/%d), but it is not expected.",
-					commandQueue.size(), commandQueue.remainingCapacity()), e);
+			future.cancel(false);
+			throw e;
+		} catch (TimeoutException e) {
+			future.cancel(false);
+			logger.log(Level.WARNING, "IM920 command got no response in time.", e);
+			return new String[] { "NG" };
+		} catch (ExecutionException e) {
+			logger.log(Level.WARNING, "IM920 command failed.", e.getCause());
+			return new String[] { "NG" };
+		} catch (CancellationException e) {
+			logger.log(Level.WARNING, "IM920 command was cancelled.", e);
+			return new String[] { "NG" };
 		}
 	}
 
@@ -199,12 +440,50 @@ public final class Im920Interface {
 		return commandQueue.take();
 	}
 
+	public void setTransmitScheduler(DutyCycleScheduler scheduler) {
+		transmitScheduler = scheduler;
+	}
+
+	public DutyCycleScheduler getTransmitScheduler() {
+		return transmitScheduler;
+	}
+
+	// Holds a TXDA command back until the duty-cycle budget lets its frame on the air.
+	private void paceTransmit(String cmd) throws InterruptedException {
+		DutyCycleScheduler scheduler = transmitScheduler;
+		if (scheduler == null || !cmd.startsWith("TXDA"))
+			return;
+
+		int hexLength = cmd.length() - 4;
+		while (hexLength > 0 && (cmd.charAt(4 + hexLength - 1) == '\r' || cmd.charAt(4 + hexLength - 1) == '\n'))
+			hexLength--;
+		scheduler.acquire(hexLength / 2);
+	}
+
+	private void expectResponse(String cmd) {
+		expectedResponse = Im920ResponseGrammar.forCommand(cmd);
+		commandSequence++;
+	}
+
 	private void notifyCmdResponses(String[] responses) throws InterruptedException {
 		commandResponse.put(responses);
 	}
 
-	private String[] waitCmdResponses() throws InterruptedException {
-		return commandResponse.take();
+	// Responses which arrive after their command has timed out must not be taken as the answer to the next one.
+	private void discardCmdResponses() {
+		String[] stale;
+		while ((stale = commandResponse.poll()) != null) {
+			logger.log(Level.INFO, String.format("Discarded a stale response %s.", Arrays.toString(stale)));
+		}
+	}
+
+	private String[] waitCmdResponses(Ticket ticket) throws InterruptedException {
+		while (!ticket.isDone()) {
+			String[] responses = commandResponse.poll(RESPONSE_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+			if (responses != null)
+				return responses;
+		}
+		return null;
 	}
 
 	private boolean execIm920CmdAndMatches(String cmd, String search) {
@@ -212,66 +491,306 @@ public final class Im920Interface {
 		assert search != null;
 
 		try {
-			String[] responses = checkinCommand(cmd);
-			return responses[0].startsWith(search);
+			long timeoutNanos = commandTimeoutNanos;
+			String[] responses = awaitResponses(checkinCommand(cmd, timeoutNanos), timeoutNanos);
+			return lastLineMatches(responses, search);
 		} catch (InterruptedException e) {
 			logger.log(Level.WARNING, "Aborted to execute a command.", e);
 			return false;
 		}
 	}
 
-	private ByteBuffer[] normalizeFrame(StringBuilder rawFrame) {
-		try {
-			StringBuilder buf = new StringBuilder();
-
-			for (int begin = 0, end = rawFrame.indexOf(",");; end = rawFrame.indexOf(",", begin)) {
-				if (end > 0) {
-					buf.append(rawFrame.substring(begin, end));
-					begin = end + 1;
-				} else {
-					buf.append(rawFrame.substring(begin, rawFrame.length()));
-					break;
+	// The line that ends a response (see Im920ResponseGrammar) is the one that tells success or failure.
+	private static boolean lastLineMatches(String[] responses, String search) {
+		return responses.length > 0 && responses[responses.length - 1].startsWith(search);
+	}
+
+	private CompletableFuture<Boolean> execIm920CmdAndMatchesAsync(String cmd, String search) {
+		assert cmd != null;
+		assert search != null;
+
+		return checkinCommand(cmd, commandTimeoutNanos).thenApply(responses -> lastLineMatches(responses, search));
+	}
+
+	public CompletableFuture<String[]> sendDataAsync(byte[] binaryData) {
+		if (binaryData == null)
+			throw new NullPointerException("The argument binaryData is null.");
+
+		return sendDataAsync(ByteBuffer.wrap(binaryData));
+	}
+
+	// The remaining bytes of the buffer are hex-encoded before this method returns,
+	// so the caller is free to reuse the buffer right away.
+	public CompletableFuture<String[]> sendDataAsync(ByteBuffer frame) {
+		return sendDataAsync(frame, Priority.BULK);
+	}
+
+	public CompletableFuture<String[]> sendDataAsync(ByteBuffer frame, Priority priority) {
+		if (frame == null)
+			throw new NullPointerException("The argument frame is null.");
+		if (priority == null)
+			throw new NullPointerException("The argument priority is null.");
+
+		if (outbound == null)
+			return submitData(frame, priority);
+		return sendDataAsync(Collections.singletonList(frame), priority).get(0);
+	}
+
+	// Queues the frames one after another, e.g. the fragments of a message. The first which doesn't get OK
+	// cancels those after it that haven't been written yet, as the receiver can't put the message together
+	// without it. With a durable queue each frame is journaled as an entry of its own.
+	public List<CompletableFuture<String[]>> sendDataAsync(List<ByteBuffer> frames, Priority priority) {
+		if (frames == null)
+			throw new NullPointerException("The argument frames is null.");
+		if (priority == null)
+			throw new NullPointerException("The argument priority is null.");
+		for (ByteBuffer frame : frames) {
+			if (frame == null)
+				throw new NullPointerException("The argument frames holds null.");
+		}
+
+		DurableQueue queue = outbound;
+		List<Journaled> run = queue == null ? null : journal(queue, priority, frames);
+		List<CompletableFuture<String[]>> futures = submitRun(frames, priority);
+		if (run != null)
+			acknowledgeOnOk(queue, run, priority, futures, 1);
+		return futures;
+	}
+
+	private List<CompletableFuture<String[]>> submitRun(List<ByteBuffer> frames, Priority priority) {
+		List<CompletableFuture<String[]>> futures = new ArrayList<>(frames.size());
+		AtomicBoolean stopped = new AtomicBoolean();
+		for (ByteBuffer frame : frames) {
+			CompletableFuture<String[]> future;
+			if (stopped.get()) {
+				future = new CompletableFuture<>();
+				future.cancel(false);
+			} else {
+				future = submitData(frame, priority);
+			}
+			int index;
+			synchronized (futures) {
+				index = futures.size();
+				futures.add(future);
+			}
+			// A frame failing meanwhile may have missed this one when it cancelled those after it.
+			if (stopped.get())
+				future.cancel(false);
+			future.whenComplete((responses, e) -> {
+				if (e == null && lastLineMatches(responses, "OK"))
+					return;
+				stopped.set(true);
+				synchronized (futures) {
+					for (CompletableFuture<String[]> later : futures.subList(index + 1, futures.size())) {
+						later.cancel(false);
+					}
 				}
+			});
+		}
+		return futures;
+	}
+
+	// Frames sent from now on are written to queue before they are queued for the module, each taken off it once
+	// the module answers OK. The frames of a message which didn't get OK, and those after them which were cancelled,
+	// are sent again after a backoff; after DURABLE_MAX_ATTEMPTS they are taken off the queue and counted as
+	// dead-lettered. Those a restart or a lost serial line cut short are left in it, and are sent again here when
+	// the queue is next opened on the same directory. The queue is not closed here.
+	public void enableDurableQueue(DurableQueue queue) {
+		if (queue == null)
+			throw new NullPointerException("The argument queue is null.");
+
+		List<DurableQueue.Entry> recovered = queue.takeRecovered();
+		// Consecutive entries of one priority go out as one run, so a failure stops those after it.
+		List<Journaled> run = new ArrayList<>();
+		Priority runPriority = null;
+		for (DurableQueue.Entry entry : recovered) {
+			ByteBuffer buf = entry.getPayloadBuffer();
+			Priority priority;
+			ByteBuffer frame;
+			try {
+				priority = Priority.values()[buf.get()];
+				int length = buf.getShort() & 0xFFFF;
+				if (length != buf.remaining())
+					throw new IllegalArgumentException(String.format("The frame is of %d bytes, not %d.",
+							buf.remaining(), length));
+				frame = buf.slice();
+			} catch (RuntimeException e) {
+				logger.log(Level.WARNING, String.format("Skipped the unreadable entry %d of %s.", entry.getId(),
+						queue), e);
+				acknowledgeQuietly(queue, entry.getId());
+				continue;
+			}
+			if (priority != runPriority && !run.isEmpty()) {
+				resubmit(queue, run, runPriority, 1);
+				run = new ArrayList<>();
 			}
+			runPriority = priority;
+			run.add(new Journaled(entry.getId(), frame));
+		}
+		if (!run.isEmpty())
+			resubmit(queue, run, runPriority, 1);
+		if (!recovered.isEmpty())
+			logger.info(String.format("Sending again %d entries of %s.", recovered.size(), queue));
+		outbound = queue;
+	}
 
-			String[] frame = buf.toString().split(":");
-			byte[] header = Hex.decodeHex(frame[0]);
-			byte[] body = Hex.decodeHex(frame[1]);
+	public void disableDurableQueue() {
+		outbound = null;
+	}
 
-			return new ByteBuffer[] { ByteBuffer.wrap(header), ByteBuffer.wrap(body) };
-		} catch (IndexOutOfBoundsException e) {
-			logger.log(Level.WARNING, "Received frame is collapsed.", e);
-			throw e;
-		} catch (DecoderException e) {
-			logger.log(Level.WARNING, "Decoding HEX string to byte array is failed.", e);
-			throw new IllegalArgumentException("Decoding HEX string to byte array is failed.");
+	public DurableQueue getDurableQueue() {
+		return outbound;
+	}
+
+	// A frame as it was journaled: the id of its entry, or -1 if it couldn't be, and a copy of its bytes.
+	private static final class Journaled {
+
+		final long id;
+
+		final ByteBuffer frame;
+
+		Journaled(long id, ByteBuffer frame) {
+			this.id = id;
+			this.frame = frame;
+		}
+	}
+
+	// Each entry is the priority followed by one frame after its length as a short.
+	// A frame which can't be journaled is still sent, only without surviving a restart.
+	private static List<Journaled> journal(DurableQueue queue, Priority priority, List<ByteBuffer> frames) {
+		List<Journaled> run = new ArrayList<>(frames.size());
+		for (ByteBuffer frame : frames) {
+			ByteBuffer entry = ByteBuffer.allocate(3 + frame.remaining());
+			entry.put((byte) priority.ordinal()).putShort((short) frame.remaining()).put(frame.duplicate()).flip();
+			long id;
+			try {
+				id = queue.append(entry);
+			} catch (IOException | RuntimeException e) {
+				logger.log(Level.SEVERE, String.format("Couldn't journal a frame of %d bytes to %s.", frame.remaining(),
+						queue), e);
+				id = -1;
+			}
+			entry.position(3);
+			run.add(new Journaled(id, entry.slice().asReadOnlyBuffer()));
 		}
+		return run;
 	}
 
-	private boolean isIm920Frame(String frame) {
-		assert frame != null;
+	// Sends the frames of run again, as the attempt-th try.
+	private void resubmit(DurableQueue queue, List<Journaled> run, Priority priority, int attempt) {
+		List<ByteBuffer> frames = new ArrayList<>(run.size());
+		for (Journaled journaled : run) {
+			frames.add(journaled.frame.duplicate());
+		}
+		acknowledgeOnOk(queue, run, priority, submitRun(frames, priority), attempt);
+	}
 
-		if (frame.length() < 11)
-			return false;
+	// Acknowledges each entry once its frame got OK. Those which didn't are sent again together after a backoff,
+	// until the attempts run out and they are acknowledged as dead-lettered. Once the interface is closed they are
+	// left in the queue for the next time it is opened.
+	private void acknowledgeOnOk(DurableQueue queue, List<Journaled> run, Priority priority,
+			List<CompletableFuture<String[]>> futures, int attempt) {
+		for (int i = 0; i < run.size(); i++) {
+			long id = run.get(i).id;
+			futures.get(i).whenComplete((responses, e) -> {
+				if (id >= 0 && e == null && lastLineMatches(responses, "OK"))
+					acknowledgeQuietly(queue, id);
+			});
+		}
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).whenComplete((v, e) -> {
+			List<Journaled> rest = new ArrayList<>();
+			for (int i = 0; i < run.size(); i++) {
+				CompletableFuture<String[]> future = futures.get(i);
+				if (future.isCompletedExceptionally() || !lastLineMatches(future.join(), "OK"))
+					rest.add(run.get(i));
+			}
+			if (rest.isEmpty() || commandTimer.isShutdown())
+				return;
+			if (attempt >= DURABLE_MAX_ATTEMPTS) {
+				logger.log(Level.WARNING, String.format("Gave up on %d frames of %s after %d attempts.", rest.size(),
+						queue, attempt));
+				for (Journaled journaled : rest) {
+					if (journaled.id < 0)
+						continue;
+					metrics.entryDeadLettered();
+					acknowledgeQuietly(queue, journaled.id);
+				}
+				return;
+			}
+			long delay = Math.min(DURABLE_RETRY_BASE_MS << (attempt - 1), DURABLE_RETRY_MAX_MS);
+			logger.log(Level.FINE, String.format("Sending %d frames of %s again in %d ms.", rest.size(), queue, delay));
+			try {
+				commandTimer.schedule(() -> retryThreads.newThread(() -> {
+					for (int i = 0; i < rest.size(); i++) {
+						metrics.entryRetried();
+					}
+					resubmit(queue, rest, priority, attempt + 1);
+				}).start(), delay, TimeUnit.MILLISECONDS);
+			} catch (RejectedExecutionException rejected) {
+				// Closed meanwhile; left to be sent again.
+			}
+		});
+	}
 
-		return frame.matches("^\\p{XDigit}{2},\\p{XDigit}{4},\\p{XDigit}{2}:(\\p{XDigit}{2},){0,}+\\p{XDigit}{2}$");
+	private static void acknowledgeQuietly(DurableQueue queue, long id) {
+		try {
+			queue.acknowledge(id);
+		} catch (IOException | IllegalStateException e) {
+			// Left to be sent again.
+			logger.log(Level.WARNING, String.format("Couldn't acknowledge the entry %d of %s.", id, queue), e);
+		}
 	}
 
-	public void sendDataAsync(byte[] binaryData) {
-		if (binaryData == null)
-			throw new NullPointerException("The argument binaryData is null.");
+	private CompletableFuture<String[]> submitData(ByteBuffer frame, Priority priority) {
+		int length = frame.remaining();
+		byte typeId = length > Im920Packet.LAYOUT.flagIndex()
+				? frame.get(frame.position() + Im920Packet.LAYOUT.flagIndex())
+				: PacketLayout.TYPE_MASK;
+		CaptureWriter capture = this.capture;
+		if (capture != null)
+			capture.append(CaptureRecord.Direction.SENT, CaptureRecord.Radio.IM920, null, frame);
+		long start = System.nanoTime();
+		CompletableFuture<String[]> future = checkinCommand(txdaCommand(frame), commandTimeoutNanos, priority);
+		future.whenComplete((responses, e) -> {
+			// A frame cancelled before it was written wasn't sent at all.
+			if (e == null && lastLineMatches(responses, "OK"))
+				metrics.frameSent(typeId, length, System.nanoTime() - start);
+			else if (!(e instanceof CancellationException))
+				metrics.sendFailed();
+		});
+		return future;
+	}
 
-		StringBuilder cmd = new StringBuilder("TXDA").append(Hex.encodeHexString(binaryData))
-				.append("\r\n");
-		checkinCommandWithoutRes(cmd.toString());
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private static String txdaCommand(ByteBuffer frame) {
+		int length = frame.remaining();
+		char[] cmd = new char[4 + length * 2 + 2];
+		cmd[0] = 'T';
+		cmd[1] = 'X';
+		cmd[2] = 'D';
+		cmd[3] = 'A';
+		for (int i = 0, pos = frame.position(); i < length; i++) {
+			int b = frame.get(pos + i) & 0xFF;
+			cmd[4 + i * 2] = HEX_DIGITS[b >>> 4];
+			cmd[5 + i * 2] = HEX_DIGITS[b & 0x0F];
+		}
+		cmd[cmd.length - 2] = '\r';
+		cmd[cmd.length - 1] = '\n';
+		frame.position(frame.limit());
+		return new String(cmd);
 	}
 
+	// Blocks until the module has answered, queued as bulk data like sendDataAsync().
 	public void sendData(byte[] binaryData) throws InterruptedException {
 		if (binaryData == null)
 			throw new NullPointerException("The argument binaryData is null.");
 
-		StringBuilder cmd = new StringBuilder("TXDA").append(Hex.encodeHexString(binaryData));
-		execIm920Cmd(cmd.toString());
+		long timeoutNanos = commandTimeoutNanos;
+		String[] responses = awaitResponses(sendDataAsync(ByteBuffer.wrap(binaryData), Priority.BULK), timeoutNanos);
+		if (!lastLineMatches(responses, "OK"))
+			logger.log(Level.WARNING, String.format("Sending %d bytes failed: %s", binaryData.length,
+					Arrays.toString(responses)));
 	}
 
 	public int getTxRxTimePerByte() {
@@ -282,66 +801,117 @@ public final class Im920Interface {
 		return execIm920CmdAndMatches("DSRX\r\n", "OK");
 	}
 
+	public CompletableFuture<Boolean> enableSleepAsync() {
+		return execIm920CmdAndMatchesAsync("DSRX\r\n", "OK");
+	}
+
 	public boolean disableSleep() {
 		return execIm920CmdAndMatches("?ENRX\r\n", "OK");
 	}
 
-	public int getActiveDuration() {
-		String response = "NG";
+	public CompletableFuture<Boolean> disableSleepAsync() {
+		return execIm920CmdAndMatchesAsync("?ENRX\r\n", "OK");
+	}
+
+	private static int parseDuration(String[] responses, String cmd) {
+		String response = responses[0];
+		if (response.startsWith("NG") || response.length() < 4) {
+			logger.info(String.format("IM920 command '%s' failed.", cmd));
+			return 0;
+		}
+		return Integer.parseInt(response.substring(0, 4), 16);
+	}
+
+	private int getDuration(String cmd) {
+		String[] responses = { "NG" };
 		try {
-			response = execIm920Cmd("RWTM\r\n")[0];
+			long timeoutNanos = commandTimeoutNanos;
+			responses = awaitResponses(checkinCommand(cmd + "\r\n", timeoutNanos), timeoutNanos);
 		} catch (InterruptedException e) {
 			logger.log(Level.WARNING, "InterruptedException happened.", e);
 		}
+		return parseDuration(responses, cmd);
+	}
 
-		if (response.startsWith("NG")) {
-			logger.info("IM920 command 'RWTM' failed.");
-			return 0;
-		}
-		return Integer.parseInt(response.substring(0, 4), 16);
+	public int getActiveDuration() {
+		return getDuration("RWTM");
+	}
+
+	public CompletableFuture<Integer> getActiveDurationAsync() {
+		return checkinCommand("RWTM\r\n", commandTimeoutNanos).thenApply(responses -> parseDuration(responses, "RWTM"));
 	}
 
 	public boolean setActiveDuration(int activeTime) {
+		return execIm920CmdAndMatches(swtmCommand(activeTime), "OK");
+	}
+
+	public CompletableFuture<Boolean> setActiveDurationAsync(int activeTime) {
+		return execIm920CmdAndMatchesAsync(swtmCommand(activeTime), "OK");
+	}
+
+	private static String swtmCommand(int activeTime) {
 		if (activeTime < 0 || activeTime > 0xFFFF)
 			throw new IllegalArgumentException("The specified active duration time is invalid.");
 
-		String swtm = String.format("SWTM%04X\r\n", activeTime);
-		return execIm920CmdAndMatches(swtm, "OK");
+		return String.format("SWTM%04X\r\n", activeTime);
 	}
 
 	public int getSleepDuration() {
-		String response = "NG";
-		try {
-			response = execIm920Cmd("RSTM\r\n")[0];
-		} catch (InterruptedException e) {
-			logger.log(Level.WARNING, "InterruptedException happened", e);
-		}
-		if (response.startsWith("NG")) {
-			logger.info("IM920 command 'RSTM' failed.");
-			return 0;
-		}
+		return getDuration("RSTM");
+	}
 
-		return Integer.parseInt(response.substring(0, 4), 16);
+	public CompletableFuture<Integer> getSleepDurationAsync() {
+		return checkinCommand("RSTM\r\n", commandTimeoutNanos).thenApply(responses -> parseDuration(responses, "RSTM"));
 	}
 
 	public boolean setSleepDuration(int sleepTime) {
+		return execIm920CmdAndMatches(sstmCommand(sleepTime), "OK");
+	}
+
+	public CompletableFuture<Boolean> setSleepDurationAsync(int sleepTime) {
+		return execIm920CmdAndMatchesAsync(sstmCommand(sleepTime), "OK");
+	}
+
+	private static String sstmCommand(int sleepTime) {
 		if (sleepTime < 0 || sleepTime > 0xFFFF)
 			throw new IllegalArgumentException("The specified sleep duration time is invalid.");
 
-		String sstm = String.format("SSTM%04X\r\n", sleepTime);
-		return execIm920CmdAndMatches(sstm, "OK");
+		return String.format("SSTM%04X\r\n", sleepTime);
 	}
 
 	public boolean resetInterface() {
 		return execIm920CmdAndMatches("SRST\r\n", "IM920 Ver.");
 	}
 
+	public CompletableFuture<Boolean> resetInterfaceAsync() {
+		return execIm920CmdAndMatchesAsync("SRST\r\n", "IM920 Ver.");
+	}
+
+	// Blocks until the module answers. If the command fails or times out, {"NG"} is returned.
 	public String[] execIm920Cmd(String command) throws InterruptedException {
 		if (command == null)
 			throw new NullPointerException("The argument command is null.");
 
+		long timeoutNanos = commandTimeoutNanos;
+		return awaitResponses(execIm920CmdAsync(command, timeoutNanos, TimeUnit.NANOSECONDS), timeoutNanos);
+	}
+
+	public CompletableFuture<String[]> execIm920CmdAsync(String command) {
+		return execIm920CmdAsync(command, commandTimeoutNanos, TimeUnit.NANOSECONDS);
+	}
+
+	// The returned future fails with a TimeoutException when the module does not answer within the timeout
+	// after the command is written, and cancelling it while queued keeps the command off the serial line.
+	public CompletableFuture<String[]> execIm920CmdAsync(String command, long timeout, TimeUnit unit) {
+		if (command == null)
+			throw new NullPointerException("The argument command is null.");
+		if (unit == null)
+			throw new NullPointerException("The argument unit is null.");
+		if (timeout <= 0)
+			throw new IllegalArgumentException("The command timeout must be positive.");
+
 		String cmd = new StringBuilder(command).append("\r\n").toString();
-		return checkinCommand(cmd);
+		return checkinCommand(cmd, unit.toNanos(timeout));
 	}
 
 	private static class Ticket {
@@ -352,122 +922,116 @@ public final class Im920Interface {
 
 		String cmd = "";
 
-		BlockingQueue<String[]> responses = new ArrayBlockingQueue<>(1);
+		// A fresh future per checkin, so a caller holding the future of a recycled ticket is never confused.
+		CompletableFuture<String[]> future;
 
-		boolean sync = true;
+		long timeoutNanos;
 
 		private Ticket() {
 		}
 
-		public static Ticket checkin(String cmd, boolean sync) {
+		public static Ticket checkin(String cmd, long timeoutNanos) {
 			if (cmd == null) {
 				throw new NullPointerException("The string argument cmd is null");
 			}
 
+			Ticket ticket;
 			try {
-				Ticket ticket = tickets.remove(0);
-				ticket.cmd = cmd;
-				ticket.sync = sync;
-				ticket.responses.clear();
-				return ticket;
+				ticket = tickets.remove(0);
 			} catch (IndexOutOfBoundsException e) {
 				logger.log(Level.INFO, "Creating new tickets.");
 
 				tickets.addAll(Arrays.asList(new Ticket(), new Ticket(), new Ticket(), new Ticket()));
 
-				Ticket ticket = new Ticket();
-				ticket.cmd = cmd;
-				ticket.sync = sync;
-				return ticket;
+				ticket = new Ticket();
 			}
+			ticket.cmd = cmd;
+			ticket.future = new CompletableFuture<>();
+			ticket.timeoutNanos = timeoutNanos;
+			return ticket;
 		}
 
-		public String[] checkout() throws InterruptedException {
-			if (!sync)
-				throw new IllegalStateException(
-						"Waiting for a response on this ticket has not been permitted, which declares no sync.");
-
-			String[] responses = this.responses.take();
+		// Released once by whoever handles the ticket last: SerialWriter once it is done with it, or, for a ticket
+		// that never reaches SerialWriter, checkinCommand() when the queue refuses or drops it and close().
+		public void release() {
 			this.cmd = "";
-
-			assert this.responses.size() == 0;
-
+			this.future = null;
 			tickets.add(this);
-			return responses;
 		}
 
 		public String getCmd() {
 			return this.cmd;
 		}
 
-		public void notifyResponses(String[] responses) throws InterruptedException {
-			assert this.responses.size() == 0;
-			if (this.sync)
-				this.responses.put(responses);
-			else
-				tickets.add(this);
+		public CompletableFuture<String[]> getFuture() {
+			return this.future;
+		}
+
+		public long getTimeout() {
+			return this.timeoutNanos;
+		}
+
+		public boolean isDone() {
+			return this.future.isDone();
+		}
+
+		public void notifyResponses(String[] responses) {
+			this.future.complete(responses);
+		}
+
+		public void fail(Throwable cause) {
+			this.future.completeExceptionally(cause);
 		}
 	}
 
-	private static class SerialReader implements Runnable {
+	private static class SerialReader implements Runnable, Im920FrameParser.Handler {
 		private static final Logger logger = Logger.getLogger(SerialReader.class.getName());
 
 		private Im920Interface im920Interface;
 
+		private final List<String> responses = new ArrayList<>();
+
+		private Im920ResponseGrammar grammar = Im920ResponseGrammar.SINGLE_LINE;
+
+		private long sequence;
+
+		private long lastLineNanos;
+
 		public SerialReader(Im920Interface im920Interface) {
 			this.im920Interface = im920Interface;
 		}
 
 		public void run() {
 			try {
-				List<String> responses = new ArrayList<>();
-				for (StringBuilder frame = new StringBuilder();;) {
-					byte[] buf = new byte[256];
+				byte[] buf = new byte[256];
+				Im920FrameParser parser = new Im920FrameParser(im920Interface.framePool, this);
+				im920Interface.parser = parser;
+				long byteNanos = TimeUnit.MICROSECONDS.toNanos(im920Interface.getTxRxTimePerByte());
+				for (;;) {
 					int readLen = 0;
 					try {
-						if (responses.size() == 0) {
+						if (responses.size() == 0 || !grammar.isEndedByGap() || im920Interface.isAvailable()) {
 							readLen = im920Interface.readSerial(buf);
+						} else if (System.nanoTime() - lastLineNanos >= im920Interface.responseGapNanos) {
+							notifyResponses();
+							continue;
 						} else {
-							Thread.sleep(im920Interface.getTxRxTimePerByte());
-							if (im920Interface.isAvailable()) {
-								readLen = im920Interface.readSerial(buf);
-							} else {
-								im920Interface.notifyCmdResponses(responses.toArray(new String[responses.size()]));
-								responses.clear();
-								continue;
-							}
+							LockSupport.parkNanos(byteNanos);
+							if (Thread.interrupted())
+								throw new InterruptedException("Interrupted while waiting for a response line.");
+							continue;
 						}
 					} catch (IOException e) {
+						if (Thread.currentThread().isInterrupted())
+							throw new InterruptedException("Interrupted while reading from the transport.");
 						logger.log(Level.WARNING, "IOException happened when reading bytes from the serial.", e);
 					}
 
-					boolean prev = false;
-					for (String s : new String(buf, 0, readLen, StandardCharsets.US_ASCII).split("(\r\n*)|\n", -2)) {
-						if (!s.isEmpty()) {
-							if (prev) {
-								if (im920Interface.isIm920Frame(frame.toString())) {
-									im920Interface.putReceivedFrame(im920Interface.normalizeFrame(frame));
-								} else if (frame.length() > 2) {
-									responses.add(frame.toString());
-								} else {
-									im920Interface.notifyCmdResponses(new String[] { frame.toString() });
-								}
-								frame = new StringBuilder();
-							}
-							frame.append(s);
-							prev = true;
-						} else {
-							if (frame.length() > 0) {
-								if (im920Interface.isIm920Frame(frame.toString())) {
-									im920Interface.putReceivedFrame(im920Interface.normalizeFrame(frame));
-								} else if (frame.length() > 2) {
-									responses.add(frame.toString());
-								} else {
-									im920Interface.notifyCmdResponses(new String[] { frame.toString() });
-								}
-								frame = new StringBuilder();
-							}
-						}
+					if (readLen < 0) {
+						logger.log(Level.INFO, "SerialReader thread is going to exit since the transport reached its end.");
+						return;
+					} else if (readLen > 0) {
+						parser.parse(buf, 0, readLen);
 					}
 				}
 			} catch (InterruptedException e) {
@@ -476,6 +1040,36 @@ public final class Im920Interface {
 						e);
 			}
 		}
+
+		private void notifyResponses() throws InterruptedException {
+			im920Interface.notifyCmdResponses(responses.toArray(new String[responses.size()]));
+			responses.clear();
+		}
+
+		@Override
+		public void frameReceived(ByteBuffer[] frame) throws InterruptedException {
+			im920Interface.putReceivedFrame(frame);
+		}
+
+		@Override
+		public void responseReceived(byte[] line, int length) throws InterruptedException {
+			long current = im920Interface.commandSequence;
+			if (responses.size() > 0 && current != sequence) {
+				// The command this belonged to has been given up and another one written since.
+				logger.log(Level.INFO, String.format("Discarded an incomplete response %s.", responses));
+				responses.clear();
+			}
+			if (responses.size() == 0) {
+				sequence = current;
+				grammar = im920Interface.expectedResponse;
+			}
+
+			responses.add(new String(line, 0, length, StandardCharsets.US_ASCII));
+			lastLineNanos = System.nanoTime();
+			if (grammar.isComplete(responses)) {
+				notifyResponses();
+			}
+		}
 	}
 
 	private static class SerialWriter implements Runnable {
@@ -492,18 +1086,48 @@ public final class Im920Interface {
 				for (;;) {
 					Ticket ticket = im920Interface.takeCommand();
 					try {
+						if (ticket.isDone()) {
+							logger.log(Level.INFO, String.format("Command %s was cancelled or timed out before being written.",
+									ticket.getCmd().trim()));
+							continue;
+						}
+						im920Interface.paceTransmit(ticket.getCmd());
+						im920Interface.discardCmdResponses();
+						im920Interface.startDeadline(ticket);
+
 						String cmd = ticket.getCmd();
+						im920Interface.expectResponse(cmd);
 						if (cmd.startsWith("?")) {
 							im920Interface.writeSerial("?");
 							cmd = cmd.substring(1);
-							Thread.sleep(im920Interface.getTxRxTimePerByte());
+							TimeUnit.MICROSECONDS.sleep(im920Interface.getTxRxTimePerByte());
 						}
+						long written = System.nanoTime();
 						im920Interface.writeSerial(cmd);
-						String[] responses = im920Interface.waitCmdResponses();
-						ticket.notifyResponses(responses);
+						String[] responses = im920Interface.waitCmdResponses(ticket);
+						if (responses == null) {
+							logger.log(Level.WARNING,
+									String.format("Command %s got no response in time.", ticket.getCmd().trim()));
+							im920Interface.metrics.commandTimedOut();
+						} else {
+							im920Interface.metrics.commandCompleted(System.nanoTime() - written);
+							ticket.notifyResponses(responses);
+						}
 					} catch (IOException e) {
+						im920Interface.metrics.commandFailed();
 						logger.log(Level.WARNING, "Serial error happened when writing data.", e);
 						logger.log(Level.WARNING, String.format("Command %s was discarded.", ticket.getCmd()));
+						ticket.fail(e);
+					} catch (RuntimeException e) {
+						// E.g. a frame the duty-cycle budget can never let through; the next command goes on as usual.
+						im920Interface.metrics.commandFailed();
+						logger.log(Level.WARNING, String.format("Command %s failed.", ticket.getCmd().trim()), e);
+						ticket.fail(e);
+					} catch (InterruptedException e) {
+						ticket.fail(new IOException("The interface has been closed."));
+						throw e;
+					} finally {
+						ticket.release();
 					}
 				}
 			} catch (InterruptedException e) {
@@ -0,0 +1,119 @@
+package com.github.tutertlob.im920wireless.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.tutertlob.subghz.LatencyHistogram;
+import com.github.tutertlob.subghz.LatencySnapshot;
+import com.github.tutertlob.subghz.RadioMetrics;
+
+// Registered as an MXBean by Im920Interface.open() under com.github.tutertlob.im920wireless:type=Im920Interface.
+// The gauges are read from the interface when asked for; nothing is sampled in the background.
+public final class Im920InterfaceMetrics extends RadioMetrics implements Im920InterfaceMetricsMXBean {
+
+	private final Im920Interface im920Interface;
+
+	private final LatencyHistogram commandRoundTrip = new LatencyHistogram();
+
+	private final LongAdder commandTimeouts = new LongAdder();
+
+	private final LongAdder commandFailures = new LongAdder();
+
+	private final LongAdder entriesRetried = new LongAdder();
+
+	private final LongAdder entriesDeadLettered = new LongAdder();
+
+	Im920InterfaceMetrics(Im920Interface im920Interface) {
+		this.im920Interface = im920Interface;
+	}
+
+	void commandCompleted(long roundTripNanos) {
+		commandRoundTrip.record(roundTripNanos);
+	}
+
+	void commandTimedOut() {
+		commandTimeouts.increment();
+	}
+
+	void commandFailed() {
+		commandFailures.increment();
+	}
+
+	void entryRetried() {
+		entriesRetried.increment();
+	}
+
+	void entryDeadLettered() {
+		entriesDeadLettered.increment();
+	}
+
+	@Override
+	public int getIncomingFrameDepth() {
+		return im920Interface.getIncomingFrameDepth();
+	}
+
+	@Override
+	public Map<String, Integer> getQueueDepths() {
+		Map<String, Integer> depths = new LinkedHashMap<>();
+		for (Im920Interface.Priority priority : Im920Interface.Priority.values()) {
+			depths.put(priority.name(), Integer.valueOf(im920Interface.getQueueStats(priority).getDepth()));
+		}
+		return depths;
+	}
+
+	@Override
+	public LatencySnapshot getCommandRoundTrip() {
+		return commandRoundTrip.snapshot();
+	}
+
+	public LatencyHistogram getCommandRoundTripHistogram() {
+		return commandRoundTrip;
+	}
+
+	@Override
+	public long getCommandTimeouts() {
+		return commandTimeouts.sum();
+	}
+
+	@Override
+	public long getCommandFailures() {
+		return commandFailures.sum();
+	}
+
+	@Override
+	public long getRetriedEntries() {
+		return entriesRetried.sum();
+	}
+
+	@Override
+	public long getDeadLetteredEntries() {
+		return entriesDeadLettered.sum();
+	}
+
+	// Lines which started like a received frame but broke off, counted by the frame parser.
+	@Override
+	public long getParseFailures() {
+		return super.getParseFailures() + im920Interface.getMalformedFrames();
+	}
+
+	@Override
+	public void reset() {
+		super.reset();
+		commandRoundTrip.reset();
+		commandTimeouts.reset();
+		commandFailures.reset();
+		entriesRetried.reset();
+		entriesDeadLettered.reset();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("sent=%s received=%s sendFailures=%d parseFailures=%d incoming=%d queues=%s "
+				+ "commandRoundTrip={%s} timeouts=%d failures=%d retried=%d deadLettered=%d", getFramesSent(),
+				getFramesReceived(), getSendFailures(), getParseFailures(), getIncomingFrameDepth(), getQueueDepths(),
+				getCommandRoundTrip(), getCommandTimeouts(), getCommandFailures(), getRetriedEntries(),
+				getDeadLetteredEntries());
+	}
+
+}
@@ -0,0 +1,29 @@
+package com.github.tutertlob.im920wireless.util;
+
+import java.util.Map;
+
+import com.github.tutertlob.subghz.LatencySnapshot;
+import com.github.tutertlob.subghz.RadioMetricsMXBean;
+
+public interface Im920InterfaceMetricsMXBean extends RadioMetricsMXBean {
+
+	// Received frames readFrame() hasn't taken yet.
+	public int getIncomingFrameDepth();
+
+	// Commands waiting for SerialWriter, keyed by priority class.
+	public Map<String, Integer> getQueueDepths();
+
+	// From writing a command to the serial line until its response is complete.
+	public LatencySnapshot getCommandRoundTrip();
+
+	public long getCommandTimeouts();
+
+	public long getCommandFailures();
+
+	// Journaled entries sent again after the module didn't take them.
+	public long getRetriedEntries();
+
+	// Journaled entries given up on after DURABLE_MAX_ATTEMPTS and taken off the durable queue.
+	public long getDeadLetteredEntries();
+
+}
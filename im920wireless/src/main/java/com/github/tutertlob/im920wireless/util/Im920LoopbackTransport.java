@@ -0,0 +1,149 @@
+package com.github.tutertlob.im920wireless.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+public final class Im920LoopbackTransport implements Im920Transport {
+
+	private static final int DEFAULT_CAPACITY = 4096;
+
+	private final Pipe incoming;
+
+	private final Pipe outgoing;
+
+	private final Im920LoopbackTransport peer;
+
+	public Im920LoopbackTransport() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public Im920LoopbackTransport(int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("The capacity of the loopback transport must be positive.");
+
+		this.incoming = new Pipe(capacity);
+		this.outgoing = new Pipe(capacity);
+		this.peer = new Im920LoopbackTransport(outgoing, incoming, this);
+	}
+
+	private Im920LoopbackTransport(Pipe incoming, Pipe outgoing, Im920LoopbackTransport peer) {
+		this.incoming = incoming;
+		this.outgoing = outgoing;
+		this.peer = peer;
+	}
+
+	// The other end of the loopback, which plays the IM920 module's side.
+	public Im920LoopbackTransport getPeer() {
+		return peer;
+	}
+
+	@Override
+	public void open() throws IOException {
+		if (incoming.isClosed() || outgoing.isClosed())
+			throw new IOException("The loopback transport has already been closed.");
+	}
+
+	@Override
+	public int read(byte[] buf, int offset, int length) throws IOException {
+		return incoming.read(buf, offset, length);
+	}
+
+	@Override
+	public void write(byte[] buf, int offset, int length) throws IOException {
+		outgoing.write(buf, offset, length);
+	}
+
+	@Override
+	public int available() throws IOException {
+		return incoming.available();
+	}
+
+	@Override
+	public void close() throws IOException {
+		incoming.close();
+		outgoing.close();
+	}
+
+	@Override
+	public String toString() {
+		return "loopback@" + Integer.toHexString(System.identityHashCode(this));
+	}
+
+	private static final class Pipe {
+
+		private final byte[] ring;
+
+		private int head = 0;
+
+		private int count = 0;
+
+		private boolean closed = false;
+
+		Pipe(int capacity) {
+			this.ring = new byte[capacity];
+		}
+
+		synchronized int read(byte[] buf, int offset, int length) throws IOException {
+			if (length == 0)
+				return 0;
+
+			try {
+				while (count == 0) {
+					if (closed)
+						return -1;
+					wait();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while reading from the loopback transport.");
+			}
+
+			int n = Math.min(length, count);
+			int first = Math.min(n, ring.length - head);
+			System.arraycopy(ring, head, buf, offset, first);
+			System.arraycopy(ring, 0, buf, offset + first, n - first);
+			head = (head + n) % ring.length;
+			count -= n;
+			notifyAll();
+			return n;
+		}
+
+		synchronized void write(byte[] buf, int offset, int length) throws IOException {
+			try {
+				while (length > 0) {
+					while (count == ring.length && !closed) {
+						wait();
+					}
+					if (closed)
+						throw new IOException("The loopback transport has been closed.");
+
+					int tail = (head + count) % ring.length;
+					int n = Math.min(length, Math.min(ring.length - count, ring.length - tail));
+					System.arraycopy(buf, offset, ring, tail, n);
+					count += n;
+					offset += n;
+					length -= n;
+					notifyAll();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while writing to the loopback transport.");
+			}
+		}
+
+		synchronized int available() {
+			return count;
+		}
+
+		synchronized boolean isClosed() {
+			return closed;
+		}
+
+		synchronized void close() {
+			closed = true;
+			notifyAll();
+		}
+
+	}
+
+}
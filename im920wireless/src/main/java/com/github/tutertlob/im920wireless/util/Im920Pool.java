@@ -0,0 +1,432 @@
+package com.github.tutertlob.im920wireless.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.github.tutertlob.im920wireless.packet.Im920Ack;
+import com.github.tutertlob.im920wireless.packet.Im920Command;
+import com.github.tutertlob.im920wireless.packet.Im920Data;
+import com.github.tutertlob.im920wireless.packet.Im920Notice;
+import com.github.tutertlob.im920wireless.packet.Im920Packet;
+import com.github.tutertlob.subghz.Lzss;
+
+// Several IM920 modules presented as one sender, so that downlink throughput grows with the modules attached.
+// Each module is driven by an Im920 of its own, with its own sequence counters, since receivers tell senders
+// apart by module id. Destinations are the keys callers address frames by, typically the module id of the receiver.
+// All frames to a destination go through one module while any of them is pending, so they arrive in order:
+// AFFINITY always picks the same module for a destination, LEAST_LOADED picks the one with the fewest
+// pending frames whenever the destination has none pending.
+// A module whose sends time out or fail FAILURE_THRESHOLD times in a row is left out for the retry delay,
+// and a single packet which fails is sent once more through another module. That is only done while no other frame
+// to its destination is pending, as the retry would arrive after them; the destination is then bound to the new module,
+// so the frames sent after the failure follow the retry.
+public final class Im920Pool {
+
+	private static final Logger logger = Logger.getLogger(Im920Pool.class.getName());
+
+	public enum Routing {
+		AFFINITY, LEAST_LOADED
+	}
+
+	public static final int FAILURE_THRESHOLD = 3;
+
+	public static final long DEFAULT_RETRY_DELAY_MS = 5000;
+
+	private final class Member {
+
+		final int index;
+
+		final Im920 im920;
+
+		final AtomicInteger pending = new AtomicInteger();
+
+		final AtomicInteger failures = new AtomicInteger();
+
+		final AtomicLong sent = new AtomicLong();
+
+		final AtomicLong failed = new AtomicLong();
+
+		volatile long downUntilNanos = 0;
+
+		volatile boolean down = false;
+
+		Member(int index, Im920 im920) {
+			this.index = index;
+			this.im920 = im920;
+		}
+
+		boolean isAvailable(long now) {
+			return !down || now - downUntilNanos >= 0;
+		}
+	}
+
+	private static final class Binding {
+
+		final Member member;
+
+		int pending = 0;
+
+		Binding(Member member) {
+			this.member = member;
+		}
+	}
+
+	private final List<Member> members;
+
+	private final Routing routing;
+
+	private final long retryDelayNanos;
+
+	private final Map<String, Binding> bindings = new ConcurrentHashMap<>();
+
+	private final AtomicLong failovers = new AtomicLong();
+
+	private volatile boolean compressionEnabled = false;
+
+	public Im920Pool(List<Im920Interface> interfaces, Routing routing) {
+		this(interfaces, routing, DEFAULT_RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+	}
+
+	public Im920Pool(List<Im920Interface> interfaces, Routing routing, long retryDelay, TimeUnit unit) {
+		if (interfaces == null)
+			throw new NullPointerException("The argument interfaces is null.");
+		if (routing == null)
+			throw new NullPointerException("The argument routing is null.");
+		if (interfaces.isEmpty())
+			throw new IllegalArgumentException("The pool needs at least one interface.");
+		if (retryDelay < 0)
+			throw new IllegalArgumentException("The retry delay must not be negative.");
+
+		List<Member> list = new ArrayList<>(interfaces.size());
+		for (Im920Interface im920Interface : interfaces) {
+			if (im920Interface == null)
+				throw new NullPointerException("An interface of the pool is null.");
+			list.add(new Member(list.size(), new Im920(im920Interface)));
+		}
+		this.members = Collections.unmodifiableList(list);
+		this.routing = routing;
+		this.retryDelayNanos = unit.toNanos(retryDelay);
+	}
+
+	public int size() {
+		return members.size();
+	}
+
+	// The Im920 driving the module at index, to receive through it or to configure it.
+	public Im920 getMember(int index) {
+		return members.get(index).im920;
+	}
+
+	public boolean isAvailable(int index) {
+		return members.get(index).isAvailable(System.nanoTime());
+	}
+
+	public Routing getRouting() {
+		return routing;
+	}
+
+	// Data sent through sendData() from now on is compressed with Lzss, unless compression doesn't make it smaller.
+	public void setCompressionEnabled(boolean enabled) {
+		compressionEnabled = enabled;
+	}
+
+	public boolean isCompressionEnabled() {
+		return compressionEnabled;
+	}
+
+	// Spreads destinations over the modules by rendezvous hashing, so a module dropping out only moves its own.
+	private Member affine(String destination, long now) {
+		Member best = null;
+		int bestScore = 0;
+		for (Member member : members) {
+			if (!member.isAvailable(now))
+				continue;
+			int score = mix(destination.hashCode() * 31 + member.index);
+			if (best == null || Integer.compareUnsigned(score, bestScore) > 0) {
+				best = member;
+				bestScore = score;
+			}
+		}
+		return best;
+	}
+
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		return h ^ (h >>> 16);
+	}
+
+	private Member leastLoaded(Member excluded, long now) {
+		Member best = null;
+		for (Member member : members) {
+			if (member == excluded || !member.isAvailable(now))
+				continue;
+			if (best == null || member.pending.get() < best.pending.get())
+				best = member;
+		}
+		return best;
+	}
+
+	// The module coming back the soonest, when all of them are left out.
+	private Member soonest() {
+		Member best = members.get(0);
+		for (Member member : members) {
+			if (member.downUntilNanos - best.downUntilNanos < 0)
+				best = member;
+		}
+		return best;
+	}
+
+	private Member choose(String destination, long now) {
+		Member member = routing == Routing.AFFINITY ? affine(destination, now) : leastLoaded(null, now);
+		return member != null ? member : soonest();
+	}
+
+	// Binds destination to a module for one more pending frame. A destination bound to a module which
+	// has been left out since is moved, giving up ordering with the frames still pending there.
+	private Member acquire(String destination) {
+		long now = System.nanoTime();
+		Binding binding = bindings.compute(destination, (key, current) -> {
+			if (current == null || !current.member.isAvailable(now)) {
+				Binding moved = new Binding(choose(key, now));
+				if (current != null)
+					moved.pending = current.pending;
+				current = moved;
+			}
+			current.pending++;
+			return current;
+		});
+		binding.member.pending.incrementAndGet();
+		return binding.member;
+	}
+
+	private void release(String destination, Member member) {
+		member.pending.decrementAndGet();
+		bindings.computeIfPresent(destination, (key, current) -> --current.pending <= 0 ? null : current);
+	}
+
+	private void record(Member member, String[] responses, Throwable e) {
+		if (e == null && accepted(responses)) {
+			member.sent.incrementAndGet();
+			member.failures.set(0);
+			if (member.down) {
+				member.down = false;
+				logger.log(Level.INFO, String.format("IM920 module #%d of the pool is back.", member.index));
+			}
+			return;
+		}
+
+		member.failed.incrementAndGet();
+		Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+		// A module answering NG or a full queue is busy rather than gone.
+		if (!(cause instanceof TimeoutException || cause instanceof IOException))
+			return;
+		if (member.failures.incrementAndGet() >= FAILURE_THRESHOLD) {
+			member.downUntilNanos = System.nanoTime() + retryDelayNanos;
+			if (!member.down) {
+				member.down = true;
+				logger.log(Level.WARNING, String.format("IM920 module #%d of the pool stopped responding. "
+						+ "It is left out for %d ms.", member.index, TimeUnit.NANOSECONDS.toMillis(retryDelayNanos)));
+			}
+		}
+	}
+
+	private static boolean accepted(String[] responses) {
+		return responses != null && responses.length > 0 && responses[responses.length - 1].startsWith("OK");
+	}
+
+	private CompletableFuture<String[]> sendThrough(Member member, String destination, Im920Packet packet) {
+		CompletableFuture<String[]> future;
+		try {
+			future = member.im920.send(packet);
+		} catch (RuntimeException e) {
+			future = new CompletableFuture<>();
+			future.completeExceptionally(e);
+		}
+		return track(member, destination, future);
+	}
+
+	private CompletableFuture<String[]> track(Member member, String destination, CompletableFuture<String[]> future) {
+		return future.whenComplete((responses, e) -> {
+			record(member, responses, e);
+			release(destination, member);
+		});
+	}
+
+	// The future completes with the responses of the module which sent the packet.
+	public CompletableFuture<String[]> send(String destination, Im920Packet packet) {
+		if (destination == null)
+			throw new NullPointerException("The argument destination is null.");
+		if (packet == null)
+			throw new NullPointerException("The argument packet is null.");
+
+		Member first = acquire(destination);
+		CompletableFuture<String[]> result = new CompletableFuture<>();
+		sendThrough(first, destination, packet).whenComplete((responses, e) -> {
+			if (e == null && accepted(responses)) {
+				result.complete(responses);
+				return;
+			}
+			Member second = leastLoaded(first, System.nanoTime());
+			if (second == null || !rebind(destination, second)) {
+				complete(result, responses, e);
+				return;
+			}
+			failovers.incrementAndGet();
+			logger.log(Level.FINE, String.format("A packet to %s failed on IM920 module #%d and is sent again "
+					+ "through #%d.", destination, first.index, second.index));
+			second.pending.incrementAndGet();
+			sendThrough(second, destination, packet).whenComplete((again, e2) -> complete(result, again, e2));
+		});
+		return result;
+	}
+
+	// Binds destination to member for a retry, unless other frames to it are pending, which the retry would follow.
+	private boolean rebind(String destination, Member member) {
+		boolean[] bound = new boolean[1];
+		bindings.compute(destination, (key, current) -> {
+			if (current != null)
+				return current;
+			Binding binding = new Binding(member);
+			binding.pending = 1;
+			bound[0] = true;
+			return binding;
+		});
+		return bound[0];
+	}
+
+	private static void complete(CompletableFuture<String[]> result, String[] responses, Throwable e) {
+		if (e != null)
+			result.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+		else
+			result.complete(responses);
+	}
+
+	// All the fragments go through one module with consecutive sequence numbers, as FragmentReassembler
+	// puts a message together per sender. The future fails if any fragment does; the message isn't sent again.
+	public CompletableFuture<Void> sendData(String destination, byte[] data) {
+		if (destination == null)
+			throw new NullPointerException("The argument destination is null.");
+		if (data == null) {
+			String msg = "Argument data is null.";
+			logger.log(Level.WARNING, msg);
+			throw new NullPointerException(msg);
+		}
+
+		boolean compressed = false;
+		if (compressionEnabled) {
+			byte[] packed = Lzss.compress(data);
+			if (packed.length < data.length) {
+				data = packed;
+				compressed = true;
+			}
+		}
+
+		List<Im920Data> packets = new ArrayList<>();
+		ByteBuffer buf = ByteBuffer.wrap(data);
+		do {
+			boolean more = buf.remaining() > Im920Data.capacityOfData();
+			byte[] chopped = new byte[more ? Im920Data.capacityOfData() : buf.remaining()];
+			buf.get(chopped);
+			packets.add(new Im920Data(chopped, more, compressed));
+		} while (buf.hasRemaining());
+
+		Member member = acquire(destination);
+		for (int i = 1; i < packets.size(); i++) {
+			acquireAgain(destination, member);
+		}
+		List<CompletableFuture<String[]>> sent;
+		try {
+			// No other Data message of the module gets in between.
+			sent = member.im920.sendFragments(packets);
+		} catch (RuntimeException e) {
+			for (int i = 0; i < packets.size(); i++) {
+				release(destination, member);
+			}
+			throw e;
+		}
+		List<CompletableFuture<String[]>> fragments = new ArrayList<>(sent.size());
+		for (CompletableFuture<String[]> future : sent) {
+			fragments.add(track(member, destination, future));
+		}
+
+		return CompletableFuture.allOf(fragments.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+			for (CompletableFuture<String[]> fragment : fragments) {
+				if (!accepted(fragment.join()))
+					throw new CompletionException(new IOException("The IM920 module didn't accept a fragment."));
+			}
+			return null;
+		});
+	}
+
+	// The binding taken for the message covers its first fragment; each further one takes another.
+	private void acquireAgain(String destination, Member member) {
+		member.pending.incrementAndGet();
+		bindings.compute(destination, (key, current) -> {
+			if (current == null)
+				current = new Binding(member);
+			current.pending++;
+			return current;
+		});
+	}
+
+	public CompletableFuture<String[]> sendCommand(String destination, byte cmd, String param) {
+		return send(destination, new Im920Command(cmd, param, false));
+	}
+
+	public CompletableFuture<String[]> sendCommandWithAck(String destination, byte cmd, String param) {
+		return send(destination, new Im920Command(cmd, param, true));
+	}
+
+	public CompletableFuture<String[]> sendAck(String destination, byte cmd, String response) {
+		return send(destination, new Im920Ack(cmd, response));
+	}
+
+	public CompletableFuture<String[]> sendNotice(String destination, String notice) {
+		return send(destination, new Im920Notice(notice));
+	}
+
+	public int getPending(int index) {
+		return members.get(index).pending.get();
+	}
+
+	public long getSentCount(int index) {
+		return members.get(index).sent.get();
+	}
+
+	public long getFailedCount(int index) {
+		return members.get(index).failed.get();
+	}
+
+	public long getFailoverCount() {
+		return failovers.get();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("Im920Pool[routing=").append(routing);
+		long now = System.nanoTime();
+		for (Member member : members) {
+			builder.append(String.format(", #%d{%s pending=%d sent=%d failed=%d}", member.index,
+					member.isAvailable(now) ? "up" : "down", member.pending.get(), member.sent.get(),
+					member.failed.get()));
+		}
+		return builder.append(", failovers=").append(failovers.get()).append(']').toString();
+	}
+
+}
@@ -0,0 +1,94 @@
+package com.github.tutertlob.im920wireless.util;
+
+import com.github.tutertlob.im920wireless.util.Im920Interface.OverflowPolicy;
+import com.github.tutertlob.im920wireless.util.Im920Interface.Priority;
+
+// A snapshot of one priority class of the transmit queue. Wait times run from queueing to being picked by SerialWriter.
+public final class Im920QueueStats {
+
+	private final Priority priority;
+
+	private final OverflowPolicy policy;
+
+	private final int capacity;
+
+	private final int depth;
+
+	private final long enqueued;
+
+	private final long dequeued;
+
+	private final long dropped;
+
+	private final long rejected;
+
+	private final long totalWaitNanos;
+
+	private final long maxWaitNanos;
+
+	Im920QueueStats(Priority priority, OverflowPolicy policy, int capacity, int depth, long enqueued, long dequeued,
+			long dropped, long rejected, long totalWaitNanos, long maxWaitNanos) {
+		this.priority = priority;
+		this.policy = policy;
+		this.capacity = capacity;
+		this.depth = depth;
+		this.enqueued = enqueued;
+		this.dequeued = dequeued;
+		this.dropped = dropped;
+		this.rejected = rejected;
+		this.totalWaitNanos = totalWaitNanos;
+		this.maxWaitNanos = maxWaitNanos;
+	}
+
+	public Priority getPriority() {
+		return priority;
+	}
+
+	public OverflowPolicy getPolicy() {
+		return policy;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	public long getEnqueued() {
+		return enqueued;
+	}
+
+	public long getDequeued() {
+		return dequeued;
+	}
+
+	public long getDropped() {
+		return dropped;
+	}
+
+	public long getRejected() {
+		return rejected;
+	}
+
+	public long getTotalWaitNanos() {
+		return totalWaitNanos;
+	}
+
+	public long getMaxWaitNanos() {
+		return maxWaitNanos;
+	}
+
+	public long getAverageWaitNanos() {
+		return dequeued == 0 ? 0 : totalWaitNanos / dequeued;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: depth=%d/%d policy=%s enqueued=%d dequeued=%d dropped=%d rejected=%d avgWait=%dus maxWait=%dus",
+				priority, depth, capacity, policy, enqueued, dequeued, dropped, rejected, getAverageWaitNanos() / 1000,
+				maxWaitNanos / 1000);
+	}
+
+}
@@ -0,0 +1,55 @@
+package com.github.tutertlob.im920wireless.util;
+
+import java.util.List;
+
+// Tells when the response to an IM920 command is complete, so that SerialReader can hand it over
+// as soon as its last line has arrived instead of waiting for the line to go quiet.
+final class Im920ResponseGrammar {
+
+	// Most commands answer with exactly one line: "OK", "NG" or the value read.
+	static final Im920ResponseGrammar SINGLE_LINE = new Im920ResponseGrammar(1, null);
+
+	// SRST may echo other lines before the version banner that ends the reset.
+	static final Im920ResponseGrammar VERSION_BANNER = new Im920ResponseGrammar(0, "IM920 Ver.");
+
+	// The number of lines of a listing depends on the module state, so only a quiet line can end it.
+	static final Im920ResponseGrammar OPEN_ENDED = new Im920ResponseGrammar(0, null);
+
+	private static final String ERROR = "NG";
+
+	private final int lines;
+
+	private final String terminator;
+
+	private Im920ResponseGrammar(int lines, String terminator) {
+		this.lines = lines;
+		this.terminator = terminator;
+	}
+
+	static Im920ResponseGrammar forCommand(String cmd) {
+		int i = cmd.startsWith("?") ? 1 : 0;
+		if (cmd.startsWith("SRST", i))
+			return VERSION_BANNER;
+		if (cmd.startsWith("RRID", i) || cmd.startsWith("RPRM", i))
+			return OPEN_ENDED;
+		return SINGLE_LINE;
+	}
+
+	boolean isComplete(List<String> responses) {
+		int size = responses.size();
+		if (size == 0)
+			return false;
+
+		String last = responses.get(size - 1);
+		if (last.startsWith(ERROR))
+			return true;
+		if (terminator != null)
+			return last.startsWith(terminator);
+		return lines > 0 && size >= lines;
+	}
+
+	boolean isEndedByGap() {
+		return lines == 0 && terminator == null;
+	}
+
+}
@@ -0,0 +1,137 @@
+package com.github.tutertlob.im920wireless.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import gnu.io.CommPort;
+import gnu.io.CommPortIdentifier;
+import gnu.io.NoSuchPortException;
+import gnu.io.PortInUseException;
+import gnu.io.SerialPort;
+import gnu.io.UnsupportedCommOperationException;
+
+public final class Im920SerialTransport implements Im920Transport {
+
+	private static final Logger logger = Logger.getLogger(Im920SerialTransport.class.getName());
+
+	private static final int OPEN_TIMEOUT_MS = 2000;
+
+	private final String portName;
+
+	private final Im920Interface.BaudRate baud;
+
+	private SerialPort serial;
+
+	private InputStream in;
+
+	private OutputStream out;
+
+	public Im920SerialTransport(String portName, Im920Interface.BaudRate baud) {
+		if (portName == null)
+			throw new NullPointerException("The argument portName is null.");
+		if (baud == null)
+			throw new NullPointerException("The argument baud is null.");
+
+		this.portName = portName;
+		this.baud = baud;
+	}
+
+	public synchronized void openPort() throws IOException, NoSuchPortException, PortInUseException {
+		if (serial != null)
+			return;
+
+		CommPortIdentifier commPortIdentifier;
+		try {
+			commPortIdentifier = CommPortIdentifier.getPortIdentifier(portName);
+		} catch (NoSuchPortException e) {
+			logger.warning(portName + ": No such port.");
+			throw e;
+		}
+
+		if (commPortIdentifier.isCurrentlyOwned()) {
+			logger.warning(portName + " is currently in use.");
+			throw new PortInUseException();
+		}
+
+		CommPort commPort;
+		try {
+			commPort = commPortIdentifier.open(Im920Interface.class.getName(), OPEN_TIMEOUT_MS);
+		} catch (PortInUseException e) {
+			logger.warning(portName + " is currently in use.");
+			throw e;
+		}
+
+		if (!(commPort instanceof SerialPort)) {
+			commPort.close();
+			logger.warning("Only serial ports are handled by this program.");
+			throw new IOException("Only serial ports are handled by this program.");
+		}
+
+		SerialPort serial = (SerialPort) commPort;
+		try {
+			serial.setSerialPortParams(baud.baud(), SerialPort.DATABITS_8, SerialPort.STOPBITS_1,
+					SerialPort.PARITY_NONE);
+		} catch (UnsupportedCommOperationException e) {
+			logger.log(Level.WARNING, "Attemped to do setSerialPortParams with unsupported parameters.", e);
+			// Keep running.
+		}
+
+		try {
+			this.in = serial.getInputStream();
+			this.out = serial.getOutputStream();
+		} catch (IOException e) {
+			serial.close();
+			logger.log(Level.WARNING, "Couldn't get I/O streams for the serial port.", e);
+			throw e;
+		}
+		this.serial = serial;
+	}
+
+	@Override
+	public void open() throws IOException {
+		try {
+			openPort();
+		} catch (NoSuchPortException | PortInUseException e) {
+			throw new IOException(String.format("Couldn't open the serial port %s.", portName), e);
+		}
+	}
+
+	@Override
+	public int read(byte[] buf, int offset, int length) throws IOException {
+		return in.read(buf, offset, length);
+	}
+
+	@Override
+	public void write(byte[] buf, int offset, int length) throws IOException {
+		out.write(buf, offset, length);
+		out.flush();
+	}
+
+	@Override
+	public int available() throws IOException {
+		return in.available();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (serial == null)
+			return;
+
+		try {
+			this.in.close();
+			this.out.close();
+		} finally {
+			serial.close();
+			serial = null;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return portName;
+	}
+
+}
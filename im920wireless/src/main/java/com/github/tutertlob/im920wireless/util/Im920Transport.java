@@ -0,0 +1,19 @@
+package com.github.tutertlob.im920wireless.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+public interface Im920Transport extends Closeable {
+
+	public void open() throws IOException;
+
+	public int read(byte[] buf, int offset, int length) throws IOException;
+
+	public void write(byte[] buf, int offset, int length) throws IOException;
+
+	public int available() throws IOException;
+
+	@Override
+	public void close() throws IOException;
+
+}
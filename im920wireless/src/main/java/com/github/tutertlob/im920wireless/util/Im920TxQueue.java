@@ -0,0 +1,201 @@
+package com.github.tutertlob.im920wireless.util;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.github.tutertlob.im920wireless.util.Im920Interface.OverflowPolicy;
+import com.github.tutertlob.im920wireless.util.Im920Interface.Priority;
+
+// The transmit queue in front of SerialWriter: one bounded lane per priority class,
+// always served from the most urgent non-empty lane.
+// Each lane is a ring of fixed arrays, so queueing a command allocates nothing.
+final class Im920TxQueue<E> {
+
+	private static final Logger logger = Logger.getLogger(Im920TxQueue.class.getName());
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition notEmpty = lock.newCondition();
+
+	private final Map<Priority, Lane> lanes = new EnumMap<>(Priority.class);
+
+	private boolean closed = false;
+
+	private final class Lane {
+
+		final Priority priority;
+
+		final Condition notFull = lock.newCondition();
+
+		OverflowPolicy policy;
+
+		Object[] elements;
+
+		long[] enqueuedNanos;
+
+		int head = 0;
+
+		int size = 0;
+
+		long enqueued = 0;
+
+		long dequeued = 0;
+
+		long dropped = 0;
+
+		long rejected = 0;
+
+		long waitNanos = 0;
+
+		long maxWaitNanos = 0;
+
+		Lane(Priority priority, int capacity, OverflowPolicy policy) {
+			this.priority = priority;
+			this.policy = policy;
+			this.elements = new Object[capacity];
+			this.enqueuedNanos = new long[capacity];
+		}
+
+		void add(E e, long now) {
+			int tail = (head + size) % elements.length;
+			elements[tail] = e;
+			enqueuedNanos[tail] = now;
+			size++;
+			enqueued++;
+		}
+
+		@SuppressWarnings("unchecked")
+		E remove() {
+			E e = (E) elements[head];
+			elements[head] = null;
+			head = (head + 1) % elements.length;
+			size--;
+			return e;
+		}
+
+		long headEnqueuedNanos() {
+			return enqueuedNanos[head];
+		}
+
+		void resize(int capacity) {
+			Object[] newElements = new Object[capacity];
+			long[] newEnqueuedNanos = new long[capacity];
+			for (int i = 0; i < size; i++) {
+				newElements[i] = elements[(head + i) % elements.length];
+				newEnqueuedNanos[i] = enqueuedNanos[(head + i) % elements.length];
+			}
+			elements = newElements;
+			enqueuedNanos = newEnqueuedNanos;
+			head = 0;
+		}
+	}
+
+	Im920TxQueue(Map<Priority, Integer> capacities, OverflowPolicy policy) {
+		for (Priority priority : Priority.values()) {
+			lanes.put(priority, new Lane(priority, capacities.get(priority), policy));
+		}
+	}
+
+	void configure(Priority priority, int capacity, OverflowPolicy policy) {
+		lock.lock();
+		try {
+			Lane lane = lanes.get(priority);
+			if (capacity < lane.size) {
+				String msg = String.format("The %s queue holds %d commands, more than the new capacity %d.", priority,
+						lane.size, capacity);
+				logger.log(Level.WARNING, msg);
+				throw new IllegalStateException(msg);
+			}
+			lane.resize(capacity);
+			lane.policy = policy;
+			lane.notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// Returns the element dropped to make room under DROP_OLDEST, otherwise null.
+	E put(Priority priority, E e) throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			Lane lane = lanes.get(priority);
+			E dropped = null;
+			while (!closed && lane.size == lane.elements.length) {
+				if (lane.policy == OverflowPolicy.BLOCK) {
+					lane.notFull.await();
+				} else if (lane.policy == OverflowPolicy.DROP_OLDEST) {
+					dropped = lane.remove();
+					lane.dropped++;
+				} else {
+					lane.rejected++;
+					throw new RejectedExecutionException(
+							String.format("The %s queue is full (%d commands).", priority, lane.size));
+				}
+			}
+			if (closed)
+				throw new RejectedExecutionException("The interface has been closed.");
+
+			lane.add(e, System.nanoTime());
+			notEmpty.signal();
+			return dropped;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	E take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			for (;;) {
+				for (Lane lane : lanes.values()) {
+					if (lane.size > 0) {
+						long wait = System.nanoTime() - lane.headEnqueuedNanos();
+						lane.waitNanos += wait;
+						lane.maxWaitNanos = Math.max(lane.maxWaitNanos, wait);
+						lane.dequeued++;
+						E e = lane.remove();
+						lane.notFull.signal();
+						return e;
+					}
+				}
+				notEmpty.await();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// Refuses further commands, wakes up blocked producers and hands back what is still queued.
+	void close(Collection<? super E> pending) {
+		lock.lock();
+		try {
+			closed = true;
+			for (Lane lane : lanes.values()) {
+				while (lane.size > 0) {
+					pending.add(lane.remove());
+				}
+				lane.notFull.signalAll();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	Im920QueueStats stats(Priority priority) {
+		lock.lock();
+		try {
+			Lane lane = lanes.get(priority);
+			return new Im920QueueStats(priority, lane.policy, lane.elements.length, lane.size, lane.enqueued,
+					lane.dequeued, lane.dropped, lane.rejected, lane.waitNanos, lane.maxWaitNanos);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+}
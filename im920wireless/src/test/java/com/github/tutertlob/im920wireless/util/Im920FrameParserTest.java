@@ -0,0 +1,192 @@
+package com.github.tutertlob.im920wireless.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class Im920FrameParserTest {
+
+	private static final byte[] HEADER = { 0x01, 0x00, (byte) 0xab, (byte) 0xc8 };
+
+	private final Im920FramePool pool = new Im920FramePool();
+
+	// The frames and lines handed over, the frames copied out and released to the pool at once.
+	private final List<byte[][]> frames = new ArrayList<>();
+
+	private final List<ByteBuffer[]> buffers = new ArrayList<>();
+
+	private final List<String> responses = new ArrayList<>();
+
+	private final Im920FrameParser parser = new Im920FrameParser(pool, new Im920FrameParser.Handler() {
+
+		@Override
+		public void frameReceived(ByteBuffer[] frame) {
+			frames.add(new byte[][] { bytes(frame[0]), bytes(frame[1]) });
+			buffers.add(frame);
+			pool.release(frame);
+		}
+
+		@Override
+		public void responseReceived(byte[] line, int length) {
+			responses.add(new String(line, 0, length, StandardCharsets.US_ASCII));
+		}
+	});
+
+	private static byte[] bytes(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.duplicate().get(bytes);
+		return bytes;
+	}
+
+	private void parse(String s) throws InterruptedException {
+		byte[] bytes = s.getBytes(StandardCharsets.US_ASCII);
+		parser.parse(bytes, 0, bytes.length);
+	}
+
+	// A received frame as the module prints it, without the line end.
+	private static String frameLine(int bodyLength) {
+		StringBuilder sb = new StringBuilder("01,00AB,C8:");
+		for (int i = 0; i < bodyLength; i++) {
+			if (i > 0)
+				sb.append(',');
+			sb.append(String.format("%02X", i));
+		}
+		return sb.toString();
+	}
+
+	private static byte[] body(int bodyLength) {
+		byte[] body = new byte[bodyLength];
+		for (int i = 0; i < bodyLength; i++) {
+			body[i] = (byte) i;
+		}
+		return body;
+	}
+
+	@Test
+	public void frameSplitAcrossReads() throws InterruptedException {
+		parse("01,00A");
+		parse("B,C8:1");
+		parse("2,3");
+		assertTrue(frames.isEmpty());
+		parse("4\r");
+		parse("\n");
+
+		assertEquals(1, frames.size());
+		assertArrayEquals(HEADER, frames.get(0)[0]);
+		assertArrayEquals(new byte[] { 0x12, 0x34 }, frames.get(0)[1]);
+		// The LF after the CR makes no empty line.
+		assertTrue(responses.isEmpty());
+	}
+
+	@Test
+	public void anyLineEnd() throws InterruptedException {
+		parse("OK\r\nNG\nOK\r" + frameLine(1) + "\n\r\n\n" + frameLine(2) + "\r");
+		assertEquals(Arrays.asList("OK", "NG", "OK"), responses);
+		assertEquals(2, frames.size());
+		assertArrayEquals(body(1), frames.get(0)[1]);
+		assertArrayEquals(body(2), frames.get(1)[1]);
+	}
+
+	@Test
+	public void lowerCaseHexIsAFrame() throws InterruptedException {
+		parse("01,00ab,c8:ff\r\n");
+		assertEquals(1, frames.size());
+		assertArrayEquals(HEADER, frames.get(0)[0]);
+		assertArrayEquals(new byte[] { (byte) 0xff }, frames.get(0)[1]);
+	}
+
+	@Test
+	public void malformedFramesAreResponseLines() throws InterruptedException {
+		String[] lines = { "01,00AB,C8:12,3G", "01,00AB,C8:12,", "01,00AB,C8:123", "01,00AB,C8:12;34" };
+		for (String line : lines) {
+			parse(line + "\r\n");
+		}
+		assertTrue(frames.isEmpty());
+		assertEquals(Arrays.asList(lines), responses);
+		assertEquals(lines.length, parser.getMalformedFrames());
+	}
+
+	@Test
+	public void emptyBodyIsAResponseLine() throws InterruptedException {
+		parse("01,00AB,C8:\r\n");
+		assertTrue(frames.isEmpty());
+		assertEquals(Arrays.asList("01,00AB,C8:"), responses);
+		assertEquals(1, parser.getMalformedFrames());
+	}
+
+	@Test
+	public void linesBreakingTheHeaderAreResponses() throws InterruptedException {
+		parse("00000001\r\n01,00AB\r\n");
+		assertTrue(frames.isEmpty());
+		assertEquals(Arrays.asList("00000001", "01,00AB"), responses);
+		// Responses aren't malformed frames.
+		assertEquals(0, parser.getMalformedFrames());
+	}
+
+	@Test
+	public void longestBody() throws InterruptedException {
+		parse(frameLine(Im920FramePool.BODY_MAX_LENGTH) + "\r\n");
+		assertEquals(1, frames.size());
+		assertArrayEquals(body(Im920FramePool.BODY_MAX_LENGTH), frames.get(0)[1]);
+
+		String tooLong = frameLine(Im920FramePool.BODY_MAX_LENGTH + 1);
+		parse(tooLong + "\r\n");
+		assertEquals(1, frames.size());
+		assertEquals(Arrays.asList(tooLong), responses);
+		assertEquals(1, parser.getMalformedFrames());
+	}
+
+	@Test
+	public void lineLongerThanTheBufferIsTruncated() throws InterruptedException {
+		char[] chars = new char[Im920FrameParser.LINE_MAX_LENGTH + 10];
+		Arrays.fill(chars, 'x');
+		parse(new String(chars) + "\r\nOK\r\n");
+		assertEquals(2, responses.size());
+		assertEquals(Im920FrameParser.LINE_MAX_LENGTH, responses.get(0).length());
+		assertEquals("OK", responses.get(1));
+	}
+
+	@Test
+	public void releasedBuffersAreReused() throws InterruptedException {
+		parse(frameLine(3) + "\r\n" + frameLine(3) + "\r\n" + frameLine(4) + "\r\n");
+		assertEquals(3, buffers.size());
+		assertSame(buffers.get(0)[0], buffers.get(1)[0]);
+		assertSame(buffers.get(0)[1], buffers.get(1)[1]);
+		// Bodies are pooled by length.
+		assertNotSame(buffers.get(0)[1], buffers.get(2)[1]);
+		assertArrayEquals(body(3), frames.get(1)[1]);
+	}
+
+	@Test
+	public void interfaceReusesReleasedBuffers() throws Exception {
+		Im920LoopbackTransport transport = new Im920LoopbackTransport();
+		Im920Interface im920Interface = Im920Interface.open(transport, Im920Interface.BaudRate.B_38400);
+		try {
+			byte[] line = (frameLine(2) + "\r\n").getBytes(StandardCharsets.US_ASCII);
+			transport.getPeer().write(line, 0, line.length);
+			ByteBuffer[] first = im920Interface.takeReceivedFrame();
+			assertArrayEquals(HEADER, bytes(first[0]));
+			assertArrayEquals(body(2), bytes(first[1]));
+			im920Interface.releaseReceivedFrame(first);
+
+			transport.getPeer().write(line, 0, line.length);
+			ByteBuffer[] second = im920Interface.takeReceivedFrame();
+			assertSame(first[0], second[0]);
+			assertSame(first[1], second[1]);
+			assertArrayEquals(body(2), bytes(second[1]));
+		} finally {
+			im920Interface.close();
+		}
+	}
+
+}
@@ -0,0 +1,197 @@
+package com.github.tutertlob.im920wireless.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.tutertlob.subghz.DurableQueue;
+
+public class Im920InterfaceDurableQueueTest {
+
+	private static final long WAIT_MS = 5000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path directory;
+
+	private final List<Im920Interface> interfaces = new ArrayList<>();
+
+	private final List<DurableQueue> queues = new ArrayList<>();
+
+	// Plays the module on the peer end of a loopback: answers each line and records the frames sent with TXDA.
+	private static final class Module implements Runnable {
+
+		final Im920LoopbackTransport transport = new Im920LoopbackTransport();
+
+		final List<String> frames = new ArrayList<>();
+
+		private final Function<String, String> answer;
+
+		Module(Function<String, String> answer) {
+			this.answer = answer;
+			Thread thread = new Thread(this, "Im920InterfaceDurableQueueTest-module");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		@Override
+		public void run() {
+			Im920LoopbackTransport peer = transport.getPeer();
+			byte[] buf = new byte[512];
+			StringBuilder line = new StringBuilder();
+			try {
+				for (int n; (n = peer.read(buf, 0, buf.length)) > 0;) {
+					line.append(new String(buf, 0, n, StandardCharsets.US_ASCII));
+					for (int end; (end = line.indexOf("\r\n")) >= 0;) {
+						String cmd = line.substring(0, end);
+						line.delete(0, end + 2);
+						if (cmd.isEmpty())
+							continue;
+						String response;
+						synchronized (this) {
+							if (cmd.startsWith("TXDA"))
+								frames.add(cmd.substring(4));
+							response = answer.apply(cmd);
+						}
+						if (response != null) {
+							byte[] bytes = (response + "\r\n").getBytes(StandardCharsets.US_ASCII);
+							peer.write(bytes, 0, bytes.length);
+						}
+					}
+				}
+			} catch (IOException e) {
+				// Closed.
+			}
+		}
+
+		synchronized List<String> frames() {
+			return new ArrayList<>(frames);
+		}
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		directory = folder.newFolder("outbound").toPath();
+	}
+
+	@After
+	public void tearDown() {
+		for (Im920Interface im920Interface : interfaces) {
+			im920Interface.close();
+		}
+		for (DurableQueue queue : queues) {
+			queue.close();
+		}
+	}
+
+	private Im920Interface open(Module module, DurableQueue queue) throws IOException {
+		Im920Interface im920Interface = Im920Interface.open(module.transport, Im920Interface.BaudRate.B_38400);
+		interfaces.add(im920Interface);
+		im920Interface.setTransmitScheduler(null);
+		im920Interface.setCommandTimeout(200, TimeUnit.MILLISECONDS);
+		im920Interface.enableDurableQueue(queue);
+		return im920Interface;
+	}
+
+	private DurableQueue openQueue() throws IOException {
+		DurableQueue queue = new DurableQueue(directory);
+		queues.add(queue);
+		return queue;
+	}
+
+	// Frames whose hex encoding is the hex digit of index repeated.
+	private static List<ByteBuffer> message(int count) {
+		List<ByteBuffer> frames = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			byte[] bytes = new byte[4];
+			Arrays.fill(bytes, (byte) (0x11 * i));
+			frames.add(ByteBuffer.wrap(bytes));
+		}
+		return frames;
+	}
+
+	private static String hex(int index) {
+		char[] digits = new char[8];
+		Arrays.fill(digits, Character.forDigit(index, 16));
+		return new String(digits);
+	}
+
+	private static void awaitEmpty(DurableQueue queue) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WAIT_MS);
+		while (queue.size() > 0 && System.nanoTime() < deadline) {
+			Thread.sleep(20);
+		}
+		assertEquals(0, queue.size());
+	}
+
+	@Test
+	public void ngInTheMiddleOfAMessageResendsOnlyTheRest() throws Exception {
+		int[] sent = new int[1];
+		// The module refuses the second fragment the first time only.
+		Module module = new Module(cmd -> cmd.startsWith("TXDA") && ++sent[0] == 2 ? "NG" : "OK");
+		DurableQueue queue = openQueue();
+		Im920Interface im920Interface = open(module, queue);
+
+		List<CompletableFuture<String[]>> futures = im920Interface.sendDataAsync(message(4),
+				Im920Interface.Priority.BULK);
+
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).handle((v, e) -> null).get(WAIT_MS,
+				TimeUnit.MILLISECONDS);
+		assertArrayEquals(new String[] { "OK" }, futures.get(0).get());
+		assertArrayEquals(new String[] { "NG" }, futures.get(1).get());
+		// Those after the refused one were never written.
+		assertTrue(futures.get(2).isCancelled());
+		assertTrue(futures.get(3).isCancelled());
+
+		awaitEmpty(queue);
+		// The first fragment went out once; the rest follow the refused one in order, each once more.
+		assertEquals(Arrays.asList(hex(0), hex(1), hex(1), hex(2), hex(3)), module.frames());
+		assertEquals(3, im920Interface.getMetrics().getRetriedEntries());
+		assertEquals(0, im920Interface.getMetrics().getDeadLetteredEntries());
+		assertEquals(1, im920Interface.getMetrics().getSendFailures());
+	}
+
+	@Test
+	public void framesCutShortAreSentAgainAfterARestart() throws Exception {
+		// A module which never answers, so nothing is acknowledged.
+		Module silent = new Module(cmd -> null);
+		DurableQueue queue = openQueue();
+		Im920Interface first = open(silent, queue);
+		List<CompletableFuture<String[]>> futures = first.sendDataAsync(message(3), Im920Interface.Priority.BULK);
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).handle((v, e) -> null).get(WAIT_MS,
+				TimeUnit.MILLISECONDS);
+		first.close();
+		interfaces.remove(first);
+		queue.close();
+		queues.remove(queue);
+		// Only the first frame was written before it timed out.
+		assertEquals(Arrays.asList(hex(0)), silent.frames());
+
+		Module module = new Module(cmd -> "OK");
+		DurableQueue reopened = openQueue();
+		// Each fragment is an entry of its own.
+		assertEquals(3, reopened.size());
+		open(module, reopened);
+		awaitEmpty(reopened);
+		assertEquals(Arrays.asList(hex(0), hex(1), hex(2)), module.frames());
+	}
+
+}
@@ -0,0 +1,206 @@
+package com.github.tutertlob.im920wireless.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.github.tutertlob.im920wireless.util.Im920Interface.OverflowPolicy;
+import com.github.tutertlob.im920wireless.util.Im920Interface.Priority;
+
+public class Im920TxQueueTest {
+
+	private static final long WAIT_MS = 5000;
+
+	private static Im920TxQueue<String> queue(int capacity, OverflowPolicy policy) {
+		Map<Priority, Integer> capacities = new EnumMap<>(Priority.class);
+		for (Priority priority : Priority.values()) {
+			capacities.put(priority, capacity);
+		}
+		return new Im920TxQueue<>(capacities, policy);
+	}
+
+	private static List<String> takeAll(Im920TxQueue<String> queue, int count) throws InterruptedException {
+		List<String> taken = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			taken.add(queue.take());
+		}
+		return taken;
+	}
+
+	@Test
+	public void mostUrgentLaneIsServedFirst() throws InterruptedException {
+		Im920TxQueue<String> queue = queue(4, OverflowPolicy.BLOCK);
+		queue.put(Priority.BULK, "b1");
+		queue.put(Priority.BULK, "b2");
+		queue.put(Priority.COMMAND, "c1");
+		queue.put(Priority.CONTROL, "x1");
+		queue.put(Priority.CONTROL, "x2");
+
+		assertEquals(Arrays.asList("x1", "x2", "c1", "b1", "b2"), takeAll(queue, 5));
+		assertEquals(2, queue.stats(Priority.BULK).getDequeued());
+		assertEquals(0, queue.stats(Priority.BULK).getDepth());
+	}
+
+	@Test
+	public void dropOldestMakesRoom() throws InterruptedException {
+		Im920TxQueue<String> queue = queue(2, OverflowPolicy.DROP_OLDEST);
+		assertNull(queue.put(Priority.BULK, "a"));
+		assertNull(queue.put(Priority.BULK, "b"));
+		assertEquals("a", queue.put(Priority.BULK, "c"));
+
+		assertEquals(Arrays.asList("b", "c"), takeAll(queue, 2));
+		Im920QueueStats stats = queue.stats(Priority.BULK);
+		assertEquals(1, stats.getDropped());
+		assertEquals(3, stats.getEnqueued());
+	}
+
+	@Test
+	public void failRejectsWhenFull() throws InterruptedException {
+		Im920TxQueue<String> queue = queue(1, OverflowPolicy.FAIL);
+		queue.put(Priority.COMMAND, "a");
+		try {
+			queue.put(Priority.COMMAND, "b");
+			fail("A full FAIL queue took a command.");
+		} catch (RejectedExecutionException e) {
+			// Expected.
+		}
+		// Other lanes are unaffected.
+		queue.put(Priority.BULK, "c");
+
+		assertEquals(Arrays.asList("a", "c"), takeAll(queue, 2));
+		assertEquals(1, queue.stats(Priority.COMMAND).getRejected());
+	}
+
+	@Test
+	public void blockWaitsForRoom() throws Exception {
+		Im920TxQueue<String> queue = queue(1, OverflowPolicy.BLOCK);
+		queue.put(Priority.BULK, "a");
+		CompletableFuture<String> put = CompletableFuture.supplyAsync(() -> {
+			try {
+				return queue.put(Priority.BULK, "b");
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		Thread.sleep(50);
+		assertFalse(put.isDone());
+
+		assertEquals("a", queue.take());
+		assertNull(put.get(WAIT_MS, TimeUnit.MILLISECONDS));
+		assertEquals("b", queue.take());
+	}
+
+	@Test
+	public void configureKeepsTheOrderAcrossTheRing() throws InterruptedException {
+		Im920TxQueue<String> queue = queue(3, OverflowPolicy.BLOCK);
+		queue.put(Priority.BULK, "a");
+		queue.put(Priority.BULK, "b");
+		queue.take();
+		queue.put(Priority.BULK, "c");
+		// The ring has wrapped: c sits before b in the array.
+		queue.put(Priority.BULK, "d");
+
+		queue.configure(Priority.BULK, 5, OverflowPolicy.FAIL);
+		queue.put(Priority.BULK, "e");
+		queue.put(Priority.BULK, "f");
+		assertEquals(Arrays.asList("b", "c", "d", "e", "f"), takeAll(queue, 5));
+		assertEquals(OverflowPolicy.FAIL, queue.stats(Priority.BULK).getPolicy());
+		assertEquals(5, queue.stats(Priority.BULK).getCapacity());
+	}
+
+	@Test
+	public void configureRefusesToShrinkBelowTheDepth() throws InterruptedException {
+		Im920TxQueue<String> queue = queue(4, OverflowPolicy.BLOCK);
+		queue.put(Priority.BULK, "a");
+		queue.put(Priority.BULK, "b");
+		queue.put(Priority.BULK, "c");
+		try {
+			queue.configure(Priority.BULK, 2, OverflowPolicy.DROP_OLDEST);
+			fail("The queue shrank below what it holds.");
+		} catch (IllegalStateException e) {
+			// Expected.
+		}
+		Im920QueueStats stats = queue.stats(Priority.BULK);
+		assertEquals(4, stats.getCapacity());
+		assertEquals(OverflowPolicy.BLOCK, stats.getPolicy());
+
+		// Down to exactly what it holds is fine.
+		queue.configure(Priority.BULK, 3, OverflowPolicy.BLOCK);
+		assertEquals(Arrays.asList("a", "b", "c"), takeAll(queue, 3));
+	}
+
+	@Test
+	public void closeHandsBackWhatIsQueued() throws Exception {
+		Im920TxQueue<String> queue = queue(1, OverflowPolicy.BLOCK);
+		queue.put(Priority.BULK, "a");
+		queue.put(Priority.CONTROL, "x");
+		CompletableFuture<String> blocked = CompletableFuture.supplyAsync(() -> {
+			try {
+				return queue.put(Priority.BULK, "b");
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		Thread.sleep(50);
+
+		List<String> pending = new ArrayList<>();
+		queue.close(pending);
+		assertEquals(Arrays.asList("x", "a"), pending);
+		try {
+			blocked.get(WAIT_MS, TimeUnit.MILLISECONDS);
+			fail("A producer blocked on a closed queue got in.");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof RejectedExecutionException);
+		}
+	}
+
+	@Test
+	public void droppedCommandFailsItsFuture() throws Exception {
+		// A module which never answers, so the first frame stays in flight and the others queue behind it.
+		Im920LoopbackTransport transport = new Im920LoopbackTransport();
+		Im920Interface im920Interface = Im920Interface.open(transport, Im920Interface.BaudRate.B_38400);
+		try {
+			im920Interface.setTransmitScheduler(null);
+			im920Interface.setQueuePolicy(Priority.BULK, 1, OverflowPolicy.DROP_OLDEST);
+			CompletableFuture<String[]> first = im920Interface.sendDataAsync(ByteBuffer.wrap(new byte[] { 1 }),
+					Priority.BULK);
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WAIT_MS);
+			while (im920Interface.getQueueStats(Priority.BULK).getDequeued() == 0 && System.nanoTime() < deadline) {
+				Thread.sleep(5);
+			}
+			assertEquals(1, im920Interface.getQueueStats(Priority.BULK).getDequeued());
+
+			CompletableFuture<String[]> second = im920Interface.sendDataAsync(ByteBuffer.wrap(new byte[] { 2 }),
+					Priority.BULK);
+			CompletableFuture<String[]> third = im920Interface.sendDataAsync(ByteBuffer.wrap(new byte[] { 3 }),
+					Priority.BULK);
+			try {
+				second.get(WAIT_MS, TimeUnit.MILLISECONDS);
+				fail("The dropped command completed.");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof RejectedExecutionException);
+			}
+			assertFalse(first.isDone());
+			assertFalse(third.isDone());
+			assertEquals(1, im920Interface.getQueueStats(Priority.BULK).getDropped());
+		} finally {
+			im920Interface.close();
+		}
+	}
+
+}
@@ -2,6 +2,8 @@ package com.github.tutertlob.lazurite;
 
 import com.github.tutertlob.subghz.PacketImplementation;
 import com.github.tutertlob.subghz.AckPacketInterface;
+import com.github.tutertlob.subghz.TlvReader;
+import com.github.tutertlob.subghz.TlvWriter;
 
 import java.nio.ByteBuffer;
 import java.lang.StringBuilder;
@@ -13,20 +15,31 @@ public final class LazAck extends LazuritePacket implements AckPacketInterface {
 
 	private final byte cmd;
 
-	private final String response;
+	// Rendered from responseRecords on first use when the response is TLV encoded.
+	private String response;
+
+	private final ByteBuffer responseRecords;
 
 	public LazAck(ByteBuffer packetBytes) {
 		super(packetBytes);
 		cmd = packetBytes.get();
 		byte[] stringByte = new byte[packetBytes.remaining()];
 		packetBytes.get(stringByte, 0, packetBytes.remaining());
-		response = new String(stringByte, StandardCharsets.US_ASCII);
+		responseRecords = isTlvEncoded() ? ByteBuffer.wrap(stringByte) : null;
+		response = isTlvEncoded() ? null : new String(stringByte, StandardCharsets.US_ASCII);
 	}
 
 	public LazAck(byte command, String response) {
 		super(false, false);
 		this.cmd = command;
 		this.response = response;
+		this.responseRecords = null;
+	}
+
+	public LazAck(byte command, TlvWriter response) {
+		super(false, false, false, true);
+		this.cmd = command;
+		this.responseRecords = ByteBuffer.wrap(response.toByteArray());
 	}
 
 	public static int capacityOfResponse() {
@@ -45,20 +58,28 @@ public final class LazAck extends LazuritePacket implements AckPacketInterface {
 
 	@Override
 	public String getResponse() {
+		if (response == null)
+			response = new TlvReader().wrap(responseRecords).toString();
 		return response;
 	}
 
 	@Override
-	byte[] getBodyBytes() {
-		int size = getBodyLength();
-		ByteBuffer buf = ByteBuffer.allocate(size);
-		buf.put(cmd).put(response.getBytes(StandardCharsets.US_ASCII)).flip();
-		return buf.array();
+	public TlvReader readResponseParams(TlvReader reader) {
+		return reader.wrap(records(responseRecords));
+	}
+
+	@Override
+	void writeBodyTo(ByteBuffer dst) {
+		dst.put(cmd);
+		if (responseRecords != null)
+			dst.put(responseRecords.array());
+		else
+			putAscii(dst, response);
 	}
 
 	@Override
 	int getBodyLength() {
-		return COMMAND_SIZE + response.length();
+		return COMMAND_SIZE + (responseRecords != null ? responseRecords.capacity() : response.length());
 	}
 
 	@Override
@@ -68,7 +89,7 @@ public final class LazAck extends LazuritePacket implements AckPacketInterface {
 		builder.append(super.toString())
 				.append("Lazurite Ack packet:")
 				.append("\n Command: ").append(cmd)
-				.append("\n Response: ").append(response)
+				.append("\n Response: ").append(getResponse())
 				.append("\n");
 		return builder.toString();
 	}
@@ -0,0 +1,123 @@
+package com.github.tutertlob.lazurite;
+
+import com.github.tutertlob.subghz.AggregatePacketInterface;
+import com.github.tutertlob.subghz.PacketAggregator;
+import com.github.tutertlob.subghz.PacketImplementation;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Several small packets sharing one frame. Each entry of the body is a length byte followed by the whole packet.
+public final class LazAggregate extends LazuritePacket implements AggregatePacketInterface {
+
+	private static final Logger logger = Logger.getLogger(LazAggregate.class.getName());
+
+	private final List<LazuritePacket> packets;
+
+	private final List<byte[]> packetRaws;
+
+	public LazAggregate(ByteBuffer packetBytes) {
+		super(packetBytes);
+
+		List<byte[]> raws = new ArrayList<>();
+		List<LazuritePacket> decoded = new ArrayList<>();
+		while (packetBytes.hasRemaining()) {
+			int length = packetBytes.get() & 0xFF;
+			if (length < LazuritePacket.PACKET_HEADER_SIZE || length > packetBytes.remaining()) {
+				String msg = String.format("A packet in the aggregate claims %d bytes, but only %d remain.", length,
+						packetBytes.remaining());
+				logger.log(Level.WARNING, msg);
+				throw new IllegalArgumentException(msg);
+			}
+			byte[] raw = new byte[length];
+			packetBytes.get(raw);
+			if ((raw[LazuritePacket.PACKET_TYPE_I] & LazuritePacket.PACKET_TYPE_MASK) == Type.AGGREGATE.id())
+				throw new IllegalArgumentException("Aggregates can't be nested.");
+			raws.add(raw);
+			decoded.add(LazuritePacket.newInstance(raw));
+		}
+
+		this.packets = Collections.unmodifiableList(decoded);
+		this.packetRaws = raws;
+	}
+
+	public LazAggregate(List<? extends LazuritePacket> packets) {
+		super(false, false);
+		if (packets == null)
+			throw new NullPointerException("The argument packets is null.");
+
+		int length = 0;
+		for (LazuritePacket packet : packets) {
+			if (packet.getPacketType() == Type.AGGREGATE)
+				throw new IllegalArgumentException("Aggregates can't be nested.");
+			length += PacketAggregator.entrySize(packet);
+		}
+		if (packets.isEmpty() || length > capacityOfAggregate()) {
+			String msg = String.format("%d packets of %d bytes in total don't make an aggregate.", packets.size(), length);
+			logger.log(Level.WARNING, msg);
+			throw new IllegalArgumentException(msg);
+		}
+
+		this.packets = Collections.unmodifiableList(new ArrayList<>(packets));
+		this.packetRaws = null;
+	}
+
+	public static int capacityOfAggregate() {
+		return capacityOfBody();
+	}
+
+	@Override
+	public final PacketImplementation.Type getPacketType() {
+		return Type.AGGREGATE;
+	}
+
+	@Override
+	public int getPacketCount() {
+		return packets.size();
+	}
+
+	@Override
+	public List<LazuritePacket> getPackets() {
+		return packets;
+	}
+
+	// The received bytes of each packet, or null for an aggregate built to be sent.
+	List<byte[]> getPacketRaws() {
+		return packetRaws;
+	}
+
+	@Override
+	void writeBodyTo(ByteBuffer dst) {
+		for (LazuritePacket packet : packets) {
+			dst.put((byte) packet.getPacketLength());
+			packet.writeTo(dst);
+		}
+	}
+
+	@Override
+	int getBodyLength() {
+		int length = 0;
+		for (LazuritePacket packet : packets) {
+			length += PacketAggregator.entrySize(packet);
+		}
+		return length;
+	}
+
+	@Override
+	public final String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(super.toString())
+				.append("Lazurite Aggregate packet:")
+				.append("\n Packets: ").append(packets.size())
+				.append("\n");
+		for (LazuritePacket packet : packets) {
+			builder.append(packet.toString());
+		}
+		return builder.toString();
+	}
+
+}
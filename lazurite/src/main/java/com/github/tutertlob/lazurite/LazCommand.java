@@ -2,6 +2,8 @@ package com.github.tutertlob.lazurite;
 
 import com.github.tutertlob.subghz.PacketImplementation;
 import com.github.tutertlob.subghz.CommandPacketInterface;
+import com.github.tutertlob.subghz.TlvReader;
+import com.github.tutertlob.subghz.TlvWriter;
 
 import java.nio.ByteBuffer;
 import java.lang.StringBuilder;
@@ -13,20 +15,31 @@ public final class LazCommand extends LazuritePacket implements CommandPacketInt
 
 	private final byte command;
 
-	private final String commandParam;
+	// Rendered from paramRecords on first use when the parameters are TLV encoded.
+	private String commandParam;
+
+	private final ByteBuffer paramRecords;
 
 	public LazCommand(ByteBuffer packetBytes) {
 		super(packetBytes);
 		command = packetBytes.get();
 		byte[] stringByte = new byte[packetBytes.remaining()];
 		packetBytes.get(stringByte, 0, packetBytes.remaining());
-		commandParam = new String(stringByte, StandardCharsets.US_ASCII);
+		paramRecords = isTlvEncoded() ? ByteBuffer.wrap(stringByte) : null;
+		commandParam = isTlvEncoded() ? null : new String(stringByte, StandardCharsets.US_ASCII);
 	}
 
 	public LazCommand(byte command, String param, boolean responseRequested) {
 		super(false, responseRequested);
 		this.command = command;
 		this.commandParam = param;
+		this.paramRecords = null;
+	}
+
+	public LazCommand(byte command, TlvWriter params, boolean responseRequested) {
+		super(false, responseRequested, false, true);
+		this.command = command;
+		this.paramRecords = ByteBuffer.wrap(params.toByteArray());
 	}
 
 	public static int capacityOfParam() {
@@ -45,20 +58,28 @@ public final class LazCommand extends LazuritePacket implements CommandPacketInt
 
 	@Override
 	public String getCommandParam() {
+		if (commandParam == null)
+			commandParam = new TlvReader().wrap(paramRecords).toString();
 		return commandParam;
 	}
 
 	@Override
-	byte[] getBodyBytes() {
-		int size = getBodyLength();
-		ByteBuffer buf = ByteBuffer.allocate(size);
-		buf.put(command).put(commandParam.getBytes(StandardCharsets.US_ASCII)).flip();
-		return buf.array();
+	public TlvReader readCommandParams(TlvReader reader) {
+		return reader.wrap(records(paramRecords));
+	}
+
+	@Override
+	void writeBodyTo(ByteBuffer dst) {
+		dst.put(command);
+		if (paramRecords != null)
+			dst.put(paramRecords.array());
+		else
+			putAscii(dst, commandParam);
 	}
 
 	@Override
 	int getBodyLength() {
-		return COMMAND_SIZE + commandParam.length();
+		return COMMAND_SIZE + (paramRecords != null ? paramRecords.capacity() : commandParam.length());
 	}
 
 	@Override
@@ -68,7 +89,7 @@ public final class LazCommand extends LazuritePacket implements CommandPacketInt
 		builder.append(super.toString())
 				.append("Lazurite Command packet:")
 				.append("\n Command: ").append(command)
-				.append("\n Parameter: ").append(commandParam)
+				.append("\n Parameter: ").append(getCommandParam())
 				.append("\n");
 		return builder.toString();
 	}
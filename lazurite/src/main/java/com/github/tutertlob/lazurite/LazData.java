@@ -21,7 +21,16 @@ public final class LazData extends LazuritePacket implements DataPacketInterface
 	}
 
 	public LazData(byte[] data, boolean fragmented) {
-		super(fragmented, false);
+		this(data, fragmented, false);
+	}
+
+	// data is sent as given, so a compressed message must already have been run through Lzss.
+	public LazData(byte[] data, boolean fragmented, boolean compressed) {
+		this(data, fragmented, false, compressed);
+	}
+
+	public LazData(byte[] data, boolean fragmented, boolean responseRequested, boolean compressed) {
+		super(fragmented, responseRequested, compressed);
 		this.data = data.clone();
 	}
 
@@ -29,6 +38,11 @@ public final class LazData extends LazuritePacket implements DataPacketInterface
 		return capacityOfBody();
 	}
 
+	// A sequence number takes one byte of the body.
+	public static int capacityOfSequencedData() {
+		return capacityOfBody() - 1;
+	}
+
 	@Override
 	public final PacketImplementation.Type getPacketType() {
 		return Type.DATA;
@@ -39,14 +53,19 @@ public final class LazData extends LazuritePacket implements DataPacketInterface
 		return data.clone();
 	}
 
+	@Override
+	public void getData(ByteBuffer dst) {
+		dst.put(data);
+	}
+
 	@Override
 	public int getDataSize() {
 		return data.length;
 	}
 
 	@Override
-	byte[] getBodyBytes() {
-		return data.clone();
+	void writeBodyTo(ByteBuffer dst) {
+		dst.put(data);
 	}
 
 	@Override
@@ -1,6 +1,8 @@
 package com.github.tutertlob.lazurite;
 
 import com.github.tutertlob.subghz.NoticePacketInterface;
+import com.github.tutertlob.subghz.TlvReader;
+import com.github.tutertlob.subghz.TlvWriter;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
@@ -8,18 +10,28 @@ import com.github.tutertlob.subghz.PacketImplementation;
 
 public final class LazNotice extends LazuritePacket implements NoticePacketInterface {
 
-	private final String notice;
+	// Rendered from noticeRecords on first use when the notice is TLV encoded.
+	private String notice;
+
+	private final ByteBuffer noticeRecords;
 
 	public LazNotice(ByteBuffer packetBytes) {
 		super(packetBytes);
 		byte[] stringByte = new byte[packetBytes.remaining()];
 		packetBytes.get(stringByte, 0, packetBytes.remaining());
-		notice = new String(stringByte, StandardCharsets.US_ASCII);
+		noticeRecords = isTlvEncoded() ? ByteBuffer.wrap(stringByte) : null;
+		notice = isTlvEncoded() ? null : new String(stringByte, StandardCharsets.US_ASCII);
 	}
 
 	public LazNotice(String notice) {
 		super(false, false);
 		this.notice = notice;
+		this.noticeRecords = null;
+	}
+
+	public LazNotice(TlvWriter notice) {
+		super(false, false, false, true);
+		this.noticeRecords = ByteBuffer.wrap(notice.toByteArray());
 	}
 
 	public static int capacityOfNotice() {
@@ -33,17 +45,27 @@ public final class LazNotice extends LazuritePacket implements NoticePacketInter
 
 	@Override
 	public String getNotice() {
+		if (notice == null)
+			notice = new TlvReader().wrap(noticeRecords).toString();
 		return notice;
 	}
 
 	@Override
-	byte[] getBodyBytes() {
-		return notice.getBytes(StandardCharsets.US_ASCII);
+	public TlvReader readNoticeParams(TlvReader reader) {
+		return reader.wrap(records(noticeRecords));
+	}
+
+	@Override
+	void writeBodyTo(ByteBuffer dst) {
+		if (noticeRecords != null)
+			dst.put(noticeRecords.array());
+		else
+			putAscii(dst, notice);
 	}
 
 	@Override
 	int getBodyLength() {
-		return notice.length();
+		return noticeRecords != null ? noticeRecords.capacity() : notice.length();
 	}
 
 	@Override
@@ -51,7 +73,7 @@ public final class LazNotice extends LazuritePacket implements NoticePacketInter
 		StringBuilder builder = new StringBuilder();
 		builder.append(super.toString())
 				.append("Lazurite Notice packet:")
-				.append("\n Notice: ").append(notice)
+				.append("\n Notice: ").append(getNotice())
 				.append("\n");
 		return builder.toString();
 	}
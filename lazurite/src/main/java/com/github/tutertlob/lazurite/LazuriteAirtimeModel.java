@@ -0,0 +1,38 @@
+package com.github.tutertlob.lazurite;
+
+import com.github.tutertlob.subghz.AirtimeModel;
+
+// Airtime of an IEEE 802.15.4g frame sent by the Lazurite driver at LazuriteParams.rate() kbps.
+public final class LazuriteAirtimeModel implements AirtimeModel {
+
+	// Preamble, SFD and PHR.
+	private static final int PHY_OVERHEAD_BYTES = 4 + 2 + 2;
+
+	private static final int MAC_HEADER_BYTES = 11;
+
+	private static final int FCS_BYTES = 2;
+
+	private final int rateKbps;
+
+	public LazuriteAirtimeModel(LazuriteParams params) {
+		this(params.rate());
+	}
+
+	public LazuriteAirtimeModel(int rateKbps) {
+		if (rateKbps != 50 && rateKbps != 100)
+			throw new IllegalArgumentException("The Lazurite rate must be 50 or 100 kbps.");
+
+		this.rateKbps = rateKbps;
+	}
+
+	@Override
+	public long airtimeNanos(int payloadLength) {
+		int bytes = PHY_OVERHEAD_BYTES + MAC_HEADER_BYTES + payloadLength + FCS_BYTES;
+		return bytes * 8L * 1000000L / rateKbps;
+	}
+
+	public int getRateKbps() {
+		return rateKbps;
+	}
+
+}
@@ -0,0 +1,83 @@
+package com.github.tutertlob.lazurite;
+
+import java.nio.ByteBuffer;
+
+import com.lapis_semi.lazurite.io.SUBGHZ_MAC;
+
+// The MAC header of a Lazurite capture record: every field of SUBGHZ_MAC in declaration order, big-endian,
+// with both addresses as 8 bytes. Sent frames carry only the PAN id and the short address they went to.
+final class LazuriteCapture {
+
+	static final int ADDR_BYTES = 8;
+
+	static final int MAC_BYTES = 2 + 12 + 2 + 2 + ADDR_BYTES * 2 + 2 + 2 + 2 + 1;
+
+	static final int DESTINATION_BYTES = 4;
+
+	private LazuriteCapture() {
+
+	}
+
+	static ByteBuffer encode(SUBGHZ_MAC mac) {
+		ByteBuffer buf = ByteBuffer.allocate(MAC_BYTES);
+		buf.putShort(mac.header);
+		buf.put(mac.frame_type).put(mac.sec_enb).put(mac.pending).put(mac.ack_req).put(mac.panid_comp)
+				.put(mac.seq_comp).put(mac.ielist).put(mac.tx_addr_type).put(mac.frame_ver).put(mac.rx_addr_type)
+				.put(mac.seq_num).put(mac.addr_type);
+		buf.putShort(mac.rx_panid).putShort(mac.tx_panid);
+		putAddr(buf, mac.rx_addr);
+		putAddr(buf, mac.tx_addr);
+		buf.putShort(mac.raw_len).putShort(mac.payload).putShort(mac.payload_len);
+		buf.put(mac.rssi);
+		buf.flip();
+		return buf;
+	}
+
+	private static void putAddr(ByteBuffer buf, byte[] addr) {
+		int length = addr == null ? 0 : Math.min(addr.length, ADDR_BYTES);
+		if (length > 0)
+			buf.put(addr, 0, length);
+		for (int i = length; i < ADDR_BYTES; i++) {
+			buf.put((byte) 0);
+		}
+	}
+
+	// Fills mac from the remaining bytes of buf, which must be what encode() gave.
+	static void decode(ByteBuffer buf, SUBGHZ_MAC mac) {
+		if (buf.remaining() != MAC_BYTES)
+			throw new IllegalArgumentException(String.format("Invalid Lazurite capture header length %d", buf.remaining()));
+
+		buf = buf.duplicate();
+		mac.header = buf.getShort();
+		mac.frame_type = buf.get();
+		mac.sec_enb = buf.get();
+		mac.pending = buf.get();
+		mac.ack_req = buf.get();
+		mac.panid_comp = buf.get();
+		mac.seq_comp = buf.get();
+		mac.ielist = buf.get();
+		mac.tx_addr_type = buf.get();
+		mac.frame_ver = buf.get();
+		mac.rx_addr_type = buf.get();
+		mac.seq_num = buf.get();
+		mac.addr_type = buf.get();
+		mac.rx_panid = buf.getShort();
+		mac.tx_panid = buf.getShort();
+		mac.rx_addr = new byte[ADDR_BYTES];
+		buf.get(mac.rx_addr);
+		mac.tx_addr = new byte[ADDR_BYTES];
+		buf.get(mac.tx_addr);
+		mac.raw_len = buf.getShort();
+		mac.payload = buf.getShort();
+		mac.payload_len = buf.getShort();
+		mac.rssi = buf.get();
+	}
+
+	static ByteBuffer encodeDestination(short rxPanId, short rxAddr) {
+		ByteBuffer buf = ByteBuffer.allocate(DESTINATION_BYTES);
+		buf.putShort(rxPanId).putShort(rxAddr);
+		buf.flip();
+		return buf;
+	}
+
+}
@@ -0,0 +1,38 @@
+package com.github.tutertlob.lazurite;
+
+import java.io.IOException;
+
+import com.lapis_semi.lazurite.io.SUBGHZ_MAC;
+
+// The calls LazuriteRadio makes to the driver of one Lazurite module, as Liblazurite offers them.
+// Each radio has a driver of its own, so another binding can be given for each module of a gateway.
+public interface LazuriteDriver {
+
+	public void init() throws IOException;
+
+	public void remove() throws IOException;
+
+	public void begin(byte ch, short panId, byte rate, byte pwr) throws IOException;
+
+	public void close() throws IOException;
+
+	public void rxEnable() throws IOException;
+
+	public void rxDisable() throws IOException;
+
+	public void setAddrType(byte addrType) throws IOException;
+
+	public void setTxRetry(byte txRetry) throws IOException;
+
+	public void setTxInterval(short txInterval) throws IOException;
+
+	public int available() throws IOException;
+
+	public int read(byte[] raw, short[] size) throws IOException;
+
+	// Fails with an IOException whose message contains "error=-110" when the receiver doesn't acknowledge.
+	public int send(short rxPanId, short rxAddr, byte[] data, short length) throws IOException;
+
+	public void decMac(SUBGHZ_MAC mac, byte[] raw, short size) throws IOException;
+
+}
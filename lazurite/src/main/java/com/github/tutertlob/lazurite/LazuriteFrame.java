@@ -3,7 +3,10 @@ package com.github.tutertlob.lazurite;
 import com.lapis_semi.lazurite.io.SUBGHZ_MAC;
 import com.github.tutertlob.subghz.SubGHzFrame;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 import java.lang.StringBuilder;
 import java.nio.ByteOrder;
@@ -35,13 +38,19 @@ public final class LazuriteFrame extends SubGHzFrame {
 	private final String dstAddr;
 
 	public LazuriteFrame(SUBGHZ_MAC mac, byte[] raw) {
+		this(mac, raw, mac.payload, mac.payload_len);
+	}
+
+	// The payload may lie elsewhere than the MAC header says, like one packet out of a received aggregate.
+	private LazuriteFrame(SUBGHZ_MAC mac, byte[] raw, int offset, int length) {
 		super();
 
 		macHeader = mac;
-		frameBuffer = Arrays.copyOfRange(raw, mac.payload, mac.payload + mac.payload_len);
+		frameBuffer = Arrays.copyOfRange(raw, offset, offset + length);
 		panId = null;
 		addr = null;
-		packet = LazuritePacket.newInstance(getPayloadBytes());
+		// Packets copy what they keep, so the frame bytes can be shared with them.
+		packet = LazuritePacket.newInstance(frameBuffer);
 
 		ByteBuffer little = ByteBuffer.wrap(macHeader.tx_addr);
 		little.order(ByteOrder.LITTLE_ENDIAN);
@@ -55,7 +64,8 @@ public final class LazuriteFrame extends SubGHzFrame {
 	public LazuriteFrame(short panId, short addr, LazuritePacket packet) {
 		super();
 
-		this.frameBuffer = getFrameBytesFrom(packet);
+		// Frames to be sent are encoded from the packet on demand.
+		this.frameBuffer = null;
 		this.panId = Short.valueOf(panId);
 		this.addr = Short.valueOf(addr);
 		this.macHeader = null;
@@ -64,19 +74,42 @@ public final class LazuriteFrame extends SubGHzFrame {
 		this.dstAddr = "";
 	}
 
-	private byte[] getFrameBytesFrom(LazuritePacket packet) {
+	// Splits a received aggregate into one frame per packet, as if each had come in on its own.
+	// Any other frame comes back on its own.
+	public List<LazuriteFrame> unpack() {
+		if (!(packet instanceof LazAggregate) || Objects.isNull(frameBuffer))
+			return Collections.singletonList(this);
+
+		List<byte[]> raws = ((LazAggregate) packet).getPacketRaws();
+		List<LazuriteFrame> frames = new ArrayList<>(raws.size());
+		for (byte[] raw : raws) {
+			frames.add(new LazuriteFrame(macHeader, raw, 0, raw.length));
+		}
+		return frames;
+	}
+
+	private byte[] frameBytes() {
 		// frame byte array is equall with packet(payload) byte array for this version.
-		return packet.getPacketBytes();
+		return Objects.nonNull(frameBuffer) ? frameBuffer.clone() : packet.getPacketBytes();
 	}
 
 	@Override
 	public byte[] getFrameBytes() {
-		return frameBuffer.clone();
+		return frameBytes();
 	}
 
 	@Override
 	public int getFrameLength() {
-		return frameBuffer.length;
+		return Objects.nonNull(frameBuffer) ? frameBuffer.length : packet.getPacketLength();
+	}
+
+	@Override
+	public void writeTo(ByteBuffer dst) {
+		if (Objects.nonNull(frameBuffer)) {
+			dst.put(frameBuffer);
+		} else {
+			packet.writeTo(dst);
+		}
 	}
 
 	public SUBGHZ_MAC getMacHeader() {
@@ -92,13 +125,18 @@ public final class LazuriteFrame extends SubGHzFrame {
 	public byte[] getPayloadBytes() {
 		// frame byte array is handled equally with packet(payload) byte array for this version.
 		// This means a frame has no header.
-		return frameBuffer.clone();
+		return frameBytes();
+	}
+
+	@Override
+	public ByteBuffer getPayloadBuffer() {
+		return ByteBuffer.wrap(Objects.nonNull(frameBuffer) ? frameBuffer : packet.getPacketBytes()).asReadOnlyBuffer();
 	}
 
 	@Override
 	public int getPayloadLength() {
 		// frame byte array is handled equally with packet(payload) byte array for this version.
-		return frameBuffer.length;
+		return getFrameLength();
 	}
 
 	@Override
@@ -115,6 +153,17 @@ public final class LazuriteFrame extends SubGHzFrame {
 		}
 	}
 
+	public short getSenderPanId() {
+		return getMacHeader().tx_panid;
+	}
+
+	// The short address of the sender, as given to LazuriteUtils.sendData() to reply to it.
+	public short getSenderAddr() {
+		ByteBuffer little = ByteBuffer.wrap(getMacHeader().tx_addr);
+		little.order(ByteOrder.LITTLE_ENDIAN);
+		return little.getShort();
+	}
+
 	public short getDestinationPanId() {
 		return Objects.requireNonNull(panId, "PanId is not set.").shortValue();
 	}
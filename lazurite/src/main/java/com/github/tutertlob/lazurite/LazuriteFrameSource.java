@@ -0,0 +1,11 @@
+package com.github.tutertlob.lazurite;
+
+import java.io.IOException;
+
+interface LazuriteFrameSource {
+
+	// Returns null right away when the driver has no frame. A frame that can't be decoded is an
+	// IllegalArgumentException, and the driver failing an IOException.
+	public LazuriteFrame pollFrame() throws IOException;
+
+}
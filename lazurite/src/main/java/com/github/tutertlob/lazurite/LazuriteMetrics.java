@@ -0,0 +1,110 @@
+package com.github.tutertlob.lazurite;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.tutertlob.subghz.LatencyHistogram;
+import com.github.tutertlob.subghz.LatencySnapshot;
+import com.github.tutertlob.subghz.RadioMetrics;
+
+// Registered as an MXBean by LazuriteRadio.begin() under com.github.tutertlob.lazurite:type=LazuriteRadio.
+// The send latency counted by RadioMetrics runs from a frame being queued until the driver returns,
+// duty-cycle wait included; the time blocked in the driver and the duty-cycle wait are also kept apart.
+public final class LazuriteMetrics extends RadioMetrics implements LazuriteMetricsMXBean {
+
+	private final LatencyHistogram sendBlocked = new LatencyHistogram();
+
+	private final LatencyHistogram dutyCycleWait = new LatencyHistogram();
+
+	private final LongAdder noAcks = new LongAdder();
+
+	private final LongAdder readFailures = new LongAdder();
+
+	private final LazuriteRadio radio;
+
+	LazuriteMetrics(LazuriteRadio radio) {
+		this.radio = radio;
+	}
+
+	void sendBlocked(long nanos) {
+		sendBlocked.record(nanos);
+	}
+
+	void dutyCycleWaited(long nanos) {
+		dutyCycleWait.record(nanos);
+	}
+
+	void noAck() {
+		noAcks.increment();
+	}
+
+	void readFailed() {
+		readFailures.increment();
+	}
+
+	@Override
+	public LatencySnapshot getSendBlocked() {
+		return sendBlocked.snapshot();
+	}
+
+	public LatencyHistogram getSendBlockedHistogram() {
+		return sendBlocked;
+	}
+
+	@Override
+	public LatencySnapshot getDutyCycleWait() {
+		return dutyCycleWait.snapshot();
+	}
+
+	public LatencyHistogram getDutyCycleWaitHistogram() {
+		return dutyCycleWait;
+	}
+
+	@Override
+	public long getNoAckCount() {
+		return noAcks.sum();
+	}
+
+	@Override
+	public long getReadFailures() {
+		return readFailures.sum();
+	}
+
+	@Override
+	public int getUnpackedFrameDepth() {
+		return radio.getUnpackedFrameDepth();
+	}
+
+	@Override
+	public int getReceiveQueueDepth() {
+		return radio.getReceiveQueueDepth();
+	}
+
+	@Override
+	public long getReceiveQueueDrops() {
+		return radio.getDroppedFrames();
+	}
+
+	@Override
+	public int getTransmitQueueDepth() {
+		return radio.getTransmitQueueDepth();
+	}
+
+	@Override
+	public void reset() {
+		super.reset();
+		sendBlocked.reset();
+		dutyCycleWait.reset();
+		noAcks.reset();
+		readFailures.reset();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("sent=%s received=%s sendFailures=%d parseFailures=%d noAcks=%d readFailures=%d "
+				+ "unpacked=%d received=%d transmit=%d sendBlocked={%s} dutyCycleWait={%s}", getFramesSent(),
+				getFramesReceived(), getSendFailures(), getParseFailures(), getNoAckCount(), getReadFailures(),
+				getUnpackedFrameDepth(), getReceiveQueueDepth(), getTransmitQueueDepth(), getSendBlocked(),
+				getDutyCycleWait());
+	}
+
+}
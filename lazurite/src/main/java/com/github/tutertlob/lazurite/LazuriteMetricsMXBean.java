@@ -0,0 +1,31 @@
+package com.github.tutertlob.lazurite;
+
+import com.github.tutertlob.subghz.LatencySnapshot;
+import com.github.tutertlob.subghz.RadioMetricsMXBean;
+
+public interface LazuriteMetricsMXBean extends RadioMetricsMXBean {
+
+	// Time spent in the driver's send, which includes its retries until the frame is acknowledged.
+	public LatencySnapshot getSendBlocked();
+
+	// Time spent waiting for the duty-cycle budget before sending.
+	public LatencySnapshot getDutyCycleWait();
+
+	// Frames the receiver didn't acknowledge after all the driver's retries (error -110).
+	public long getNoAckCount();
+
+	public long getReadFailures();
+
+	// Packets of received aggregates pollFrame() hasn't returned yet.
+	public int getUnpackedFrameDepth();
+
+	// Frames the receive thread has queued which haven't been read yet.
+	public int getReceiveQueueDepth();
+
+	// Frames dropped from a full receive queue.
+	public long getReceiveQueueDrops();
+
+	// Frames waiting for the transmit thread.
+	public int getTransmitQueueDepth();
+
+}
@@ -1,10 +1,12 @@
 package com.github.tutertlob.lazurite;
 
 import com.github.tutertlob.subghz.PacketImplementation;
+import com.github.tutertlob.subghz.PacketLayout;
 
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.lang.StringBuilder;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 
 public abstract class LazuritePacket extends PacketImplementation {
@@ -19,7 +21,14 @@ public abstract class LazuritePacket extends PacketImplementation {
 
 	static final int PACKET_BODY_I = PACKET_HEADER_SIZE;
 
-	static final byte PACKET_FLAG_MASK = 0x18;
+	static final byte PACKET_FLAG_MASK = (byte) 0xF8;
+
+	// Lazurite has no sequence number in its header, so a packet which needs one carries it right after the header.
+	static final byte PACKET_FLAG_MASK_SEQ = (byte) 0x80;
+
+	static final byte PACKET_FLAG_MASK_TLV = 0x40;
+
+	static final byte PACKET_FLAG_MASK_COMP = 0x20;
 
 	static final byte PACKET_FLAG_MASK_FRAG = 0x10;
 
@@ -29,19 +38,47 @@ public abstract class LazuritePacket extends PacketImplementation {
 
 	static final int PACKET_MAX_LENGTH = LazuriteFrame.PAYLOAD_MAX_LENGTH-PACKET_HEADER_SIZE;
 
+	public static final PacketLayout LAYOUT = new PacketLayout(PACKET_FLAG_I, PACKET_BODY_I, PACKET_FLAG_MASK_SEQ);
+
 	private final boolean fragmented;
 
 	private final boolean responseRequested;
 
+	private final boolean compressed;
+
+	private final boolean tlvEncoded;
+
+	private int seqNum = PacketLayout.NO_SEQUENCE_NUMBER;
+
 	public LazuritePacket(ByteBuffer packetBytes) {
 		byte header = packetBytes.get();
 		fragmented = (header & PACKET_FLAG_MASK_FRAG) != 0 ? true : false;
 		responseRequested = (header & PACKET_FLAG_MASK_ACK) != 0 ? true : false;
+		compressed = (header & PACKET_FLAG_MASK_COMP) != 0 ? true : false;
+		tlvEncoded = (header & PACKET_FLAG_MASK_TLV) != 0 ? true : false;
+		if ((header & PACKET_FLAG_MASK_SEQ) != 0) {
+			if (!packetBytes.hasRemaining()) {
+				String msg = "The packet is too short to contain its sequence number.";
+				logger.log(Level.WARNING, msg);
+				throw new IllegalArgumentException(msg);
+			}
+			seqNum = packetBytes.get() & 0xFF;
+		}
 	}
 
 	public LazuritePacket(boolean fragmented, boolean responseRequested) {
+		this(fragmented, responseRequested, false);
+	}
+
+	public LazuritePacket(boolean fragmented, boolean responseRequested, boolean compressed) {
+		this(fragmented, responseRequested, compressed, false);
+	}
+
+	LazuritePacket(boolean fragmented, boolean responseRequested, boolean compressed, boolean tlvEncoded) {
 		this.fragmented = fragmented;
 		this.responseRequested = responseRequested;
+		this.compressed = compressed;
+		this.tlvEncoded = tlvEncoded;
 	}
 
 	public static LazuritePacket newInstance(byte[] packetRaw) {
@@ -56,6 +93,8 @@ public abstract class LazuritePacket extends PacketImplementation {
 				return new LazAck(raw);
 			case NOTICE:
 				return new LazNotice(raw);
+			case AGGREGATE:
+				return new LazAggregate(raw);
 			default:
 				logger.log(Level.WARNING, "Unknown packet type.");
 				throw new IllegalArgumentException("Unknown packet type.");
@@ -72,27 +111,46 @@ public abstract class LazuritePacket extends PacketImplementation {
 
 	@Override
 	public final byte[] getPacketBytes() {
-		int size = sizeOfHeader() + getBodyLength();
-		ByteBuffer buf = ByteBuffer.allocate(size);
+		ByteBuffer buf = ByteBuffer.allocate(getPacketLength());
+		writeTo(buf);
+		return buf.array();
+	}
+
+	@Override
+	public final void writeTo(ByteBuffer dst) {
+		if (dst.remaining() < getPacketLength())
+			throw new BufferOverflowException();
 
-		byte[] header = new byte[sizeOfHeader()];
-		byte type = getPacketType().id();
 		byte flag = 0;
 		flag |= fragmented ? PACKET_FLAG_MASK_FRAG : 0;
 		flag |= responseRequested ? PACKET_FLAG_MASK_ACK : 0;
-		header[PACKET_FLAG_I] = 0;
-		header[PACKET_TYPE_I] = 0;
-		header[PACKET_FLAG_I] |= flag;
-		header[PACKET_TYPE_I] |= type;
+		flag |= compressed ? PACKET_FLAG_MASK_COMP : 0;
+		flag |= tlvEncoded ? PACKET_FLAG_MASK_TLV : 0;
+		flag |= hasSeqNum() ? PACKET_FLAG_MASK_SEQ : 0;
+
+		// The flag and the packet type share the same header byte.
+		dst.put((byte) (flag | getPacketType().id()));
+		if (hasSeqNum())
+			dst.put((byte) seqNum);
+		writeBodyTo(dst);
+	}
 
-		buf.put(header).put(getBodyBytes());
+	@Override
+	public final int getPacketLength() {
+		return sizeOfHeader() + (hasSeqNum() ? 1 : 0) + getBodyLength();
+	}
 
-		return buf.array();
+	private boolean hasSeqNum() {
+		return seqNum != PacketLayout.NO_SEQUENCE_NUMBER;
 	}
 
 	@Override
-	public final int getPacketLength() {
-		return sizeOfHeader() + getBodyLength();
+	public final int getSequenceNumber() {
+		return seqNum;
+	}
+
+	public final void setSeqNum(byte seqNo) {
+		this.seqNum = seqNo & 0xFF;
 	}
 
 	public final boolean isFragmented() {
@@ -103,7 +161,25 @@ public abstract class LazuritePacket extends PacketImplementation {
 		return responseRequested;
 	}
 
-	abstract byte[] getBodyBytes();
+	public final boolean isCompressed() {
+		return compressed;
+	}
+
+	public final boolean isTlvEncoded() {
+		return tlvEncoded;
+	}
+
+	// The TLV records of a Command, Ack or Notice packet, checked to be there.
+	static ByteBuffer records(ByteBuffer records) {
+		if (records == null) {
+			String msg = "The parameters of this packet aren't TLV encoded.";
+			logger.log(Level.WARNING, msg);
+			throw new IllegalStateException(msg);
+		}
+		return records;
+	}
+
+	abstract void writeBodyTo(ByteBuffer dst);
 
 	abstract int getBodyLength();
 
@@ -113,6 +189,9 @@ public abstract class LazuritePacket extends PacketImplementation {
 		builder.append("Lazurite Packet Header:")
 				.append("\n Flag response requested: ").append(responseRequested)
 				.append("\n Flag fragmented:").append(fragmented)
+				.append("\n Flag compressed:").append(compressed)
+				.append("\n Flag TLV encoded:").append(tlvEncoded)
+				.append("\n Sequence Number:").append(seqNum)
 				.append("\n");
 		return builder.toString();
 	}
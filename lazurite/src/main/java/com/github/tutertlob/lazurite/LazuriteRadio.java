@@ -0,0 +1,863 @@
+package com.github.tutertlob.lazurite;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.ObjectName;
+
+import com.github.tutertlob.subghz.CaptureRecord;
+import com.github.tutertlob.subghz.CaptureWriter;
+import com.github.tutertlob.subghz.DuplicateFilter;
+import com.github.tutertlob.subghz.DutyCycleScheduler;
+import com.github.tutertlob.subghz.LinkQualityTracker;
+import com.github.tutertlob.subghz.Lzss;
+import com.github.tutertlob.subghz.PacketAggregator;
+import com.github.tutertlob.subghz.PacketLayout;
+import com.github.tutertlob.subghz.RadioMetrics;
+import com.github.tutertlob.subghz.ReliableControl;
+import com.github.tutertlob.subghz.ReliableReceiver;
+import com.github.tutertlob.subghz.ReliableSender;
+import com.github.tutertlob.subghz.StreamTransfer;
+import com.github.tutertlob.subghz.TlvWriter;
+import com.lapis_semi.lazurite.io.SUBGHZ_MAC;
+
+// One Lazurite module. Each radio has its own driver, a receive thread polling it into a bounded queue,
+// a transmit thread sending the frames queued for it, and its own settings and metrics,
+// so a gateway can run modules on several channels or PANs side by side.
+// Failures are thrown as IOExceptions; a frame the receiver didn't acknowledge is a NO_ACK status.
+public final class LazuriteRadio implements Closeable {
+
+	private static final Logger logger = Logger.getLogger(LazuriteRadio.class.getName());
+
+	// What the driver reports when the receiver didn't acknowledge a frame after all retries.
+	public static final int NO_ACK = -110;
+
+	public static final int DEFAULT_TRANSMIT_CAPACITY = 64;
+
+	private static final class Transmission {
+
+		final short rxPanId;
+
+		final short rxAddr;
+
+		final LazuriteFrame frame;
+
+		final long queuedNanos = System.nanoTime();
+
+		final CompletableFuture<Integer> future = new CompletableFuture<>();
+
+		Transmission(short rxPanId, short rxAddr, LazuriteFrame frame) {
+			this.rxPanId = rxPanId;
+			this.rxAddr = rxAddr;
+			this.frame = frame;
+		}
+	}
+
+	// Queued by close() after the frames still to be sent.
+	private static final Transmission END = new Transmission((short) 0, (short) 0, null);
+
+	private final LazuriteDriver driver;
+
+	private final int receiveCapacity;
+
+	private final LazuriteWaitStrategy waitStrategy;
+
+	// Null gives the receive and transmit threads their default names, as daemons.
+	private final ThreadFactory threadFactory;
+
+	private final BlockingQueue<Transmission> transmitQueue;
+
+	// Only the transmit thread encodes frames.
+	private final ByteBuffer txBuffer = ByteBuffer.allocate(LazuriteFrame.PAYLOAD_MAX_LENGTH);
+
+	private final LazuriteMetrics metrics = new LazuriteMetrics(this);
+
+	private volatile boolean open = false;
+
+	private volatile LazuriteReceiver receiver;
+
+	private Thread transmitter;
+
+	private ObjectName metricsName;
+
+	// Set up by begin() for the configured rate. Null leaves pacing to the driver.
+	private volatile DutyCycleScheduler transmitScheduler = null;
+
+	// The packets of a received aggregate which the receive thread hasn't queued yet.
+	private final Queue<LazuriteFrame> unpackedFrames = new ConcurrentLinkedQueue<>();
+
+	// Batches are kept per destination, keyed by PAN id and address.
+	private volatile PacketAggregator<Integer, LazuritePacket> aggregator = null;
+
+	private final Object aggregationLock = new Object();
+
+	private volatile boolean compressionEnabled = false;
+
+	private volatile DuplicateFilter duplicateFilter = null;
+
+	private volatile LinkQualityTracker linkQuality = null;
+
+	private volatile Executor transferExecutor = null;
+
+	// Null captures nothing.
+	private volatile CaptureWriter capture = null;
+
+	// Reliable transfers, keyed by PAN id and address like the aggregation batches.
+	private final Map<Integer, ReliableSender> reliableSenders = new ConcurrentHashMap<>();
+
+	private volatile ReliableReceiver<Integer, LazuriteFrame> reliableReceiver = null;
+
+	// The module Liblazurite binds. Only one radio at a time can have begun on it.
+	public LazuriteRadio() {
+		this(new LiblazuriteDriver());
+	}
+
+	public LazuriteRadio(LazuriteDriver driver) {
+		this(driver, LazuriteReceiver.DEFAULT_CAPACITY, DEFAULT_TRANSMIT_CAPACITY, LazuriteWaitStrategy.DEFAULT);
+	}
+
+	public LazuriteRadio(LazuriteDriver driver, int receiveCapacity, int transmitCapacity,
+			LazuriteWaitStrategy waitStrategy) {
+		this(driver, receiveCapacity, transmitCapacity, waitStrategy, null);
+	}
+
+	// threadFactory makes the receive and transmit threads, e.g. to name, prioritize or pin them.
+	public LazuriteRadio(LazuriteDriver driver, int receiveCapacity, int transmitCapacity,
+			LazuriteWaitStrategy waitStrategy, ThreadFactory threadFactory) {
+		if (driver == null)
+			throw new NullPointerException("The argument driver is null.");
+		if (waitStrategy == null)
+			throw new NullPointerException("The argument waitStrategy is null.");
+		if (receiveCapacity < 1 || transmitCapacity < 1)
+			throw new IllegalArgumentException("The capacities of the queues must be positive.");
+
+		this.driver = driver;
+		this.receiveCapacity = receiveCapacity;
+		this.waitStrategy = waitStrategy;
+		this.threadFactory = threadFactory;
+		this.transmitQueue = new LinkedBlockingQueue<>(transmitCapacity);
+	}
+
+	// Opens the module Liblazurite binds, which fails while another radio has it open.
+	// Any other module needs a radio opened with a LazuriteDriver of its own.
+	public static LazuriteRadio open(LazuriteParams params) throws IOException {
+		LazuriteRadio radio = new LazuriteRadio();
+		radio.begin(params);
+		return radio;
+	}
+
+	public static LazuriteRadio open(LazuriteDriver driver, LazuriteParams params) throws IOException {
+		LazuriteRadio radio = new LazuriteRadio(driver);
+		radio.begin(params);
+		return radio;
+	}
+
+	public synchronized void begin(LazuriteParams params) throws IOException {
+		if (params == null)
+			throw new NullPointerException("The argument params is null.");
+		if (open)
+			throw new IllegalStateException("The radio has already begun.");
+
+		logger.info(String.format("LazuriteRadio.begin ch=%d panId=%04x", params.ch(), params.myPanId()));
+		driver.init();
+
+		try {
+			driver.setAddrType(params.addrType());
+			driver.setTxRetry(params.txRetry());
+			driver.setTxInterval(params.txInterval());
+		} catch (IOException e) {
+			logger.log(Level.WARNING, e.getMessage(), e);
+		}
+
+		try {
+			driver.begin(params.ch(), params.myPanId(), params.rate(), params.pwr());
+			driver.rxEnable();
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Couldn't setup the lazurite interface.", e);
+			try {
+				driver.remove();
+			} catch (IOException suppressed) {
+				e.addSuppressed(suppressed);
+			}
+			throw e;
+		}
+		transmitScheduler = new DutyCycleScheduler(new LazuriteAirtimeModel(params));
+
+		open = true;
+		String name = String.format("ch%d-pan%04x", params.ch(), params.myPanId());
+		receiver = new LazuriteReceiver(this::pollDriver, receiveCapacity, waitStrategy);
+		if (threadFactory != null) {
+			receiver.start(threadFactory);
+			transmitter = threadFactory.newThread(this::transmit);
+		} else {
+			receiver.start();
+			transmitter = new Thread(this::transmit, "LazuriteRadio-" + name);
+			transmitter.setDaemon(true);
+		}
+		transmitter.start();
+		metricsName = RadioMetrics.register(metrics, LazuriteMetricsMXBean.class, "com.github.tutertlob.lazurite",
+				"LazuriteRadio", name);
+	}
+
+	// Packets still waiting for aggregation and frames already queued are sent first.
+	@Override
+	public synchronized void close() throws IOException {
+		if (!open)
+			return;
+
+		disableAggregation();
+		disableReliableReceive();
+		for (ReliableSender sender : reliableSenders.values()) {
+			sender.close();
+		}
+		reliableSenders.clear();
+
+		open = false;
+		receiver.close();
+		try {
+			transmitQueue.put(END);
+			transmitter.join();
+		} catch (InterruptedException e) {
+			logger.log(Level.WARNING, "Interrupted while waiting for the transmit thread to exit.", e);
+			transmitter.interrupt();
+			Thread.currentThread().interrupt();
+		}
+		failQueued();
+		RadioMetrics.unregister(metricsName, metrics);
+		metricsName = null;
+
+		try {
+			driver.rxDisable();
+			driver.close();
+		} finally {
+			driver.remove();
+		}
+	}
+
+	public boolean isOpen() {
+		return open;
+	}
+
+	public LazuriteMetrics getMetrics() {
+		return metrics;
+	}
+
+	public void setTransmitScheduler(DutyCycleScheduler scheduler) {
+		transmitScheduler = scheduler;
+	}
+
+	public DutyCycleScheduler getTransmitScheduler() {
+		return transmitScheduler;
+	}
+
+	private LazuriteReceiver receiver() {
+		LazuriteReceiver current = receiver;
+		if (current == null)
+			throw new IllegalStateException("The radio hasn't begun.");
+		return current;
+	}
+
+	// Blocks until a frame arrives. Returns null if the calling thread is interrupted while waiting.
+	// Once the receive thread has stopped, on close() or a failure, the frames still queued come out first,
+	// then an EOFException.
+	public LazuriteFrame readFrame() throws IOException {
+		try {
+			return receiver().take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+
+	public LazuriteFrame readFrame(long timeout, TimeUnit unit) throws InterruptedException, IOException {
+		return receiver().poll(timeout, unit);
+	}
+
+	// Returns null right away if no frame has been received.
+	public LazuriteFrame pollFrame() throws IOException {
+		return receiver().poll();
+	}
+
+	int getUnpackedFrameDepth() {
+		return unpackedFrames.size();
+	}
+
+	int getReceiveQueueDepth() {
+		LazuriteReceiver current = receiver;
+		return current == null ? 0 : current.getQueuedFrames();
+	}
+
+	int getTransmitQueueDepth() {
+		return transmitQueue.size();
+	}
+
+	long getDroppedFrames() {
+		LazuriteReceiver current = receiver;
+		return current == null ? 0 : current.getDroppedFrames();
+	}
+
+	// Called by the receive thread.
+	// Aggregates are unpacked here, so callers only ever see the packets they carried.
+	// The control packets of reliable transfers are consumed here too, and their segments come out in order.
+	private LazuriteFrame pollDriver() throws IOException {
+		LazuriteFrame unpacked;
+		while ((unpacked = unpackedFrames.poll()) == null) {
+			LazuriteFrame frame = readAvailableFrame();
+			if (frame == null)
+				return null;
+
+			for (LazuriteFrame packet : frame.unpack()) {
+				if (!consumeReliable(packet))
+					unpackedFrames.add(packet);
+			}
+		}
+		return unpacked;
+	}
+
+	private boolean consumeReliable(LazuriteFrame frame) {
+		LazuritePacket packet = frame.getPacket();
+		Integer peer = peerKey(frame.getSenderPanId(), frame.getSenderAddr());
+		if (packet instanceof LazAck) {
+			ReliableSender sender = reliableSenders.get(peer);
+			return sender != null ? sender.onAck((LazAck) packet) : ReliableControl.isAck((LazAck) packet);
+		}
+
+		ReliableReceiver<Integer, LazuriteFrame> receiver = reliableReceiver;
+		if (receiver == null)
+			return false;
+		// Frames are addressed, so syncs name no receiver.
+		if (packet instanceof LazCommand)
+			return receiver.onSync(peer, (LazCommand) packet, null);
+		if (ReliableControl.isSegment(packet)) {
+			receiver.onSegment(peer, packet.getSequenceNumber(), packet.isFragmented(), frame);
+			return true;
+		}
+		return false;
+	}
+
+	private static Integer peerKey(short panId, short addr) {
+		return Integer.valueOf(((panId & 0xFFFF) << 16) | (addr & 0xFFFF));
+	}
+
+	public static long linkKey(short panId, short addr) {
+		return peerKey(panId, addr).longValue() & 0xFFFFFFFFL;
+	}
+
+	// An IOException means the driver failed, and stops the receive thread.
+	// An IllegalArgumentException only skips a frame which couldn't be decoded.
+	private LazuriteFrame readAvailableFrame() throws IOException {
+		while (true) {
+			byte[] raw = new byte[256];
+			short[] size = new short[1];
+			int length;
+
+			try {
+				if (driver.available() == 0)
+					return null;
+				length = driver.read(raw, size);
+				logger.log(Level.FINE, String.format("Read a frame: length=%d, size=%d", length, size[0]));
+				assert length == (int)size[0] : "Read size is different from length.";
+			} catch (IOException e) {
+				metrics.readFailed();
+				logger.log(Level.SEVERE, "Reading data from the Lazurite wireless module failed.", e);
+				throw e;
+			}
+
+			LazuriteFrame frame;
+			try {
+				SUBGHZ_MAC mac = new SUBGHZ_MAC();
+				driver.decMac(mac, raw, size[0]);
+				CaptureWriter capture = this.capture;
+				if (capture != null)
+					capture.append(CaptureRecord.Direction.RECEIVED, CaptureRecord.Radio.LAZURITE,
+							LazuriteCapture.encode(mac), ByteBuffer.wrap(raw, 0, size[0]));
+				trackLinkQuality(mac);
+				// Moves on to the next frame the driver holds, if any.
+				if (isDuplicate(mac))
+					continue;
+				frame = new LazuriteFrame(mac, raw);
+			} catch (IOException e) {
+				metrics.parseFailed();
+				logger.log(Level.WARNING, "Decoding MAC flame header failed. This frame data may be broken.", e);
+				throw new IllegalArgumentException("Frame couldn't be re-constructed from raw byte array.", e);
+			}
+
+			metrics.frameReceived(frame.getPacket().getPacketType().id(), frame.getFrameLength());
+			return frame;
+		}
+	}
+
+	// The driver retransmits a frame until it is acknowledged, so an ACK lost on the way back delivers the frame
+	// again with the same MAC sequence number. Enabled, those copies are dropped before any packet is parsed.
+	public void enableDuplicateFilter(long expiry, TimeUnit unit) {
+		duplicateFilter = new DuplicateFilter(expiry, unit, DuplicateFilter.DEFAULT_MAX_SENDERS);
+	}
+
+	public void disableDuplicateFilter() {
+		duplicateFilter = null;
+	}
+
+	public DuplicateFilter getDuplicateFilter() {
+		return duplicateFilter;
+	}
+
+	// Tracks the RSSI and the loss of every node heard from, on the receive thread.
+	// Nodes are keyed by linkKey() of their PAN id and short address.
+	public LinkQualityTracker enableLinkQuality() {
+		LinkQualityTracker tracker = new LinkQualityTracker();
+		linkQuality = tracker;
+		return tracker;
+	}
+
+	public void disableLinkQuality() {
+		linkQuality = null;
+	}
+
+	public LinkQualityTracker getLinkQuality() {
+		return linkQuality;
+	}
+
+	// Frames received and sent from now on are appended to capture; null stops capturing.
+	// The capture is not closed here. A LazuriteRadio over a LazuriteReplayDriver plays it back.
+	public void setCapture(CaptureWriter capture) {
+		this.capture = capture;
+	}
+
+	public CaptureWriter getCapture() {
+		return capture;
+	}
+
+	private void trackLinkQuality(SUBGHZ_MAC mac) {
+		LinkQualityTracker tracker = linkQuality;
+		if (tracker == null)
+			return;
+		int seqNum = mac.seq_comp != 0 ? PacketLayout.NO_SEQUENCE_NUMBER : mac.seq_num & 0xFF;
+		ByteBuffer little = ByteBuffer.wrap(mac.tx_addr);
+		little.order(ByteOrder.LITTLE_ENDIAN);
+		tracker.update(linkKey(mac.tx_panid, little.getShort()), seqNum, mac.rssi);
+	}
+
+	private boolean isDuplicate(SUBGHZ_MAC mac) {
+		DuplicateFilter filter = duplicateFilter;
+		// A frame with its sequence number compressed away can't be told from its copies.
+		if (filter == null || mac.seq_comp != 0)
+			return false;
+		ByteBuffer little = ByteBuffer.wrap(mac.tx_addr);
+		little.order(ByteOrder.LITTLE_ENDIAN);
+		long sender = little.getLong() ^ ((long) (mac.tx_panid & 0xFFFF) << 48);
+		if (!filter.isDuplicate(sender, mac.seq_num))
+			return false;
+		logger.log(Level.FINE, String.format("Dropped a duplicate of frame #%d.", mac.seq_num & 0xFF));
+		return true;
+	}
+
+	// Queues frame for the transmit thread, blocking while the queue is full.
+	// The future completes with what the driver returned once the frame is on the air, with NO_ACK if
+	// the receiver didn't acknowledge it, or fails with an IOException.
+	public CompletableFuture<Integer> sendFrameAsync(short rxPanId, short rxAddr, LazuriteFrame frame) {
+		if (frame == null)
+			throw new NullPointerException("The argument frame is null.");
+
+		Transmission transmission = new Transmission(rxPanId, rxAddr, frame);
+		if (!open) {
+			transmission.future.completeExceptionally(new IOException("The radio isn't open."));
+			return transmission.future;
+		}
+		try {
+			transmitQueue.put(transmission);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			transmission.future.completeExceptionally(
+					new InterruptedIOException("Interrupted while waiting for room in the transmit queue."));
+			return transmission.future;
+		}
+		// Raced with close(), which may have drained the queue already.
+		if (!open && transmitQueue.remove(transmission))
+			transmission.future.completeExceptionally(new IOException("The radio has been closed."));
+		return transmission.future;
+	}
+
+	// Blocks until frame is on the air. Returns what the driver returned, or NO_ACK.
+	public int sendFrame(short rxPanId, short rxAddr, LazuriteFrame frame) throws IOException {
+		return await(sendFrameAsync(rxPanId, rxAddr, frame));
+	}
+
+	private static int await(CompletableFuture<Integer> future) throws IOException {
+		try {
+			return future.get().intValue();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a frame to be sent.");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			throw new IOException(e.getCause());
+		}
+	}
+
+	private void transmit() {
+		while (true) {
+			Transmission transmission;
+			try {
+				transmission = transmitQueue.take();
+			} catch (InterruptedException e) {
+				break;
+			}
+			if (transmission == END)
+				break;
+			transmit(transmission);
+		}
+		logger.log(Level.INFO, "LazuriteRadio transmit thread is going to exit since it has been closed.");
+	}
+
+	private void transmit(Transmission transmission) {
+		short rxPanId = transmission.rxPanId;
+		short rxAddr = transmission.rxAddr;
+		try {
+			txBuffer.clear();
+			transmission.frame.writeTo(txBuffer);
+			CaptureWriter capture = this.capture;
+			if (capture != null)
+				capture.append(CaptureRecord.Direction.SENT, CaptureRecord.Radio.LAZURITE,
+						LazuriteCapture.encodeDestination(rxPanId, rxAddr),
+						ByteBuffer.wrap(txBuffer.array(), 0, txBuffer.position()));
+			long start = System.nanoTime();
+			DutyCycleScheduler scheduler = transmitScheduler;
+			if (scheduler != null) {
+				scheduler.acquire(txBuffer.position());
+			}
+			long sending = System.nanoTime();
+			metrics.dutyCycleWaited(sending - start);
+			int ret;
+			try {
+				ret = driver.send(rxPanId, rxAddr, txBuffer.array(), (short)txBuffer.position());
+			} finally {
+				metrics.sendBlocked(System.nanoTime() - sending);
+			}
+			metrics.frameSent(transmission.frame.getPacket().getPacketType().id(), txBuffer.position(),
+					System.nanoTime() - transmission.queuedNanos);
+			logger.log(Level.FINE, String.format("Sending Frame to rxPanid=%x rxAddr=%x resulted in ret=%d", rxPanId, rxAddr, ret));
+			transmission.future.complete(Integer.valueOf(ret));
+		} catch (IOException e) {
+			metrics.sendFailed();
+			if (e.getMessage() != null && e.getMessage().contains("error=" + NO_ACK)) {
+				metrics.noAck();
+				logger.log(Level.WARNING, String.format("The sensor %x %x didn't responde.", rxPanId, rxAddr), e);
+				transmission.future.complete(Integer.valueOf(NO_ACK));
+			} else {
+				logger.log(Level.SEVERE, "Sending data over the Lazurite wireless module failed.", e);
+				transmission.future.completeExceptionally(e);
+			}
+		} catch (InterruptedException e) {
+			// Closing gave up waiting.
+			metrics.sendFailed();
+			Thread.currentThread().interrupt();
+			transmission.future.completeExceptionally(
+					new InterruptedIOException("Interrupted while waiting for the duty-cycle budget."));
+		} catch (RuntimeException e) {
+			metrics.sendFailed();
+			logger.log(Level.SEVERE, "A frame couldn't be encoded.", e);
+			transmission.future.completeExceptionally(new IOException("A frame couldn't be encoded.", e));
+		}
+	}
+
+	private void failQueued() {
+		List<Transmission> queued = new ArrayList<>();
+		transmitQueue.drainTo(queued);
+		for (Transmission transmission : queued) {
+			if (transmission != END)
+				transmission.future.completeExceptionally(new IOException("The radio has been closed."));
+		}
+	}
+
+	// Data sent from now on is compressed with Lzss and flagged as such, unless compression doesn't make it smaller.
+	// The receiver has to put messages back together with FragmentReassembler, which decompresses them.
+	public void setCompressionEnabled(boolean enabled) {
+		compressionEnabled = enabled;
+	}
+
+	public boolean isCompressionEnabled() {
+		return compressionEnabled;
+	}
+
+	// The fragments are queued one after another and this returns once the last one is on the air.
+	public void sendData(short rxPanId, short rxAddr, byte[] data) throws IOException {
+		boolean compressed = false;
+		if (compressionEnabled) {
+			byte[] packed = Lzss.compress(data);
+			if (packed.length < data.length) {
+				data = packed;
+				compressed = true;
+			}
+		}
+
+		List<CompletableFuture<Integer>> fragments = new ArrayList<>();
+		int remaining = data.length;
+		int pos = 0;
+		while (remaining > 0) {
+			boolean fragmented = remaining > LazData.capacityOfData();
+			int size = fragmented ? LazData.capacityOfData() : remaining;
+			byte[] part = Arrays.copyOfRange(data, pos, pos + size);
+			LazData packet = new LazData(part, fragmented, compressed);
+			fragments.add(sendFrameAsync(rxPanId, rxAddr, new LazuriteFrame(rxPanId, rxAddr, packet)));
+			pos += size;
+			remaining -= size;
+		}
+		for (CompletableFuture<Integer> fragment : fragments) {
+			await(fragment);
+		}
+	}
+
+	// A compressed stream is compressed as it is read, so its length is unknown and it can't fall back to raw bytes.
+	public StreamTransfer sendStream(short rxPanId, short rxAddr, InputStream data) {
+		if (compressionEnabled)
+			return sendStream(rxPanId, rxAddr, Channels.newChannel(data), StreamTransfer.UNKNOWN_LENGTH);
+		return startStream(new StreamTransfer(data, LazData.capacityOfData(), 1, fragmentSink(rxPanId, rxAddr, false)));
+	}
+
+	public StreamTransfer sendStream(short rxPanId, short rxAddr, ReadableByteChannel data, long length) {
+		if (compressionEnabled)
+			return startStream(new StreamTransfer(Lzss.compressing(data), StreamTransfer.UNKNOWN_LENGTH,
+					LazData.capacityOfData(), 1, fragmentSink(rxPanId, rxAddr, true)));
+		return startStream(
+				new StreamTransfer(data, length, LazData.capacityOfData(), 1, fragmentSink(rxPanId, rxAddr, false)));
+	}
+
+	// A buffer is compressed in one go, so it is sent raw when compression doesn't help.
+	public StreamTransfer sendStream(short rxPanId, short rxAddr, ByteBuffer data) {
+		byte[] packed = compress(data);
+		if (packed != null)
+			return startStream(new StreamTransfer(ByteBuffer.wrap(packed), LazData.capacityOfData(), 1,
+					fragmentSink(rxPanId, rxAddr, true)));
+		return startStream(new StreamTransfer(data, LazData.capacityOfData(), 1, fragmentSink(rxPanId, rxAddr, false)));
+	}
+
+	// The remaining bytes of data compressed, or null if compression is disabled or doesn't make them smaller.
+	// data is only consumed when they are compressed.
+	private byte[] compress(ByteBuffer data) {
+		if (!compressionEnabled || data == null)
+			return null;
+		byte[] raw = new byte[data.remaining()];
+		data.duplicate().get(raw);
+		byte[] packed = Lzss.compress(raw);
+		if (packed.length >= raw.length)
+			return null;
+		data.position(data.limit());
+		return packed;
+	}
+
+	private StreamTransfer startStream(StreamTransfer transfer) {
+		Executor executor = transferExecutor;
+		if (executor != null)
+			executor.execute(transfer);
+		else
+			new Thread(transfer, "Lazurite-stream").start();
+		return transfer;
+	}
+
+	// Streams and reliable transfers run on executor, e.g. RadioThreads.perTask(RadioThreads.virtual("Lazurite")),
+	// as they mostly wait for room in the transmit queue. Null starts a thread of its own per transfer.
+	public void setTransferExecutor(Executor executor) {
+		transferExecutor = executor;
+	}
+
+	public Executor getTransferExecutor() {
+		return transferExecutor;
+	}
+
+	// The transmit thread completes a fragment once it is on the air.
+	private StreamTransfer.FragmentSink fragmentSink(short rxPanId, short rxAddr, boolean compressed) {
+		return (fragment, more) -> {
+			byte[] part = new byte[fragment.remaining()];
+			fragment.get(part);
+			LazData packet = new LazData(part, more, compressed);
+			return sendFrameAsync(rxPanId, rxAddr, new LazuriteFrame(rxPanId, rxAddr, packet));
+		};
+	}
+
+	// Opens reliable transfers to a node, keeping up to window segments in flight.
+	// Lazurite headers have no sequence number, so each segment carries one in an extra byte.
+	public ReliableSender openReliable(short rxPanId, short rxAddr, int window) {
+		ReliableSender sender = new ReliableSender(reliableTransport(rxPanId, rxAddr), window);
+		ReliableSender previous = reliableSenders.put(peerKey(rxPanId, rxAddr), sender);
+		if (previous != null)
+			previous.close();
+		return sender;
+	}
+
+	public void closeReliable(short rxPanId, short rxAddr) {
+		ReliableSender sender = reliableSenders.remove(peerKey(rxPanId, rxAddr));
+		if (sender != null)
+			sender.close();
+	}
+
+	// Segments are only queued; one lost on the way is retransmitted by the sender like any other.
+	private ReliableSender.Transport reliableTransport(short rxPanId, short rxAddr) {
+		return new ReliableSender.Transport() {
+			@Override
+			public void sendSegment(int seqNum, ByteBuffer segment, boolean more, boolean compressed) {
+				byte[] part = new byte[segment.remaining()];
+				segment.get(part);
+				LazData packet = new LazData(part, more, true, compressed);
+				packet.setSeqNum((byte) seqNum);
+				sendFrameAsync(rxPanId, rxAddr, new LazuriteFrame(rxPanId, rxAddr, packet));
+			}
+
+			@Override
+			public void sendSync(int session, int base) {
+				LazCommand packet = new LazCommand(ReliableControl.COMMAND,
+						ReliableControl.writeSync(new TlvWriter(32), session, base, null), false);
+				sendFrameAsync(rxPanId, rxAddr, new LazuriteFrame(rxPanId, rxAddr, packet));
+			}
+		};
+	}
+
+	// The transfer is pipelined over the window given to openReliable(), which must have been called for the node.
+	// Its future completes once the node has acknowledged every fragment.
+	public StreamTransfer sendReliable(short rxPanId, short rxAddr, ByteBuffer data) {
+		ReliableSender sender = reliableSender(rxPanId, rxAddr);
+		byte[] packed = compress(data);
+		if (packed != null)
+			return startStream(new StreamTransfer(ByteBuffer.wrap(packed), LazData.capacityOfSequencedData(),
+					sender.getWindow(), (fragment, more) -> sender.send(fragment, more, true)));
+		return startStream(new StreamTransfer(data, LazData.capacityOfSequencedData(), sender.getWindow(), sender));
+	}
+
+	public StreamTransfer sendReliable(short rxPanId, short rxAddr, ReadableByteChannel data, long length) {
+		ReliableSender sender = reliableSender(rxPanId, rxAddr);
+		if (compressionEnabled)
+			return startStream(new StreamTransfer(Lzss.compressing(data), StreamTransfer.UNKNOWN_LENGTH,
+					LazData.capacityOfSequencedData(), sender.getWindow(),
+					(fragment, more) -> sender.send(fragment, more, true)));
+		return startStream(
+				new StreamTransfer(data, length, LazData.capacityOfSequencedData(), sender.getWindow(), sender));
+	}
+
+	private ReliableSender reliableSender(short rxPanId, short rxAddr) {
+		ReliableSender sender = reliableSenders.get(peerKey(rxPanId, rxAddr));
+		if (sender == null) {
+			String msg = String.format("No reliable transfer to %x %x has been opened.", rxPanId, rxAddr);
+			logger.log(Level.WARNING, msg);
+			throw new IllegalStateException(msg);
+		}
+		return sender;
+	}
+
+	// Accepts reliable transfers. Their segments come out of readFrame() in order,
+	// and FragmentReassembler puts messages together as usual.
+	public void enableReliableReceive() {
+		disableReliableReceive();
+		reliableReceiver = new ReliableReceiver<>(unpackedFrames::add, (peer, session, cumulative, selective) -> {
+			short rxPanId = (short) (peer.intValue() >>> 16);
+			short rxAddr = (short) peer.intValue();
+			queueSmall(rxPanId, rxAddr, new LazAck(ReliableControl.COMMAND,
+					ReliableControl.writeAck(new TlvWriter(32), session, cumulative, selective)));
+		});
+	}
+
+	public void disableReliableReceive() {
+		ReliableReceiver<Integer, LazuriteFrame> current = reliableReceiver;
+		reliableReceiver = null;
+		if (current != null)
+			current.close();
+	}
+
+	// Commands, ACKs and notices to the same destination sent within the delay budget of each other
+	// go out together in one frame.
+	public void enableAggregation(long delay, TimeUnit unit) {
+		synchronized (aggregationLock) {
+			disableAggregation();
+			aggregator = new PacketAggregator<>(LazAggregate.capacityOfAggregate(), delay, unit, this::sendAggregated);
+		}
+	}
+
+	// Packets still waiting are sent right away.
+	public void disableAggregation() {
+		synchronized (aggregationLock) {
+			PacketAggregator<Integer, LazuritePacket> current = aggregator;
+			aggregator = null;
+			if (current != null)
+				current.close();
+		}
+	}
+
+	private void sendAggregated(Integer destination, List<LazuritePacket> packets) {
+		short rxPanId = (short) (destination.intValue() >>> 16);
+		short rxAddr = (short) destination.intValue();
+		LazuritePacket packet = packets.size() == 1 ? packets.get(0) : new LazAggregate(packets);
+		sendFrameAsync(rxPanId, rxAddr, new LazuriteFrame(rxPanId, rxAddr, packet));
+	}
+
+	// The future of a packet left to the aggregator completes once it has been added to a batch.
+	private CompletableFuture<Integer> queueSmall(short rxPanId, short rxAddr, LazuritePacket packet) {
+		PacketAggregator<Integer, LazuritePacket> current = aggregator;
+		if (current != null) {
+			try {
+				current.add(peerKey(rxPanId, rxAddr), packet);
+				return CompletableFuture.completedFuture(Integer.valueOf(0));
+			} catch (IllegalStateException e) {
+				// Aggregation has just been disabled.
+			}
+		}
+		return sendFrameAsync(rxPanId, rxAddr, new LazuriteFrame(rxPanId, rxAddr, packet));
+	}
+
+	private int sendSmall(short rxPanId, short rxAddr, LazuritePacket packet) throws IOException {
+		return await(queueSmall(rxPanId, rxAddr, packet));
+	}
+
+	public int sendCommand(short rxPanId, short rxAddr, byte cmd, String param) throws IOException {
+		return sendSmall(rxPanId, rxAddr, new LazCommand(cmd, param, false));
+	}
+
+	public int sendCommandWithAck(short rxPanId, short rxAddr, byte cmd, String param) throws IOException {
+		return sendSmall(rxPanId, rxAddr, new LazCommand(cmd, param, true));
+	}
+
+	public int sendAck(short rxPanId, short rxAddr, byte cmd, String response) throws IOException {
+		return sendSmall(rxPanId, rxAddr, new LazAck(cmd, response));
+	}
+
+	public int sendNotice(short rxPanId, short rxAddr, String notice) throws IOException {
+		return sendSmall(rxPanId, rxAddr, new LazNotice(notice));
+	}
+
+	public int sendCommand(short rxPanId, short rxAddr, byte cmd, TlvWriter params) throws IOException {
+		return sendSmall(rxPanId, rxAddr, new LazCommand(cmd, params, false));
+	}
+
+	public int sendCommandWithAck(short rxPanId, short rxAddr, byte cmd, TlvWriter params) throws IOException {
+		return sendSmall(rxPanId, rxAddr, new LazCommand(cmd, params, true));
+	}
+
+	public int sendAck(short rxPanId, short rxAddr, byte cmd, TlvWriter response) throws IOException {
+		return sendSmall(rxPanId, rxAddr, new LazAck(cmd, response));
+	}
+
+	public int sendNotice(short rxPanId, short rxAddr, TlvWriter notice) throws IOException {
+		return sendSmall(rxPanId, rxAddr, new LazNotice(notice));
+	}
+
+}
@@ -0,0 +1,211 @@
+package com.github.tutertlob.lazurite;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Polls the Lazurite driver on a dedicated thread and hands decoded frames to consumers through a bounded queue.
+// Liblazurite offers no file descriptor to wait on, so the thread polls available() and
+// idles between polls according to a LazuriteWaitStrategy, also after a frame it couldn't receive.
+// The driver failing, or anything else going wrong, stops the thread: readers get the frames still queued,
+// then an EOFException caused by why it stopped.
+public final class LazuriteReceiver implements Closeable {
+
+	private static final Logger logger = Logger.getLogger(LazuriteReceiver.class.getName());
+
+	public static final int DEFAULT_CAPACITY = 64;
+
+	// Queued once the thread has stopped, to wake up the readers waiting for a frame.
+	private static final LazuriteFrame END = new LazuriteFrame((short) 0, (short) 0, new LazNotice(""));
+
+	private final LazuriteFrameSource source;
+
+	private final LazuriteWaitStrategy waitStrategy;
+
+	private final BlockingQueue<LazuriteFrame> frames;
+
+	private final AtomicLong droppedFrames = new AtomicLong();
+
+	private final AtomicLong brokenFrames = new AtomicLong();
+
+	// Why the thread stopped, set before END is queued.
+	private volatile IOException failure = null;
+
+	private Thread thread;
+
+	public LazuriteReceiver() {
+		this(DEFAULT_CAPACITY, LazuriteWaitStrategy.DEFAULT);
+	}
+
+	public LazuriteReceiver(int capacity, LazuriteWaitStrategy waitStrategy) {
+		this(LazuriteUtils::pollFrame, capacity, waitStrategy);
+	}
+
+	LazuriteReceiver(LazuriteFrameSource source, int capacity, LazuriteWaitStrategy waitStrategy) {
+		if (source == null)
+			throw new NullPointerException("The argument source is null.");
+		if (waitStrategy == null)
+			throw new NullPointerException("The argument waitStrategy is null.");
+		if (capacity < 1)
+			throw new IllegalArgumentException("The capacity of the receive queue must be positive.");
+
+		this.source = source;
+		this.waitStrategy = waitStrategy;
+		this.frames = new ArrayBlockingQueue<>(capacity);
+	}
+
+	public synchronized void start() {
+		start(r -> {
+			Thread t = new Thread(r, "LazuriteReceiver");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	// The thread polls the driver, so it had better be a platform thread unless the wait strategy parks.
+	public synchronized void start(ThreadFactory threadFactory) {
+		if (threadFactory == null)
+			throw new NullPointerException("The argument threadFactory is null.");
+		if (thread != null)
+			throw new IllegalStateException("The receiver has already been started.");
+
+		thread = threadFactory.newThread(this::receive);
+		thread.start();
+	}
+
+	@Override
+	public synchronized void close() {
+		if (thread == null)
+			return;
+
+		thread.interrupt();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			logger.log(Level.WARNING, "Interrupted while waiting for the receiver thread to exit.", e);
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// Throws an EOFException once the thread has stopped and no frame is left.
+	public LazuriteFrame take() throws InterruptedException, IOException {
+		LazuriteFrame frame = frames.poll();
+		if (frame == null) {
+			checkStopped();
+			frame = frames.take();
+		}
+		return checkEnd(frame);
+	}
+
+	public LazuriteFrame poll(long timeout, TimeUnit unit) throws InterruptedException, IOException {
+		LazuriteFrame frame = frames.poll();
+		if (frame == null) {
+			checkStopped();
+			frame = frames.poll(timeout, unit);
+		}
+		return checkEnd(frame);
+	}
+
+	public LazuriteFrame poll() throws IOException {
+		LazuriteFrame frame = frames.poll();
+		if (frame == null)
+			checkStopped();
+		return checkEnd(frame);
+	}
+
+	private void checkStopped() throws IOException {
+		IOException stopped = failure;
+		if (stopped != null) {
+			EOFException end = new EOFException(stopped.getMessage());
+			end.initCause(stopped);
+			throw end;
+		}
+	}
+
+	private LazuriteFrame checkEnd(LazuriteFrame frame) throws IOException {
+		if (frame != END)
+			return frame;
+		// Left for the other readers.
+		frames.offer(END);
+		checkStopped();
+		return null;
+	}
+
+	// Null while the thread runs, or if it hasn't started.
+	public IOException getFailure() {
+		return failure;
+	}
+
+	public int getQueuedFrames() {
+		return frames.size();
+	}
+
+	public long getDroppedFrames() {
+		return droppedFrames.get();
+	}
+
+	public long getBrokenFrames() {
+		return brokenFrames.get();
+	}
+
+	private void receive() {
+		IOException stopped = new IOException("The receiver has been closed.");
+		try {
+			receiveFrames();
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "LazuriteReceiver thread is going to exit since the driver failed.", e);
+			stopped = e;
+		} catch (RuntimeException e) {
+			logger.log(Level.SEVERE, "LazuriteReceiver thread is going to exit since receiving failed.", e);
+			stopped = new IOException("Receiving frames failed.", e);
+		} catch (Error e) {
+			stopped = new IOException("Receiving frames failed.", e);
+			throw e;
+		} finally {
+			failure = stopped;
+			frames.offer(END);
+		}
+	}
+
+	private void receiveFrames() throws IOException {
+		int idle = 0;
+		int broken = 0;
+		while (!Thread.currentThread().isInterrupted()) {
+			LazuriteFrame frame;
+			try {
+				frame = source.pollFrame();
+				broken = 0;
+			} catch (IllegalArgumentException e) {
+				brokenFrames.incrementAndGet();
+				// A failing driver backs off like an idle one, and is reported once per run of failures.
+				logger.log(broken++ == 0 ? Level.WARNING : Level.FINE, "A frame couldn't be received.", e);
+				frame = null;
+			}
+
+			if (frame == null) {
+				waitStrategy.idle(idle);
+				if (idle < Integer.MAX_VALUE)
+					idle++;
+				continue;
+			}
+
+			idle = 0;
+			// Consumers that fall behind lose the oldest frames rather than stalling the driver.
+			while (!frames.offer(frame)) {
+				if (frames.poll() != null) {
+					droppedFrames.incrementAndGet();
+					logger.log(Level.WARNING, "The receive queue is full. The oldest frame was dropped.");
+				}
+			}
+		}
+		logger.log(Level.INFO, "LazuriteReceiver thread is going to exit since it has been closed.");
+	}
+
+}
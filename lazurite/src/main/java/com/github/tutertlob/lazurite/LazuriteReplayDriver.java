@@ -0,0 +1,138 @@
+package com.github.tutertlob.lazurite;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.github.tutertlob.subghz.CaptureRecord;
+import com.lapis_semi.lazurite.io.SUBGHZ_MAC;
+
+// A driver with no module behind it, which receives the frames injected from a capture.
+// A LazuriteRadio over it treats them as it would frames off the air, duplicate filter and link quality included.
+// Frames sent through it go nowhere and are only counted.
+public final class LazuriteReplayDriver implements LazuriteDriver {
+
+	private static final Logger logger = Logger.getLogger(LazuriteReplayDriver.class.getName());
+
+	private final BlockingQueue<CaptureRecord> received = new LinkedBlockingQueue<>();
+
+	// The record read last, whose header decMac gives. Used by the receive thread only.
+	private CaptureRecord current;
+
+	private final LongAdder sent = new LongAdder();
+
+	public LazuriteReplayDriver() {
+
+	}
+
+	// Queues a received Lazurite frame out of a capture; returns false for any other record.
+	public boolean inject(CaptureRecord record) {
+		if (record == null)
+			throw new NullPointerException("The argument record is null.");
+		if (record.getRadio() != CaptureRecord.Radio.LAZURITE || record.getDirection() != CaptureRecord.Direction.RECEIVED)
+			return false;
+		if (record.getMacBuffer().remaining() != LazuriteCapture.MAC_BYTES) {
+			logger.log(Level.WARNING, String.format("Skipped a capture record of the MAC length %d.",
+					record.getMacBuffer().remaining()));
+			return false;
+		}
+
+		received.add(record);
+		return true;
+	}
+
+	public int getPendingCount() {
+		return received.size();
+	}
+
+	public long getSentCount() {
+		return sent.sum();
+	}
+
+	@Override
+	public void init() {
+
+	}
+
+	@Override
+	public void remove() {
+
+	}
+
+	@Override
+	public void begin(byte ch, short panId, byte rate, byte pwr) {
+
+	}
+
+	@Override
+	public void close() {
+
+	}
+
+	@Override
+	public void rxEnable() {
+
+	}
+
+	@Override
+	public void rxDisable() {
+
+	}
+
+	@Override
+	public void setAddrType(byte addrType) {
+
+	}
+
+	@Override
+	public void setTxRetry(byte txRetry) {
+
+	}
+
+	@Override
+	public void setTxInterval(short txInterval) {
+
+	}
+
+	@Override
+	public int available() {
+		return received.size();
+	}
+
+	@Override
+	public int read(byte[] raw, short[] size) throws IOException {
+		CaptureRecord record = received.poll();
+		if (record == null)
+			throw new IOException("No frame has been injected.");
+		int length = record.getPayloadLength();
+		if (length > raw.length)
+			throw new IOException(String.format("The injected frame of %d bytes doesn't fit.", length));
+
+		record.getPayloadBuffer().get(raw, 0, length);
+		size[0] = (short) length;
+		current = record;
+		return length;
+	}
+
+	@Override
+	public int send(short rxPanId, short rxAddr, byte[] data, short length) {
+		sent.increment();
+		return length;
+	}
+
+	@Override
+	public void decMac(SUBGHZ_MAC mac, byte[] raw, short size) throws IOException {
+		if (current == null)
+			throw new IOException("No frame has been read.");
+		LazuriteCapture.decode(current.getMacBuffer(), mac);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("LazuriteReplayDriver[pending=%d, sent=%d]", received.size(), sent.sum());
+	}
+
+}
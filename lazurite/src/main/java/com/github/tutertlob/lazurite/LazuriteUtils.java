@@ -1,164 +1,274 @@
 package com.github.tutertlob.lazurite;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.Arrays;
 
-import com.lapis_semi.lazurite.io.Liblazurite;
-import com.lapis_semi.lazurite.io.SUBGHZ_MAC;
-import com.sun.jna.Pointer;
+import com.github.tutertlob.subghz.CaptureWriter;
+import com.github.tutertlob.subghz.DuplicateFilter;
+import com.github.tutertlob.subghz.DutyCycleScheduler;
+import com.github.tutertlob.subghz.LinkQualityTracker;
+import com.github.tutertlob.subghz.ReliableSender;
+import com.github.tutertlob.subghz.StreamTransfer;
+import com.github.tutertlob.subghz.TlvWriter;
 
+// The module Liblazurite binds, as one LazuriteRadio behind static methods.
+// Failures are thrown as unchecked exceptions; LazuriteRadio throws IOExceptions instead.
 public final class LazuriteUtils {
 
 	private static final Logger logger = Logger.getLogger(LazuriteUtils.class.getName());
 
-	private static final Liblazurite liblazurite = newInstanceOfLiblazurite();
-
-	private static Liblazurite newInstanceOfLiblazurite() {
-		Liblazurite lib = null;
-		try {
-			lib = new Liblazurite();
-		} catch (IOException e) {
-			e.printStackTrace();
-			logger.log(Level.SEVERE, "Couldn't setup the lazurite wireless module.", e);
-			System.exit(-1);
-		}
-		return lib;
-	}
+	private static final LazuriteRadio radio = new LazuriteRadio();
 
 	private LazuriteUtils() {
 		// Abstract class
 	}
 
+	public static LazuriteRadio getRadio() {
+		return radio;
+	}
+
 	public static void begin(LazuriteParams params) {
 		logger.info("LazuriteUtils.begin");
 		try {
-			liblazurite.init();
+			radio.begin(params);
 		} catch (IOException e) {
-			e.printStackTrace();
-			logger.log(Level.SEVERE, "Couldn't load the lazurite driver.", e);
-			System.exit(-1);
+			logger.log(Level.SEVERE, "Couldn't setup the lazurite interface.", e);
+			throw new IllegalStateException("Couldn't setup the lazurite interface.", e);
 		}
+	}
 
-		try {
-			liblazurite.setAddrType(params.addrType());
-			liblazurite.setTxRetry(params.txRetry());
-			liblazurite.setTxInterval(params.txInterval());
-		} catch (IOException e) {
-			e.printStackTrace();
-			logger.log(Level.WARNING, e.getMessage(), e);
-		}
+	public static void setTransmitScheduler(DutyCycleScheduler scheduler) {
+		radio.setTransmitScheduler(scheduler);
+	}
 
-		try {
-			liblazurite.begin(
-				params.ch(),
-				params.myPanId(),
-				params.rate(),
-				params.pwr()
-			);
-			liblazurite.rxEnable();
-		} catch (IOException e) {
-			e.printStackTrace();
-			logger.log(Level.SEVERE, "Couldn't setup the lazurite interface.", e);
-			System.exit(-1);
-		}
+	public static DutyCycleScheduler getTransmitScheduler() {
+		return radio.getTransmitScheduler();
+	}
+
+	public static void setTransferExecutor(Executor executor) {
+		radio.setTransferExecutor(executor);
+	}
+
+	public static Executor getTransferExecutor() {
+		return radio.getTransferExecutor();
+	}
+
+	public static LazuriteMetrics getMetrics() {
+		return radio.getMetrics();
 	}
 
 	public static void close() {
 		try {
-			liblazurite.rxDisable();
-			liblazurite.close();
-			liblazurite.remove();
+			radio.close();
 		} catch (IOException e) {
-			e.printStackTrace();
 			logger.log(Level.SEVERE, "Couldn't close the lazurite interface.", e);
-			System.exit(-1);
+			throw new IllegalStateException("Couldn't close the lazurite interface.", e);
 		}
 	}
 
+	// Blocks until a frame arrives. Returns null if the calling thread is interrupted while waiting.
+	// Once the radio has stopped receiving, throws an IllegalStateException caused by an EOFException.
 	public static LazuriteFrame readFrame() {
-		byte[] raw = new byte[256];
-		short[] size = new short[1];
-		int length;
-		LazuriteFrame frame = null;
-
 		try {
-			while (liblazurite.available() == 0);
-			length = liblazurite.read(raw, size);
-			logger.log(Level.INFO, String.format("Read a frame: length=%d, size=%d", length, size[0]));
-			assert length == (int)size[0] : "Read size is different from length.";
+			return radio.readFrame();
 		} catch (IOException e) {
-			e.printStackTrace();
-			logger.log(Level.SEVERE, "Reading data from the Lazurite wireless module failed.", e);
-			throw new IllegalArgumentException("Reading data from the Lazurite wireless module failed.");
+			throw receiveFailed(e);
 		}
+	}
 
+	// Returns null right away if no frame has been received.
+	// Aggregates are unpacked by the radio, so callers only ever see the packets they carried.
+	// The control packets of reliable transfers are consumed there too, and their segments come out in order.
+	public static LazuriteFrame pollFrame() {
 		try {
-			SUBGHZ_MAC mac = new SUBGHZ_MAC();
-			liblazurite.decMac(mac, raw, size[0]);
-			frame = new LazuriteFrame(mac, raw);
+			return radio.pollFrame();
 		} catch (IOException e) {
-			e.printStackTrace();
-			logger.log(Level.WARNING, "Decoding MAC flame header failed. This frame data may be broken.", e);
-			throw new IllegalArgumentException("Frame couldn't be re-constructed from raw byte array.");
+			throw receiveFailed(e);
 		}
+	}
+
+	private static IllegalStateException receiveFailed(IOException e) {
+		logger.log(Level.SEVERE, "Receiving from the lazurite interface failed.", e);
+		return new IllegalStateException("Receiving from the lazurite interface failed.", e);
+	}
+
+	public static void enableDuplicateFilter(long expiry, TimeUnit unit) {
+		radio.enableDuplicateFilter(expiry, unit);
+	}
+
+	public static void disableDuplicateFilter() {
+		radio.disableDuplicateFilter();
+	}
+
+	public static DuplicateFilter getDuplicateFilter() {
+		return radio.getDuplicateFilter();
+	}
 
-		return frame;
+	public static LinkQualityTracker enableLinkQuality() {
+		return radio.enableLinkQuality();
+	}
+
+	public static void disableLinkQuality() {
+		radio.disableLinkQuality();
+	}
+
+	public static LinkQualityTracker getLinkQuality() {
+		return radio.getLinkQuality();
+	}
+
+	public static void setCapture(CaptureWriter capture) {
+		radio.setCapture(capture);
+	}
+
+	public static CaptureWriter getCapture() {
+		return radio.getCapture();
+	}
+
+	public static long linkKey(short panId, short addr) {
+		return LazuriteRadio.linkKey(panId, addr);
 	}
 
 	public static void sendFrame(short rxPanId, short rxAddr, LazuriteFrame frame) {
 		try {
-			int ret;
-			ret = liblazurite.send(rxPanId, rxAddr, frame.getFrameBytes(), (short)frame.getFrameLength());
-			logger.log(Level.INFO, String.format("Sending Frame to rxPanid=%x rxAddr=%x resulted in ret=%d", rxPanId, rxAddr, ret));
-		} catch (IOException e ) {
-			e.printStackTrace();
-			logger.log(Level.SEVERE, "Sending data over the Lazurite wireless module failed.", e);
-			if (e.getMessage().contains("error=-110")) {
-				logger.log(Level.WARNING, String.format("The sensor %x %x didn't responde.", rxPanId, rxAddr), e);
-			} else {
-				throw new IllegalArgumentException("Sending data over the Lazurite wireless module failed.");
-			}
+			radio.sendFrame(rxPanId, rxAddr, frame);
+		} catch (IOException e) {
+			throw sendFailed(e);
 		}
 	}
 
+	private static IllegalArgumentException sendFailed(IOException e) {
+		logger.log(Level.SEVERE, "Sending data over the Lazurite wireless module failed.", e);
+		return new IllegalArgumentException("Sending data over the Lazurite wireless module failed.", e);
+	}
+
+	public static void setCompressionEnabled(boolean enabled) {
+		radio.setCompressionEnabled(enabled);
+	}
+
+	public static boolean isCompressionEnabled() {
+		return radio.isCompressionEnabled();
+	}
+
 	public static void sendData(short rxPanId, short rxAddr, byte[] data) {
-		int remaining = data.length;
-		int pos = 0;
-		while (remaining > 0) {
-			boolean fragmented = remaining > LazData.capacityOfData();
-			int size = fragmented ? LazData.capacityOfData() : remaining;
-			byte[] part = Arrays.copyOfRange(data, pos, pos + size);
-			LazData packet = new LazData(part, fragmented);
-			LazuriteFrame frame = new LazuriteFrame(rxPanId, rxAddr, packet);
-			sendFrame(rxPanId, rxAddr, frame);
-			remaining -= size;
+		try {
+			radio.sendData(rxPanId, rxAddr, data);
+		} catch (IOException e) {
+			throw sendFailed(e);
 		}
 	}
 
+	public static StreamTransfer sendStream(short rxPanId, short rxAddr, InputStream data) {
+		return radio.sendStream(rxPanId, rxAddr, data);
+	}
+
+	public static StreamTransfer sendStream(short rxPanId, short rxAddr, ReadableByteChannel data, long length) {
+		return radio.sendStream(rxPanId, rxAddr, data, length);
+	}
+
+	public static StreamTransfer sendStream(short rxPanId, short rxAddr, ByteBuffer data) {
+		return radio.sendStream(rxPanId, rxAddr, data);
+	}
+
+	public static ReliableSender openReliable(short rxPanId, short rxAddr, int window) {
+		return radio.openReliable(rxPanId, rxAddr, window);
+	}
+
+	public static void closeReliable(short rxPanId, short rxAddr) {
+		radio.closeReliable(rxPanId, rxAddr);
+	}
+
+	public static StreamTransfer sendReliable(short rxPanId, short rxAddr, ByteBuffer data) {
+		return radio.sendReliable(rxPanId, rxAddr, data);
+	}
+
+	public static StreamTransfer sendReliable(short rxPanId, short rxAddr, ReadableByteChannel data, long length) {
+		return radio.sendReliable(rxPanId, rxAddr, data, length);
+	}
+
+	public static void enableReliableReceive() {
+		radio.enableReliableReceive();
+	}
+
+	public static void disableReliableReceive() {
+		radio.disableReliableReceive();
+	}
+
+	public static void enableAggregation(long delay, TimeUnit unit) {
+		radio.enableAggregation(delay, unit);
+	}
+
+	public static void disableAggregation() {
+		radio.disableAggregation();
+	}
+
 	public static void sendCommand(short rxPanId, short rxAddr, byte cmd, String param) {
-		LazCommand packet = new LazCommand(cmd, param, false);
-		LazuriteFrame frame = new LazuriteFrame(rxPanId, rxAddr, packet);
-		sendFrame(rxPanId, rxAddr, frame);
+		try {
+			radio.sendCommand(rxPanId, rxAddr, cmd, param);
+		} catch (IOException e) {
+			throw sendFailed(e);
+		}
 	}
 
 	public static void sendCommandWithAck(short rxPanId, short rxAddr, byte cmd, String param) {
-		LazCommand packet = new LazCommand(cmd, param, true);
-		LazuriteFrame frame = new LazuriteFrame(rxPanId, rxAddr, packet);
-		sendFrame(rxPanId, rxAddr, frame);
+		try {
+			radio.sendCommandWithAck(rxPanId, rxAddr, cmd, param);
+		} catch (IOException e) {
+			throw sendFailed(e);
+		}
 	}
 
 	public static void sendAck(short rxPanId, short rxAddr, byte cmd, String response) {
-		LazAck packet = new LazAck(cmd, response);
-		LazuriteFrame frame = new LazuriteFrame(rxPanId, rxAddr, packet);
-		sendFrame(rxPanId, rxAddr, frame);
+		try {
+			radio.sendAck(rxPanId, rxAddr, cmd, response);
+		} catch (IOException e) {
+			throw sendFailed(e);
+		}
 	}
 
 	public static void sendNotice(short rxPanId, short rxAddr, String notice) {
-		LazNotice packet = new LazNotice(notice);
-		LazuriteFrame frame = new LazuriteFrame(rxPanId, rxAddr, packet);
-		sendFrame(rxPanId, rxAddr, frame);
+		try {
+			radio.sendNotice(rxPanId, rxAddr, notice);
+		} catch (IOException e) {
+			throw sendFailed(e);
+		}
+	}
+
+	public static void sendCommand(short rxPanId, short rxAddr, byte cmd, TlvWriter params) {
+		try {
+			radio.sendCommand(rxPanId, rxAddr, cmd, params);
+		} catch (IOException e) {
+			throw sendFailed(e);
+		}
+	}
+
+	public static void sendCommandWithAck(short rxPanId, short rxAddr, byte cmd, TlvWriter params) {
+		try {
+			radio.sendCommandWithAck(rxPanId, rxAddr, cmd, params);
+		} catch (IOException e) {
+			throw sendFailed(e);
+		}
+	}
+
+	public static void sendAck(short rxPanId, short rxAddr, byte cmd, TlvWriter response) {
+		try {
+			radio.sendAck(rxPanId, rxAddr, cmd, response);
+		} catch (IOException e) {
+			throw sendFailed(e);
+		}
+	}
+
+	public static void sendNotice(short rxPanId, short rxAddr, TlvWriter notice) {
+		try {
+			radio.sendNotice(rxPanId, rxAddr, notice);
+		} catch (IOException e) {
+			throw sendFailed(e);
+		}
 	}
 
 }
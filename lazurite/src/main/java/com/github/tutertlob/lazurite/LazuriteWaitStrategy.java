@@ -0,0 +1,96 @@
+package com.github.tutertlob.lazurite;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// How a thread waiting for the Lazurite driver spends the time between two polls.
+// It spins first, then yields, then parks with an exponentially growing period, so an idle receiver costs
+// next to no CPU while a busy one still picks up back-to-back frames without sleeping.
+public final class LazuriteWaitStrategy {
+
+	public static final LazuriteWaitStrategy DEFAULT = new Builder().build();
+
+	private final int spins;
+
+	private final int yields;
+
+	private final long minParkNanos;
+
+	private final long maxParkNanos;
+
+	public static class Builder {
+
+		private int spins = 100;
+
+		private int yields = 10;
+
+		private long minParkNanos = TimeUnit.MICROSECONDS.toNanos(50);
+
+		private long maxParkNanos = TimeUnit.MILLISECONDS.toNanos(5);
+
+		public Builder spins(int val) {
+			if (val < 0)
+				throw new IllegalArgumentException("The number of spins must not be negative.");
+			spins = val;
+			return this;
+		}
+
+		public Builder yields(int val) {
+			if (val < 0)
+				throw new IllegalArgumentException("The number of yields must not be negative.");
+			yields = val;
+			return this;
+		}
+
+		public Builder park(long min, long max, TimeUnit unit) {
+			if (unit == null)
+				throw new NullPointerException("The argument unit is null.");
+			if (min <= 0 || max < min)
+				throw new IllegalArgumentException("The park period must be positive and min must not exceed max.");
+			minParkNanos = unit.toNanos(min);
+			maxParkNanos = unit.toNanos(max);
+			return this;
+		}
+
+		public LazuriteWaitStrategy build() {
+			return new LazuriteWaitStrategy(this);
+		}
+	}
+
+	private LazuriteWaitStrategy(Builder builder) {
+		spins = builder.spins;
+		yields = builder.yields;
+		minParkNanos = builder.minParkNanos;
+		maxParkNanos = builder.maxParkNanos;
+	}
+
+	// attempt counts the polls that have found nothing since the last frame, starting at 0.
+	public void idle(int attempt) {
+		if (attempt < spins)
+			return;
+
+		if (attempt - spins < yields) {
+			Thread.yield();
+			return;
+		}
+
+		int doublings = Math.min(attempt - spins - yields, 30);
+		LockSupport.parkNanos((maxParkNanos >> doublings) <= minParkNanos ? maxParkNanos : minParkNanos << doublings);
+	}
+
+	public int spins() {
+		return spins;
+	}
+
+	public int yields() {
+		return yields;
+	}
+
+	public long minParkNanos() {
+		return minParkNanos;
+	}
+
+	public long maxParkNanos() {
+		return maxParkNanos;
+	}
+}
@@ -0,0 +1,118 @@
+package com.github.tutertlob.lazurite;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.lapis_semi.lazurite.io.Liblazurite;
+import com.lapis_semi.lazurite.io.SUBGHZ_MAC;
+
+// Liblazurite binds the kernel driver of the module when it is created, so that is put off until init().
+// There is one such module per process, so only one driver at a time may have it from init() to remove().
+final class LiblazuriteDriver implements LazuriteDriver {
+
+	private static final AtomicBoolean inUse = new AtomicBoolean(false);
+
+	private volatile Liblazurite lib;
+
+	// Whether this driver holds inUse. Guarded by this driver.
+	private boolean bound = false;
+
+	LiblazuriteDriver() {
+
+	}
+
+	private Liblazurite lib() throws IOException {
+		if (lib == null)
+			throw new IOException("The lazurite driver hasn't been loaded.");
+		return lib;
+	}
+
+	@Override
+	public synchronized void init() throws IOException {
+		if (!bound) {
+			if (!inUse.compareAndSet(false, true))
+				throw new IOException("The lazurite module is already in use by another radio.");
+			bound = true;
+		}
+		try {
+			if (lib == null)
+				lib = new Liblazurite();
+			lib.init();
+		} catch (IOException | RuntimeException | Error e) {
+			release();
+			throw e;
+		}
+	}
+
+	@Override
+	public synchronized void remove() throws IOException {
+		try {
+			lib().remove();
+		} finally {
+			release();
+		}
+	}
+
+	private void release() {
+		if (bound) {
+			bound = false;
+			inUse.set(false);
+		}
+	}
+
+	@Override
+	public void begin(byte ch, short panId, byte rate, byte pwr) throws IOException {
+		lib().begin(ch, panId, rate, pwr);
+	}
+
+	@Override
+	public void close() throws IOException {
+		lib().close();
+	}
+
+	@Override
+	public void rxEnable() throws IOException {
+		lib().rxEnable();
+	}
+
+	@Override
+	public void rxDisable() throws IOException {
+		lib().rxDisable();
+	}
+
+	@Override
+	public void setAddrType(byte addrType) throws IOException {
+		lib().setAddrType(addrType);
+	}
+
+	@Override
+	public void setTxRetry(byte txRetry) throws IOException {
+		lib().setTxRetry(txRetry);
+	}
+
+	@Override
+	public void setTxInterval(short txInterval) throws IOException {
+		lib().setTxInterval(txInterval);
+	}
+
+	@Override
+	public int available() throws IOException {
+		return lib().available();
+	}
+
+	@Override
+	public int read(byte[] raw, short[] size) throws IOException {
+		return lib().read(raw, size);
+	}
+
+	@Override
+	public int send(short rxPanId, short rxAddr, byte[] data, short length) throws IOException {
+		return lib().send(rxPanId, rxAddr, data, length);
+	}
+
+	@Override
+	public void decMac(SUBGHZ_MAC mac, byte[] raw, short size) throws IOException {
+		lib().decMac(mac, raw, size);
+	}
+
+}
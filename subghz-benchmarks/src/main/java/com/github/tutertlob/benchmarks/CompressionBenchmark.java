@@ -0,0 +1,87 @@
+package com.github.tutertlob.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.tutertlob.im920wireless.packet.Im920Data;
+import com.github.tutertlob.subghz.Lzss;
+
+// Compression ratio against CPU cost.
+// The score is the time to compress or decompress one message. Each trial also prints the ratio and
+// the Data packets the message takes on an IM920 link with and without compression.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+
+	@Param({ "JSON", "LOG", "RANDOM" })
+	public String payload;
+
+	@Param({ "58", "256", "1024" })
+	public int payloadSize;
+
+	@Param({ "1", "4", "16", "64" })
+	public int chainLength;
+
+	private byte[] message;
+
+	private byte[] compressed;
+
+	@Setup
+	public void setup() {
+		switch (payload) {
+			case "JSON":
+				message = Payloads.json(payloadSize);
+				break;
+			case "LOG":
+				message = Payloads.log(payloadSize);
+				break;
+			case "RANDOM":
+				message = Payloads.bytes(payloadSize);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown payload " + payload);
+		}
+		compressed = Lzss.compress(message, chainLength);
+	}
+
+	@TearDown
+	public void report() {
+		// Im920 sends the raw bytes when compression doesn't make them smaller.
+		int sent = Math.min(compressed.length, message.length);
+		System.out.printf("%n%s, %d bytes, chain %d: compressed to %d bytes (%d%%), %d Data packets instead of %d%n",
+				payload, message.length, chainLength, compressed.length, 100 * compressed.length / message.length,
+				packets(sent), packets(message.length));
+	}
+
+	private static long packets(int length) {
+		return (length + Im920Data.capacityOfData() - 1) / Im920Data.capacityOfData();
+	}
+
+	@Benchmark
+	public byte[] compress() {
+		return Lzss.compress(message, chainLength);
+	}
+
+	@Benchmark
+	public byte[] decompress() {
+		return Lzss.decompress(ByteBuffer.wrap(compressed), message.length);
+	}
+
+}
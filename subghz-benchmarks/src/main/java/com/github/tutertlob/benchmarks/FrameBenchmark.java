@@ -0,0 +1,82 @@
+package com.github.tutertlob.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.tutertlob.im920wireless.packet.Im920Data;
+import com.github.tutertlob.im920wireless.packet.Im920Frame;
+import com.github.tutertlob.lazurite.LazData;
+import com.github.tutertlob.lazurite.LazuriteFrame;
+import com.lapis_semi.lazurite.io.SUBGHZ_MAC;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameBenchmark {
+
+	@Param({ "1", "32", "61" })
+	public int payloadSize;
+
+	private ByteBuffer im920Header;
+
+	private ByteBuffer im920Body;
+
+	private Im920Data im920Packet;
+
+	private SUBGHZ_MAC lazuriteMac;
+
+	private byte[] lazuriteRaw;
+
+	private LazData lazuritePacket;
+
+	@Setup
+	public void setup() {
+		im920Packet = new Im920Data(Payloads.bytes(payloadSize), false);
+		im920Header = ByteBuffer.wrap(new byte[] { 0x00, 0x12, 0x34, (byte) 0xC8 });
+		im920Body = ByteBuffer.wrap(im920Packet.getPacketBytes());
+
+		lazuritePacket = new LazData(Payloads.bytes(payloadSize), false);
+		byte[] payload = lazuritePacket.getPacketBytes();
+		lazuriteRaw = new byte[256];
+		System.arraycopy(payload, 0, lazuriteRaw, 0, payload.length);
+		lazuriteMac = new SUBGHZ_MAC();
+		lazuriteMac.payload = 0;
+		lazuriteMac.payload_len = (short) payload.length;
+	}
+
+	@Benchmark
+	public Im920Frame im920FromReceivedBuffers() {
+		return new Im920Frame(im920Header, im920Body);
+	}
+
+	@Benchmark
+	public Im920Frame im920FromPacket() {
+		return new Im920Frame(im920Packet);
+	}
+
+	@Benchmark
+	public LazuriteFrame lazuriteFromReceivedBuffers() {
+		return new LazuriteFrame(lazuriteMac, lazuriteRaw);
+	}
+
+	@Benchmark
+	public LazuriteFrame lazuriteFromPacket() {
+		return new LazuriteFrame((short) 0xABCD, (short) 0x1234, lazuritePacket);
+	}
+
+}
@@ -0,0 +1,117 @@
+package com.github.tutertlob.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.tutertlob.im920wireless.util.Im920Interface;
+import com.github.tutertlob.im920wireless.util.Im920LoopbackTransport;
+
+// Round trips through the ticket pipeline (checkin, SerialWriter, SerialReader, checkout)
+// against an emulated module on a loopback transport, so only the Java overhead is measured.
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Im920CommandPipelineBenchmark {
+
+	private static final byte[] OK = "OK\r\n".getBytes(StandardCharsets.US_ASCII);
+
+	private static final byte[] DATA = Payloads.bytes(32);
+
+	private Im920LoopbackTransport transport;
+
+	private Im920Interface im920Interface;
+
+	private Thread module;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		transport = new Im920LoopbackTransport();
+		final Im920LoopbackTransport peer = transport.getPeer();
+
+		module = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				byte[] buf = new byte[1024];
+				boolean lineStarted = false;
+				try {
+					for (int n; (n = peer.read(buf, 0, buf.length)) > 0;) {
+						for (int i = 0; i < n; i++) {
+							if (buf[i] == '\n') {
+								if (lineStarted)
+									peer.write(OK, 0, OK.length);
+								lineStarted = false;
+							} else if (buf[i] != '\r') {
+								lineStarted = true;
+							}
+						}
+					}
+				} catch (IOException e) {
+					// The benchmark is over.
+				}
+			}
+		}, "im920-module-emulator");
+		module.setDaemon(true);
+		module.start();
+
+		im920Interface = Im920Interface.open(transport, Im920Interface.BaudRate.B_38400);
+		// Airtime pacing would make sendData measure the emulated radio instead of the pipeline.
+		im920Interface.setTransmitScheduler(null);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws InterruptedException {
+		im920Interface.close();
+		module.join(1000);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public String[] moduleCommand() throws InterruptedException {
+		return im920Interface.execIm920Cmd("DSRX");
+	}
+
+	@Benchmark
+	@Threads(8)
+	public String[] moduleCommandContended() throws InterruptedException {
+		return im920Interface.execIm920Cmd("DSRX");
+	}
+
+	// One thread keeping several commands in flight through the asynchronous API.
+	@Benchmark
+	@Threads(1)
+	public String[] moduleCommandPipelined() throws InterruptedException, ExecutionException {
+		CompletableFuture<?>[] inFlight = new CompletableFuture<?>[8];
+		for (int i = 0; i < inFlight.length; i++) {
+			inFlight[i] = im920Interface.execIm920CmdAsync("DSRX");
+		}
+		CompletableFuture.allOf(inFlight).get();
+		return (String[]) inFlight[inFlight.length - 1].get();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void sendDataContended() throws InterruptedException {
+		im920Interface.sendData(DATA);
+	}
+
+}
@@ -0,0 +1,90 @@
+package com.github.tutertlob.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.tutertlob.im920wireless.packet.Im920Data;
+import com.github.tutertlob.im920wireless.util.Im920FramePool;
+import com.github.tutertlob.im920wireless.util.Im920FrameParser;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Im920FrameParserBenchmark {
+
+	private static final int LINES = 16;
+
+	@Param({ "1", "32", "61" })
+	public int payloadSize;
+
+	// Bytes handed to the parser per call, as a serial read would deliver them.
+	@Param({ "16", "256" })
+	public int chunkSize;
+
+	private byte[] input;
+
+	private Im920FrameParser parser;
+
+	private Blackhole blackhole;
+
+	@Setup
+	public void setup(Blackhole blackhole) {
+		this.blackhole = blackhole;
+		byte[] packet = new Im920Data(Payloads.bytes(payloadSize), false).getPacketBytes();
+
+		StringBuilder line = new StringBuilder("00,1234,C8:");
+		for (int i = 0; i < packet.length; i++) {
+			if (i > 0)
+				line.append(',');
+			line.append(String.format("%02X", packet[i]));
+		}
+		line.append("\r\n");
+
+		StringBuilder lines = new StringBuilder();
+		for (int i = 0; i < LINES; i++) {
+			lines.append(line);
+		}
+		input = lines.toString().getBytes(StandardCharsets.US_ASCII);
+
+		final Im920FramePool pool = new Im920FramePool();
+		parser = new Im920FrameParser(pool, new Im920FrameParser.Handler() {
+			@Override
+			public void frameReceived(ByteBuffer[] frame) {
+				Im920FrameParserBenchmark.this.blackhole.consume(frame);
+				pool.release(frame);
+			}
+
+			@Override
+			public void responseReceived(byte[] line, int length) {
+				Im920FrameParserBenchmark.this.blackhole.consume(length);
+			}
+		});
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LINES)
+	public void parseFrames() throws InterruptedException {
+		for (int offset = 0; offset < input.length; offset += chunkSize) {
+			parser.parse(input, offset, Math.min(chunkSize, input.length - offset));
+		}
+	}
+
+}
@@ -0,0 +1,95 @@
+package com.github.tutertlob.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.tutertlob.im920wireless.packet.Im920Ack;
+import com.github.tutertlob.im920wireless.packet.Im920Command;
+import com.github.tutertlob.im920wireless.packet.Im920Data;
+import com.github.tutertlob.im920wireless.packet.Im920Notice;
+import com.github.tutertlob.im920wireless.packet.Im920Packet;
+import com.github.tutertlob.subghz.PacketView;
+import com.github.tutertlob.subghz.PacketViews;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Im920PacketBenchmark {
+
+	@Param({ "DATA", "COMMAND", "ACK", "NOTICE" })
+	public String type;
+
+	@Param({ "1", "16", "60" })
+	public int payloadSize;
+
+	private Im920Packet packet;
+
+	private byte[] packetBytes;
+
+	private final ByteBuffer txBuffer = ByteBuffer.allocateDirect(64);
+
+	private ByteBuffer packetBuffer;
+
+	private final PacketViews views = new PacketViews(Im920Packet.LAYOUT);
+
+	@Setup
+	public void setup() {
+		switch (type) {
+			case "DATA":
+				packet = new Im920Data(Payloads.bytes(payloadSize), false);
+				break;
+			case "COMMAND":
+				packet = new Im920Command((byte) 0x10, Payloads.ascii(payloadSize - 1), true);
+				break;
+			case "ACK":
+				packet = new Im920Ack((byte) 0x10, Payloads.ascii(payloadSize - 1));
+				break;
+			case "NOTICE":
+				packet = new Im920Notice(Payloads.ascii(payloadSize));
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown packet type " + type);
+		}
+		packet.setSeqNum((byte) 7);
+		packetBytes = packet.getPacketBytes();
+		packetBuffer = ByteBuffer.wrap(packetBytes);
+	}
+
+	@Benchmark
+	public byte[] encode() {
+		return packet.getPacketBytes();
+	}
+
+	@Benchmark
+	public ByteBuffer encodeInto() {
+		txBuffer.clear();
+		packet.writeTo(txBuffer);
+		return txBuffer;
+	}
+
+	@Benchmark
+	public Im920Packet decode() {
+		return Im920Packet.newInstance(null, packetBytes);
+	}
+
+	@Benchmark
+	public PacketView decodeView() {
+		return views.wrap(packetBuffer);
+	}
+
+}
@@ -0,0 +1,82 @@
+package com.github.tutertlob.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.tutertlob.lazurite.LazAck;
+import com.github.tutertlob.lazurite.LazCommand;
+import com.github.tutertlob.lazurite.LazData;
+import com.github.tutertlob.lazurite.LazNotice;
+import com.github.tutertlob.lazurite.LazuritePacket;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LazuritePacketBenchmark {
+
+	@Param({ "DATA", "COMMAND", "ACK", "NOTICE" })
+	public String type;
+
+	@Param({ "1", "64", "237" })
+	public int payloadSize;
+
+	private LazuritePacket packet;
+
+	private byte[] packetBytes;
+
+	private final ByteBuffer txBuffer = ByteBuffer.allocateDirect(256);
+
+	@Setup
+	public void setup() {
+		switch (type) {
+			case "DATA":
+				packet = new LazData(Payloads.bytes(payloadSize), false);
+				break;
+			case "COMMAND":
+				packet = new LazCommand((byte) 0x10, Payloads.ascii(payloadSize - 1), true);
+				break;
+			case "ACK":
+				packet = new LazAck((byte) 0x10, Payloads.ascii(payloadSize - 1));
+				break;
+			case "NOTICE":
+				packet = new LazNotice(Payloads.ascii(payloadSize));
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown packet type " + type);
+		}
+		packetBytes = packet.getPacketBytes();
+	}
+
+	@Benchmark
+	public byte[] encode() {
+		return packet.getPacketBytes();
+	}
+
+	@Benchmark
+	public ByteBuffer encodeInto() {
+		txBuffer.clear();
+		packet.writeTo(txBuffer);
+		return txBuffer;
+	}
+
+	@Benchmark
+	public LazuritePacket decode() {
+		return LazuritePacket.newInstance(packetBytes);
+	}
+
+}
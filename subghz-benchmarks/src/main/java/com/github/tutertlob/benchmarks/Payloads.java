@@ -0,0 +1,51 @@
+package com.github.tutertlob.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+final class Payloads {
+
+	private static final long SEED = 920L;
+
+	private Payloads() {
+	}
+
+	static byte[] bytes(int size) {
+		byte[] data = new byte[size];
+		new Random(SEED).nextBytes(data);
+		return data;
+	}
+
+	static String ascii(int size) {
+		Random random = new Random(SEED);
+		StringBuilder builder = new StringBuilder(size);
+		for (int i = 0; i < size; i++) {
+			builder.append((char) (' ' + random.nextInt('~' - ' ')));
+		}
+		return builder.toString();
+	}
+
+	// A dump of sensor readings the way a peer would report them, which compresses about as well as the real thing.
+	static byte[] json(int size) {
+		Random random = new Random(SEED);
+		StringBuilder builder = new StringBuilder(size + 96);
+		while (builder.length() < size) {
+			builder.append(String.format("{\"node\":%d,\"temp\":%.2f,\"hum\":%.1f,\"batt\":%d,\"status\":\"ok\"},",
+					random.nextInt(16), 18 + random.nextDouble() * 8, 40 + random.nextDouble() * 30, 2900 + random.nextInt(300)));
+		}
+		return builder.substring(0, size).getBytes(StandardCharsets.US_ASCII);
+	}
+
+	static byte[] log(int size) {
+		Random random = new Random(SEED);
+		String[] levels = { "INFO", "INFO", "INFO", "WARNING" };
+		StringBuilder builder = new StringBuilder(size + 96);
+		for (long t = 1570000000000L; builder.length() < size; t += random.nextInt(5000)) {
+			builder.append(t).append(' ').append(levels[random.nextInt(levels.length)])
+					.append(" sensor ").append(random.nextInt(16)).append(" sent ").append(random.nextInt(64))
+					.append(" bytes\n");
+		}
+		return builder.substring(0, size).getBytes(StandardCharsets.US_ASCII);
+	}
+
+}
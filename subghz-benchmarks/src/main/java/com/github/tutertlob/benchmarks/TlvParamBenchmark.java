@@ -0,0 +1,120 @@
+package com.github.tutertlob.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.tutertlob.im920wireless.packet.Im920Command;
+import com.github.tutertlob.im920wireless.packet.Im920Packet;
+import com.github.tutertlob.subghz.CommandPacketView;
+import com.github.tutertlob.subghz.PacketViews;
+import com.github.tutertlob.subghz.TlvReader;
+import com.github.tutertlob.subghz.TlvWriter;
+
+// A sensor reading sent as command parameters, as US-ASCII text and as TLV records.
+// Each trial prints the size of both encodings.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TlvParamBenchmark {
+
+	private static final byte COMMAND = 0x10;
+
+	private static final int NODE = 0;
+
+	private static final int TEMPERATURE = 1;
+
+	private static final int HUMIDITY = 2;
+
+	private static final int BATTERY = 3;
+
+	private final ByteBuffer txBuffer = ByteBuffer.allocate(64);
+
+	private final TlvWriter writer = new TlvWriter();
+
+	private final TlvReader reader = new TlvReader();
+
+	private final PacketViews views = new PacketViews(Im920Packet.LAYOUT);
+
+	private ByteBuffer textPacket;
+
+	private ByteBuffer tlvPacket;
+
+	@Setup
+	public void setup() {
+		textPacket = ByteBuffer.wrap(new Im920Command(COMMAND, text(), false).getPacketBytes());
+		tlvPacket = ByteBuffer.wrap(new Im920Command(COMMAND, tlv(), false).getPacketBytes());
+	}
+
+	@TearDown
+	public void report() {
+		System.out.printf("%nText packet %d bytes, TLV packet %d bytes%n", textPacket.remaining(), tlvPacket.remaining());
+	}
+
+	private static String text() {
+		return String.format("node=%d,temp=%.2f,hum=%.1f,batt=%d", 12, 23.45, 55.2, 3012);
+	}
+
+	private TlvWriter tlv() {
+		return writer.reset().putInt(NODE, 12).putFixed(TEMPERATURE, 2345, 2).putFixed(HUMIDITY, 552, 1)
+				.putInt(BATTERY, 3012);
+	}
+
+	@Benchmark
+	public ByteBuffer encodeText() {
+		txBuffer.clear();
+		new Im920Command(COMMAND, text(), false).writeTo(txBuffer);
+		return txBuffer;
+	}
+
+	@Benchmark
+	public ByteBuffer encodeTlv() {
+		txBuffer.clear();
+		new Im920Command(COMMAND, tlv(), false).writeTo(txBuffer);
+		return txBuffer;
+	}
+
+	@Benchmark
+	public double parseText() {
+		CommandPacketView view = views.command().wrap(textPacket);
+		double sum = 0;
+		for (String field : view.getCommandParam().split(",")) {
+			sum += Double.parseDouble(field.substring(field.indexOf('=') + 1));
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double parseTlv() {
+		CommandPacketView view = views.command().wrap(tlvPacket);
+		TlvReader params = view.readCommandParams(reader);
+		double sum = 0;
+		while (params.next()) {
+			switch (params.getKey()) {
+				case TEMPERATURE:
+				case HUMIDITY:
+					sum += params.getDouble();
+					break;
+				default:
+					sum += params.getLong();
+					break;
+			}
+		}
+		return sum;
+	}
+
+}
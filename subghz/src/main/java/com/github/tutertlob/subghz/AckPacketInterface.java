@@ -6,4 +6,7 @@ public interface AckPacketInterface {
 
 	public String getResponse();
 
+	// Throws IllegalStateException unless the packet is TLV encoded.
+	public TlvReader readResponseParams(TlvReader reader);
+
 }
@@ -0,0 +1,45 @@
+package com.github.tutertlob.subghz;
+
+import java.nio.ByteBuffer;
+
+public final class AckPacketView extends PacketView implements AckPacketInterface {
+
+	private static final int COMMAND_SIZE = 1;
+
+	private final AsciiView response = new AsciiView();
+
+	public AckPacketView(PacketLayout layout) {
+		super(layout);
+	}
+
+	public AckPacketView wrap(ByteBuffer packet) {
+		bind(packet);
+		return this;
+	}
+
+	@Override
+	public PacketImplementation.Type getPacketType() {
+		return PacketImplementation.Type.ACK;
+	}
+
+	@Override
+	public byte getCommand() {
+		return bodyByteAt(0);
+	}
+
+	@Override
+	public String getResponse() {
+		return paramString(bodyIndex() + COMMAND_SIZE);
+	}
+
+	@Override
+	public TlvReader readResponseParams(TlvReader reader) {
+		return tlvReader(reader, bodyIndex() + COMMAND_SIZE);
+	}
+
+	// The returned view is reused by this flyweight and is valid until the next wrap().
+	public CharSequence getResponseChars() {
+		return asciiView(response, bodyIndex() + COMMAND_SIZE);
+	}
+
+}
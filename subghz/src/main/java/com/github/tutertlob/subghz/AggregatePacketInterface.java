@@ -0,0 +1,11 @@
+package com.github.tutertlob.subghz;
+
+import java.util.List;
+
+public interface AggregatePacketInterface {
+
+	public int getPacketCount();
+
+	public List<? extends PacketImplementation> getPackets();
+
+}
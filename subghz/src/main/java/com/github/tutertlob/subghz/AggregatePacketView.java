@@ -0,0 +1,60 @@
+package com.github.tutertlob.subghz;
+
+import java.nio.ByteBuffer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// The body of an aggregate is a run of entries, each a length byte followed by a whole packet.
+public final class AggregatePacketView extends PacketView {
+
+	private static final Logger logger = Logger.getLogger(AggregatePacketView.class.getName());
+
+	public AggregatePacketView(PacketLayout layout) {
+		super(layout);
+	}
+
+	public AggregatePacketView wrap(ByteBuffer packet) {
+		bind(packet);
+		return this;
+	}
+
+	@Override
+	public PacketImplementation.Type getPacketType() {
+		return PacketImplementation.Type.AGGREGATE;
+	}
+
+	public int getPacketCount() {
+		int count = 0;
+		for (int pos = 0, end = getBodyLength(); pos < end; pos += 1 + entryLength(pos, end)) {
+			count++;
+		}
+		return count;
+	}
+
+	// Returns a read-only buffer over the index-th packet without copying it,
+	// to be wrapped by the PacketViews of the same layout.
+	public ByteBuffer getPacket(int index) {
+		int pos = 0;
+		for (int i = 0, end = getBodyLength(); pos < end; i++) {
+			int length = entryLength(pos, end);
+			if (i == index)
+				return sliceOf(bodyIndex() + pos + 1, length);
+			pos += 1 + length;
+		}
+		String msg = String.format("The aggregate has no packet #%d.", index);
+		logger.log(Level.WARNING, msg);
+		throw new IndexOutOfBoundsException(msg);
+	}
+
+	private int entryLength(int pos, int end) {
+		int length = bodyByteAt(pos) & 0xFF;
+		if (length == 0 || pos + 1 + length > end) {
+			String msg = String.format("A packet in the aggregate claims %d bytes, but only %d remain.", length,
+					end - pos - 1);
+			logger.log(Level.WARNING, msg);
+			throw new IllegalArgumentException(msg);
+		}
+		return length;
+	}
+
+}
@@ -0,0 +1,8 @@
+package com.github.tutertlob.subghz;
+
+public interface AirtimeModel {
+
+	// How long a frame carrying payloadLength bytes occupies the channel, preamble and checksums included.
+	public long airtimeNanos(int payloadLength);
+
+}
@@ -0,0 +1,65 @@
+package com.github.tutertlob.subghz;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public final class AsciiView implements CharSequence {
+
+	private ByteBuffer buffer;
+
+	private int offset;
+
+	private int length;
+
+	public AsciiView() {
+		this.buffer = ByteBuffer.allocate(0);
+	}
+
+	AsciiView bind(ByteBuffer buffer, int offset, int length) {
+		this.buffer = buffer;
+		this.offset = offset;
+		this.length = length;
+		return this;
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= length)
+			throw new IndexOutOfBoundsException(String.format("Index %d is out of range [0, %d).", index, length));
+		byte b = buffer.get(offset + index);
+		// Same substitution as decoding with US-ASCII does for bytes outside the charset.
+		return b < 0 ? '\uFFFD' : (char) b;
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		if (start < 0 || end > length || start > end)
+			throw new IndexOutOfBoundsException(String.format("Range [%d, %d) is out of [0, %d).", start, end, length));
+		return new AsciiView().bind(buffer, offset + start, end - start);
+	}
+
+	public boolean contentEquals(CharSequence cs) {
+		if (cs.length() != length)
+			return false;
+		for (int i = 0; i < length; i++) {
+			if (charAt(i) != cs.charAt(i))
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = buffer.get(offset + i);
+		}
+		return new String(bytes, StandardCharsets.US_ASCII);
+	}
+
+}
@@ -0,0 +1,125 @@
+package com.github.tutertlob.subghz;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+// Reads back the records a CaptureWriter wrote, segment by segment in order.
+public final class CaptureReader implements Closeable {
+
+	private static final Logger logger = Logger.getLogger(CaptureReader.class.getName());
+
+	private final Path directory;
+
+	private final List<Path> segments;
+
+	private int segmentIndex = 0;
+
+	private MappedByteBuffer segment;
+
+	private long epochMillis = -1;
+
+	public CaptureReader(Path directory) throws IOException {
+		if (directory == null)
+			throw new NullPointerException("The argument directory is null.");
+
+		this.directory = directory;
+		List<Path> found = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "capture-*.seg")) {
+			for (Path path : stream) {
+				found.add(path);
+			}
+		}
+		Collections.sort(found);
+		segments = found;
+		if (segments.isEmpty())
+			logger.warning(String.format("No capture segments in %s.", directory));
+	}
+
+	private boolean openNext() throws IOException {
+		if (segmentIndex >= segments.size())
+			return false;
+
+		Path path = segments.get(segmentIndex++);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if (segment.remaining() < CaptureWriter.SEGMENT_HEADER_BYTES || segment.getInt() != CaptureWriter.MAGIC)
+			throw new IOException(String.format("%s is not a capture segment.", path));
+		int version = segment.getInt();
+		if (version != CaptureWriter.VERSION)
+			throw new IOException(String.format("%s is of the unknown capture version %d.", path, version));
+		epochMillis = segment.getLong();
+		return true;
+	}
+
+	// Returns null after the last record.
+	public CaptureRecord next() throws IOException {
+		while (true) {
+			if (segment == null && !openNext())
+				return null;
+
+			int length = segment.remaining() < 4 ? 0 : segment.getInt();
+			if (length == 0) {
+				segment = null;
+				continue;
+			}
+			if (length < CaptureWriter.RECORD_HEADER_BYTES || length - 4 > segment.remaining())
+				throw new IOException(String.format("A capture record of the invalid length %d in %s.", length,
+						segments.get(segmentIndex - 1)));
+
+			try {
+				long nanos = segment.getLong();
+				CaptureRecord.Direction direction = CaptureRecord.Direction.valueOf(segment.get());
+				CaptureRecord.Radio radio = CaptureRecord.Radio.valueOf(segment.get());
+				int macLength = segment.getShort() & 0xFFFF;
+				int payloadLength = length - CaptureWriter.RECORD_HEADER_BYTES - macLength;
+				if (payloadLength < 0)
+					throw new IOException(String.format("A capture record of the invalid MAC length %d in %s.",
+							macLength, segments.get(segmentIndex - 1)));
+				byte[] mac = new byte[macLength];
+				byte[] payload = new byte[payloadLength];
+				segment.get(mac).get(payload);
+				return new CaptureRecord(nanos, direction, radio, mac, payload);
+			} catch (IllegalArgumentException | BufferUnderflowException e) {
+				throw new IOException(String.format("A broken capture record in %s.", segments.get(segmentIndex - 1)),
+						e);
+			}
+		}
+	}
+
+	// The wall-clock time the capture started at, known once the first segment is read.
+	public long getEpochMillis() {
+		return epochMillis;
+	}
+
+	public Path getDirectory() {
+		return directory;
+	}
+
+	public int getSegmentCount() {
+		return segments.size();
+	}
+
+	@Override
+	public void close() {
+		segment = null;
+		segmentIndex = segments.size();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("CaptureReader[%s, segments=%d]", directory, segments.size());
+	}
+
+}
@@ -0,0 +1,102 @@
+package com.github.tutertlob.subghz;
+
+import java.nio.ByteBuffer;
+
+// One frame out of a capture: when it was captured, relative to the start of the capture, which way it went,
+// the radio, the MAC header as the radio's capture codec wrote it and the raw frame bytes.
+public final class CaptureRecord {
+
+	public enum Direction {
+		RECEIVED, SENT;
+
+		public static Direction valueOf(byte id) {
+			if (id < 0 || id >= values().length)
+				throw new IllegalArgumentException(String.format("Invalid capture direction %d", id));
+			return values()[id];
+		}
+
+		public byte id() {
+			return (byte) ordinal();
+		}
+	}
+
+	public enum Radio {
+		IM920, LAZURITE;
+
+		public static Radio valueOf(byte id) {
+			if (id < 0 || id >= values().length)
+				throw new IllegalArgumentException(String.format("Invalid capture radio %d", id));
+			return values()[id];
+		}
+
+		public byte id() {
+			return (byte) ordinal();
+		}
+	}
+
+	private final long nanos;
+
+	private final Direction direction;
+
+	private final Radio radio;
+
+	private final byte[] mac;
+
+	private final byte[] payload;
+
+	public CaptureRecord(long nanos, Direction direction, Radio radio, byte[] mac, byte[] payload) {
+		if (direction == null)
+			throw new NullPointerException("The argument direction is null.");
+		if (radio == null)
+			throw new NullPointerException("The argument radio is null.");
+		if (mac == null)
+			throw new NullPointerException("The argument mac is null.");
+		if (payload == null)
+			throw new NullPointerException("The argument payload is null.");
+
+		this.nanos = nanos;
+		this.direction = direction;
+		this.radio = radio;
+		this.mac = mac;
+		this.payload = payload;
+	}
+
+	public long getNanos() {
+		return nanos;
+	}
+
+	public Direction getDirection() {
+		return direction;
+	}
+
+	public Radio getRadio() {
+		return radio;
+	}
+
+	public byte[] getMacBytes() {
+		return mac.clone();
+	}
+
+	public ByteBuffer getMacBuffer() {
+		return ByteBuffer.wrap(mac).asReadOnlyBuffer();
+	}
+
+	public byte[] getPayloadBytes() {
+		return payload.clone();
+	}
+
+	public ByteBuffer getPayloadBuffer() {
+		return ByteBuffer.wrap(payload).asReadOnlyBuffer();
+	}
+
+	public int getPayloadLength() {
+		return payload.length;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("CaptureRecord[%dns %s %s mac=%d bytes payload=%d bytes]", nanos, direction, radio,
+				mac.length, payload.length);
+	}
+
+}
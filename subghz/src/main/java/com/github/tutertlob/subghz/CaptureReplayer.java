@@ -0,0 +1,78 @@
+package com.github.tutertlob.subghz;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+
+// Feeds the records of a capture to a sink, spaced as they were captured, faster or slower by a factor,
+// or as fast as the sink takes them.
+public final class CaptureReplayer {
+
+	private static final Logger logger = Logger.getLogger(CaptureReplayer.class.getName());
+
+	public static final double ORIGINAL_SPEED = 1.0;
+
+	public static final double MAXIMUM_SPEED = Double.POSITIVE_INFINITY;
+
+	public interface Sink {
+
+		public void accept(CaptureRecord record) throws IOException, InterruptedException;
+
+	}
+
+	private final CaptureReader reader;
+
+	private final Sink sink;
+
+	private final Predicate<CaptureRecord> filter;
+
+	public CaptureReplayer(CaptureReader reader, Sink sink) {
+		this(reader, sink, record -> true);
+	}
+
+	public CaptureReplayer(CaptureReader reader, Sink sink, Predicate<CaptureRecord> filter) {
+		if (reader == null)
+			throw new NullPointerException("The argument reader is null.");
+		if (sink == null)
+			throw new NullPointerException("The argument sink is null.");
+		if (filter == null)
+			throw new NullPointerException("The argument filter is null.");
+
+		this.reader = reader;
+		this.sink = sink;
+		this.filter = filter;
+	}
+
+	// Replays the rest of the capture and returns the number of records given to the sink.
+	// A speed of 2.0 halves the gaps between records; the time a slow sink takes is caught up on afterwards.
+	public long replay(double speed) throws IOException, InterruptedException {
+		if (!(speed > 0)) {
+			logger.warning(String.format("Invalid replay speed %f.", speed));
+			throw new IllegalArgumentException("The speed must be positive.");
+		}
+
+		long replayed = 0;
+		long startNanos = System.nanoTime();
+		long firstNanos = 0;
+		for (CaptureRecord record = reader.next(); record != null; record = reader.next()) {
+			if (!filter.test(record))
+				continue;
+			if (replayed == 0)
+				firstNanos = record.getNanos();
+
+			if (speed != MAXIMUM_SPEED) {
+				long target = startNanos + (long) ((record.getNanos() - firstNanos) / speed);
+				for (long wait = target - System.nanoTime(); wait > 0; wait = target - System.nanoTime()) {
+					LockSupport.parkNanos(wait);
+					if (Thread.interrupted())
+						throw new InterruptedException();
+				}
+			}
+			sink.accept(record);
+			replayed++;
+		}
+		return replayed;
+	}
+
+}
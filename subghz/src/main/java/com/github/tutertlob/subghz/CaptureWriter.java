@@ -0,0 +1,223 @@
+package com.github.tutertlob.subghz;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Appends frames to a capture: a directory of segment files of a fixed size, each memory-mapped while written.
+// A segment starts with the magic, the format version and the wall-clock time the capture started at,
+// followed by records of
+//   int length of the whole record, long nanoseconds since the capture started, byte direction, byte radio,
+//   short length of the MAC header, the MAC header and the frame bytes.
+// A record length of 0 ends a segment; new segment files are zero-filled, so an unfinished one ends by itself.
+// Appending copies into the mapped segment under a short lock and never waits for the disk: the next segment
+// is mapped in the background ahead of time, and records which come before it is ready are dropped and counted.
+public final class CaptureWriter implements Closeable {
+
+	private static final Logger logger = Logger.getLogger(CaptureWriter.class.getName());
+
+	public static final int DEFAULT_SEGMENT_BYTES = 16 << 20;
+
+	static final int MAGIC = 0x53474346;
+
+	static final int VERSION = 1;
+
+	static final int SEGMENT_HEADER_BYTES = 16;
+
+	static final int RECORD_HEADER_BYTES = 16;
+
+	private final Path directory;
+
+	private final int segmentBytes;
+
+	private final long startNanos = System.nanoTime();
+
+	private final long startMillis = System.currentTimeMillis();
+
+	private final ExecutorService mapper = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "CaptureWriter-mapper");
+		t.setDaemon(true);
+		return t;
+	});
+
+	private MappedByteBuffer segment;
+
+	private int segmentIndex = 0;
+
+	private CompletableFuture<MappedByteBuffer> next;
+
+	private boolean closed = false;
+
+	private long records = 0;
+
+	private long dropped = 0;
+
+	private long bytes = 0;
+
+	public CaptureWriter(Path directory) throws IOException {
+		this(directory, DEFAULT_SEGMENT_BYTES);
+	}
+
+	public CaptureWriter(Path directory, int segmentBytes) throws IOException {
+		if (directory == null)
+			throw new NullPointerException("The argument directory is null.");
+		if (segmentBytes < SEGMENT_HEADER_BYTES + RECORD_HEADER_BYTES + 4)
+			throw new IllegalArgumentException("The segments are too small to hold a record.");
+
+		this.directory = directory;
+		this.segmentBytes = segmentBytes;
+		Files.createDirectories(directory);
+		segment = map(0);
+		next = mapAhead(1);
+	}
+
+	static Path segmentPath(Path directory, int index) {
+		return directory.resolve(String.format("capture-%05d.seg", index));
+	}
+
+	private MappedByteBuffer map(int index) throws IOException {
+		Path path = segmentPath(directory, index);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+			mapped.putInt(MAGIC).putInt(VERSION).putLong(startMillis);
+			return mapped;
+		} catch (IOException | RuntimeException e) {
+			if (!(e instanceof FileAlreadyExistsException))
+				Files.deleteIfExists(path);
+			throw e;
+		}
+	}
+
+	private CompletableFuture<MappedByteBuffer> mapAhead(int index) {
+		CompletableFuture<MappedByteBuffer> future = new CompletableFuture<>();
+		mapper.execute(() -> {
+			try {
+				future.complete(map(index));
+			} catch (IOException | RuntimeException e) {
+				logger.log(Level.WARNING, String.format("Couldn't map capture segment %d.", index), e);
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
+	}
+
+	public boolean append(CaptureRecord.Direction direction, CaptureRecord.Radio radio, byte[] mac, byte[] payload,
+			int offset, int length) {
+		return append(direction, radio, ByteBuffer.wrap(mac), ByteBuffer.wrap(payload, offset, length));
+	}
+
+	// Appends the remaining bytes of mac and payload without consuming them.
+	// Returns false if the record was dropped: the capture is closed, the next segment isn't mapped yet,
+	// or the record wouldn't fit in a segment.
+	public boolean append(CaptureRecord.Direction direction, CaptureRecord.Radio radio, ByteBuffer mac,
+			ByteBuffer payload) {
+		if (direction == null)
+			throw new NullPointerException("The argument direction is null.");
+		if (radio == null)
+			throw new NullPointerException("The argument radio is null.");
+
+		long nanos = System.nanoTime() - startNanos;
+		int macLength = mac == null ? 0 : mac.remaining();
+		int payloadLength = payload == null ? 0 : payload.remaining();
+		int length = RECORD_HEADER_BYTES + macLength + payloadLength;
+		synchronized (this) {
+			if (closed || macLength > 0xFFFF || length + 4 > segmentBytes - SEGMENT_HEADER_BYTES) {
+				dropped++;
+				return false;
+			}
+			// Room for the record and the 0 ending the segment.
+			if (segment.remaining() < length + 4 && !nextSegment()) {
+				dropped++;
+				return false;
+			}
+			// The length goes in last, so a record cut short by a crash ends the segment instead.
+			int start = segment.position();
+			segment.position(start + 4);
+			segment.putLong(nanos).put(direction.id()).put(radio.id()).putShort((short) macLength);
+			if (macLength > 0)
+				segment.put(mac.duplicate());
+			if (payloadLength > 0)
+				segment.put(payload.duplicate());
+			segment.putInt(start, length);
+			records++;
+			bytes += length;
+			return true;
+		}
+	}
+
+	private boolean nextSegment() {
+		if (!next.isDone())
+			return false;
+		if (next.isCompletedExceptionally()) {
+			// Tries again, so that a passing failure loses only what comes meanwhile.
+			next = mapAhead(segmentIndex + 1);
+			return false;
+		}
+		segment = next.join();
+		segmentIndex++;
+		next = mapAhead(segmentIndex + 1);
+		return true;
+	}
+
+	// Writes the mapped segment back to the disk.
+	public synchronized void flush() {
+		if (!closed)
+			segment.force();
+	}
+
+	// The segment mapped ahead and not used is deleted.
+	@Override
+	public void close() throws IOException {
+		CompletableFuture<MappedByteBuffer> unused;
+		synchronized (this) {
+			if (closed)
+				return;
+			closed = true;
+			segment.force();
+			unused = next;
+		}
+		mapper.shutdown();
+		try {
+			unused.join();
+			Files.deleteIfExists(segmentPath(directory, segmentIndex + 1));
+		} catch (CompletionException e) {
+			// Never mapped.
+		}
+	}
+
+	public Path getDirectory() {
+		return directory;
+	}
+
+	public synchronized long getRecordCount() {
+		return records;
+	}
+
+	public synchronized long getDroppedCount() {
+		return dropped;
+	}
+
+	public synchronized long getByteCount() {
+		return bytes;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("CaptureWriter[%s, segments=%d, records=%d, dropped=%d, bytes=%d]", directory,
+				segmentIndex + 1, records, dropped, bytes);
+	}
+
+}
@@ -4,6 +4,11 @@ public interface CommandPacketInterface {
 
 	public byte getCommand();
 
+	// TLV encoded parameters are rendered as text, e.g. "{0=25, 1=23.45}".
 	public String getCommandParam();
 
+	// Binds reader to the TLV records of the command parameters and returns it.
+	// Throws IllegalStateException when the packet carries text instead.
+	public TlvReader readCommandParams(TlvReader reader);
+
 }
@@ -0,0 +1,45 @@
+package com.github.tutertlob.subghz;
+
+import java.nio.ByteBuffer;
+
+public final class CommandPacketView extends PacketView implements CommandPacketInterface {
+
+	private static final int COMMAND_SIZE = 1;
+
+	private final AsciiView param = new AsciiView();
+
+	public CommandPacketView(PacketLayout layout) {
+		super(layout);
+	}
+
+	public CommandPacketView wrap(ByteBuffer packet) {
+		bind(packet);
+		return this;
+	}
+
+	@Override
+	public PacketImplementation.Type getPacketType() {
+		return PacketImplementation.Type.COMMAND;
+	}
+
+	@Override
+	public byte getCommand() {
+		return bodyByteAt(0);
+	}
+
+	@Override
+	public String getCommandParam() {
+		return paramString(bodyIndex() + COMMAND_SIZE);
+	}
+
+	@Override
+	public TlvReader readCommandParams(TlvReader reader) {
+		return tlvReader(reader, bodyIndex() + COMMAND_SIZE);
+	}
+
+	// The returned view is reused by this flyweight and is valid until the next wrap().
+	public CharSequence getCommandParamChars() {
+		return asciiView(param, bodyIndex() + COMMAND_SIZE);
+	}
+
+}
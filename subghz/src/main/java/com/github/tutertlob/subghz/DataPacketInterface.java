@@ -1,9 +1,13 @@
 package com.github.tutertlob.subghz;
 
+import java.nio.ByteBuffer;
+
 public interface DataPacketInterface {
 
 	public byte[] getData();
 
+	public void getData(ByteBuffer dst);
+
 	public int getDataSize();
 
 }
@@ -0,0 +1,36 @@
+package com.github.tutertlob.subghz;
+
+import java.nio.ByteBuffer;
+
+public final class DataPacketView extends PacketView implements DataPacketInterface {
+
+	public DataPacketView(PacketLayout layout) {
+		super(layout);
+	}
+
+	public DataPacketView wrap(ByteBuffer packet) {
+		bind(packet);
+		return this;
+	}
+
+	@Override
+	public PacketImplementation.Type getPacketType() {
+		return PacketImplementation.Type.DATA;
+	}
+
+	@Override
+	public byte[] getData() {
+		return copyOf(bodyIndex(), getBodyLength());
+	}
+
+	@Override
+	public void getData(ByteBuffer dst) {
+		getBody(dst);
+	}
+
+	@Override
+	public int getDataSize() {
+		return getBodyLength();
+	}
+
+}
@@ -0,0 +1,227 @@
+package com.github.tutertlob.subghz;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// Drops frames a sender has already sent, as radio retries and application resends deliver the same frame again.
+// Each sender is tracked by its highest 8-bit sequence number and a bitmap of the WINDOW numbers below it.
+// A number within the window which has been seen is a duplicate; one further behind than the window is taken
+// as a sender which has restarted its count. A sender unheard of for longer than the expiry starts afresh.
+// The state of all senders lives in one open-addressing table of primitive arrays, so checking a frame
+// of a known sender allocates nothing. When the table holds maxSenders, the sender unheard of for the longest is evicted.
+public final class DuplicateFilter {
+
+	public static final long DEFAULT_EXPIRY_MS = 10000;
+
+	public static final int DEFAULT_MAX_SENDERS = 256;
+
+	public static final int WINDOW = 64;
+
+	private static final int SEQUENCE_MASK = 0xFF;
+
+	// Numbers up to half the sequence space ahead of the highest one are new, the others are behind it.
+	private static final int AHEAD = (SEQUENCE_MASK + 1) / 2;
+
+	private static final int EMPTY = -1;
+
+	private final long expiryNanos;
+
+	private final int maxSenders;
+
+	private long[] keys;
+
+	// The highest sequence number seen, or EMPTY for a free slot.
+	private int[] highest;
+
+	// Bit i is set if highest - i has been seen.
+	private long[] seen;
+
+	private long[] lastNanos;
+
+	private int size = 0;
+
+	private long passed = 0;
+
+	private long suppressed = 0;
+
+	private long evicted = 0;
+
+	public DuplicateFilter() {
+		this(DEFAULT_EXPIRY_MS, TimeUnit.MILLISECONDS, DEFAULT_MAX_SENDERS);
+	}
+
+	public DuplicateFilter(long expiry, TimeUnit unit, int maxSenders) {
+		if (expiry <= 0)
+			throw new IllegalArgumentException("The expiry must be positive.");
+		if (maxSenders < 1)
+			throw new IllegalArgumentException("The number of senders must be positive.");
+
+		this.expiryNanos = unit.toNanos(expiry);
+		this.maxSenders = maxSenders;
+		// Grows as senders turn up, keeping the table at most half full.
+		allocate(16);
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		highest = new int[capacity];
+		Arrays.fill(highest, EMPTY);
+		seen = new long[capacity];
+		lastNanos = new long[capacity];
+	}
+
+	public boolean isDuplicate(long sender, int seqNum) {
+		return isDuplicate(sender, seqNum, System.nanoTime());
+	}
+
+	// Records seqNum as seen from sender and returns true if it had been seen already.
+	public synchronized boolean isDuplicate(long sender, int seqNum, long nowNanos) {
+		seqNum &= SEQUENCE_MASK;
+		int slot = find(sender);
+		if (slot < 0 || nowNanos - lastNanos[slot] > expiryNanos) {
+			if (slot < 0)
+				slot = insert(sender, nowNanos);
+			reset(slot, seqNum, nowNanos);
+			passed++;
+			return false;
+		}
+		lastNanos[slot] = nowNanos;
+
+		int ahead = (seqNum - highest[slot]) & SEQUENCE_MASK;
+		if (ahead == 0) {
+			suppressed++;
+			return true;
+		}
+		if (ahead < AHEAD) {
+			seen[slot] = ahead < WINDOW ? (seen[slot] << ahead) | 1L : 1L;
+			highest[slot] = seqNum;
+			passed++;
+			return false;
+		}
+
+		int behind = (highest[slot] - seqNum) & SEQUENCE_MASK;
+		if (behind >= WINDOW) {
+			reset(slot, seqNum, nowNanos);
+			passed++;
+			return false;
+		}
+		if ((seen[slot] & (1L << behind)) != 0) {
+			suppressed++;
+			return true;
+		}
+		seen[slot] |= 1L << behind;
+		passed++;
+		return false;
+	}
+
+	private void reset(int slot, int seqNum, long nowNanos) {
+		highest[slot] = seqNum;
+		seen[slot] = 1L;
+		lastNanos[slot] = nowNanos;
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private int find(long key) {
+		int mask = keys.length - 1;
+		for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+			if (highest[i] == EMPTY)
+				return -1;
+			if (keys[i] == key)
+				return i;
+		}
+	}
+
+	private int insert(long key, long nowNanos) {
+		if (size >= maxSenders || (size + 1) * 2 > keys.length)
+			rebuild(nowNanos);
+
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while (highest[i] != EMPTY) {
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		size++;
+		return i;
+	}
+
+	// Drops the expired senders and makes room for one more, growing the table or evicting the stalest sender.
+	private void rebuild(long nowNanos) {
+		long[] oldKeys = keys;
+		int[] oldHighest = highest;
+		long[] oldSeen = seen;
+		long[] oldLastNanos = lastNanos;
+
+		int live = 0;
+		int stalest = -1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldHighest[i] == EMPTY)
+				continue;
+			if (nowNanos - oldLastNanos[i] > expiryNanos) {
+				oldHighest[i] = EMPTY;
+				continue;
+			}
+			live++;
+			if (stalest < 0 || oldLastNanos[i] - oldLastNanos[stalest] < 0)
+				stalest = i;
+		}
+		if (live >= maxSenders) {
+			oldHighest[stalest] = EMPTY;
+			live--;
+			evicted++;
+		}
+
+		int capacity = oldKeys.length;
+		while ((live + 1) * 2 > capacity) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+		size = 0;
+		int mask = capacity - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldHighest[i] == EMPTY)
+				continue;
+			int j = hash(oldKeys[i]) & mask;
+			while (highest[j] != EMPTY) {
+				j = (j + 1) & mask;
+			}
+			keys[j] = oldKeys[i];
+			highest[j] = oldHighest[i];
+			seen[j] = oldSeen[i];
+			lastNanos[j] = oldLastNanos[i];
+			size++;
+		}
+	}
+
+	public synchronized void clear() {
+		Arrays.fill(highest, EMPTY);
+		size = 0;
+	}
+
+	public synchronized int getSenderCount() {
+		return size;
+	}
+
+	public synchronized long getPassedCount() {
+		return passed;
+	}
+
+	public synchronized long getSuppressedCount() {
+		return suppressed;
+	}
+
+	public synchronized long getEvictedCount() {
+		return evicted;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("DuplicateFilter[senders=%d, passed=%d, suppressed=%d, evicted=%d]", size, passed,
+				suppressed, evicted);
+	}
+
+}
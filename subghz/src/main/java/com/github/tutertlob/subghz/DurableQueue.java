@@ -0,0 +1,385 @@
+package com.github.tutertlob.subghz;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+// Entries of bytes kept in a directory of segment files until they are acknowledged, across restarts.
+// Each segment is memory-mapped and starts with the magic and the format version, followed by records of
+//   int length of the whole record, int CRC32 of what follows it, byte kind, long id, and the entry's bytes.
+// Acknowledging an entry appends a record of its id with no bytes. A record length of 0 ends a segment.
+// Appending only copies into the mapped segment. A background thread forces the segments written to onto the disk
+// once per commit interval, so the entries appended meanwhile share one fsync: a crash of the process loses
+// nothing, as the mapped pages live on in the page cache, while a crash of the system may lose the last interval.
+// Opening a queue scans its segments and hands back the entries not acknowledged, in the order they were appended.
+// A record which is cut short or doesn't match its checksum ends its segment, as the torn tail of the last write.
+// A segment is deleted once neither it nor any segment before it holds an entry waiting to be acknowledged.
+public final class DurableQueue implements Closeable {
+
+	private static final Logger logger = Logger.getLogger(DurableQueue.class.getName());
+
+	public static final int DEFAULT_SEGMENT_BYTES = 1 << 20;
+
+	public static final long DEFAULT_COMMIT_INTERVAL_MS = 10;
+
+	static final int MAGIC = 0x53474451;
+
+	static final int VERSION = 1;
+
+	static final int SEGMENT_HEADER_BYTES = 8;
+
+	static final int RECORD_HEADER_BYTES = 17;
+
+	private static final byte KIND_ENTRY = 1;
+
+	private static final byte KIND_ACK = 2;
+
+	public static final class Entry {
+
+		private final long id;
+
+		private final byte[] payload;
+
+		Entry(long id, byte[] payload) {
+			this.id = id;
+			this.payload = payload;
+		}
+
+		public long getId() {
+			return id;
+		}
+
+		public byte[] getPayloadBytes() {
+			return payload.clone();
+		}
+
+		public ByteBuffer getPayloadBuffer() {
+			return ByteBuffer.wrap(payload).asReadOnlyBuffer();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("DurableQueue.Entry[id=%d, %d bytes]", id, payload.length);
+		}
+	}
+
+	private static final class Segment {
+
+		final int index;
+
+		final Path path;
+
+		final MappedByteBuffer buffer;
+
+		// Entries in this segment not acknowledged yet.
+		int pending = 0;
+
+		Segment(int index, Path path, MappedByteBuffer buffer) {
+			this.index = index;
+			this.path = path;
+			this.buffer = buffer;
+		}
+	}
+
+	private final Path directory;
+
+	private final int segmentBytes;
+
+	// Oldest first; the last one is appended to.
+	private final Deque<Segment> segments = new ArrayDeque<>();
+
+	// The segment holding each entry waiting to be acknowledged.
+	private final Map<Long, Segment> pending = new HashMap<>();
+
+	// Segments written to since the last sync.
+	private final List<MappedByteBuffer> unsynced = new ArrayList<>();
+
+	private final CRC32 crc = new CRC32();
+
+	private final Object syncLock = new Object();
+
+	private final ScheduledExecutorService syncer;
+
+	private List<Entry> recovered;
+
+	private long nextId = 0;
+
+	private boolean closed = false;
+
+	public DurableQueue(Path directory) throws IOException {
+		this(directory, DEFAULT_SEGMENT_BYTES, DEFAULT_COMMIT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+	}
+
+	public DurableQueue(Path directory, int segmentBytes, long commitInterval, TimeUnit unit) throws IOException {
+		if (directory == null)
+			throw new NullPointerException("The argument directory is null.");
+		if (unit == null)
+			throw new NullPointerException("The argument unit is null.");
+		if (segmentBytes < SEGMENT_HEADER_BYTES + RECORD_HEADER_BYTES + 4)
+			throw new IllegalArgumentException("The segments are too small to hold a record.");
+		if (commitInterval <= 0)
+			throw new IllegalArgumentException("The commit interval must be positive.");
+
+		this.directory = directory;
+		this.segmentBytes = segmentBytes;
+		Files.createDirectories(directory);
+		recover();
+		segments.addLast(map(segments.isEmpty() ? 0 : segments.peekLast().index + 1));
+		release();
+
+		syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "DurableQueue-sync");
+			t.setDaemon(true);
+			return t;
+		});
+		long nanos = unit.toNanos(commitInterval);
+		syncer.scheduleWithFixedDelay(this::syncQuietly, nanos, nanos, TimeUnit.NANOSECONDS);
+	}
+
+	static Path segmentPath(Path directory, int index) {
+		return directory.resolve(String.format("queue-%08d.seg", index));
+	}
+
+	private static int segmentIndex(Path path) {
+		String name = path.getFileName().toString();
+		try {
+			return Integer.parseInt(name.substring("queue-".length(), name.length() - ".seg".length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private Segment map(int index) throws IOException {
+		Path path = segmentPath(directory, index);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+			mapped.putInt(MAGIC).putInt(VERSION);
+			return new Segment(index, path, mapped);
+		}
+	}
+
+	private void recover() throws IOException {
+		List<Path> paths = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "queue-*.seg")) {
+			for (Path path : stream) {
+				if (segmentIndex(path) >= 0)
+					paths.add(path);
+			}
+		}
+		paths.sort((a, b) -> Integer.compare(segmentIndex(a), segmentIndex(b)));
+
+		TreeMap<Long, Entry> entries = new TreeMap<>();
+		for (Path path : paths) {
+			MappedByteBuffer mapped;
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+			if (mapped.remaining() < SEGMENT_HEADER_BYTES || mapped.getInt() != MAGIC || mapped.getInt() != VERSION)
+				throw new IOException(String.format("%s is not a queue segment of version %d.", path, VERSION));
+
+			Segment segment = new Segment(segmentIndex(path), path, null);
+			segments.addLast(segment);
+			scan(segment, mapped, entries);
+		}
+		recovered = new ArrayList<>(entries.values());
+		if (!recovered.isEmpty())
+			logger.info(String.format("Recovered %d entries from %s.", recovered.size(), directory));
+	}
+
+	private void scan(Segment segment, MappedByteBuffer mapped, Map<Long, Entry> entries) {
+		while (mapped.remaining() >= RECORD_HEADER_BYTES) {
+			int start = mapped.position();
+			int length = mapped.getInt();
+			if (length == 0)
+				return;
+			if (length < RECORD_HEADER_BYTES || length - 4 > mapped.remaining()) {
+				logger.warning(String.format("A torn record at %d of %s.", start, segment.path));
+				return;
+			}
+			int checksum = mapped.getInt();
+			if (checksum != checksum(mapped, start, length)) {
+				logger.warning(String.format("A record at %d of %s doesn't match its checksum.", start, segment.path));
+				return;
+			}
+
+			byte kind = mapped.get();
+			long id = mapped.getLong();
+			nextId = Math.max(nextId, id + 1);
+			if (kind == KIND_ENTRY) {
+				byte[] payload = new byte[length - RECORD_HEADER_BYTES];
+				mapped.get(payload);
+				entries.put(id, new Entry(id, payload));
+				pending.put(id, segment);
+				segment.pending++;
+			} else if (kind == KIND_ACK) {
+				Segment holder = pending.remove(id);
+				if (holder != null) {
+					holder.pending--;
+					entries.remove(id);
+				}
+			}
+			mapped.position(start + length);
+		}
+	}
+
+	// The CRC32 of the record at start after its length and checksum.
+	private int checksum(ByteBuffer buffer, int start, int length) {
+		ByteBuffer covered = buffer.duplicate();
+		covered.limit(start + length).position(start + 8);
+		crc.reset();
+		crc.update(covered);
+		return (int) crc.getValue();
+	}
+
+	// The entries which were waiting to be acknowledged when the queue was opened, in order.
+	// Given out once; later calls get an empty list.
+	public synchronized List<Entry> takeRecovered() {
+		List<Entry> taken = recovered;
+		recovered = Collections.emptyList();
+		return taken;
+	}
+
+	// Appends the remaining bytes of payload, without consuming them, and returns the id to acknowledge it by.
+	public synchronized long append(ByteBuffer payload) throws IOException {
+		if (payload == null)
+			throw new NullPointerException("The argument payload is null.");
+		if (closed)
+			throw new IllegalStateException("The queue has been closed.");
+		int length = RECORD_HEADER_BYTES + payload.remaining();
+		if (length + 4 > segmentBytes - SEGMENT_HEADER_BYTES) {
+			String msg = String.format("An entry of %d bytes doesn't fit in a segment.", payload.remaining());
+			logger.log(Level.WARNING, msg);
+			throw new IllegalArgumentException(msg);
+		}
+
+		long id = nextId++;
+		Segment segment = write(KIND_ENTRY, id, payload);
+		pending.put(id, segment);
+		segment.pending++;
+		return id;
+	}
+
+	// Returns false if id isn't waiting to be acknowledged.
+	public synchronized boolean acknowledge(long id) throws IOException {
+		if (closed)
+			throw new IllegalStateException("The queue has been closed.");
+		Segment segment = pending.remove(id);
+		if (segment == null)
+			return false;
+
+		write(KIND_ACK, id, null);
+		segment.pending--;
+		release();
+		return true;
+	}
+
+	private Segment write(byte kind, long id, ByteBuffer payload) throws IOException {
+		int length = RECORD_HEADER_BYTES + (payload == null ? 0 : payload.remaining());
+		Segment segment = segments.peekLast();
+		// Room for the record and the 0 ending the segment.
+		if (segment.buffer.remaining() < length + 4) {
+			if (!unsynced.contains(segment.buffer))
+				unsynced.add(segment.buffer);
+			segment = map(segment.index + 1);
+			segments.addLast(segment);
+		}
+
+		// The length goes in last, so a record cut short ends the segment on recovery.
+		MappedByteBuffer buffer = segment.buffer;
+		int start = buffer.position();
+		buffer.position(start + 8);
+		buffer.put(kind).putLong(id);
+		if (payload != null)
+			buffer.put(payload.duplicate());
+		buffer.putInt(start + 4, checksum(buffer, start, length));
+		buffer.putInt(start, length);
+		if (!unsynced.contains(buffer))
+			unsynced.add(buffer);
+		return segment;
+	}
+
+	// Deletes the segments at the head which hold nothing to be acknowledged, keeping the one appended to.
+	private void release() {
+		while (segments.size() > 1 && segments.peekFirst().pending == 0) {
+			Segment segment = segments.removeFirst();
+			unsynced.remove(segment.buffer);
+			try {
+				Files.deleteIfExists(segment.path);
+			} catch (IOException e) {
+				logger.log(Level.WARNING, String.format("Couldn't delete %s.", segment.path), e);
+			}
+		}
+	}
+
+	// Forces everything appended and acknowledged so far onto the disk.
+	// Appending goes on meanwhile; only syncs wait for each other.
+	public void sync() {
+		synchronized (syncLock) {
+			List<MappedByteBuffer> buffers;
+			synchronized (this) {
+				if (unsynced.isEmpty())
+					return;
+				buffers = new ArrayList<>(unsynced);
+				unsynced.clear();
+			}
+			for (MappedByteBuffer buffer : buffers) {
+				buffer.force();
+			}
+		}
+	}
+
+	private void syncQuietly() {
+		try {
+			sync();
+		} catch (RuntimeException e) {
+			logger.log(Level.WARNING, String.format("Couldn't sync %s.", directory), e);
+		}
+	}
+
+	// The number of entries waiting to be acknowledged.
+	public synchronized int size() {
+		return pending.size();
+	}
+
+	public Path getDirectory() {
+		return directory;
+	}
+
+	@Override
+	public void close() {
+		synchronized (this) {
+			if (closed)
+				return;
+			closed = true;
+		}
+		syncer.shutdown();
+		sync();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("DurableQueue[%s, pending=%d, segments=%d]", directory, pending.size(), segments.size());
+	}
+
+}
@@ -0,0 +1,126 @@
+package com.github.tutertlob.subghz;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Paces transmissions so that a radio stays within its duty-cycle budget.
+// The budget is a token bucket of airtime which refills at dutyCycle seconds per second up to dutyCycle * window,
+// and consecutive frames are also kept minGap apart after the previous one has left the air.
+// Frames reserve their slot in order, so a burst is spread out evenly instead of being rejected by the module.
+public final class DutyCycleScheduler {
+
+	private static final Logger logger = Logger.getLogger(DutyCycleScheduler.class.getName());
+
+	// 920 MHz band: 360 seconds of transmission in any hour, and a pause between transmissions.
+	public static final double DEFAULT_DUTY_CYCLE = 0.1;
+
+	public static final long DEFAULT_WINDOW_NANOS = TimeUnit.HOURS.toNanos(1);
+
+	public static final long DEFAULT_MIN_GAP_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+	private final AirtimeModel model;
+
+	private final double dutyCycle;
+
+	private final double capacity;
+
+	private final long minGapNanos;
+
+	private double tokens;
+
+	private long lastRefill;
+
+	private long nextAllowed;
+
+	private long frames = 0;
+
+	private long airtimeNanos = 0;
+
+	private long delayedNanos = 0;
+
+	public DutyCycleScheduler(AirtimeModel model) {
+		this(model, DEFAULT_DUTY_CYCLE, DEFAULT_WINDOW_NANOS, DEFAULT_MIN_GAP_NANOS, TimeUnit.NANOSECONDS);
+	}
+
+	public DutyCycleScheduler(AirtimeModel model, double dutyCycle, long window, long minGap, TimeUnit unit) {
+		if (model == null)
+			throw new NullPointerException("The argument model is null.");
+		if (unit == null)
+			throw new NullPointerException("The argument unit is null.");
+		if (!(dutyCycle > 0.0 && dutyCycle <= 1.0))
+			throw new IllegalArgumentException("The duty cycle must be in (0, 1].");
+		if (window <= 0 || minGap < 0)
+			throw new IllegalArgumentException("The window must be positive and the gap must not be negative.");
+
+		this.model = model;
+		this.dutyCycle = dutyCycle;
+		this.capacity = dutyCycle * unit.toNanos(window);
+		this.minGapNanos = unit.toNanos(minGap);
+		this.tokens = capacity;
+		this.lastRefill = System.nanoTime();
+		this.nextAllowed = lastRefill;
+	}
+
+	// Blocks until a frame of payloadLength bytes may go on the air.
+	public void acquire(int payloadLength) throws InterruptedException {
+		long delay = reserve(payloadLength, System.nanoTime());
+		if (delay > 0) {
+			TimeUnit.NANOSECONDS.sleep(delay);
+		}
+	}
+
+	// Books the next slot for a frame and returns how long to wait for it from nowNanos.
+	public synchronized long reserve(int payloadLength, long nowNanos) {
+		if (payloadLength < 0)
+			throw new IllegalArgumentException("The payload length must not be negative.");
+
+		long airtime = model.airtimeNanos(payloadLength);
+		if (airtime > capacity) {
+			String msg = String.format("A frame of %d bytes needs more airtime than the whole budget.", payloadLength);
+			logger.log(Level.WARNING, msg);
+			throw new IllegalArgumentException(msg);
+		}
+
+		if (nowNanos - lastRefill > 0) {
+			tokens = Math.min(capacity, tokens + (nowNanos - lastRefill) * dutyCycle);
+			lastRefill = nowNanos;
+		}
+
+		long start = Math.max(nowNanos, nextAllowed);
+		if (tokens < airtime) {
+			// Tokens may be owed by frames already booked in the future, so the wait is counted from now.
+			start = Math.max(start, nowNanos + (long) Math.ceil((airtime - tokens) / dutyCycle));
+		}
+		tokens -= airtime;
+		nextAllowed = start + airtime + minGapNanos;
+
+		long delay = start - nowNanos;
+		frames++;
+		airtimeNanos += airtime;
+		delayedNanos += delay;
+		return delay;
+	}
+
+	public AirtimeModel getModel() {
+		return model;
+	}
+
+	public synchronized long getFrames() {
+		return frames;
+	}
+
+	public synchronized long getAirtimeNanos() {
+		return airtimeNanos;
+	}
+
+	public synchronized long getDelayedNanos() {
+		return delayedNanos;
+	}
+
+	// The airtime left in the bucket, which is negative while frames booked ahead still owe it.
+	public synchronized long getAvailableAirtimeNanos(long nowNanos) {
+		return (long) Math.min(capacity, tokens + Math.max(0, nowNanos - lastRefill) * dutyCycle);
+	}
+
+}
@@ -0,0 +1,296 @@
+package com.github.tutertlob.subghz;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Puts fragmented Data packets back together per sender.
+// A message is a run of packets flagged as fragmented followed by one packet without the flag.
+// When the packets carry sequence numbers, a gap in them discards the partial message.
+// A message discarded for a gap, the memory budget, eviction or a timeout is never delivered in part: the packets
+// of its sender are dropped and counted up to and including the next one without the flag.
+// A compressed message is decompressed once complete; the memory budget also caps its decompressed size.
+public final class FragmentReassembler {
+
+	private static final Logger logger = Logger.getLogger(FragmentReassembler.class.getName());
+
+	private static final int INITIAL_CAPACITY = 256;
+
+	private static final int SEQUENCE_MASK = 0xFF;
+
+	private final long timeoutNanos;
+
+	private final int memoryBudget;
+
+	// Access ordered, so the least recently extended partial message comes first.
+	private final Map<String, Partial> partials = new LinkedHashMap<>(16, 0.75f, true);
+
+	// The senders whose packets are dropped up to the end of the current message, with when that was last extended.
+	// Insertion ordered and reinserted on every update, so the oldest comes first.
+	private final Map<String, Long> discarding = new LinkedHashMap<>();
+
+	private int bufferedBytes = 0;
+
+	private long completed = 0;
+
+	private long timedOut = 0;
+
+	private long evicted = 0;
+
+	private long discarded = 0;
+
+	private long decompressed = 0;
+
+	private long dropped = 0;
+
+	public FragmentReassembler(long timeout, TimeUnit unit, int memoryBudget) {
+		if (timeout <= 0)
+			throw new IllegalArgumentException("The reassembly timeout must be positive.");
+		if (memoryBudget < 1)
+			throw new IllegalArgumentException("The memory budget must be positive.");
+
+		this.timeoutNanos = unit.toNanos(timeout);
+		this.memoryBudget = memoryBudget;
+	}
+
+	// Returns the whole message once the last fragment arrives, otherwise null.
+	// Frames which don't carry a Data packet are ignored and also give null.
+	public ByteBuffer offer(SubGHzFrame frame) {
+		PacketImplementation packet = frame.getPacket();
+		if (!(packet instanceof DataPacketInterface))
+			return null;
+
+		DataPacketInterface data = (DataPacketInterface) packet;
+		ByteBuffer bytes = ByteBuffer.allocate(data.getDataSize());
+		data.getData(bytes);
+		bytes.flip();
+		return offer(frame.getSender(), packet.getSequenceNumber(), packet.isFragmented(), packet.isCompressed(), bytes,
+				System.nanoTime());
+	}
+
+	public ByteBuffer offer(String sender, int seqNum, boolean fragmented, ByteBuffer data) {
+		return offer(sender, seqNum, fragmented, false, data, System.nanoTime());
+	}
+
+	public ByteBuffer offer(String sender, int seqNum, boolean fragmented, ByteBuffer data, long nowNanos) {
+		return offer(sender, seqNum, fragmented, false, data, nowNanos);
+	}
+
+	public ByteBuffer offer(String sender, int seqNum, boolean fragmented, boolean compressed, ByteBuffer data) {
+		return offer(sender, seqNum, fragmented, compressed, data, System.nanoTime());
+	}
+
+	public synchronized ByteBuffer offer(String sender, int seqNum, boolean fragmented, boolean compressed,
+			ByteBuffer data, long nowNanos) {
+		if (sender == null)
+			throw new NullPointerException("The argument sender is null.");
+		if (data == null)
+			throw new NullPointerException("The argument data is null.");
+
+		expire(nowNanos);
+
+		Partial partial = partials.get(sender);
+		if (partial != null && seqNum != PacketLayout.NO_SEQUENCE_NUMBER
+				&& partial.lastSeqNum != PacketLayout.NO_SEQUENCE_NUMBER
+				&& seqNum != ((partial.lastSeqNum + 1) & SEQUENCE_MASK)) {
+			logger.log(Level.INFO, String.format("A fragment from %s is missing (expected #%d, got #%d). The partial message is discarded.",
+					sender, (partial.lastSeqNum + 1) & SEQUENCE_MASK, seqNum));
+			remove(sender, partial);
+			discarded++;
+			partial = null;
+			markDiscarding(sender, nowNanos);
+		}
+
+		if (partial == null && discarding.containsKey(sender)) {
+			// The rest of a message already discarded.
+			dropped++;
+			if (fragmented) {
+				markDiscarding(sender, nowNanos);
+			} else {
+				discarding.remove(sender);
+				logger.log(Level.FINE, String.format("Dropped the rest of a discarded message from %s.", sender));
+			}
+			return null;
+		}
+
+		if (partial == null) {
+			if (!fragmented) {
+				// A message which fits in one packet.
+				if (compressed)
+					return decompress(sender, data);
+				ByteBuffer message = ByteBuffer.allocate(data.remaining());
+				message.put(data).flip();
+				completed++;
+				return message;
+			}
+			partial = new Partial();
+			partials.put(sender, partial);
+		}
+		partial.compressed |= compressed;
+
+		if (!append(sender, partial, data, nowNanos)) {
+			if (fragmented)
+				markDiscarding(sender, nowNanos);
+			return null;
+		}
+
+		partial.lastSeqNum = seqNum;
+		partial.lastUpdateNanos = nowNanos;
+
+		if (fragmented)
+			return null;
+
+		remove(sender, partial);
+		if (partial.compressed)
+			return decompress(sender, ByteBuffer.wrap(partial.buffer, 0, partial.length));
+		completed++;
+		return ByteBuffer.wrap(partial.buffer, 0, partial.length);
+	}
+
+	private ByteBuffer decompress(String sender, ByteBuffer message) {
+		try {
+			ByteBuffer inflated = ByteBuffer.wrap(Lzss.decompress(message, memoryBudget));
+			decompressed++;
+			completed++;
+			return inflated;
+		} catch (IllegalArgumentException e) {
+			logger.log(Level.WARNING, String.format("A compressed message from %s couldn't be decompressed and is discarded.",
+					sender), e);
+			discarded++;
+			return null;
+		}
+	}
+
+	public synchronized int expire(long nowNanos) {
+		int count = 0;
+		for (Iterator<Map.Entry<String, Partial>> it = partials.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<String, Partial> entry = it.next();
+			Partial partial = entry.getValue();
+			if (nowNanos - partial.lastUpdateNanos < timeoutNanos)
+				break;
+
+			logger.log(Level.INFO, String.format("Reassembling a message from %s timed out with %d bytes received.",
+					entry.getKey(), partial.length));
+			bufferedBytes -= partial.buffer.length;
+			it.remove();
+			markDiscarding(entry.getKey(), nowNanos);
+			timedOut++;
+			count++;
+		}
+
+		// A sender silent for the whole timeout has given up on the rest of the message.
+		for (Iterator<Long> it = discarding.values().iterator(); it.hasNext();) {
+			if (nowNanos - it.next() < timeoutNanos)
+				break;
+			it.remove();
+		}
+		return count;
+	}
+
+	private void markDiscarding(String sender, long nowNanos) {
+		discarding.remove(sender);
+		discarding.put(sender, nowNanos);
+	}
+
+	private boolean append(String sender, Partial partial, ByteBuffer data, long nowNanos) {
+		int required = partial.length + data.remaining();
+		if (required > memoryBudget) {
+			logger.log(Level.WARNING, String.format("A message from %s exceeds the memory budget of %d bytes and is discarded.",
+					sender, memoryBudget));
+			remove(sender, partial);
+			discarded++;
+			return false;
+		}
+
+		if (required > partial.buffer.length) {
+			int capacity = Math.min(Math.max(partial.buffer.length, INITIAL_CAPACITY), memoryBudget);
+			while (capacity < required) {
+				capacity = capacity > memoryBudget / 2 ? memoryBudget : capacity * 2;
+			}
+			evictFor(capacity - partial.buffer.length, partial, nowNanos);
+
+			byte[] grown = new byte[capacity];
+			System.arraycopy(partial.buffer, 0, grown, 0, partial.length);
+			bufferedBytes += capacity - partial.buffer.length;
+			partial.buffer = grown;
+		}
+
+		data.get(partial.buffer, partial.length, data.remaining());
+		partial.length = required;
+		return true;
+	}
+
+	private void evictFor(int bytes, Partial keep, long nowNanos) {
+		for (Iterator<Map.Entry<String, Partial>> it = partials.entrySet().iterator(); it.hasNext()
+				&& bufferedBytes + bytes > memoryBudget;) {
+			Map.Entry<String, Partial> entry = it.next();
+			Partial partial = entry.getValue();
+			if (partial == keep)
+				continue;
+
+			logger.log(Level.INFO, String.format("The partial message from %s is evicted to stay within the memory budget.",
+					entry.getKey()));
+			bufferedBytes -= partial.buffer.length;
+			it.remove();
+			markDiscarding(entry.getKey(), nowNanos);
+			evicted++;
+		}
+	}
+
+	private void remove(String sender, Partial partial) {
+		partials.remove(sender);
+		bufferedBytes -= partial.buffer.length;
+	}
+
+	public synchronized int getPartialCount() {
+		return partials.size();
+	}
+
+	public synchronized int getBufferedBytes() {
+		return bufferedBytes;
+	}
+
+	public synchronized long getCompletedCount() {
+		return completed;
+	}
+
+	public synchronized long getTimedOutCount() {
+		return timedOut;
+	}
+
+	public synchronized long getEvictedCount() {
+		return evicted;
+	}
+
+	public synchronized long getDiscardedCount() {
+		return discarded;
+	}
+
+	public synchronized long getDecompressedCount() {
+		return decompressed;
+	}
+
+	// Packets dropped as the rest of a discarded message.
+	public synchronized long getDroppedCount() {
+		return dropped;
+	}
+
+	private static final class Partial {
+
+		byte[] buffer = new byte[0];
+
+		int length = 0;
+
+		boolean compressed = false;
+
+		int lastSeqNum = PacketLayout.NO_SEQUENCE_NUMBER;
+
+		long lastUpdateNanos;
+
+	}
+
+}
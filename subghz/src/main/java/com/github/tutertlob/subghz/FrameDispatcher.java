@@ -0,0 +1,377 @@
+package com.github.tutertlob.subghz;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Hands received frames to the handlers registered for their packet type, command byte and sender, on an executor.
+// Every registration has a mailbox of its own, bounded, split into one lane per sender: the frames of a sender reach
+// a handler in the order they were dispatched and one at a time, while those of other senders go on in parallel.
+// A full mailbox drops the frame for that handler only and counts it, so a slow handler never holds up the thread
+// dispatching nor the other handlers.
+public final class FrameDispatcher<F extends SubGHzFrame> implements Closeable {
+
+	private static final Logger logger = Logger.getLogger(FrameDispatcher.class.getName());
+
+	public static final int DEFAULT_MAILBOX_CAPACITY = 256;
+
+	// Frames a lane handles before giving its thread to the other lanes.
+	private static final int LANE_BATCH = 16;
+
+	// How long the reader waits after a failed read, doubled on each failure in a row up to the maximum.
+	static final long READ_BACKOFF_MIN_MS = 10;
+
+	static final long READ_BACKOFF_MAX_MS = 1000;
+
+	public interface Handler<F> {
+
+		public void handle(F frame);
+
+	}
+
+	// How the frames to dispatch are read, e.g. Im920::readFrame or LazuriteRadio::readFrame. Null is skipped, or
+	// ends the reading if the reading thread has been interrupted. An EOFException, thrown or as the cause of what
+	// is thrown, says no frame will come again and ends the reading too.
+	public interface Source<F> {
+
+		public F readFrame() throws InterruptedException, IOException;
+
+	}
+
+	public final class Registration {
+
+		private final PacketImplementation.Type type;
+
+		private final Byte command;
+
+		private final String sender;
+
+		private final Handler<? super F> handler;
+
+		private final int capacity;
+
+		// Guarded by this registration.
+		private final Map<String, Queue<F>> lanes = new HashMap<>();
+
+		private final AtomicInteger queued = new AtomicInteger();
+
+		private final LongAdder handled = new LongAdder();
+
+		private final LongAdder dropped = new LongAdder();
+
+		private final LongAdder failed = new LongAdder();
+
+		private Registration(PacketImplementation.Type type, Byte command, String sender, Handler<? super F> handler,
+				int capacity) {
+			this.type = type;
+			this.command = command;
+			this.sender = sender;
+			this.handler = handler;
+			this.capacity = capacity;
+		}
+
+		private boolean matches(PacketImplementation.Type frameType, Byte frameCommand, String frameSender) {
+			return (type == null || type == frameType) && (command == null || command.equals(frameCommand))
+					&& (sender == null || sender.equals(frameSender));
+		}
+
+		private void offer(String key, F frame) {
+			if (queued.incrementAndGet() > capacity) {
+				queued.decrementAndGet();
+				dropped.increment();
+				logger.log(Level.FINE, String.format("Dropped a frame from %s; the mailbox of %s is full.", key, this));
+				return;
+			}
+
+			boolean schedule;
+			synchronized (this) {
+				Queue<F> lane = lanes.get(key);
+				schedule = lane == null;
+				if (schedule) {
+					lane = new ArrayDeque<>();
+					lanes.put(key, lane);
+				}
+				lane.add(frame);
+			}
+			if (schedule)
+				execute(key);
+		}
+
+		// A lane is in the map for as long as one task drains it, so its frames are handled one at a time.
+		private void execute(String key) {
+			try {
+				executor.execute(() -> drain(key));
+			} catch (RejectedExecutionException e) {
+				int lost;
+				synchronized (this) {
+					Queue<F> lane = lanes.remove(key);
+					lost = lane == null ? 0 : lane.size();
+				}
+				queued.addAndGet(-lost);
+				dropped.add(lost);
+				logger.log(Level.WARNING, String.format("Dropped %d frames from %s; the executor refused them.", lost,
+						key), e);
+			}
+		}
+
+		private void drain(String key) {
+			// Even if a handler throws an Error, the lane is removed or drained on by another task, never left
+			// in the map with nothing draining it.
+			boolean done = false;
+			try {
+				for (int i = 0; i < LANE_BATCH; i++) {
+					F frame;
+					synchronized (this) {
+						Queue<F> lane = lanes.get(key);
+						frame = lane.poll();
+						if (frame == null) {
+							lanes.remove(key);
+							done = true;
+							return;
+						}
+					}
+					queued.decrementAndGet();
+					try {
+						handler.handle(frame);
+						handled.increment();
+					} catch (RuntimeException e) {
+						failed.increment();
+						logger.log(Level.WARNING, String.format("The handler of %s failed on a frame from %s.", this,
+								key), e);
+					} catch (Error e) {
+						failed.increment();
+						throw e;
+					}
+				}
+
+				synchronized (this) {
+					if (lanes.get(key).isEmpty()) {
+						lanes.remove(key);
+						done = true;
+					}
+				}
+			} finally {
+				if (!done)
+					execute(key);
+			}
+		}
+
+		// Stops new frames coming; those in the mailbox are still handled.
+		public void cancel() {
+			registrations.remove(this);
+		}
+
+		public int getQueuedCount() {
+			return queued.get();
+		}
+
+		public long getHandledCount() {
+			return handled.sum();
+		}
+
+		public long getDroppedCount() {
+			return dropped.sum();
+		}
+
+		public long getFailedCount() {
+			return failed.sum();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("Registration[type=%s, command=%s, sender=%s, queued=%d, handled=%d, dropped=%d]",
+					type == null ? "*" : type, command == null ? "*" : String.format("0x%02x", command),
+					sender == null ? "*" : sender, queued.get(), handled.sum(), dropped.sum());
+		}
+	}
+
+	private final Executor executor;
+
+	// Null if the executor was given, and isn't shut down here.
+	private final ExecutorService ownExecutor;
+
+	private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+
+	private final LongAdder unmatched = new LongAdder();
+
+	private final LongAdder readFailures = new LongAdder();
+
+	private Thread reader;
+
+	// Handlers run on a pool of daemon threads, one per processor.
+	public FrameDispatcher() {
+		AtomicInteger threads = new AtomicInteger();
+		ownExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+			Thread t = new Thread(r, "FrameDispatcher-" + threads.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		executor = ownExecutor;
+	}
+
+	public FrameDispatcher(Executor executor) {
+		if (executor == null)
+			throw new NullPointerException("The argument executor is null.");
+
+		this.executor = executor;
+		this.ownExecutor = null;
+	}
+
+	public Registration register(PacketImplementation.Type type, Handler<? super F> handler) {
+		return register(type, null, null, handler, DEFAULT_MAILBOX_CAPACITY);
+	}
+
+	// Matches command and ACK packets carrying command.
+	public Registration registerCommand(byte command, Handler<? super F> handler) {
+		return register(null, Byte.valueOf(command), null, handler, DEFAULT_MAILBOX_CAPACITY);
+	}
+
+	public Registration registerSender(String sender, Handler<? super F> handler) {
+		return register(null, null, sender, handler, DEFAULT_MAILBOX_CAPACITY);
+	}
+
+	// Null type, command or sender matches any. A frame goes to every registration it matches.
+	public Registration register(PacketImplementation.Type type, Byte command, String sender,
+			Handler<? super F> handler, int mailboxCapacity) {
+		if (handler == null)
+			throw new NullPointerException("The argument handler is null.");
+		if (mailboxCapacity < 1) {
+			logger.log(Level.WARNING, String.format("Invalid mailbox capacity %d", mailboxCapacity));
+			throw new IllegalArgumentException("The capacity of the mailbox must be positive.");
+		}
+
+		Registration registration = new Registration(type, command, sender, handler, mailboxCapacity);
+		registrations.add(registration);
+		return registration;
+	}
+
+	// Queues frame for every handler it matches and returns how many; never blocks.
+	public int dispatch(F frame) {
+		if (frame == null)
+			throw new NullPointerException("The argument frame is null.");
+
+		PacketImplementation packet = frame.getPacket();
+		PacketImplementation.Type type = packet.getPacketType();
+		Byte command = null;
+		if (packet instanceof CommandPacketInterface)
+			command = Byte.valueOf(((CommandPacketInterface) packet).getCommand());
+		else if (packet instanceof AckPacketInterface)
+			command = Byte.valueOf(((AckPacketInterface) packet).getCommand());
+		String sender = frame.getSender();
+
+		int matched = 0;
+		for (Registration registration : registrations) {
+			if (registration.matches(type, command, sender)) {
+				registration.offer(sender, frame);
+				matched++;
+			}
+		}
+		if (matched == 0)
+			unmatched.increment();
+		return matched;
+	}
+
+	// Reads frames from source and dispatches them on a thread of its own until close().
+	public synchronized void start(Source<? extends F> source) {
+		if (source == null)
+			throw new NullPointerException("The argument source is null.");
+		if (reader != null)
+			throw new IllegalStateException("The dispatcher has already started.");
+
+		reader = new Thread(() -> pump(source), "FrameDispatcher-reader");
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	// A frame which fails to be read or dispatched is logged, counted and skipped; the reading goes on.
+	// Failures in a row are reported once and wait longer each time, so a broken source doesn't spin the reader.
+	private void pump(Source<? extends F> source) {
+		int failures = 0;
+		try {
+			while (true) {
+				F frame;
+				try {
+					frame = source.readFrame();
+				} catch (IOException | RuntimeException e) {
+					if (e instanceof EOFException || e.getCause() instanceof EOFException) {
+						logger.log(Level.INFO, "FrameDispatcher reader thread is going to exit since the source ended.");
+						return;
+					}
+					readFailures.increment();
+					logger.log(failures == 0 ? Level.WARNING : Level.FINE, "Reading a frame to dispatch failed.", e);
+					Thread.sleep(Math.min(READ_BACKOFF_MIN_MS << Math.min(failures, 16), READ_BACKOFF_MAX_MS));
+					failures++;
+					continue;
+				}
+				failures = 0;
+
+				if (frame != null) {
+					try {
+						dispatch(frame);
+					} catch (RuntimeException e) {
+						readFailures.increment();
+						logger.log(Level.WARNING, "Dispatching a frame failed.", e);
+					}
+				}
+				if (Thread.currentThread().isInterrupted())
+					break;
+			}
+		} catch (InterruptedException e) {
+			// Closed.
+		}
+		logger.log(Level.INFO, "FrameDispatcher reader thread is going to exit.");
+	}
+
+	public long getUnmatchedCount() {
+		return unmatched.sum();
+	}
+
+	public long getReadFailureCount() {
+		return readFailures.sum();
+	}
+
+	public List<Registration> getRegistrations() {
+		return Collections.unmodifiableList(registrations);
+	}
+
+	// Stops reading, and shuts down the executor unless it was given.
+	@Override
+	public void close() {
+		Thread t;
+		synchronized (this) {
+			t = reader;
+		}
+		if (t != null) {
+			t.interrupt();
+			try {
+				t.join(1000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (ownExecutor != null)
+			ownExecutor.shutdown();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("FrameDispatcher[registrations=%d, unmatched=%d, readFailures=%d]", registrations.size(),
+				unmatched.sum(), readFailures.sum());
+	}
+
+}
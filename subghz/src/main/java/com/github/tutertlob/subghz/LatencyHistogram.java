@@ -0,0 +1,110 @@
+package com.github.tutertlob.subghz;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counts latencies in power-of-two buckets of nanoseconds: bucket 0 holds 0, bucket i holds [2^(i-1), 2^i).
+// Recording is lock-free and striped, so threads recording at once don't contend, and allocates nothing.
+// Percentiles are read at bucket resolution, that is within a factor of two, as the upper bound of their bucket.
+public final class LatencyHistogram {
+
+	// The last bucket takes everything from 2^46 ns, about 20 hours, on.
+	static final int BUCKETS = 48;
+
+	private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+	private final LongAdder count = new LongAdder();
+
+	private final LongAdder sum = new LongAdder();
+
+	private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+	public LatencyHistogram() {
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	public void record(long nanos) {
+		if (nanos < 0)
+			nanos = 0;
+		int bucket = 64 - Long.numberOfLeadingZeros(nanos);
+		buckets[Math.min(bucket, BUCKETS - 1)].increment();
+		count.increment();
+		sum.add(nanos);
+		max.accumulate(nanos);
+	}
+
+	public void record(long duration, TimeUnit unit) {
+		record(unit.toNanos(duration));
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getMeanNanos() {
+		long n = count.sum();
+		return n == 0 ? 0 : sum.sum() / n;
+	}
+
+	public long getMaxNanos() {
+		return max.get();
+	}
+
+	// p is between 0 and 1. Gives 0 while nothing has been recorded.
+	public long getPercentileNanos(double p) {
+		if (p < 0 || p > 1)
+			throw new IllegalArgumentException("The percentile must be between 0 and 1.");
+
+		long[] counts = getBuckets();
+		long total = 0;
+		for (long c : counts) {
+			total += c;
+		}
+		if (total == 0)
+			return 0;
+
+		long rank = Math.max(1, (long) Math.ceil(p * total));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank)
+				return Math.min(upperBound(i), getMaxNanos());
+		}
+		return getMaxNanos();
+	}
+
+	private static long upperBound(int bucket) {
+		return bucket == 0 ? 0 : (1L << bucket) - 1;
+	}
+
+	public long[] getBuckets() {
+		long[] counts = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets[i].sum();
+		}
+		return counts;
+	}
+
+	public LatencySnapshot snapshot() {
+		return new LatencySnapshot(getCount(), getMeanNanos() / 1000, getPercentileNanos(0.5) / 1000,
+				getPercentileNanos(0.9) / 1000, getPercentileNanos(0.99) / 1000, getMaxNanos() / 1000);
+	}
+
+	public void reset() {
+		for (LongAdder bucket : buckets) {
+			bucket.reset();
+		}
+		count.reset();
+		sum.reset();
+		max.reset();
+	}
+
+	@Override
+	public String toString() {
+		return snapshot().toString();
+	}
+
+}
@@ -0,0 +1,61 @@
+package com.github.tutertlob.subghz;
+
+import java.beans.ConstructorProperties;
+
+// The summary of a LatencyHistogram at one moment, in microseconds. MXBeans show it as composite data.
+public final class LatencySnapshot {
+
+	private final long count;
+
+	private final long meanMicros;
+
+	private final long p50Micros;
+
+	private final long p90Micros;
+
+	private final long p99Micros;
+
+	private final long maxMicros;
+
+	@ConstructorProperties({ "count", "meanMicros", "p50Micros", "p90Micros", "p99Micros", "maxMicros" })
+	public LatencySnapshot(long count, long meanMicros, long p50Micros, long p90Micros, long p99Micros,
+			long maxMicros) {
+		this.count = count;
+		this.meanMicros = meanMicros;
+		this.p50Micros = p50Micros;
+		this.p90Micros = p90Micros;
+		this.p99Micros = p99Micros;
+		this.maxMicros = maxMicros;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getMeanMicros() {
+		return meanMicros;
+	}
+
+	public long getP50Micros() {
+		return p50Micros;
+	}
+
+	public long getP90Micros() {
+		return p90Micros;
+	}
+
+	public long getP99Micros() {
+		return p99Micros;
+	}
+
+	public long getMaxMicros() {
+		return maxMicros;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("count=%d mean=%dus p50=%dus p90=%dus p99=%dus max=%dus", count, meanMicros, p50Micros,
+				p90Micros, p99Micros, maxMicros);
+	}
+
+}
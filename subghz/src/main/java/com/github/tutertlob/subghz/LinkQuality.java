@@ -0,0 +1,74 @@
+package com.github.tutertlob.subghz;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// What LinkQualityTracker knows about one sender at one moment.
+public final class LinkQuality {
+
+	private final long sender;
+
+	private final double rssiAverage;
+
+	private final int[] rssiHistogram;
+
+	private final long received;
+
+	private final long missed;
+
+	private final double lossRate;
+
+	private final long idleNanos;
+
+	LinkQuality(long sender, double rssiAverage, int[] rssiHistogram, long received, long missed, double lossRate,
+			long idleNanos) {
+		this.sender = sender;
+		this.rssiAverage = rssiAverage;
+		this.rssiHistogram = rssiHistogram;
+		this.received = received;
+		this.missed = missed;
+		this.lossRate = lossRate;
+		this.idleNanos = idleNanos;
+	}
+
+	public long getSender() {
+		return sender;
+	}
+
+	// The exponentially weighted average of the 8-bit RSSI readings.
+	public double getRssiAverage() {
+		return rssiAverage;
+	}
+
+	// Bucket i counts the readings from i * RSSI_BUCKET_WIDTH up to the next bucket.
+	public int[] getRssiHistogram() {
+		return rssiHistogram.clone();
+	}
+
+	public long getReceivedCount() {
+		return received;
+	}
+
+	// Frames missing from gaps in the sequence numbers.
+	public long getMissedCount() {
+		return missed;
+	}
+
+	// The share of recent frames missed, weighted towards the latest ones.
+	public double getLossRate() {
+		return lossRate;
+	}
+
+	// Time from the sender's last frame until this was taken.
+	public long getIdle(TimeUnit unit) {
+		return unit.convert(idleNanos, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("LinkQuality[sender=%x, rssi=%.1f, loss=%.3f, received=%d, missed=%d, idle=%dms, "
+				+ "histogram=%s]", sender, rssiAverage, lossRate, received, missed, getIdle(TimeUnit.MILLISECONDS),
+				Arrays.toString(rssiHistogram));
+	}
+
+}
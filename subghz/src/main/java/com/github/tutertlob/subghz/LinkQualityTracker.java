@@ -0,0 +1,363 @@
+package com.github.tutertlob.subghz;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.StampedLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Keeps per sender an average and a histogram of the RSSI, the frames lost as told by gaps in the 8-bit
+// sequence numbers, and when it was last heard.
+// Meant to be updated by the one thread receiving frames; the state of all senders lives in one open-addressing
+// table of primitive arrays, so updating a known sender allocates nothing. The lock is used as a sequence lock:
+// only the receiver takes it to write, and queries from other threads read optimistically and try again while an
+// update races with them, without ever taking it, so they never hold up the receiver. Only clear() takes it too,
+// for as long as swapping the table takes.
+// Listeners are told of a new sender and whenever its RSSI average or loss rate has moved by more than the
+// hysteresis since they were last told, on the receiving thread.
+public final class LinkQualityTracker {
+
+	private static final Logger logger = Logger.getLogger(LinkQualityTracker.class.getName());
+
+	public static final int DEFAULT_MAX_SENDERS = 256;
+
+	public static final int RSSI_BUCKETS = 16;
+
+	public static final int RSSI_BUCKET_WIDTH = 256 / RSSI_BUCKETS;
+
+	public static final double DEFAULT_RSSI_HYSTERESIS = 6;
+
+	public static final double DEFAULT_LOSS_HYSTERESIS = 0.05;
+
+	// The weights of the latest reading in the averages.
+	private static final double RSSI_ALPHA = 1.0 / 8;
+
+	private static final double LOSS_ALPHA = 1.0 / 32;
+
+	private static final int SEQUENCE_MASK = 0xFF;
+
+	// Numbers up to half the sequence space ahead of the last one are new, the others arrived late.
+	private static final int AHEAD = (SEQUENCE_MASK + 1) / 2;
+
+	private static final int NO_SEQUENCE = -1;
+
+	public interface Listener {
+
+		public void linkChanged(LinkQuality quality);
+
+	}
+
+	// Swapped as a whole when the table grows, so a reader always sees arrays of one size.
+	private static final class Table {
+
+		final long[] keys;
+
+		final boolean[] used;
+
+		// The last sequence number seen, or NO_SEQUENCE.
+		final int[] lastSeq;
+
+		final double[] rssiAverage;
+
+		final int[] rssiHistogram;
+
+		final long[] received;
+
+		final long[] missed;
+
+		final double[] lossRate;
+
+		final long[] lastNanos;
+
+		final double[] notifiedRssi;
+
+		final double[] notifiedLoss;
+
+		Table(int capacity) {
+			keys = new long[capacity];
+			used = new boolean[capacity];
+			lastSeq = new int[capacity];
+			rssiAverage = new double[capacity];
+			rssiHistogram = new int[capacity * RSSI_BUCKETS];
+			received = new long[capacity];
+			missed = new long[capacity];
+			lossRate = new double[capacity];
+			lastNanos = new long[capacity];
+			notifiedRssi = new double[capacity];
+			notifiedLoss = new double[capacity];
+		}
+
+		int find(long key) {
+			int mask = keys.length - 1;
+			for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+				if (!used[i])
+					return -1;
+				if (keys[i] == key)
+					return i;
+			}
+		}
+
+		int freeSlot(long key) {
+			int mask = keys.length - 1;
+			int i = hash(key) & mask;
+			while (used[i]) {
+				i = (i + 1) & mask;
+			}
+			return i;
+		}
+
+		void copy(int from, Table dst, int to) {
+			dst.keys[to] = keys[from];
+			dst.used[to] = true;
+			dst.lastSeq[to] = lastSeq[from];
+			dst.rssiAverage[to] = rssiAverage[from];
+			System.arraycopy(rssiHistogram, from * RSSI_BUCKETS, dst.rssiHistogram, to * RSSI_BUCKETS, RSSI_BUCKETS);
+			dst.received[to] = received[from];
+			dst.missed[to] = missed[from];
+			dst.lossRate[to] = lossRate[from];
+			dst.lastNanos[to] = lastNanos[from];
+			dst.notifiedRssi[to] = notifiedRssi[from];
+			dst.notifiedLoss[to] = notifiedLoss[from];
+		}
+
+		LinkQuality quality(int slot, long nowNanos) {
+			return new LinkQuality(keys[slot], rssiAverage[slot],
+					Arrays.copyOfRange(rssiHistogram, slot * RSSI_BUCKETS, (slot + 1) * RSSI_BUCKETS), received[slot],
+					missed[slot], lossRate[slot], Math.max(0, nowNanos - lastNanos[slot]));
+		}
+	}
+
+	private final int maxSenders;
+
+	private final double rssiHysteresis;
+
+	private final double lossHysteresis;
+
+	private final StampedLock lock = new StampedLock();
+
+	private volatile Table table = new Table(16);
+
+	// Written by the receiving thread only.
+	private volatile int size = 0;
+
+	private volatile long evicted = 0;
+
+	private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+	public LinkQualityTracker() {
+		this(DEFAULT_MAX_SENDERS, DEFAULT_RSSI_HYSTERESIS, DEFAULT_LOSS_HYSTERESIS);
+	}
+
+	public LinkQualityTracker(int maxSenders, double rssiHysteresis, double lossHysteresis) {
+		if (maxSenders < 1)
+			throw new IllegalArgumentException("The number of senders must be positive.");
+		if (rssiHysteresis < 0 || lossHysteresis < 0)
+			throw new IllegalArgumentException("The hysteresis must not be negative.");
+
+		this.maxSenders = maxSenders;
+		this.rssiHysteresis = rssiHysteresis;
+		this.lossHysteresis = lossHysteresis;
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	public void addListener(Listener listener) {
+		if (listener == null)
+			throw new NullPointerException("The argument listener is null.");
+		listeners.add(listener);
+	}
+
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	public void update(long sender, int seqNum, int rssi) {
+		update(sender, seqNum, rssi, System.nanoTime());
+	}
+
+	// Records a frame from sender. seqNum is PacketLayout.NO_SEQUENCE_NUMBER for frames without one,
+	// which count towards the RSSI only. rssi is the radio's 8-bit reading.
+	public void update(long sender, int seqNum, int rssi, long nowNanos) {
+		LinkQuality changed = null;
+		long stamp = lock.writeLock();
+		try {
+			Table t = table;
+			int slot = t.find(sender);
+			boolean added = slot < 0;
+			if (added) {
+				slot = insert(sender, nowNanos);
+				t = table;
+				t.rssiAverage[slot] = rssi & 0xFF;
+			} else {
+				t.rssiAverage[slot] += ((rssi & 0xFF) - t.rssiAverage[slot]) * RSSI_ALPHA;
+			}
+			t.rssiHistogram[slot * RSSI_BUCKETS + (rssi & 0xFF) / RSSI_BUCKET_WIDTH]++;
+			t.lastNanos[slot] = nowNanos;
+			if (seqNum != PacketLayout.NO_SEQUENCE_NUMBER)
+				countSequence(t, slot, seqNum & SEQUENCE_MASK);
+
+			if (added || Math.abs(t.rssiAverage[slot] - t.notifiedRssi[slot]) > rssiHysteresis
+					|| Math.abs(t.lossRate[slot] - t.notifiedLoss[slot]) > lossHysteresis) {
+				t.notifiedRssi[slot] = t.rssiAverage[slot];
+				t.notifiedLoss[slot] = t.lossRate[slot];
+				if (!listeners.isEmpty())
+					changed = t.quality(slot, nowNanos);
+			}
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+
+		if (changed != null)
+			notifyListeners(changed);
+	}
+
+	private static void countSequence(Table t, int slot, int seqNum) {
+		int last = t.lastSeq[slot];
+		if (last == NO_SEQUENCE) {
+			t.lastSeq[slot] = seqNum;
+			t.received[slot]++;
+			return;
+		}
+		int ahead = (seqNum - last) & SEQUENCE_MASK;
+		// A repeat says nothing about loss.
+		if (ahead == 0)
+			return;
+		t.received[slot]++;
+		// A late frame has been counted as missed already.
+		if (ahead >= AHEAD)
+			return;
+
+		int gap = ahead - 1;
+		t.lastSeq[slot] = seqNum;
+		t.missed[slot] += gap;
+		double loss = t.lossRate[slot];
+		if (gap > 0)
+			loss = 1 - (1 - loss) * Math.pow(1 - LOSS_ALPHA, gap);
+		t.lossRate[slot] = loss * (1 - LOSS_ALPHA);
+	}
+
+	private void notifyListeners(LinkQuality quality) {
+		for (Listener listener : listeners) {
+			try {
+				listener.linkChanged(quality);
+			} catch (RuntimeException e) {
+				logger.log(Level.WARNING, "A link quality listener failed.", e);
+			}
+		}
+	}
+
+	private int insert(long key, long nowNanos) {
+		Table t = table;
+		if (size >= maxSenders || (size + 1) * 2 > t.keys.length)
+			t = rebuild(nowNanos);
+
+		int slot = t.freeSlot(key);
+		t.keys[slot] = key;
+		t.used[slot] = true;
+		t.lastSeq[slot] = NO_SEQUENCE;
+		size++;
+		return slot;
+	}
+
+	// Makes room for one more sender, growing the table or evicting the one unheard of for the longest.
+	private Table rebuild(long nowNanos) {
+		Table old = table;
+		int stalest = -1;
+		for (int i = 0; i < old.keys.length; i++) {
+			if (old.used[i] && (stalest < 0 || old.lastNanos[i] - old.lastNanos[stalest] < 0))
+				stalest = i;
+		}
+		int live = size;
+		if (live >= maxSenders) {
+			live--;
+			evicted++;
+		} else {
+			stalest = -1;
+		}
+
+		int capacity = old.keys.length;
+		while ((live + 1) * 2 > capacity) {
+			capacity <<= 1;
+		}
+		Table t = new Table(capacity);
+		for (int i = 0; i < old.keys.length; i++) {
+			if (old.used[i] && i != stalest)
+				old.copy(i, t, t.freeSlot(old.keys[i]));
+		}
+		size = live;
+		table = t;
+		return t;
+	}
+
+	// Gives null for a sender not heard of.
+	public LinkQuality get(long sender) {
+		long now = System.nanoTime();
+		for (;;) {
+			long stamp = lock.tryOptimisticRead();
+			if (stamp != 0) {
+				LinkQuality quality = read(sender, now);
+				if (lock.validate(stamp))
+					return quality;
+			}
+			Thread.yield();
+		}
+	}
+
+	private LinkQuality read(long sender, long nowNanos) {
+		Table t = table;
+		int slot = t.find(sender);
+		return slot < 0 ? null : t.quality(slot, nowNanos);
+	}
+
+	public List<LinkQuality> getAll() {
+		long now = System.nanoTime();
+		for (;;) {
+			long stamp = lock.tryOptimisticRead();
+			if (stamp != 0) {
+				List<LinkQuality> all = readAll(now);
+				if (lock.validate(stamp))
+					return all;
+			}
+			Thread.yield();
+		}
+	}
+
+	private List<LinkQuality> readAll(long nowNanos) {
+		Table t = table;
+		List<LinkQuality> all = new ArrayList<>();
+		for (int i = 0; i < t.keys.length; i++) {
+			if (t.used[i])
+				all.add(t.quality(i, nowNanos));
+		}
+		return all;
+	}
+
+	public int getSenderCount() {
+		return size;
+	}
+
+	public long getEvictedCount() {
+		return evicted;
+	}
+
+	public void clear() {
+		long stamp = lock.writeLock();
+		try {
+			table = new Table(16);
+			size = 0;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("LinkQualityTracker[senders=%d, evicted=%d]", getSenderCount(), getEvictedCount());
+	}
+
+}
@@ -0,0 +1,332 @@
+package com.github.tutertlob.subghz;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// An LZ77 variant small enough for microcontroller peers: the decoder needs no table, only the bytes
+// it has already written, and never looks further back than WINDOW_SIZE of them.
+//
+// The compressed bytes are groups of up to 8 items, each group led by a control byte.
+// Bit i of the control byte, from the least significant, tells whether item i is
+// a literal (0, one byte) or a match (1, two bytes).
+// A match is a 10-bit distance minus one followed by a 6-bit length minus MIN_MATCH, big endian.
+// The compressed bytes end with the input, so a message needs no length prefix and a stream can be
+// decompressed from the concatenation of its fragments.
+public final class Lzss {
+
+	private static final Logger logger = Logger.getLogger(Lzss.class.getName());
+
+	public static final int WINDOW_SIZE = 1024;
+
+	public static final int MIN_MATCH = 3;
+
+	public static final int MAX_MATCH = MIN_MATCH + 0x3F;
+
+	// How many earlier occurrences of a 3-byte prefix the encoder tries; more trades CPU for ratio.
+	public static final int DEFAULT_CHAIN_LENGTH = 16;
+
+	private static final int HASH_BITS = 12;
+
+	private static final int HASH_SIZE = 1 << HASH_BITS;
+
+	private static final int NIL = -1;
+
+	// The encoder only looks ahead this far, so a stream is encoded in chunks of this many bytes past the window.
+	private static final int STREAM_CHUNK_SIZE = 4096;
+
+	private Lzss() {
+
+	}
+
+	// The longest output of compress() for an input of the given length.
+	public static int maxCompressedLength(int length) {
+		return length + (length + 7) / 8;
+	}
+
+	public static byte[] compress(byte[] src) {
+		return compress(src, DEFAULT_CHAIN_LENGTH);
+	}
+
+	public static byte[] compress(byte[] src, int chainLength) {
+		if (src == null) {
+			String msg = "Argument src is null.";
+			logger.log(Level.WARNING, msg);
+			throw new NullPointerException(msg);
+		}
+
+		Encoder encoder = new Encoder(src, src.length, chainLength, maxCompressedLength(src.length));
+		encoder.encode(true);
+		return Arrays.copyOf(encoder.out, encoder.outLength);
+	}
+
+	// Refuses to produce more than maxLength bytes, so that a corrupt or hostile message can't exhaust memory.
+	public static byte[] decompress(ByteBuffer src, int maxLength) {
+		if (src == null) {
+			String msg = "Argument src is null.";
+			logger.log(Level.WARNING, msg);
+			throw new NullPointerException(msg);
+		}
+
+		byte[] out = new byte[Math.min(maxLength, Math.max(64, src.remaining() * 2))];
+		int n = 0;
+		while (src.hasRemaining()) {
+			int control = src.get() & 0xFF;
+			for (int bit = 0; bit < 8 && src.hasRemaining(); bit++) {
+				if ((control & (1 << bit)) == 0) {
+					out = ensureCapacity(out, n + 1, maxLength);
+					out[n++] = src.get();
+					continue;
+				}
+
+				if (src.remaining() < 2)
+					throw corrupt("A match is truncated.");
+				int high = src.get() & 0xFF;
+				int low = src.get() & 0xFF;
+				int distance = ((high << 2) | (low >>> 6)) + 1;
+				int length = (low & 0x3F) + MIN_MATCH;
+				if (distance > n)
+					throw corrupt(String.format("A match refers %d bytes back, but only %d have been decoded.", distance, n));
+
+				out = ensureCapacity(out, n + length, maxLength);
+				// Byte by byte, as a match may overlap the bytes it produces.
+				for (int i = 0; i < length; i++, n++) {
+					out[n] = out[n - distance];
+				}
+			}
+		}
+		return Arrays.copyOf(out, n);
+	}
+
+	// A channel reading as the compressed form of the source.
+	// The source is read ahead by up to STREAM_CHUNK_SIZE bytes.
+	public static ReadableByteChannel compressing(ReadableByteChannel source) {
+		return compressing(source, DEFAULT_CHAIN_LENGTH);
+	}
+
+	public static ReadableByteChannel compressing(ReadableByteChannel source, int chainLength) {
+		if (source == null) {
+			String msg = "Argument source is null.";
+			logger.log(Level.WARNING, msg);
+			throw new NullPointerException(msg);
+		}
+		return new CompressingChannel(source, chainLength);
+	}
+
+	private static byte[] ensureCapacity(byte[] out, int required, int maxLength) {
+		if (required <= out.length)
+			return out;
+		if (required > maxLength)
+			throw corrupt(String.format("The decompressed message exceeds %d bytes.", maxLength));
+		return Arrays.copyOf(out, (int) Math.min(maxLength, Math.max(required, 2L * out.length)));
+	}
+
+	private static IllegalArgumentException corrupt(String msg) {
+		logger.log(Level.WARNING, msg);
+		return new IllegalArgumentException(msg);
+	}
+
+	private static final class Encoder {
+
+		private final byte[] in;
+
+		private int filled;
+
+		private int pos = 0;
+
+		private final int chainLength;
+
+		private final int[] head = new int[HASH_SIZE];
+
+		private final int[] prev;
+
+		byte[] out;
+
+		int outLength = 0;
+
+		// Where the next drain() starts in out.
+		private int outStart = 0;
+
+		// The group being built: its control byte and up to 8 items.
+		private final byte[] group = new byte[1 + 8 * 2];
+
+		private int groupLength = 1;
+
+		private int items = 0;
+
+		Encoder(byte[] in, int filled, int chainLength, int outCapacity) {
+			if (chainLength < 1) {
+				String msg = "The chain length must be positive.";
+				logger.log(Level.WARNING, msg);
+				throw new IllegalArgumentException(msg);
+			}
+			this.in = in;
+			this.filled = filled;
+			this.chainLength = chainLength;
+			this.prev = new int[in.length];
+			this.out = new byte[outCapacity];
+			Arrays.fill(head, NIL);
+		}
+
+		// Encodes what has been filled in, keeping MAX_MATCH bytes of lookahead unless the input has ended.
+		void encode(boolean end) {
+			int limit = end ? filled : filled - MAX_MATCH - 2;
+			while (pos < limit) {
+				int bestLength = 0;
+				int bestDistance = 0;
+				if (pos + MIN_MATCH <= filled) {
+					int maxLength = Math.min(MAX_MATCH, filled - pos);
+					int candidate = head[hash(pos)];
+					for (int chain = chainLength; candidate != NIL && pos - candidate <= WINDOW_SIZE && chain > 0; chain--) {
+						int length = 0;
+						while (length < maxLength && in[candidate + length] == in[pos + length]) {
+							length++;
+						}
+						if (length > bestLength) {
+							bestLength = length;
+							bestDistance = pos - candidate;
+							if (length == maxLength)
+								break;
+						}
+						candidate = prev[candidate];
+					}
+				}
+
+				if (bestLength >= MIN_MATCH) {
+					int code = bestDistance - 1;
+					group[0] |= 1 << items;
+					group[groupLength++] = (byte) (code >>> 2);
+					group[groupLength++] = (byte) ((code << 6) | (bestLength - MIN_MATCH));
+				} else {
+					bestLength = 1;
+					group[groupLength++] = in[pos];
+				}
+				if (++items == 8)
+					flushGroup();
+
+				for (int next = pos + bestLength; pos < next; pos++) {
+					insert(pos);
+				}
+			}
+			if (end)
+				flushGroup();
+		}
+
+		private void insert(int p) {
+			if (p + MIN_MATCH > filled)
+				return;
+			int h = hash(p);
+			prev[p] = head[h];
+			head[h] = p;
+		}
+
+		private int hash(int p) {
+			int h = ((in[p] & 0xFF) << 16) | ((in[p + 1] & 0xFF) << 8) | (in[p + 2] & 0xFF);
+			return (h * 0x9E3779B1) >>> (32 - HASH_BITS);
+		}
+
+		private void flushGroup() {
+			if (items == 0)
+				return;
+			if (outLength + groupLength > out.length)
+				out = Arrays.copyOf(out, Math.max(outLength + groupLength, out.length * 2));
+			System.arraycopy(group, 0, out, outLength, groupLength);
+			outLength += groupLength;
+			group[0] = 0;
+			groupLength = 1;
+			items = 0;
+		}
+
+		// Drops what the window no longer reaches, so that the buffer has room for the next chunk.
+		void slide() {
+			int shift = pos - WINDOW_SIZE;
+			if (shift <= 0)
+				return;
+			System.arraycopy(in, shift, in, 0, filled - shift);
+			System.arraycopy(prev, shift, prev, 0, filled - shift);
+			for (int i = 0; i < filled - shift; i++) {
+				prev[i] = prev[i] < shift ? NIL : prev[i] - shift;
+			}
+			for (int i = 0; i < HASH_SIZE; i++) {
+				head[i] = head[i] < shift ? NIL : head[i] - shift;
+			}
+			filled -= shift;
+			pos -= shift;
+		}
+
+		boolean hasOutput() {
+			return outStart < outLength;
+		}
+
+		void drain(ByteBuffer dst) {
+			int n = Math.min(dst.remaining(), outLength - outStart);
+			dst.put(out, outStart, n);
+			outStart += n;
+			if (outStart == outLength) {
+				outStart = 0;
+				outLength = 0;
+			}
+		}
+
+		// Returns false once the source has reached its end.
+		boolean fill(ReadableByteChannel source) throws IOException {
+			ByteBuffer room = ByteBuffer.wrap(in, filled, in.length - filled);
+			try {
+				while (room.hasRemaining()) {
+					if (source.read(room) < 0)
+						return false;
+				}
+				return true;
+			} finally {
+				filled = room.position();
+			}
+		}
+	}
+
+	private static final class CompressingChannel implements ReadableByteChannel {
+
+		private final ReadableByteChannel source;
+
+		private final Encoder encoder;
+
+		private boolean end = false;
+
+		private boolean open = true;
+
+		CompressingChannel(ReadableByteChannel source, int chainLength) {
+			this.source = source;
+			this.encoder = new Encoder(new byte[WINDOW_SIZE + STREAM_CHUNK_SIZE], 0, chainLength,
+					maxCompressedLength(STREAM_CHUNK_SIZE));
+		}
+
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			while (!encoder.hasOutput()) {
+				if (end)
+					return -1;
+				encoder.slide();
+				end = !encoder.fill(source);
+				encoder.encode(end);
+			}
+
+			int before = dst.position();
+			encoder.drain(dst);
+			return dst.position() - before;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return open;
+		}
+
+		@Override
+		public void close() throws IOException {
+			open = false;
+			source.close();
+		}
+	}
+
+}
@@ -4,4 +4,7 @@ public interface NoticePacketInterface {
 
 	public String getNotice();
 
+	// Throws IllegalStateException unless the packet is TLV encoded.
+	public TlvReader readNoticeParams(TlvReader reader);
+
 }
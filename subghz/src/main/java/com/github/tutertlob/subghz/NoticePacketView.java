@@ -0,0 +1,38 @@
+package com.github.tutertlob.subghz;
+
+import java.nio.ByteBuffer;
+
+public final class NoticePacketView extends PacketView implements NoticePacketInterface {
+
+	private final AsciiView notice = new AsciiView();
+
+	public NoticePacketView(PacketLayout layout) {
+		super(layout);
+	}
+
+	public NoticePacketView wrap(ByteBuffer packet) {
+		bind(packet);
+		return this;
+	}
+
+	@Override
+	public PacketImplementation.Type getPacketType() {
+		return PacketImplementation.Type.NOTICE;
+	}
+
+	@Override
+	public String getNotice() {
+		return paramString(bodyIndex());
+	}
+
+	@Override
+	public TlvReader readNoticeParams(TlvReader reader) {
+		return tlvReader(reader, bodyIndex());
+	}
+
+	// The returned view is reused by this flyweight and is valid until the next wrap().
+	public CharSequence getNoticeChars() {
+		return asciiView(notice, bodyIndex());
+	}
+
+}
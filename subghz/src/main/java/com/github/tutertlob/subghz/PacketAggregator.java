@@ -0,0 +1,166 @@
+package com.github.tutertlob.subghz;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Coalesces small packets to the same destination so they can share one radio frame.
+// A batch goes out when the next packet wouldn't fit in the frame, or when its first packet has waited for the
+// delay budget, whichever comes first. Packets are flushed in the order they were added.
+// Every entry of an aggregate costs the packet plus one length byte.
+public final class PacketAggregator<K, P extends PacketImplementation> implements Closeable {
+
+	private static final Logger logger = Logger.getLogger(PacketAggregator.class.getName());
+
+	public interface Flusher<K, P> {
+
+		// Called with one packet when there was nothing to coalesce it with.
+		public void flush(K destination, List<P> packets);
+
+	}
+
+	private final int capacity;
+
+	private final long delayNanos;
+
+	private final Flusher<K, P> flusher;
+
+	private final ScheduledThreadPoolExecutor timer;
+
+	private final Map<K, Batch> batches = new HashMap<>();
+
+	private boolean closed = false;
+
+	private long flushedPackets = 0;
+
+	private long flushedBatches = 0;
+
+	private final class Batch {
+
+		final List<P> packets = new ArrayList<>();
+
+		int bytes = 0;
+
+		ScheduledFuture<?> deadline;
+	}
+
+	public PacketAggregator(int capacity, long delay, TimeUnit unit, Flusher<K, P> flusher) {
+		if (unit == null)
+			throw new NullPointerException("The argument unit is null.");
+		if (flusher == null)
+			throw new NullPointerException("The argument flusher is null.");
+		if (capacity < 2)
+			throw new IllegalArgumentException("The aggregate capacity is too small to hold any packet.");
+		if (delay < 0)
+			throw new IllegalArgumentException("The delay budget must not be negative.");
+
+		this.capacity = capacity;
+		this.delayNanos = unit.toNanos(delay);
+		this.flusher = flusher;
+		this.timer = new ScheduledThreadPoolExecutor(1, r -> {
+			Thread t = new Thread(r, "PacketAggregator-timer");
+			t.setDaemon(true);
+			return t;
+		});
+		this.timer.setRemoveOnCancelPolicy(true);
+	}
+
+	public static int entrySize(PacketImplementation packet) {
+		return 1 + packet.getPacketLength();
+	}
+
+	public synchronized void add(K destination, P packet) {
+		if (destination == null)
+			throw new NullPointerException("The argument destination is null.");
+		if (packet == null)
+			throw new NullPointerException("The argument packet is null.");
+		if (closed)
+			throw new IllegalStateException("The aggregator has been closed.");
+
+		int size = entrySize(packet);
+		Batch batch = batches.get(destination);
+		if (batch != null && batch.bytes + size > capacity) {
+			flush(destination);
+			batch = null;
+		}
+		if (size > capacity || delayNanos == 0) {
+			// Nothing to gain from holding it back.
+			flush(destination);
+			deliver(destination, Collections.singletonList(packet));
+			return;
+		}
+
+		if (batch == null) {
+			batch = new Batch();
+			batches.put(destination, batch);
+			final Batch scheduled = batch;
+			batch.deadline = timer.schedule(() -> expire(destination, scheduled), delayNanos, TimeUnit.NANOSECONDS);
+		}
+		batch.packets.add(packet);
+		batch.bytes += size;
+		if (batch.bytes == capacity) {
+			flush(destination);
+		}
+	}
+
+	public synchronized void flush(K destination) {
+		Batch batch = batches.remove(destination);
+		if (batch == null)
+			return;
+
+		batch.deadline.cancel(false);
+		deliver(destination, batch.packets);
+	}
+
+	public synchronized void flush() {
+		for (K destination : new ArrayList<>(batches.keySet())) {
+			flush(destination);
+		}
+	}
+
+	// Flushes what is pending. Later packets are refused.
+	@Override
+	public synchronized void close() {
+		if (closed)
+			return;
+
+		flush();
+		closed = true;
+		timer.shutdownNow();
+	}
+
+	public synchronized long getFlushedPackets() {
+		return flushedPackets;
+	}
+
+	public synchronized long getFlushedBatches() {
+		return flushedBatches;
+	}
+
+	private synchronized void expire(K destination, Batch batch) {
+		// The batch may have been flushed for being full while this was waiting for the lock.
+		if (batches.get(destination) != batch)
+			return;
+
+		try {
+			flush(destination);
+		} catch (RuntimeException e) {
+			logger.log(Level.WARNING, String.format("Sending %d packets to %s failed.", batch.packets.size(), destination), e);
+		}
+	}
+
+	private void deliver(K destination, List<P> packets) {
+		flushedPackets += packets.size();
+		flushedBatches++;
+		flusher.flush(destination, packets);
+	}
+
+}
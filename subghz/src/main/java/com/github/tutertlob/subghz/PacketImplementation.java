@@ -1,5 +1,6 @@
 package com.github.tutertlob.subghz;
 
+import java.nio.ByteBuffer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.Map;
@@ -16,6 +17,8 @@ public abstract class PacketImplementation {
 
 	public abstract byte[] getPacketBytes();
 
+	public abstract void writeTo(ByteBuffer dst);
+
 	public abstract int getPacketLength();
 
 	public abstract PacketImplementation.Type getPacketType();
@@ -24,8 +27,28 @@ public abstract class PacketImplementation {
 
 	public abstract boolean isResponseRequested();
 
+	// The body has been compressed with Lzss. Fragments of a compressed message all carry the flag,
+	// and the message is decompressed once it has been put back together.
+	public abstract boolean isCompressed();
+
+	// The parameters of a Command, Ack or Notice packet are TlvWriter records rather than US-ASCII text.
+	public abstract boolean isTlvEncoded();
+
+	// Packets whose header carries no sequence number report PacketLayout.NO_SEQUENCE_NUMBER.
+	public int getSequenceNumber() {
+		return PacketLayout.NO_SEQUENCE_NUMBER;
+	}
+
 	public abstract String toString();
 
+	// Encodes like String.getBytes(US_ASCII) does, without the intermediate array.
+	protected static void putAscii(ByteBuffer dst, String s) {
+		for (int i = 0, n = s.length(); i < n; i++) {
+			char c = s.charAt(i);
+			dst.put(c < 0x80 ? (byte) c : (byte) '?');
+		}
+	}
+
 	public static enum Type {
 
 		DATA((byte)0),
@@ -34,7 +57,9 @@ public abstract class PacketImplementation {
 
 		ACK((byte)2),
 
-		NOTICE((byte)3);
+		NOTICE((byte)3),
+
+		AGGREGATE((byte)4);
 
 		private final byte id;
 
@@ -0,0 +1,79 @@
+package com.github.tutertlob.subghz;
+
+public final class PacketLayout {
+
+	public static final byte FLAG_MASK_TLV = 0x40;
+
+	public static final byte FLAG_MASK_COMP = 0x20;
+
+	public static final byte FLAG_MASK_FRAG = 0x10;
+
+	public static final byte FLAG_MASK_ACK = 0x08;
+
+	public static final byte TYPE_MASK = 0x07;
+
+	public static final int NO_SEQUENCE_NUMBER = -1;
+
+	private final int flagIndex;
+
+	private final int bodyIndex;
+
+	private final int seqNumIndex;
+
+	private final byte seqNumFlag;
+
+	public PacketLayout(int flagIndex, int bodyIndex, int seqNumIndex) {
+		if (flagIndex < 0 || bodyIndex <= flagIndex)
+			throw new IllegalArgumentException("The flag byte must precede the packet body.");
+		if (seqNumIndex != NO_SEQUENCE_NUMBER && (seqNumIndex < 0 || seqNumIndex >= bodyIndex))
+			throw new IllegalArgumentException("The sequence number must be a part of the packet header.");
+
+		this.flagIndex = flagIndex;
+		this.bodyIndex = bodyIndex;
+		this.seqNumIndex = seqNumIndex;
+		this.seqNumFlag = 0;
+	}
+
+	// A header whose sequence number is optional: when seqNumFlag is set in the flag byte,
+	// the sequence number takes the byte at bodyIndex and the body starts right after it.
+	public PacketLayout(int flagIndex, int bodyIndex, byte seqNumFlag) {
+		if (flagIndex < 0 || bodyIndex <= flagIndex)
+			throw new IllegalArgumentException("The flag byte must precede the packet body.");
+		if (seqNumFlag == 0)
+			throw new IllegalArgumentException("The flag of an optional sequence number must not be zero.");
+
+		this.flagIndex = flagIndex;
+		this.bodyIndex = bodyIndex;
+		this.seqNumIndex = NO_SEQUENCE_NUMBER;
+		this.seqNumFlag = seqNumFlag;
+	}
+
+	public int flagIndex() {
+		return flagIndex;
+	}
+
+	public int bodyIndex() {
+		return bodyIndex;
+	}
+
+	public int seqNumIndex() {
+		return seqNumIndex;
+	}
+
+	public int headerSize() {
+		return bodyIndex;
+	}
+
+	public boolean hasSeqNum() {
+		return seqNumIndex != NO_SEQUENCE_NUMBER;
+	}
+
+	public boolean hasOptionalSeqNum() {
+		return seqNumFlag != 0;
+	}
+
+	public byte seqNumFlag() {
+		return seqNumFlag;
+	}
+
+}
@@ -0,0 +1,179 @@
+package com.github.tutertlob.subghz;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public abstract class PacketView {
+
+	private static final Logger logger = Logger.getLogger(PacketView.class.getName());
+
+	private final PacketLayout layout;
+
+	private ByteBuffer buffer;
+
+	private int offset;
+
+	private int length;
+
+	PacketView(PacketLayout layout) {
+		this.layout = Objects.requireNonNull(layout, "Argument layout is null.");
+	}
+
+	// Binds this view to the remaining bytes of the packet buffer without copying them.
+	// The view reads the buffer with absolute gets, so the buffer's position and limit are left untouched.
+	void bind(ByteBuffer packet) {
+		if (packet.remaining() < layout.headerSize()) {
+			String msg = String.format("The packet is too short (%d bytes) to contain a header.", packet.remaining());
+			logger.log(Level.WARNING, msg);
+			throw new IllegalArgumentException(msg);
+		}
+
+		this.buffer = packet;
+		this.offset = packet.position();
+		this.length = packet.remaining();
+		if (length < bodyIndex()) {
+			String msg = "The packet is too short to contain its sequence number.";
+			logger.log(Level.WARNING, msg);
+			throw new IllegalArgumentException(msg);
+		}
+	}
+
+	public abstract PacketImplementation.Type getPacketType();
+
+	public final PacketLayout getLayout() {
+		return layout;
+	}
+
+	public final boolean isFragmented() {
+		return (flag() & PacketLayout.FLAG_MASK_FRAG) != 0;
+	}
+
+	public final boolean isResponseRequested() {
+		return (flag() & PacketLayout.FLAG_MASK_ACK) != 0;
+	}
+
+	public final boolean isCompressed() {
+		return (flag() & PacketLayout.FLAG_MASK_COMP) != 0;
+	}
+
+	public final boolean isTlvEncoded() {
+		return (flag() & PacketLayout.FLAG_MASK_TLV) != 0;
+	}
+
+	public final int getSequenceNumber() {
+		if (layout.hasSeqNum())
+			return byteAt(layout.seqNumIndex()) & 0xFF;
+		if (hasOptionalSeqNum())
+			return byteAt(layout.bodyIndex()) & 0xFF;
+		return PacketLayout.NO_SEQUENCE_NUMBER;
+	}
+
+	private boolean hasOptionalSeqNum() {
+		return layout.hasOptionalSeqNum() && (flag() & layout.seqNumFlag()) != 0;
+	}
+
+	// Where the body starts in this packet, behind an optional sequence number if there is one.
+	final int bodyIndex() {
+		return hasOptionalSeqNum() ? layout.bodyIndex() + 1 : layout.bodyIndex();
+	}
+
+	public final int getPacketLength() {
+		return length;
+	}
+
+	public final int getBodyLength() {
+		return length - bodyIndex();
+	}
+
+	public final void getBody(ByteBuffer dst) {
+		copyTo(dst, bodyIndex(), getBodyLength());
+	}
+
+	static PacketImplementation.Type typeOf(ByteBuffer packet, PacketLayout layout) {
+		return PacketImplementation.Type.valueOf((byte) (packet.get(packet.position() + layout.flagIndex()) & PacketLayout.TYPE_MASK));
+	}
+
+	final byte flag() {
+		return byteAt(layout.flagIndex());
+	}
+
+	final byte byteAt(int index) {
+		return buffer.get(offset + index);
+	}
+
+	final byte bodyByteAt(int index) {
+		return buffer.get(offset + bodyIndex() + index);
+	}
+
+	final void copyTo(ByteBuffer dst, int from, int count) {
+		if (dst.remaining() < count) {
+			String msg = String.format("The destination buffer has only %d bytes remaining, %d are required.",
+					dst.remaining(), count);
+			logger.log(Level.WARNING, msg);
+			throw new IllegalArgumentException(msg);
+		}
+
+		if (buffer.hasArray()) {
+			dst.put(buffer.array(), buffer.arrayOffset() + offset + from, count);
+		} else {
+			for (int i = 0; i < count; i++) {
+				dst.put(buffer.get(offset + from + i));
+			}
+		}
+	}
+
+	final byte[] copyOf(int from, int count) {
+		byte[] bytes = new byte[count];
+		copyTo(ByteBuffer.wrap(bytes), from, count);
+		return bytes;
+	}
+
+	// A read-only buffer sharing the bytes of the packet.
+	final ByteBuffer sliceOf(int from, int count) {
+		ByteBuffer slice = buffer.asReadOnlyBuffer();
+		slice.limit(offset + from + count).position(offset + from);
+		return slice.slice();
+	}
+
+	final AsciiView asciiView(AsciiView view, int from) {
+		return view.bind(buffer, offset + from, length - from);
+	}
+
+	final TlvReader tlvReader(TlvReader reader, int from) {
+		if (!isTlvEncoded()) {
+			String msg = "The parameters of this packet aren't TLV encoded.";
+			logger.log(Level.WARNING, msg);
+			throw new IllegalStateException(msg);
+		}
+		return reader.bind(buffer, offset + from, length - from);
+	}
+
+	// TLV records are rendered rather than decoded as text.
+	final String paramString(int from) {
+		if (isTlvEncoded())
+			return tlvReader(new TlvReader(), from).toString();
+		return asciiString(from);
+	}
+
+	final String asciiString(int from) {
+		return new String(copyOf(from, length - from), StandardCharsets.US_ASCII);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("Packet view:")
+				.append("\n Type: ").append(getPacketType())
+				.append("\n Length: ").append(length)
+				.append("\n Flag response requested: ").append(isResponseRequested())
+				.append("\n Flag fragmented: ").append(isFragmented())
+				.append("\n Flag compressed: ").append(isCompressed())
+				.append("\n Flag TLV encoded: ").append(isTlvEncoded())
+				.append("\n");
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,70 @@
+package com.github.tutertlob.subghz;
+
+import java.nio.ByteBuffer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// One flyweight view per packet type for a radio's packet layout.
+// Not thread-safe: use one instance per receiving thread.
+public final class PacketViews {
+
+	private static final Logger logger = Logger.getLogger(PacketViews.class.getName());
+
+	private final DataPacketView data;
+
+	private final CommandPacketView command;
+
+	private final AckPacketView ack;
+
+	private final NoticePacketView notice;
+
+	private final AggregatePacketView aggregate;
+
+	public PacketViews(PacketLayout layout) {
+		this.data = new DataPacketView(layout);
+		this.command = new CommandPacketView(layout);
+		this.ack = new AckPacketView(layout);
+		this.notice = new NoticePacketView(layout);
+		this.aggregate = new AggregatePacketView(layout);
+	}
+
+	public PacketView wrap(ByteBuffer packet) {
+		PacketImplementation.Type type = PacketView.typeOf(packet, data.getLayout());
+		switch (type) {
+			case DATA:
+				return data.wrap(packet);
+			case COMMAND:
+				return command.wrap(packet);
+			case ACK:
+				return ack.wrap(packet);
+			case NOTICE:
+				return notice.wrap(packet);
+			case AGGREGATE:
+				return aggregate.wrap(packet);
+			default:
+				logger.log(Level.WARNING, "Unknown packet type.");
+				throw new IllegalArgumentException("Unknown packet type.");
+		}
+	}
+
+	public DataPacketView data() {
+		return data;
+	}
+
+	public CommandPacketView command() {
+		return command;
+	}
+
+	public AckPacketView ack() {
+		return ack;
+	}
+
+	public NoticePacketView notice() {
+		return notice;
+	}
+
+	public AggregatePacketView aggregate() {
+		return aggregate;
+	}
+
+}
@@ -0,0 +1,182 @@
+package com.github.tutertlob.subghz;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+// The counters every radio keeps. They are striped and lock-free (LongAdder), so updating them costs a few
+// nanoseconds without contention and they can be left on in production. Reading them sums the stripes.
+// Radios extend this with their own gauges and register it with register().
+public class RadioMetrics implements RadioMetricsMXBean {
+
+	private static final Logger logger = Logger.getLogger(RadioMetrics.class.getName());
+
+	private static final int TYPES = PacketLayout.TYPE_MASK + 1;
+
+	// The names register() gave, with the metrics registered under each. Guarded by the class.
+	private static final Map<ObjectName, Object> registered = new HashMap<>();
+
+	private final LongAdder[] framesSent = newAdders(TYPES);
+
+	private final LongAdder[] framesReceived = newAdders(TYPES);
+
+	private final LongAdder bytesSent = new LongAdder();
+
+	private final LongAdder bytesReceived = new LongAdder();
+
+	private final LongAdder sendFailures = new LongAdder();
+
+	private final LongAdder parseFailures = new LongAdder();
+
+	private final LatencyHistogram sendLatency = new LatencyHistogram();
+
+	protected static LongAdder[] newAdders(int n) {
+		LongAdder[] adders = new LongAdder[n];
+		for (int i = 0; i < n; i++) {
+			adders[i] = new LongAdder();
+		}
+		return adders;
+	}
+
+	// typeId is the packet type from the header; ids no Type stands for are counted too.
+	public void frameSent(byte typeId, int length, long latencyNanos) {
+		framesSent[typeId & PacketLayout.TYPE_MASK].increment();
+		bytesSent.add(length);
+		sendLatency.record(latencyNanos);
+	}
+
+	public void frameReceived(byte typeId, int length) {
+		framesReceived[typeId & PacketLayout.TYPE_MASK].increment();
+		bytesReceived.add(length);
+	}
+
+	public void sendFailed() {
+		sendFailures.increment();
+	}
+
+	public void parseFailed() {
+		parseFailures.increment();
+	}
+
+	private static Map<String, Long> byType(LongAdder[] adders) {
+		Map<String, Long> counts = new LinkedHashMap<>();
+		for (byte id = 0; id < adders.length; id++) {
+			long n = adders[id].sum();
+			if (PacketImplementation.Type.isValid(id))
+				counts.put(PacketImplementation.Type.valueOf(id).name(), Long.valueOf(n));
+			else if (n > 0)
+				counts.put("TYPE_" + id, Long.valueOf(n));
+		}
+		return counts;
+	}
+
+	@Override
+	public Map<String, Long> getFramesSent() {
+		return byType(framesSent);
+	}
+
+	@Override
+	public Map<String, Long> getFramesReceived() {
+		return byType(framesReceived);
+	}
+
+	@Override
+	public long getBytesSent() {
+		return bytesSent.sum();
+	}
+
+	@Override
+	public long getBytesReceived() {
+		return bytesReceived.sum();
+	}
+
+	@Override
+	public long getSendFailures() {
+		return sendFailures.sum();
+	}
+
+	@Override
+	public long getParseFailures() {
+		return parseFailures.sum();
+	}
+
+	@Override
+	public LatencySnapshot getSendLatency() {
+		return sendLatency.snapshot();
+	}
+
+	public LatencyHistogram getSendLatencyHistogram() {
+		return sendLatency;
+	}
+
+	// Counts which race with the reset may survive it.
+	@Override
+	public void reset() {
+		for (int i = 0; i < TYPES; i++) {
+			framesSent[i].reset();
+			framesReceived[i].reset();
+		}
+		bytesSent.reset();
+		bytesReceived.reset();
+		sendFailures.reset();
+		parseFailures.reset();
+		sendLatency.reset();
+	}
+
+	// Registers metrics with the platform MBean server as domain:type=type,name=name, exposing the methods of
+	// mxbean. A name already taken, e.g. by a radio on the same port not yet closed, gets "#2", "#3"... appended,
+	// so the metrics registered under it are left alone. Gives null when registering fails, as metrics must never
+	// keep a radio from working.
+	public static <T> ObjectName register(T metrics, Class<T> mxbean, String domain, String type, String name) {
+		try {
+			StandardMBean bean = new StandardMBean(metrics, mxbean, true);
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			Hashtable<String, String> properties = new Hashtable<>();
+			properties.put("type", type);
+			synchronized (RadioMetrics.class) {
+				for (int instance = 1;; instance++) {
+					properties.put("name", ObjectName.quote(instance == 1 ? name : name + "#" + instance));
+					ObjectName objectName = new ObjectName(domain, properties);
+					try {
+						server.registerMBean(bean, objectName);
+					} catch (InstanceAlreadyExistsException e) {
+						continue;
+					}
+					registered.put(objectName, metrics);
+					return objectName;
+				}
+			}
+		} catch (JMException | RuntimeException e) {
+			logger.log(Level.WARNING, String.format("Couldn't register the metrics of %s %s.", type, name), e);
+			return null;
+		}
+	}
+
+	// Unregisters objectName only if it is still the name register() gave metrics; once unregistered, the name may
+	// go to other metrics, which are left alone.
+	public static void unregister(ObjectName objectName, Object metrics) {
+		if (objectName == null)
+			return;
+		synchronized (RadioMetrics.class) {
+			if (!registered.remove(objectName, metrics))
+				return;
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+			} catch (JMException | RuntimeException e) {
+				logger.log(Level.WARNING, String.format("Couldn't unregister %s.", objectName), e);
+			}
+		}
+	}
+
+}
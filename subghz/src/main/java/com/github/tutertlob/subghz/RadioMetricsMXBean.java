@@ -0,0 +1,25 @@
+package com.github.tutertlob.subghz;
+
+import java.util.Map;
+
+public interface RadioMetricsMXBean {
+
+	// Keyed by packet type.
+	public Map<String, Long> getFramesSent();
+
+	public Map<String, Long> getFramesReceived();
+
+	public long getBytesSent();
+
+	public long getBytesReceived();
+
+	public long getSendFailures();
+
+	public long getParseFailures();
+
+	// From handing a frame to the radio until the radio has taken it.
+	public LatencySnapshot getSendLatency();
+
+	public void reset();
+
+}
@@ -0,0 +1,50 @@
+package com.github.tutertlob.subghz;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Thread factories and executors to hand the radios for the threads they start.
+// Virtual threads need Java 21 and the multi-release jar the java21 profile builds; elsewhere virtual() makes
+// platform daemon threads. They suit the threads which mostly block, like callers waiting for command responses and
+// transfers waiting for room in a transmit queue.
+public final class RadioThreads {
+
+	private RadioThreads() {
+
+	}
+
+	// Threads named name-1, name-2, ...
+	public static ThreadFactory platform(String name, boolean daemon) {
+		if (name == null)
+			throw new NullPointerException("The argument name is null.");
+
+		AtomicInteger count = new AtomicInteger();
+		return r -> {
+			Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+			t.setDaemon(daemon);
+			return t;
+		};
+	}
+
+	public static ThreadFactory virtual(String name) {
+		if (name == null)
+			throw new NullPointerException("The argument name is null.");
+
+		ThreadFactory factory = VirtualThreads.factory(name);
+		return factory != null ? factory : platform(name, true);
+	}
+
+	public static boolean isVirtualAvailable() {
+		return VirtualThreads.factory("probe") != null;
+	}
+
+	// Runs every task on a new thread of factory.
+	public static Executor perTask(ThreadFactory factory) {
+		if (factory == null)
+			throw new NullPointerException("The argument factory is null.");
+
+		return task -> factory.newThread(task).start();
+	}
+
+}
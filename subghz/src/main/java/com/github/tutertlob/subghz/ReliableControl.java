@@ -0,0 +1,73 @@
+package com.github.tutertlob.subghz;
+
+import java.nio.charset.StandardCharsets;
+
+// The control packets of reliable transfers, both carrying TLV records under one command byte.
+// A sender opens a session with a Command: a random session id, the sequence number of its first segment
+// and, on links which broadcast, the id of the receiver it is meant for.
+// The receiver answers it and every run of segments with an Ack: the session id, the cumulative sequence number
+// (the next one expected, all before it having arrived) and a bitmap of the segments received past it,
+// bit i standing for cumulative + 1 + i.
+// Segments are Data packets with the response-requested flag, numbered by the sender in their sequence field.
+public final class ReliableControl {
+
+	public static final byte COMMAND = (byte) 0xFE;
+
+	public static final int KEY_SESSION = 0;
+
+	public static final int KEY_CUMULATIVE = 1;
+
+	public static final int KEY_SELECTIVE = 2;
+
+	public static final int KEY_BASE = 3;
+
+	public static final int KEY_PEER = 4;
+
+	public static final int SEQUENCE_MASK = 0xFF;
+
+	public static final int SESSION_MASK = 0xFFFF;
+
+	private ReliableControl() {
+
+	}
+
+	public static TlvWriter writeSync(TlvWriter dst, int session, int base, String peer) {
+		dst.putInt(KEY_SESSION, session & SESSION_MASK).putInt(KEY_BASE, base & SEQUENCE_MASK);
+		if (peer != null)
+			dst.putBytes(KEY_PEER, peer.getBytes(StandardCharsets.US_ASCII));
+		return dst;
+	}
+
+	public static TlvWriter writeAck(TlvWriter dst, int session, int cumulative, long selective) {
+		dst.putInt(KEY_SESSION, session & SESSION_MASK).putInt(KEY_CUMULATIVE, cumulative & SEQUENCE_MASK);
+		if (selective != 0)
+			dst.putInt(KEY_SELECTIVE, selective);
+		return dst;
+	}
+
+	public static boolean isSync(CommandPacketInterface command) {
+		return command.getCommand() == COMMAND && ((PacketImplementation) command).isTlvEncoded();
+	}
+
+	public static boolean isAck(AckPacketInterface ack) {
+		return ack.getCommand() == COMMAND && ((PacketImplementation) ack).isTlvEncoded();
+	}
+
+	public static boolean isSegment(PacketImplementation packet) {
+		return packet instanceof DataPacketInterface && packet.isResponseRequested()
+				&& packet.getSequenceNumber() != PacketLayout.NO_SEQUENCE_NUMBER;
+	}
+
+	// True if the sync names no receiver or names localId.
+	public static boolean isSyncFor(TlvReader sync, String localId) {
+		if (!sync.find(KEY_PEER))
+			return true;
+		return localId != null && new String(sync.getBytes(), StandardCharsets.US_ASCII).equalsIgnoreCase(localId);
+	}
+
+	// Reads an INT record, or gives def when there is none.
+	public static long get(TlvReader records, int key, long def) {
+		return records.find(key) ? records.getLong() : def;
+	}
+
+}
@@ -0,0 +1,303 @@
+package com.github.tutertlob.subghz;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// The receiving end of ReliableSender: puts the segments of each peer back in order and acknowledges them.
+// Segments arriving ahead of a missing one are held until it comes, up to a window of WINDOW segments.
+// ACKs are delayed by up to the ACK delay so that one ACK covers several segments, but go out at once
+// for every SEGMENTS_PER_ACK segments, for the last fragment of a message, and whenever a segment is
+// missing or duplicated, so that the sender can retransmit early.
+// Peers are told apart by K; the segments and what is delivered are of type F, typically the received frames.
+public final class ReliableReceiver<K, F> implements Closeable {
+
+	private static final Logger logger = Logger.getLogger(ReliableReceiver.class.getName());
+
+	public static final int WINDOW = ReliableSender.MAX_WINDOW;
+
+	public static final long DEFAULT_ACK_DELAY_MS = 20;
+
+	static final int SEGMENTS_PER_ACK = 2;
+
+	// A peer which has sent nothing for this long is forgotten; its sender opens a new session first.
+	private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+	private static final int SEQUENCE_MASK = ReliableControl.SEQUENCE_MASK;
+
+	public interface AckSink<K> {
+
+		// Not called with the lock of the receiver held.
+		public void sendAck(K peer, int session, int cumulative, long selective);
+
+	}
+
+	private final class Peer {
+
+		final K key;
+
+		final int session;
+
+		int expected;
+
+		final Object[] buffer = new Object[SEQUENCE_MASK + 1];
+
+		int unacked = 0;
+
+		ScheduledFuture<?> delayedAck;
+
+		long lastNanos;
+
+		Peer(K key, int session, int base, long now) {
+			this.key = key;
+			this.session = session;
+			this.expected = base & SEQUENCE_MASK;
+			this.lastNanos = now;
+		}
+
+		long selective() {
+			long bits = 0;
+			for (int i = 0; i < WINDOW - 1; i++) {
+				if (buffer[(expected + 1 + i) & SEQUENCE_MASK] != null)
+					bits |= 1L << i;
+			}
+			return bits;
+		}
+	}
+
+	private final Consumer<? super F> delivery;
+
+	private final AckSink<K> acks;
+
+	private final long ackDelayNanos;
+
+	private final ScheduledThreadPoolExecutor timer;
+
+	private final Map<K, Peer> peers = new HashMap<>();
+
+	private boolean closed = false;
+
+	private long delivered = 0;
+
+	private long duplicates = 0;
+
+	private long outOfOrder = 0;
+
+	private long dropped = 0;
+
+	private long acksSent = 0;
+
+	public ReliableReceiver(Consumer<? super F> delivery, AckSink<K> acks) {
+		this(delivery, acks, DEFAULT_ACK_DELAY_MS, TimeUnit.MILLISECONDS);
+	}
+
+	// delivery is called in order and with the lock of the receiver held, so it should only hand the segment on.
+	public ReliableReceiver(Consumer<? super F> delivery, AckSink<K> acks, long ackDelay, TimeUnit unit) {
+		if (delivery == null)
+			throw new NullPointerException("The argument delivery is null.");
+		if (acks == null)
+			throw new NullPointerException("The argument acks is null.");
+		if (ackDelay < 0)
+			throw new IllegalArgumentException("The ACK delay must not be negative.");
+
+		this.delivery = delivery;
+		this.acks = acks;
+		this.ackDelayNanos = unit.toNanos(ackDelay);
+		this.timer = new ScheduledThreadPoolExecutor(1, r -> {
+			Thread t = new Thread(r, "ReliableReceiver-timer");
+			t.setDaemon(true);
+			return t;
+		});
+		this.timer.setRemoveOnCancelPolicy(true);
+	}
+
+	// Opens a session, forgetting whatever the peer's previous session left undelivered.
+	// A repeated sync of the current session is answered without resetting it.
+	public void onSync(K peer, int session, int base) {
+		if (peer == null)
+			throw new NullPointerException("The argument peer is null.");
+
+		Peer state;
+		int cumulative;
+		long selective;
+		synchronized (this) {
+			if (closed)
+				return;
+			long now = System.nanoTime();
+			forgetIdle(now);
+			state = peers.get(peer);
+			if (state == null || state.session != (session & ReliableControl.SESSION_MASK)) {
+				if (state != null && state.delayedAck != null)
+					state.delayedAck.cancel(false);
+				state = new Peer(peer, session & ReliableControl.SESSION_MASK, base, now);
+				peers.put(peer, state);
+				logger.log(Level.FINE, String.format("%s opened session %04x at #%d.", peer, state.session,
+						state.expected));
+			}
+			state.lastNanos = now;
+			cumulative = state.expected;
+			selective = state.selective();
+			state.unacked = 0;
+			acksSent++;
+		}
+		acks.sendAck(peer, state.session, cumulative, selective);
+	}
+
+	// Parses a sync Command. Returns false if it isn't one.
+	// Syncs naming another receiver than localId are consumed without opening a session.
+	public boolean onSync(K peer, CommandPacketInterface sync, String localId) {
+		if (!ReliableControl.isSync(sync))
+			return false;
+		try {
+			TlvReader records = sync.readCommandParams(new TlvReader());
+			long session = ReliableControl.get(records, ReliableControl.KEY_SESSION, -1);
+			long base = ReliableControl.get(records, ReliableControl.KEY_BASE, -1);
+			if (session >= 0 && base >= 0 && ReliableControl.isSyncFor(records, localId))
+				onSync(peer, (int) session, (int) base);
+		} catch (IllegalArgumentException | IllegalStateException e) {
+			logger.log(Level.WARNING, "A malformed reliable-transfer sync is ignored.", e);
+		}
+		return true;
+	}
+
+	// Returns false if the peer has no open session, in which case the segment is dropped.
+	public boolean onSegment(K peer, int seqNum, boolean more, F segment) {
+		if (peer == null)
+			throw new NullPointerException("The argument peer is null.");
+		if (segment == null)
+			throw new NullPointerException("The argument segment is null.");
+
+		Peer state;
+		boolean ackNow;
+		int cumulative;
+		long selective;
+		synchronized (this) {
+			if (closed)
+				return false;
+			long now = System.nanoTime();
+			forgetIdle(now);
+			state = peers.get(peer);
+			if (state == null) {
+				dropped++;
+				return false;
+			}
+			state.lastNanos = now;
+
+			int offset = (seqNum - state.expected) & SEQUENCE_MASK;
+			if (offset >= WINDOW || state.buffer[seqNum & SEQUENCE_MASK] != null) {
+				// Already delivered or held: the ACK was lost.
+				duplicates++;
+				ackNow = true;
+			} else {
+				state.buffer[seqNum & SEQUENCE_MASK] = segment;
+				ackNow = offset != 0 || !more;
+				if (offset != 0)
+					outOfOrder++;
+				deliver(state);
+				// Still holding segments past a gap.
+				ackNow |= state.selective() != 0;
+			}
+
+			state.unacked++;
+			if (!ackNow && state.unacked < SEGMENTS_PER_ACK) {
+				if (state.delayedAck == null)
+					state.delayedAck = timer.schedule(() -> flushAck(state), ackDelayNanos, TimeUnit.NANOSECONDS);
+				return true;
+			}
+			if (state.delayedAck != null) {
+				state.delayedAck.cancel(false);
+				state.delayedAck = null;
+			}
+			state.unacked = 0;
+			cumulative = state.expected;
+			selective = state.selective();
+			acksSent++;
+		}
+		acks.sendAck(peer, state.session, cumulative, selective);
+		return true;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void deliver(Peer state) {
+		Object segment;
+		while ((segment = state.buffer[state.expected]) != null) {
+			state.buffer[state.expected] = null;
+			state.expected = (state.expected + 1) & SEQUENCE_MASK;
+			delivered++;
+			delivery.accept((F) segment);
+		}
+	}
+
+	private void flushAck(Peer state) {
+		int cumulative;
+		long selective;
+		synchronized (this) {
+			state.delayedAck = null;
+			if (closed || peers.get(state.key) != state || state.unacked == 0)
+				return;
+			state.unacked = 0;
+			cumulative = state.expected;
+			selective = state.selective();
+			acksSent++;
+		}
+		acks.sendAck(state.key, state.session, cumulative, selective);
+	}
+
+	private void forgetIdle(long now) {
+		for (Iterator<Peer> it = peers.values().iterator(); it.hasNext();) {
+			Peer state = it.next();
+			if (now - state.lastNanos > IDLE_NANOS) {
+				if (state.delayedAck != null)
+					state.delayedAck.cancel(false);
+				it.remove();
+			}
+		}
+	}
+
+	public synchronized boolean isOpen(K peer) {
+		return peers.containsKey(peer);
+	}
+
+	@Override
+	public void close() {
+		synchronized (this) {
+			closed = true;
+			peers.clear();
+		}
+		timer.shutdownNow();
+	}
+
+	public synchronized long getDeliveredCount() {
+		return delivered;
+	}
+
+	public synchronized long getDuplicateCount() {
+		return duplicates;
+	}
+
+	public synchronized long getOutOfOrderCount() {
+		return outOfOrder;
+	}
+
+	public synchronized long getDroppedCount() {
+		return dropped;
+	}
+
+	public synchronized long getAckCount() {
+		return acksSent;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("ReliableReceiver[peers=%d, delivered=%d, duplicates=%d, outOfOrder=%d, dropped=%d, "
+				+ "acks=%d]", peers.size(), delivered, duplicates, outOfOrder, dropped, acksSent);
+	}
+
+}
@@ -0,0 +1,512 @@
+package com.github.tutertlob.subghz;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Delivers segments to one peer reliably and in order, keeping up to a window of them in flight.
+// The first segment opens a session (see ReliableControl), and the segments sent meanwhile wait for it.
+// Each segment is retransmitted when its timeout, taken from the measured round trips, expires,
+// or right away once FAST_RETRANSMIT_SKIPS acknowledgements have reported segments after it but not it.
+// A segment which is still unacknowledged after maxRetries retransmissions fails with all those in flight,
+// and the next segment opens a new session.
+// As a FragmentSink it lets a StreamTransfer pipeline a stream: the future of a fragment completes on its ACK.
+public final class ReliableSender implements StreamTransfer.FragmentSink, Closeable {
+
+	private static final Logger logger = Logger.getLogger(ReliableSender.class.getName());
+
+	public static final int DEFAULT_WINDOW = 8;
+
+	// The selective bitmap of an ACK covers 64 segments past the cumulative one.
+	public static final int MAX_WINDOW = 64;
+
+	public static final int DEFAULT_MAX_RETRIES = 8;
+
+	static final int FAST_RETRANSMIT_SKIPS = 3;
+
+	// Receivers forget idle peers, so a session left idle this long is opened again before it is used.
+	private static final long IDLE_RESYNC_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+	private static final int SEQUENCE_MASK = ReliableControl.SEQUENCE_MASK;
+
+	public interface Transport {
+
+		// segment must be consumed before this returns.
+		// Neither method is called with the lock of the sender held, so both may block.
+		public void sendSegment(int seqNum, ByteBuffer segment, boolean more, boolean compressed);
+
+		public void sendSync(int session, int base);
+
+	}
+
+	private static final class Segment {
+
+		final int seqNum;
+
+		final byte[] data;
+
+		final boolean more;
+
+		final boolean compressed;
+
+		final CompletableFuture<Void> acked = new CompletableFuture<>();
+
+		boolean acknowledged = false;
+
+		int transmissions = 0;
+
+		long sentNanos;
+
+		int skips = 0;
+
+		ScheduledFuture<?> timeout;
+
+		Segment(int seqNum, byte[] data, boolean more, boolean compressed) {
+			this.seqNum = seqNum;
+			this.data = data;
+			this.more = more;
+			this.compressed = compressed;
+		}
+	}
+
+	private final Transport transport;
+
+	private final int window;
+
+	private final int maxRetries;
+
+	private final RttEstimator rtt;
+
+	private final ScheduledThreadPoolExecutor timer;
+
+	private final Random random = new Random();
+
+	// Indexed by sequence number. The window never exceeds the range a receiver tells apart from duplicates.
+	private final Segment[] slots = new Segment[SEQUENCE_MASK + 1];
+
+	private int session = 0;
+
+	private boolean syncing = false;
+
+	private boolean synced = false;
+
+	private int syncTransmissions = 0;
+
+	private long syncSentNanos;
+
+	private ScheduledFuture<?> syncTimeout;
+
+	// The oldest unacknowledged segment, and the one the next send() takes.
+	private int base = 0;
+
+	private int next = 0;
+
+	private long lastActivityNanos = System.nanoTime();
+
+	private boolean closed = false;
+
+	private long segmentsSent = 0;
+
+	private long segmentsAcked = 0;
+
+	private long retransmissions = 0;
+
+	private long fastRetransmissions = 0;
+
+	private long timeouts = 0;
+
+	private long sessionsOpened = 0;
+
+	public ReliableSender(Transport transport) {
+		this(transport, DEFAULT_WINDOW);
+	}
+
+	public ReliableSender(Transport transport, int window) {
+		this(transport, window, DEFAULT_MAX_RETRIES, new RttEstimator());
+	}
+
+	public ReliableSender(Transport transport, int window, int maxRetries, RttEstimator rtt) {
+		if (transport == null)
+			throw new NullPointerException("The argument transport is null.");
+		if (rtt == null)
+			throw new NullPointerException("The argument rtt is null.");
+		if (window < 1 || window > MAX_WINDOW)
+			throw new IllegalArgumentException(String.format("The window must be between 1 and %d.", MAX_WINDOW));
+		if (maxRetries < 0)
+			throw new IllegalArgumentException("The number of retries must not be negative.");
+
+		this.transport = transport;
+		this.window = window;
+		this.maxRetries = maxRetries;
+		this.rtt = rtt;
+		this.timer = new ScheduledThreadPoolExecutor(1, r -> {
+			Thread t = new Thread(r, "ReliableSender-timer");
+			t.setDaemon(true);
+			return t;
+		});
+		this.timer.setRemoveOnCancelPolicy(true);
+	}
+
+	@Override
+	public CompletableFuture<Void> send(ByteBuffer fragment, boolean more) {
+		return send(fragment, more, false);
+	}
+
+	// Blocks while the window is full. The future completes when the peer has acknowledged the segment.
+	public CompletableFuture<Void> send(ByteBuffer fragment, boolean more, boolean compressed) {
+		if (fragment == null) {
+			String msg = "Argument fragment is null.";
+			logger.log(Level.WARNING, msg);
+			throw new NullPointerException(msg);
+		}
+		byte[] data = new byte[fragment.remaining()];
+		fragment.get(data);
+
+		Segment segment;
+		boolean openSession = false;
+		synchronized (this) {
+			try {
+				while (!closed && inFlight() >= window) {
+					wait();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return failed(e);
+			}
+			if (closed)
+				return failed(new IOException("The reliable sender is closed."));
+
+			long now = System.nanoTime();
+			if (synced && inFlight() == 0 && now - lastActivityNanos > IDLE_RESYNC_NANOS)
+				synced = false;
+			if (!synced && !syncing) {
+				openSession();
+				openSession = true;
+			}
+			lastActivityNanos = now;
+
+			segment = new Segment(next, data, more, compressed);
+			slots[next] = segment;
+			next = (next + 1) & SEQUENCE_MASK;
+		}
+
+		if (openSession)
+			transmitSync();
+		else
+			transmit(segment);
+		return segment.acked;
+	}
+
+	private static CompletableFuture<Void> failed(Throwable cause) {
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		future.completeExceptionally(cause);
+		return future;
+	}
+
+	private int inFlight() {
+		return (next - base) & SEQUENCE_MASK;
+	}
+
+	// Only called with nothing in flight. A random base keeps stray segments of an old session out of the new one.
+	private void openSession() {
+		int previous = session;
+		do {
+			session = random.nextInt(ReliableControl.SESSION_MASK + 1);
+		} while (session == previous);
+		base = next = random.nextInt(SEQUENCE_MASK + 1);
+		syncing = true;
+		syncTransmissions = 0;
+		sessionsOpened++;
+	}
+
+	private void transmitSync() {
+		int syncSession;
+		int syncBase;
+		synchronized (this) {
+			if (!syncing || closed)
+				return;
+			syncTransmissions++;
+			syncSentNanos = System.nanoTime();
+			syncSession = session;
+			syncBase = base;
+			if (syncTimeout != null)
+				syncTimeout.cancel(false);
+			syncTimeout = timer.schedule(this::onSyncTimeout, rtt.getTimeout(TimeUnit.NANOSECONDS),
+					TimeUnit.NANOSECONDS);
+		}
+		try {
+			transport.sendSync(syncSession, syncBase);
+		} catch (RuntimeException e) {
+			logger.log(Level.WARNING, "Sending a session sync failed. It will be sent again.", e);
+		}
+	}
+
+	private void onSyncTimeout() {
+		List<CompletableFuture<Void>> failed;
+		synchronized (this) {
+			if (!syncing || closed)
+				return;
+			timeouts++;
+			if (syncTransmissions <= maxRetries) {
+				rtt.backoff();
+				failed = null;
+			} else {
+				failed = abort();
+			}
+		}
+		if (failed == null) {
+			transmitSync();
+		} else {
+			fail(failed, new IOException(String.format("The peer didn't answer the session sync after %d tries.",
+					syncTransmissions)));
+		}
+	}
+
+	private void transmit(Segment segment) {
+		synchronized (this) {
+			if (!synced || segment.acknowledged || slots[segment.seqNum] != segment)
+				return;
+			segment.transmissions++;
+			if (segment.transmissions > 1)
+				retransmissions++;
+			segmentsSent++;
+			segment.sentNanos = System.nanoTime();
+			segment.skips = 0;
+			if (segment.timeout != null)
+				segment.timeout.cancel(false);
+			segment.timeout = timer.schedule(() -> onTimeout(segment), rtt.getTimeout(TimeUnit.NANOSECONDS),
+					TimeUnit.NANOSECONDS);
+		}
+		try {
+			transport.sendSegment(segment.seqNum, ByteBuffer.wrap(segment.data).asReadOnlyBuffer(), segment.more,
+					segment.compressed);
+		} catch (RuntimeException e) {
+			logger.log(Level.WARNING, String.format("Sending segment #%d failed. It will be sent again.",
+					segment.seqNum), e);
+		}
+	}
+
+	private void onTimeout(Segment segment) {
+		List<CompletableFuture<Void>> failed;
+		synchronized (this) {
+			if (!synced || segment.acknowledged || slots[segment.seqNum] != segment)
+				return;
+			timeouts++;
+			if (segment.transmissions <= maxRetries) {
+				// Segments in flight behind the oldest one time out together; backing off once per loss is enough.
+				if (segment.seqNum == base)
+					rtt.backoff();
+				failed = null;
+			} else {
+				failed = abort();
+			}
+		}
+		if (failed == null) {
+			transmit(segment);
+		} else {
+			fail(failed, new IOException(String.format("Segment #%d wasn't acknowledged after %d transmissions.",
+					segment.seqNum, segment.transmissions)));
+		}
+	}
+
+	// Gives up on everything in flight. The caller fails the returned futures without the lock held.
+	private List<CompletableFuture<Void>> abort() {
+		List<CompletableFuture<Void>> pending = new ArrayList<>();
+		for (int seq = base; seq != next; seq = (seq + 1) & SEQUENCE_MASK) {
+			Segment segment = slots[seq];
+			slots[seq] = null;
+			if (segment == null)
+				continue;
+			if (segment.timeout != null)
+				segment.timeout.cancel(false);
+			if (!segment.acknowledged)
+				pending.add(segment.acked);
+		}
+		if (syncTimeout != null)
+			syncTimeout.cancel(false);
+		base = next;
+		synced = false;
+		syncing = false;
+		notifyAll();
+		return pending;
+	}
+
+	private static void fail(List<CompletableFuture<Void>> futures, Throwable cause) {
+		if (!futures.isEmpty())
+			logger.log(Level.WARNING, String.format("%d segments failed: %s", futures.size(), cause.getMessage()));
+		for (CompletableFuture<Void> future : futures) {
+			future.completeExceptionally(cause);
+		}
+	}
+
+	// Routes an ACK from the peer. Returns false if it isn't a reliable-transfer ACK.
+	public boolean onAck(AckPacketInterface ack) {
+		if (!ReliableControl.isAck(ack))
+			return false;
+		try {
+			TlvReader records = ack.readResponseParams(new TlvReader());
+			long ackSession = ReliableControl.get(records, ReliableControl.KEY_SESSION, -1);
+			long cumulative = ReliableControl.get(records, ReliableControl.KEY_CUMULATIVE, -1);
+			long selective = ReliableControl.get(records, ReliableControl.KEY_SELECTIVE, 0);
+			if (ackSession >= 0 && cumulative >= 0)
+				onAck((int) ackSession, (int) cumulative, selective);
+		} catch (IllegalArgumentException | IllegalStateException e) {
+			logger.log(Level.WARNING, "A malformed reliable-transfer ACK is ignored.", e);
+		}
+		return true;
+	}
+
+	public void onAck(int ackSession, int cumulative, long selective) {
+		List<CompletableFuture<Void>> acked = new ArrayList<>();
+		List<Segment> resend = new ArrayList<>();
+		synchronized (this) {
+			if (closed || ackSession != session)
+				return;
+			long now = System.nanoTime();
+			cumulative &= SEQUENCE_MASK;
+
+			if (syncing) {
+				if (cumulative != base)
+					return;
+				syncing = false;
+				synced = true;
+				syncTimeout.cancel(false);
+				if (syncTransmissions == 1)
+					rtt.sample(now - syncSentNanos);
+				// The segments which waited for the session.
+				for (int seq = base; seq != next; seq = (seq + 1) & SEQUENCE_MASK) {
+					resend.add(slots[seq]);
+				}
+			}
+			if (!synced)
+				return;
+
+			int advance = (cumulative - base) & SEQUENCE_MASK;
+			if (advance > inFlight())
+				return;
+			lastActivityNanos = now;
+
+			for (int i = 0; i < advance; i++) {
+				int seq = (base + i) & SEQUENCE_MASK;
+				acknowledge(slots[seq], now, acked);
+				slots[seq] = null;
+			}
+			base = cumulative;
+
+			int highest = -1;
+			for (long bits = selective; bits != 0; bits &= bits - 1) {
+				int offset = 1 + Long.numberOfTrailingZeros(bits);
+				if (offset >= inFlight())
+					break;
+				acknowledge(slots[(base + offset) & SEQUENCE_MASK], now, acked);
+				highest = offset;
+			}
+			// Every ACK reporting segments past a missing one counts towards its fast retransmission.
+			for (int offset = 0; offset < highest; offset++) {
+				Segment segment = slots[(base + offset) & SEQUENCE_MASK];
+				if (segment != null && !segment.acknowledged && segment.transmissions > 0
+						&& ++segment.skips == FAST_RETRANSMIT_SKIPS) {
+					fastRetransmissions++;
+					resend.add(segment);
+				}
+			}
+			if (advance > 0)
+				notifyAll();
+		}
+
+		for (CompletableFuture<Void> future : acked) {
+			future.complete(null);
+		}
+		for (Segment segment : resend) {
+			transmit(segment);
+		}
+	}
+
+	private void acknowledge(Segment segment, long now, List<CompletableFuture<Void>> acked) {
+		if (segment == null || segment.acknowledged)
+			return;
+		segment.acknowledged = true;
+		// Karn's algorithm: the ACK of a retransmitted segment can't tell which transmission it answers.
+		if (segment.transmissions == 1)
+			rtt.sample(now - segment.sentNanos);
+		if (segment.timeout != null)
+			segment.timeout.cancel(false);
+		segmentsAcked++;
+		acked.add(segment.acked);
+	}
+
+	// Segments in flight fail.
+	@Override
+	public void close() {
+		List<CompletableFuture<Void>> failed;
+		synchronized (this) {
+			if (closed)
+				return;
+			closed = true;
+			failed = abort();
+		}
+		timer.shutdownNow();
+		fail(failed, new IOException("The reliable sender has been closed."));
+	}
+
+	public int getWindow() {
+		return window;
+	}
+
+	public synchronized int getInFlight() {
+		return inFlight();
+	}
+
+	public synchronized boolean isSynced() {
+		return synced;
+	}
+
+	public synchronized long getSegmentsSent() {
+		return segmentsSent;
+	}
+
+	public synchronized long getSegmentsAcked() {
+		return segmentsAcked;
+	}
+
+	public synchronized long getRetransmissions() {
+		return retransmissions;
+	}
+
+	public synchronized long getFastRetransmissions() {
+		return fastRetransmissions;
+	}
+
+	public synchronized long getTimeouts() {
+		return timeouts;
+	}
+
+	public synchronized long getSessionsOpened() {
+		return sessionsOpened;
+	}
+
+	public synchronized long getSmoothedRtt(TimeUnit unit) {
+		return rtt.getSmoothedRtt(unit);
+	}
+
+	public synchronized long getRetransmissionTimeout(TimeUnit unit) {
+		return rtt.getTimeout(unit);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("ReliableSender[session=%04x, base=%d, inFlight=%d/%d, %s, sent=%d, acked=%d, "
+				+ "retransmitted=%d (fast %d)]", session, base, inFlight(), window, rtt, segmentsSent, segmentsAcked,
+				retransmissions, fastRetransmissions);
+	}
+
+}
@@ -0,0 +1,101 @@
+package com.github.tutertlob.subghz;
+
+import java.util.concurrent.TimeUnit;
+
+// Estimates the retransmission timeout from measured round trips, as TCP does (RFC 6298).
+// RTO = SRTT + 4 * RTTVAR, kept between a floor and a ceiling. Each timeout doubles it until the next sample.
+// Only segments sent once may be sampled, as the ACK of a retransmitted one can't be matched to a transmission.
+// Not thread safe; ReliableSender guards its estimator with its own lock.
+public final class RttEstimator {
+
+	public static final long DEFAULT_INITIAL_RTO_MS = 1000;
+
+	public static final long DEFAULT_MIN_RTO_MS = 100;
+
+	public static final long DEFAULT_MAX_RTO_MS = 10000;
+
+	private final long initialNanos;
+
+	private final long minNanos;
+
+	private final long maxNanos;
+
+	private long srttNanos = -1;
+
+	private long rttvarNanos = 0;
+
+	private long rtoNanos;
+
+	private long samples = 0;
+
+	public RttEstimator() {
+		this(DEFAULT_INITIAL_RTO_MS, DEFAULT_MIN_RTO_MS, DEFAULT_MAX_RTO_MS, TimeUnit.MILLISECONDS);
+	}
+
+	public RttEstimator(long initial, long min, long max, TimeUnit unit) {
+		if (min <= 0)
+			throw new IllegalArgumentException("The minimum timeout must be positive.");
+		if (max < min || initial < min || initial > max)
+			throw new IllegalArgumentException("The timeouts must satisfy min <= initial <= max.");
+
+		this.initialNanos = unit.toNanos(initial);
+		this.minNanos = unit.toNanos(min);
+		this.maxNanos = unit.toNanos(max);
+		this.rtoNanos = initialNanos;
+	}
+
+	public void sample(long rttNanos) {
+		if (rttNanos < 0)
+			return;
+
+		if (srttNanos < 0) {
+			srttNanos = rttNanos;
+			rttvarNanos = rttNanos / 2;
+		} else {
+			// alpha = 1/8, beta = 1/4
+			rttvarNanos += (Math.abs(srttNanos - rttNanos) - rttvarNanos) / 4;
+			srttNanos += (rttNanos - srttNanos) / 8;
+		}
+		samples++;
+		rtoNanos = clamp(srttNanos + 4 * rttvarNanos);
+	}
+
+	public void backoff() {
+		rtoNanos = clamp(rtoNanos * 2);
+	}
+
+	// Forgets the samples, for a new peer or after the link has been lost.
+	public void reset() {
+		srttNanos = -1;
+		rttvarNanos = 0;
+		rtoNanos = initialNanos;
+	}
+
+	private long clamp(long nanos) {
+		return Math.max(minNanos, Math.min(maxNanos, nanos));
+	}
+
+	public long getTimeout(TimeUnit unit) {
+		return unit.convert(rtoNanos, TimeUnit.NANOSECONDS);
+	}
+
+	// -1 until the first sample.
+	public long getSmoothedRtt(TimeUnit unit) {
+		return srttNanos < 0 ? -1 : unit.convert(srttNanos, TimeUnit.NANOSECONDS);
+	}
+
+	public long getRttVariation(TimeUnit unit) {
+		return unit.convert(rttvarNanos, TimeUnit.NANOSECONDS);
+	}
+
+	public long getSampleCount() {
+		return samples;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("srtt=%dus rttvar=%dus rto=%dms", getSmoothedRtt(TimeUnit.MICROSECONDS),
+				getRttVariation(TimeUnit.MICROSECONDS), getTimeout(TimeUnit.MILLISECONDS));
+	}
+
+}
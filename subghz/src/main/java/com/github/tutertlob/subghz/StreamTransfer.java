@@ -0,0 +1,218 @@
+package com.github.tutertlob.subghz;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Sends a stream as a run of Data packets without holding more of it than two fragments.
+// The stream is read one fragment ahead, so that the last fragment can be sent without the fragmented flag
+// even when the length of the stream isn't known in advance.
+// An empty stream sends nothing.
+// A transfer is also the handle its caller watches: bytes sent so far, and a future completing with the total.
+public final class StreamTransfer implements Runnable {
+
+	private static final Logger logger = Logger.getLogger(StreamTransfer.class.getName());
+
+	public static final long UNKNOWN_LENGTH = -1;
+
+	public interface FragmentSink {
+
+		// The fragment must be consumed before this returns, as its buffer is refilled for the next one.
+		// more is true for every fragment but the last one of the stream.
+		// The returned future completes when the radio has taken the fragment.
+		public CompletableFuture<?> send(ByteBuffer fragment, boolean more);
+
+	}
+
+	private final ReadableByteChannel source;
+
+	private final long totalBytes;
+
+	private final int fragmentCapacity;
+
+	private final int maxInFlight;
+
+	private final FragmentSink sink;
+
+	private final AtomicLong bytesSent = new AtomicLong();
+
+	private final AtomicLong fragmentsSent = new AtomicLong();
+
+	private final CompletableFuture<Long> completion = new CompletableFuture<>();
+
+	public StreamTransfer(InputStream source, int fragmentCapacity, int maxInFlight, FragmentSink sink) {
+		this(Channels.newChannel(requireSource(source)), UNKNOWN_LENGTH, fragmentCapacity, maxInFlight, sink);
+	}
+
+	public StreamTransfer(ByteBuffer source, int fragmentCapacity, int maxInFlight, FragmentSink sink) {
+		this(new BufferChannel(requireSource(source)), source.remaining(), fragmentCapacity, maxInFlight, sink);
+	}
+
+	public StreamTransfer(ReadableByteChannel source, long totalBytes, int fragmentCapacity, int maxInFlight,
+			FragmentSink sink) {
+		if (source == null)
+			throw new NullPointerException("The argument source is null.");
+		if (sink == null)
+			throw new NullPointerException("The argument sink is null.");
+		if (fragmentCapacity < 1)
+			throw new IllegalArgumentException("The fragment capacity must be positive.");
+		if (maxInFlight < 1)
+			throw new IllegalArgumentException("The number of fragments in flight must be positive.");
+
+		this.source = source;
+		this.totalBytes = totalBytes < 0 ? UNKNOWN_LENGTH : totalBytes;
+		this.fragmentCapacity = fragmentCapacity;
+		this.maxInFlight = maxInFlight;
+		this.sink = sink;
+	}
+
+	private static <T> T requireSource(T source) {
+		if (source == null)
+			throw new NullPointerException("The argument source is null.");
+		return source;
+	}
+
+	public long getTotalBytes() {
+		return totalBytes;
+	}
+
+	public long getBytesSent() {
+		return bytesSent.get();
+	}
+
+	public long getFragmentsSent() {
+		return fragmentsSent.get();
+	}
+
+	// A value between 0 and 1, or -1 while the length of the stream is unknown.
+	public double getProgress() {
+		if (completion.isDone() && !completion.isCompletedExceptionally())
+			return 1.0;
+		if (totalBytes == UNKNOWN_LENGTH)
+			return -1.0;
+		return totalBytes == 0 ? 1.0 : (double) bytesSent.get() / totalBytes;
+	}
+
+	public CompletableFuture<Long> getCompletion() {
+		return completion;
+	}
+
+	public boolean isDone() {
+		return completion.isDone();
+	}
+
+	// The fragments already handed to the radio still go out.
+	public boolean cancel() {
+		return completion.cancel(false);
+	}
+
+	@Override
+	public void run() {
+		Deque<CompletableFuture<?>> inFlight = new ArrayDeque<>(maxInFlight);
+		try {
+			ByteBuffer current = ByteBuffer.allocate(fragmentCapacity);
+			ByteBuffer next = ByteBuffer.allocate(fragmentCapacity);
+
+			boolean eof = fill(current);
+			boolean more = current.position() > 0;
+			while (more) {
+				more = false;
+				if (!eof) {
+					eof = fill(next);
+					more = next.position() > 0;
+				}
+
+				while (inFlight.size() >= maxInFlight) {
+					inFlight.poll().get();
+				}
+				if (completion.isDone())
+					throw new CancellationException("The transfer has been cancelled.");
+
+				current.flip();
+				final int length = current.remaining();
+				CompletableFuture<?> sent = sink.send(current, more);
+				inFlight.add(sent.thenRun(() -> {
+					bytesSent.addAndGet(length);
+					fragmentsSent.incrementAndGet();
+				}));
+
+				ByteBuffer swap = current;
+				current = next;
+				next = swap;
+				next.clear();
+			}
+
+			while (!inFlight.isEmpty()) {
+				inFlight.poll().get();
+			}
+			completion.complete(bytesSent.get());
+		} catch (ExecutionException e) {
+			fail(e.getCause());
+		} catch (InterruptedException e) {
+			fail(e);
+			Thread.currentThread().interrupt();
+		} catch (IOException | RuntimeException e) {
+			fail(e);
+		}
+	}
+
+	private void fail(Throwable cause) {
+		if (completion.completeExceptionally(cause)) {
+			logger.log(Level.WARNING, String.format("The transfer failed after %d bytes.", bytesSent.get()), cause);
+		}
+	}
+
+	// Returns true once the source has reached its end.
+	private boolean fill(ByteBuffer buf) throws IOException {
+		while (buf.hasRemaining()) {
+			if (source.read(buf) < 0)
+				return true;
+		}
+		return false;
+	}
+
+	private static final class BufferChannel implements ReadableByteChannel {
+
+		private final ByteBuffer src;
+
+		private boolean open = true;
+
+		BufferChannel(ByteBuffer src) {
+			this.src = src;
+		}
+
+		@Override
+		public int read(ByteBuffer dst) {
+			if (!src.hasRemaining())
+				return -1;
+
+			int n = Math.min(src.remaining(), dst.remaining());
+			ByteBuffer slice = src.duplicate();
+			slice.limit(slice.position() + n);
+			dst.put(slice);
+			src.position(src.position() + n);
+			return n;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return open;
+		}
+
+		@Override
+		public void close() {
+			open = false;
+		}
+	}
+
+}
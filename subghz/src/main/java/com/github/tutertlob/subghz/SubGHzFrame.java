@@ -1,5 +1,7 @@
 package com.github.tutertlob.subghz;
 
+import java.nio.ByteBuffer;
+
 public abstract class SubGHzFrame {
 
 	public SubGHzFrame() {
@@ -10,8 +12,12 @@ public abstract class SubGHzFrame {
 
 	public abstract int getFrameLength();
 
+	public abstract void writeTo(ByteBuffer dst);
+
 	public abstract byte[] getPayloadBytes();
 
+	public abstract ByteBuffer getPayloadBuffer();
+
 	public abstract int getPayloadLength();
 
 	public abstract PacketImplementation getPacket();
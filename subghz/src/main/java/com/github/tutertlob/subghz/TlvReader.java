@@ -0,0 +1,254 @@
+package com.github.tutertlob.subghz;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Reads the records written by TlvWriter one at a time, without copying them and without allocating.
+// A reader is a flyweight: bind it to records with wrap() or a packet's read*Params(), then call next()
+// until it returns false and read each record with the getter matching its type.
+// Records of types this reader doesn't know are skipped over by next(), so peers can add types.
+public final class TlvReader {
+
+	private static final Logger logger = Logger.getLogger(TlvReader.class.getName());
+
+	private ByteBuffer buffer;
+
+	private int offset;
+
+	private int length;
+
+	// The start of the current record relative to offset, and the start of the next one.
+	private int record;
+
+	private int next;
+
+	public TlvReader() {
+		bind(ByteBuffer.allocate(0), 0, 0);
+	}
+
+	// Binds this reader to the remaining bytes of src, which are read with absolute gets.
+	public TlvReader wrap(ByteBuffer src) {
+		if (src == null) {
+			String msg = "Argument src is null.";
+			logger.log(Level.WARNING, msg);
+			throw new NullPointerException(msg);
+		}
+		return bind(src, src.position(), src.remaining());
+	}
+
+	TlvReader bind(ByteBuffer buffer, int offset, int length) {
+		this.buffer = buffer;
+		this.offset = offset;
+		this.length = length;
+		return rewind();
+	}
+
+	// Goes back to before the first record.
+	public TlvReader rewind() {
+		this.record = -1;
+		this.next = 0;
+		return this;
+	}
+
+	// Moves to the next record. Returns false when there are no more records.
+	public boolean next() {
+		if (next >= length) {
+			record = -1;
+			return false;
+		}
+		if (length - next < TlvWriter.RECORD_HEADER_SIZE)
+			throw malformed(String.format("A record header at byte %d is truncated.", next));
+
+		int valueLength = buffer.get(offset + next + 1) & 0xFF;
+		if (length - next - TlvWriter.RECORD_HEADER_SIZE < valueLength)
+			throw malformed(String.format("The record at byte %d claims %d bytes, but only %d remain.", next,
+					valueLength, length - next - TlvWriter.RECORD_HEADER_SIZE));
+
+		record = next;
+		next += TlvWriter.RECORD_HEADER_SIZE + valueLength;
+		return true;
+	}
+
+	// Rewinds and moves to the first record with the given key. Returns false if there is none.
+	public boolean find(int key) {
+		rewind();
+		while (next()) {
+			if (getKey() == key)
+				return true;
+		}
+		return false;
+	}
+
+	public int getKey() {
+		return header() & TlvWriter.MAX_KEY;
+	}
+
+	public TlvType getType() {
+		return TlvType.valueOf(getTypeId());
+	}
+
+	public byte getTypeId() {
+		return (byte) ((header() & 0xFF) >>> TlvWriter.TYPE_SHIFT);
+	}
+
+	public int getLength() {
+		header();
+		return buffer.get(offset + record + 1) & 0xFF;
+	}
+
+	public long getLong() {
+		expect(TlvType.INT);
+		return readInt(0, getLength());
+	}
+
+	public int getInt() {
+		long value = getLong();
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+			throw malformed(String.format("The value %d of record %d doesn't fit in an int.", value, getKey()));
+		return (int) value;
+	}
+
+	// The value of a FIXED record is getUnscaled() / 10^getScale().
+	public long getUnscaled() {
+		expect(TlvType.FIXED);
+		return readInt(1, getLength() - 1);
+	}
+
+	public int getScale() {
+		expect(TlvType.FIXED);
+		if (getLength() < 1)
+			throw malformed(String.format("The fixed-point record %d has no scale.", getKey()));
+		int scale = buffer.get(valueIndex()) & 0xFF;
+		if (scale > TlvWriter.MAX_SCALE)
+			throw malformed(String.format("The scale %d of record %d is out of range.", scale, getKey()));
+		return scale;
+	}
+
+	public double getDouble() {
+		int scale = getScale();
+		return (double) getUnscaled() / TlvWriter.POWERS_OF_TEN[scale];
+	}
+
+	public int getEnumOrdinal() {
+		expect(TlvType.ENUM);
+		if (getLength() > 4)
+			throw malformed(String.format("The enum record %d is %d bytes long.", getKey(), getLength()));
+		long ordinal = 0;
+		for (int i = 0; i < getLength(); i++) {
+			ordinal = (ordinal << 8) | (buffer.get(valueIndex() + i) & 0xFF);
+		}
+		if (ordinal > Integer.MAX_VALUE)
+			throw malformed(String.format("The ordinal of enum record %d is out of range.", getKey()));
+		return (int) ordinal;
+	}
+
+	// values is the caller's copy of E.values(), kept so that reading doesn't clone it every time.
+	public <E extends Enum<E>> E getEnum(E[] values) {
+		int ordinal = getEnumOrdinal();
+		if (ordinal >= values.length)
+			throw malformed(String.format("The ordinal %d of enum record %d is unknown.", ordinal, getKey()));
+		return values[ordinal];
+	}
+
+	public int getBytes(ByteBuffer dst) {
+		expect(TlvType.BYTES);
+		int count = getLength();
+		if (dst.remaining() < count) {
+			String msg = String.format("The destination buffer has only %d bytes remaining, %d are required.",
+					dst.remaining(), count);
+			logger.log(Level.WARNING, msg);
+			throw new IllegalArgumentException(msg);
+		}
+		for (int i = 0; i < count; i++) {
+			dst.put(buffer.get(valueIndex() + i));
+		}
+		return count;
+	}
+
+	public byte[] getBytes() {
+		byte[] bytes = new byte[getLength()];
+		getBytes(ByteBuffer.wrap(bytes));
+		return bytes;
+	}
+
+	private byte header() {
+		if (record < 0) {
+			String msg = "The reader isn't on a record. Call next() first.";
+			logger.log(Level.WARNING, msg);
+			throw new IllegalStateException(msg);
+		}
+		return buffer.get(offset + record);
+	}
+
+	private int valueIndex() {
+		return offset + record + TlvWriter.RECORD_HEADER_SIZE;
+	}
+
+	private void expect(TlvType type) {
+		if (getTypeId() != type.id()) {
+			String msg = String.format("Record %d has type id %d, not %s.", getKey(), getTypeId(), type);
+			logger.log(Level.WARNING, msg);
+			throw new IllegalStateException(msg);
+		}
+	}
+
+	private long readInt(int from, int size) {
+		if (size > 8)
+			throw malformed(String.format("The integer of record %d is %d bytes long.", getKey(), size));
+		if (size <= 0)
+			return 0;
+		// Sign extended from the first byte.
+		long value = buffer.get(valueIndex() + from);
+		for (int i = 1; i < size; i++) {
+			value = (value << 8) | (buffer.get(valueIndex() + from + i) & 0xFF);
+		}
+		return value;
+	}
+
+	private static IllegalArgumentException malformed(String msg) {
+		logger.log(Level.WARNING, msg);
+		return new IllegalArgumentException(msg);
+	}
+
+	// Renders every record, leaving the reader where it was.
+	@Override
+	public String toString() {
+		int savedRecord = record;
+		int savedNext = next;
+		StringBuilder builder = new StringBuilder("{");
+		try {
+			rewind();
+			while (next()) {
+				if (builder.length() > 1)
+					builder.append(", ");
+				builder.append(getKey()).append('=');
+				switch (TlvType.isValid(getTypeId()) ? getType() : TlvType.BYTES) {
+					case INT:
+						builder.append(getLong());
+						break;
+					case FIXED:
+						builder.append(BigDecimal.valueOf(getUnscaled(), getScale()).toPlainString());
+						break;
+					case ENUM:
+						builder.append('#').append(getEnumOrdinal());
+						break;
+					default:
+						builder.append("0x");
+						for (int i = 0; i < getLength(); i++) {
+							builder.append(String.format("%02x", buffer.get(valueIndex() + i)));
+						}
+						break;
+				}
+			}
+		} catch (RuntimeException e) {
+			builder.append(builder.length() > 1 ? ", " : "").append("malformed");
+		} finally {
+			record = savedRecord;
+			next = savedNext;
+		}
+		return builder.append('}').toString();
+	}
+
+}
@@ -0,0 +1,48 @@
+package com.github.tutertlob.subghz;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// The types of the records written by TlvWriter. The id takes the upper 3 bits of a record's first byte.
+public enum TlvType {
+
+	// A signed integer, big endian, in as few bytes as it takes. Zero takes none.
+	INT((byte) 0),
+
+	// A scale byte giving the number of decimal places, followed by the unscaled value encoded like INT.
+	FIXED((byte) 1),
+
+	// Raw bytes.
+	BYTES((byte) 2),
+
+	// The ordinal of an enum constant, unsigned, encoded like INT.
+	ENUM((byte) 3);
+
+	private static final Logger logger = Logger.getLogger(TlvType.class.getName());
+
+	private static final TlvType[] types = values();
+
+	private final byte id;
+
+	private TlvType(byte id) {
+		this.id = id;
+	}
+
+	public byte id() {
+		return this.id;
+	}
+
+	public static boolean isValid(byte i) {
+		return i >= 0 && i < types.length;
+	}
+
+	public static TlvType valueOf(byte i) {
+		if (!isValid(i)) {
+			String msg = String.format("Invalid TLV record type id %d", i);
+			logger.log(Level.WARNING, msg);
+			throw new IllegalArgumentException(msg);
+		}
+		return types[i];
+	}
+
+}
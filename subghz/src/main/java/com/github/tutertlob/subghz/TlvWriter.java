@@ -0,0 +1,194 @@
+package com.github.tutertlob.subghz;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Writes typed parameters as type-length-value records, a compact binary alternative to ASCII parameters.
+// A record is a byte holding the type (upper 3 bits) and a key from 0 to MAX_KEY (lower 5 bits),
+// a length byte, and the value. The writer is reusable and allocates nothing once created.
+// A record which doesn't fit is not written at all, and BufferOverflowException is thrown.
+public final class TlvWriter {
+
+	private static final Logger logger = Logger.getLogger(TlvWriter.class.getName());
+
+	public static final int MAX_KEY = 0x1F;
+
+	public static final int MAX_VALUE_LENGTH = 0xFF;
+
+	public static final int MAX_SCALE = 18;
+
+	static final int TYPE_SHIFT = 5;
+
+	static final int RECORD_HEADER_SIZE = 2;
+
+	static final long[] POWERS_OF_TEN = new long[MAX_SCALE + 1];
+
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i <= MAX_SCALE; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	private ByteBuffer dst;
+
+	private int start;
+
+	// A writer with its own buffer, large enough for the parameters of any packet.
+	public TlvWriter() {
+		this(256);
+	}
+
+	public TlvWriter(int capacity) {
+		wrap(ByteBuffer.allocate(capacity));
+	}
+
+	// Writes from the current position of dst on.
+	public TlvWriter wrap(ByteBuffer dst) {
+		if (dst == null) {
+			String msg = "Argument dst is null.";
+			logger.log(Level.WARNING, msg);
+			throw new NullPointerException(msg);
+		}
+		this.dst = dst;
+		this.start = dst.position();
+		return this;
+	}
+
+	// Discards the records written so far.
+	public TlvWriter reset() {
+		dst.position(start);
+		return this;
+	}
+
+	// The number of bytes written since wrap() or reset().
+	public int length() {
+		return dst.position() - start;
+	}
+
+	public byte[] toByteArray() {
+		byte[] records = new byte[length()];
+		ByteBuffer written = dst.duplicate();
+		written.position(start);
+		written.get(records);
+		return records;
+	}
+
+	public TlvWriter putInt(int key, long value) {
+		int size = sizeOfInt(value);
+		header(key, TlvType.INT, size);
+		writeInt(value, size);
+		return this;
+	}
+
+	// The value is unscaled / 10^scale, so that 23.45 is written as putFixed(key, 2345, 2).
+	public TlvWriter putFixed(int key, long unscaled, int scale) {
+		checkScale(scale);
+		int size = sizeOfInt(unscaled);
+		header(key, TlvType.FIXED, 1 + size);
+		dst.put((byte) scale);
+		writeInt(unscaled, size);
+		return this;
+	}
+
+	// Rounds value to scale decimal places.
+	public TlvWriter putFixed(int key, double value, int scale) {
+		checkScale(scale);
+		return putFixed(key, Math.round(value * POWERS_OF_TEN[scale]), scale);
+	}
+
+	public TlvWriter putBytes(int key, byte[] value) {
+		if (value == null) {
+			String msg = "Argument value is null.";
+			logger.log(Level.WARNING, msg);
+			throw new NullPointerException(msg);
+		}
+		header(key, TlvType.BYTES, value.length);
+		dst.put(value);
+		return this;
+	}
+
+	// Writes the remaining bytes of value without moving its position.
+	public TlvWriter putBytes(int key, ByteBuffer value) {
+		if (value == null) {
+			String msg = "Argument value is null.";
+			logger.log(Level.WARNING, msg);
+			throw new NullPointerException(msg);
+		}
+		header(key, TlvType.BYTES, value.remaining());
+		for (int i = value.position(); i < value.limit(); i++) {
+			dst.put(value.get(i));
+		}
+		return this;
+	}
+
+	public TlvWriter putEnum(int key, Enum<?> value) {
+		if (value == null) {
+			String msg = "Argument value is null.";
+			logger.log(Level.WARNING, msg);
+			throw new NullPointerException(msg);
+		}
+		int size = sizeOfUnsigned(value.ordinal());
+		header(key, TlvType.ENUM, size);
+		writeInt(value.ordinal(), size);
+		return this;
+	}
+
+	// The number of bytes the record of an integer takes.
+	public static int sizeOfIntRecord(long value) {
+		return RECORD_HEADER_SIZE + sizeOfInt(value);
+	}
+
+	private void header(int key, TlvType type, int length) {
+		if (key < 0 || key > MAX_KEY) {
+			String msg = String.format("The key %d is out of range [0, %d].", key, MAX_KEY);
+			logger.log(Level.WARNING, msg);
+			throw new IllegalArgumentException(msg);
+		}
+		if (length > MAX_VALUE_LENGTH) {
+			String msg = String.format("The value is %d bytes long, more than a record can hold (%d).", length,
+					MAX_VALUE_LENGTH);
+			logger.log(Level.WARNING, msg);
+			throw new IllegalArgumentException(msg);
+		}
+		if (dst.remaining() < RECORD_HEADER_SIZE + length)
+			throw new BufferOverflowException();
+
+		dst.put((byte) ((type.id() << TYPE_SHIFT) | key)).put((byte) length);
+	}
+
+	private void writeInt(long value, int size) {
+		for (int shift = (size - 1) * 8; shift >= 0; shift -= 8) {
+			dst.put((byte) (value >> shift));
+		}
+	}
+
+	private static void checkScale(int scale) {
+		if (scale < 0 || scale > MAX_SCALE) {
+			String msg = String.format("The scale %d is out of range [0, %d].", scale, MAX_SCALE);
+			logger.log(Level.WARNING, msg);
+			throw new IllegalArgumentException(msg);
+		}
+	}
+
+	// The fewest bytes holding value in two's complement.
+	static int sizeOfInt(long value) {
+		if (value == 0)
+			return 0;
+		// The bits which differ from the sign bit, plus the sign bit itself.
+		int significant = 65 - Long.numberOfLeadingZeros(value ^ (value >> 63));
+		return (significant + 7) / 8;
+	}
+
+	private static int sizeOfUnsigned(long value) {
+		return (64 - Long.numberOfLeadingZeros(value) + 7) / 8;
+	}
+
+	@Override
+	public String toString() {
+		return new TlvReader().wrap(ByteBuffer.wrap(toByteArray())).toString();
+	}
+
+}
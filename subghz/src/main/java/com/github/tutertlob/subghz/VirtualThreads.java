@@ -0,0 +1,17 @@
+package com.github.tutertlob.subghz;
+
+import java.util.concurrent.ThreadFactory;
+
+// Replaced in the multi-release jar for Java 21 by a version making virtual threads.
+final class VirtualThreads {
+
+	private VirtualThreads() {
+
+	}
+
+	// Null where there are no virtual threads.
+	static ThreadFactory factory(String name) {
+		return null;
+	}
+
+}
@@ -0,0 +1,16 @@
+package com.github.tutertlob.subghz;
+
+import java.util.concurrent.ThreadFactory;
+
+// The Java 21 version of VirtualThreads, packed under META-INF/versions/21 by the java21 profile.
+final class VirtualThreads {
+
+	private VirtualThreads() {
+
+	}
+
+	static ThreadFactory factory(String name) {
+		return Thread.ofVirtual().name(name + "-", 1).factory();
+	}
+
+}
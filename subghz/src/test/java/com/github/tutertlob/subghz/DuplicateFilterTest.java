@@ -0,0 +1,156 @@
+package com.github.tutertlob.subghz;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+// Time is given to each check, so nothing here waits on the clock.
+public class DuplicateFilterTest {
+
+	private static final long EXPIRY = TimeUnit.SECONDS.toNanos(1);
+
+	private final DuplicateFilter filter = new DuplicateFilter(1, TimeUnit.SECONDS, 4);
+
+	private boolean check(long sender, int seqNum) {
+		return filter.isDuplicate(sender, seqNum, 0);
+	}
+
+	@Test
+	public void repeatIsSuppressed() {
+		assertFalse(check(1, 5));
+		assertTrue(check(1, 5));
+		assertFalse(check(1, 6));
+		assertTrue(check(1, 5));
+		assertEquals(2, filter.getPassedCount());
+		assertEquals(2, filter.getSuppressedCount());
+	}
+
+	@Test
+	public void sendersAreTrackedApart() {
+		assertFalse(check(1, 5));
+		assertFalse(check(2, 5));
+		assertTrue(check(1, 5));
+		assertTrue(check(2, 5));
+		assertEquals(2, filter.getSenderCount());
+	}
+
+	@Test
+	public void aheadAndBehindAcrossTheWrap() {
+		assertFalse(check(1, 250));
+		// 8 ahead of 250.
+		assertFalse(check(1, 2));
+		// 8 and 3 behind 2.
+		assertTrue(check(1, 250));
+		assertFalse(check(1, 255));
+		assertTrue(check(1, 255));
+		assertFalse(check(1, 0));
+		assertTrue(check(1, 2));
+	}
+
+	@Test
+	public void numbersOutOfRangeAreMasked() {
+		assertFalse(check(1, 0x105));
+		assertTrue(check(1, 5));
+	}
+
+	@Test
+	public void jumpBeyondTheWindowForgetsWhatWasSeen() {
+		assertFalse(check(1, 0));
+		assertFalse(check(1, DuplicateFilter.WINDOW));
+		// 0 is now further behind than the window remembers, so it is taken as a restart.
+		assertFalse(check(1, 0));
+		assertEquals(3, filter.getPassedCount());
+	}
+
+	@Test
+	public void senderFarBehindIsReset() {
+		assertFalse(check(1, 200));
+		assertFalse(check(1, 199));
+		// Just within the window.
+		assertFalse(check(1, 200 - DuplicateFilter.WINDOW + 1));
+		assertTrue(check(1, 199));
+
+		// Just beyond it: the sender restarted its count.
+		assertFalse(check(1, 200 - DuplicateFilter.WINDOW));
+		assertTrue(check(1, 200 - DuplicateFilter.WINDOW));
+		// What came before the restart is new again.
+		assertFalse(check(1, 199));
+		assertFalse(check(1, 200));
+	}
+
+	@Test
+	public void halfTheSpaceAheadIsBehind() {
+		assertFalse(check(1, 0));
+		// 128 is as far behind as ahead, which is beyond the window: a restart.
+		assertFalse(check(1, 128));
+		assertTrue(check(1, 128));
+		assertFalse(check(1, 0));
+	}
+
+	@Test
+	public void silentSenderStartsAfresh() {
+		assertFalse(filter.isDuplicate(1, 5, 0));
+		assertTrue(filter.isDuplicate(1, 5, EXPIRY));
+		// Each frame heard counts as hearing the sender.
+		assertTrue(filter.isDuplicate(1, 5, 2 * EXPIRY));
+		assertFalse(filter.isDuplicate(1, 5, 3 * EXPIRY + 1));
+		assertEquals(1, filter.getSenderCount());
+	}
+
+	@Test
+	public void stalestSenderIsEvicted() {
+		for (int sender = 1; sender <= 4; sender++) {
+			assertFalse(filter.isDuplicate(sender, 0, sender));
+		}
+		// Sender 1 is heard again, so sender 2 becomes the stalest.
+		assertTrue(filter.isDuplicate(1, 0, 5));
+
+		assertFalse(filter.isDuplicate(5, 0, 6));
+		assertEquals(1, filter.getEvictedCount());
+		assertEquals(4, filter.getSenderCount());
+		assertTrue(filter.isDuplicate(1, 0, 7));
+		assertTrue(filter.isDuplicate(3, 0, 7));
+		// Sender 2 was forgotten, and comes back in place of sender 4.
+		assertFalse(filter.isDuplicate(2, 0, 8));
+		assertEquals(2, filter.getEvictedCount());
+		assertTrue(filter.isDuplicate(5, 0, 8));
+	}
+
+	@Test
+	public void expiredSendersMakeRoomFirst() {
+		for (int sender = 1; sender <= 4; sender++) {
+			assertFalse(filter.isDuplicate(sender, 0, 0));
+		}
+		assertFalse(filter.isDuplicate(5, 0, EXPIRY + 1));
+		assertEquals(0, filter.getEvictedCount());
+		assertEquals(1, filter.getSenderCount());
+	}
+
+	@Test
+	public void tableGrowsWithTheSenders() {
+		DuplicateFilter large = new DuplicateFilter();
+		for (int sender = 0; sender < DuplicateFilter.DEFAULT_MAX_SENDERS; sender++) {
+			assertFalse(large.isDuplicate(sender, sender, 0));
+		}
+		for (int sender = 0; sender < DuplicateFilter.DEFAULT_MAX_SENDERS; sender++) {
+			assertTrue(large.isDuplicate(sender, sender, 0));
+		}
+		assertEquals(DuplicateFilter.DEFAULT_MAX_SENDERS, large.getSenderCount());
+		assertEquals(0, large.getEvictedCount());
+		assertEquals(DuplicateFilter.DEFAULT_MAX_SENDERS, large.getPassedCount());
+		assertEquals(DuplicateFilter.DEFAULT_MAX_SENDERS, large.getSuppressedCount());
+	}
+
+	@Test
+	public void clearForgetsEverySender() {
+		assertFalse(check(1, 5));
+		filter.clear();
+		assertEquals(0, filter.getSenderCount());
+		assertFalse(check(1, 5));
+	}
+
+}
@@ -0,0 +1,273 @@
+package com.github.tutertlob.subghz;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DurableQueueTest {
+
+	private static final int PAYLOAD_BYTES = 8;
+
+	private static final int RECORD_BYTES = DurableQueue.RECORD_HEADER_BYTES + PAYLOAD_BYTES;
+
+	// Room for two entries; an ACK after them starts the next segment.
+	private static final int SMALL_SEGMENT = 64;
+
+	private static final int SEGMENT = 4096;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = folder.newFolder("queue").toPath();
+	}
+
+	private DurableQueue open(int segmentBytes) throws IOException {
+		return new DurableQueue(directory, segmentBytes, 10, TimeUnit.MILLISECONDS);
+	}
+
+	private static ByteBuffer payload(long value) {
+		return (ByteBuffer) ByteBuffer.allocate(PAYLOAD_BYTES).putLong(value).flip();
+	}
+
+	// The ids recovered, after checking each payload is the value it was appended with.
+	private static List<Long> recovered(DurableQueue queue, long... values) {
+		List<DurableQueue.Entry> entries = queue.takeRecovered();
+		List<Long> ids = new ArrayList<>();
+		assertEquals(values.length, entries.size());
+		for (int i = 0; i < values.length; i++) {
+			assertEquals(values[i], entries.get(i).getPayloadBuffer().getLong());
+			ids.add(entries.get(i).getId());
+		}
+		return ids;
+	}
+
+	// Where the i-th record of the first segment starts, all of them being entries.
+	private static long recordStart(int i) {
+		return DurableQueue.SEGMENT_HEADER_BYTES + (long) i * RECORD_BYTES;
+	}
+
+	private void overwrite(int segment, long position, byte[] bytes) throws IOException {
+		try (FileChannel channel = FileChannel.open(DurableQueue.segmentPath(directory, segment),
+				StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(bytes), position);
+		}
+	}
+
+	@Test
+	public void reopenedWithPendingEntries() throws IOException {
+		try (DurableQueue queue = open(SEGMENT)) {
+			assertTrue(queue.takeRecovered().isEmpty());
+			assertEquals(0, queue.append(payload(100)));
+			assertEquals(1, queue.append(payload(101)));
+			assertEquals(2, queue.append(payload(102)));
+			assertTrue(queue.acknowledge(1));
+			assertFalse(queue.acknowledge(1));
+			assertEquals(2, queue.size());
+		}
+
+		try (DurableQueue queue = open(SEGMENT)) {
+			assertEquals(2, queue.size());
+			List<Long> ids = recovered(queue, 100, 102);
+			assertEquals(Long.valueOf(0), ids.get(0));
+			assertEquals(Long.valueOf(2), ids.get(1));
+			assertTrue(queue.takeRecovered().isEmpty());
+
+			// Ids go on from the highest seen, and recovered entries are acknowledged as before.
+			assertEquals(3, queue.append(payload(103)));
+			assertTrue(queue.acknowledge(0));
+		}
+
+		try (DurableQueue queue = open(SEGMENT)) {
+			recovered(queue, 102, 103);
+		}
+	}
+
+	@Test
+	public void appendDoesNotConsumeThePayload() throws IOException {
+		try (DurableQueue queue = open(SEGMENT)) {
+			ByteBuffer payload = payload(7);
+			queue.append(payload);
+			assertEquals(PAYLOAD_BYTES, payload.remaining());
+		}
+	}
+
+	@Test
+	public void tornTailIsDropped() throws IOException {
+		try (DurableQueue queue = open(SEGMENT)) {
+			queue.append(payload(100));
+			queue.append(payload(101));
+		}
+		// The process died in the middle of the second record.
+		try (FileChannel channel = FileChannel.open(DurableQueue.segmentPath(directory, 0),
+				StandardOpenOption.WRITE)) {
+			channel.truncate(recordStart(1) + RECORD_BYTES / 2);
+		}
+
+		try (DurableQueue queue = open(SEGMENT)) {
+			recovered(queue, 100);
+			assertEquals(1, queue.size());
+		}
+	}
+
+	@Test
+	public void recordWhoseLengthWasNeverWrittenEndsTheSegment() throws IOException {
+		try (DurableQueue queue = open(SEGMENT)) {
+			queue.append(payload(100));
+			queue.append(payload(101));
+		}
+		// The length goes in last, so a record cut short reads as the end of the segment.
+		overwrite(0, recordStart(1), new byte[4]);
+
+		try (DurableQueue queue = open(SEGMENT)) {
+			recovered(queue, 100);
+		}
+	}
+
+	@Test
+	public void checksumMismatchEndsTheSegment() throws IOException {
+		try (DurableQueue queue = open(SEGMENT)) {
+			queue.append(payload(100));
+			queue.append(payload(101));
+			queue.append(payload(102));
+		}
+		// A byte of the second payload flipped.
+		overwrite(0, recordStart(1) + DurableQueue.RECORD_HEADER_BYTES, new byte[] { (byte) 0xFF });
+
+		try (DurableQueue queue = open(SEGMENT)) {
+			// Nothing after the bad record is trusted, though the third one is intact.
+			recovered(queue, 100);
+		}
+	}
+
+	@Test
+	public void ackInALaterSegment() throws IOException {
+		try (DurableQueue queue = open(SMALL_SEGMENT)) {
+			queue.append(payload(100));
+			queue.append(payload(101));
+			queue.append(payload(102));
+			// Entry 0 is in the first segment, its ACK goes in the second.
+			assertTrue(queue.acknowledge(0));
+			assertTrue(Files.exists(DurableQueue.segmentPath(directory, 0)));
+			assertTrue(Files.exists(DurableQueue.segmentPath(directory, 1)));
+		}
+
+		try (DurableQueue queue = open(SMALL_SEGMENT)) {
+			recovered(queue, 101, 102);
+		}
+	}
+
+	@Test
+	public void segmentsAreDeletedOnceAcknowledged() throws IOException {
+		try (DurableQueue queue = open(SMALL_SEGMENT)) {
+			queue.append(payload(100));
+			queue.append(payload(101));
+			queue.append(payload(102));
+			queue.acknowledge(0);
+			// The ACK of entry 1 starts the third segment and leaves nothing pending in the first.
+			queue.acknowledge(1);
+			assertFalse(Files.exists(DurableQueue.segmentPath(directory, 0)));
+			assertTrue(Files.exists(DurableQueue.segmentPath(directory, 1)));
+			assertTrue(Files.exists(DurableQueue.segmentPath(directory, 2)));
+
+			queue.acknowledge(2);
+			assertFalse(Files.exists(DurableQueue.segmentPath(directory, 1)));
+			// The segment appended to is kept.
+			assertTrue(Files.exists(DurableQueue.segmentPath(directory, 2)));
+			assertEquals(0, queue.size());
+		}
+
+		// Reopening starts a new segment and deletes the old one, which holds nothing pending.
+		try (DurableQueue queue = open(SMALL_SEGMENT)) {
+			assertTrue(queue.takeRecovered().isEmpty());
+			assertFalse(Files.exists(DurableQueue.segmentPath(directory, 2)));
+			assertTrue(Files.exists(DurableQueue.segmentPath(directory, 3)));
+			assertEquals(3, queue.append(payload(103)));
+		}
+	}
+
+	@Test
+	public void segmentWithPendingEntriesKeepsThoseAfterIt() throws IOException {
+		try (DurableQueue queue = open(SMALL_SEGMENT)) {
+			queue.append(payload(100));
+			queue.append(payload(101));
+			queue.append(payload(102));
+			queue.append(payload(103));
+			queue.acknowledge(2);
+			queue.acknowledge(3);
+			// The second segment holds nothing pending, but the first still does.
+			assertTrue(Files.exists(DurableQueue.segmentPath(directory, 1)));
+		}
+
+		try (DurableQueue queue = open(SMALL_SEGMENT)) {
+			recovered(queue, 100, 101);
+		}
+	}
+
+	@Test
+	public void notASegment() throws IOException {
+		try (DurableQueue queue = open(SEGMENT)) {
+			queue.append(payload(100));
+		}
+		overwrite(0, 0, new byte[] { 0, 0, 0, 0 });
+
+		try {
+			open(SEGMENT).close();
+			throw new AssertionError("A segment without the magic was accepted.");
+		} catch (IOException e) {
+			// Expected.
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void entryLargerThanASegment() throws IOException {
+		try (DurableQueue queue = open(SMALL_SEGMENT)) {
+			queue.append(ByteBuffer.allocate(SMALL_SEGMENT));
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void appendAfterClose() throws IOException {
+		DurableQueue queue = open(SEGMENT);
+		queue.close();
+		queue.append(payload(100));
+	}
+
+	@Test
+	public void payloadRoundTrips() throws IOException {
+		byte[] bytes = new byte[300];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) i;
+		}
+		try (DurableQueue queue = open(SEGMENT)) {
+			queue.append(ByteBuffer.wrap(bytes));
+			queue.append(ByteBuffer.allocate(0));
+		}
+		try (DurableQueue queue = open(SEGMENT)) {
+			List<DurableQueue.Entry> entries = queue.takeRecovered();
+			assertEquals(2, entries.size());
+			assertArrayEquals(bytes, entries.get(0).getPayloadBytes());
+			assertEquals(0, entries.get(1).getPayloadBytes().length);
+		}
+	}
+
+}
@@ -0,0 +1,197 @@
+package com.github.tutertlob.subghz;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+// Time is given to each offer, so nothing here waits on the clock.
+public class FragmentReassemblerTest {
+
+	private static final long TIMEOUT = TimeUnit.SECONDS.toNanos(1);
+
+	private static final int BUDGET = 512;
+
+	private final FragmentReassembler reassembler = new FragmentReassembler(1, TimeUnit.SECONDS, BUDGET);
+
+	private static ByteBuffer ascii(String s) {
+		return ByteBuffer.wrap(s.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	private static String ascii(ByteBuffer message) {
+		byte[] bytes = new byte[message.remaining()];
+		message.get(bytes);
+		return new String(bytes, StandardCharsets.US_ASCII);
+	}
+
+	private ByteBuffer offer(String sender, int seqNum, boolean fragmented, String data, long nowNanos) {
+		return reassembler.offer(sender, seqNum, fragmented, ascii(data), nowNanos);
+	}
+
+	@Test
+	public void fragmentsInOrder() {
+		assertNull(offer("a", 10, true, "ab", 0));
+		assertNull(offer("a", 11, true, "cd", 0));
+		assertEquals(1, reassembler.getPartialCount());
+		assertEquals("abcde", ascii(offer("a", 12, false, "e", 0)));
+
+		assertEquals(0, reassembler.getPartialCount());
+		assertEquals(0, reassembler.getBufferedBytes());
+		assertEquals(1, reassembler.getCompletedCount());
+	}
+
+	@Test
+	public void sendersAreReassembledApart() {
+		assertNull(offer("a", 0, true, "a1", 0));
+		assertNull(offer("b", 7, true, "b1", 0));
+		assertEquals("b1b2", ascii(offer("b", 8, false, "b2", 0)));
+		assertEquals("a1a2", ascii(offer("a", 1, false, "a2", 0)));
+	}
+
+	@Test
+	public void sequenceWrapsAround() {
+		assertNull(offer("a", 254, true, "x", 0));
+		assertNull(offer("a", 255, true, "y", 0));
+		assertEquals("xyz", ascii(offer("a", 0, false, "z", 0)));
+		assertEquals(0, reassembler.getDiscardedCount());
+	}
+
+	@Test
+	public void gapDiscardsTheMessageUpToItsLastPacket() {
+		assertNull(offer("a", 10, true, "ab", 0));
+		// 11 is lost.
+		assertNull(offer("a", 12, true, "ef", 0));
+		assertEquals(1, reassembler.getDiscardedCount());
+		assertEquals(0, reassembler.getPartialCount());
+		assertEquals(0, reassembler.getBufferedBytes());
+
+		// The rest of the message is never delivered in part.
+		assertNull(offer("a", 13, true, "gh", 0));
+		assertNull(offer("a", 14, false, "ij", 0));
+		assertEquals(3, reassembler.getDroppedCount());
+
+		// The next message starts afresh.
+		assertEquals("kl", ascii(offer("a", 15, false, "kl", 0)));
+		assertEquals(1, reassembler.getCompletedCount());
+	}
+
+	@Test
+	public void gapAcrossTheWrap() {
+		assertNull(offer("a", 255, true, "x", 0));
+		assertNull(offer("a", 1, false, "z", 0));
+		assertEquals(1, reassembler.getDiscardedCount());
+		assertEquals(1, reassembler.getDroppedCount());
+	}
+
+	@Test
+	public void packetsWithoutSequenceNumbersAreNotChecked() {
+		int none = PacketLayout.NO_SEQUENCE_NUMBER;
+		assertNull(offer("a", none, true, "ab", 0));
+		assertEquals("abcd", ascii(offer("a", none, false, "cd", 0)));
+	}
+
+	@Test
+	public void silentSenderTimesOut() {
+		assertNull(offer("a", 0, true, "ab", 0));
+		assertEquals(0, reassembler.expire(TIMEOUT - 1));
+		assertEquals(1, reassembler.expire(TIMEOUT));
+		assertEquals(1, reassembler.getTimedOutCount());
+		assertEquals(0, reassembler.getBufferedBytes());
+
+		// What is left of the message arrives late and is dropped.
+		assertNull(offer("a", 1, false, "cd", TIMEOUT));
+		assertEquals(1, reassembler.getDroppedCount());
+		assertEquals("ef", ascii(offer("a", 2, false, "ef", TIMEOUT)));
+	}
+
+	@Test
+	public void timeoutCheckedOnOffer() {
+		assertNull(offer("a", 0, true, "ab", 0));
+		assertNull(offer("a", 1, false, "cd", 2 * TIMEOUT));
+		assertEquals(1, reassembler.getTimedOutCount());
+		assertEquals(1, reassembler.getDroppedCount());
+	}
+
+	@Test
+	public void discardingEndsWithTheSenderSilent() {
+		assertNull(offer("a", 0, true, "ab", 0));
+		assertNull(offer("a", 2, true, "cd", 0));
+		assertEquals(1, reassembler.getDroppedCount());
+
+		// The sender gave up on the message, and its next one starts without the last packet of the old one.
+		assertNull(offer("a", 3, true, "ef", TIMEOUT));
+		assertEquals(1, reassembler.getDroppedCount());
+		assertEquals("efgh", ascii(offer("a", 4, false, "gh", TIMEOUT)));
+	}
+
+	@Test
+	public void leastRecentlyExtendedIsEvicted() {
+		char[] fill = new char[200];
+		Arrays.fill(fill, 'x');
+		String chunk = new String(fill);
+		assertNull(offer("a", 0, true, chunk, 0));
+		assertNull(offer("b", 0, true, chunk, 1));
+		assertNull(offer("a", 1, true, "y", 2));
+		assertEquals(2, reassembler.getPartialCount());
+
+		// Growing the message of a takes the room of b's.
+		assertNull(offer("a", 2, true, chunk, 3));
+		assertEquals(1, reassembler.getEvictedCount());
+		assertEquals(1, reassembler.getPartialCount());
+		assertEquals(BUDGET, reassembler.getBufferedBytes());
+
+		assertNull(offer("b", 1, false, "z", 4));
+		assertEquals(1, reassembler.getDroppedCount());
+		assertEquals(401, ascii(offer("a", 3, false, "", 5)).length());
+	}
+
+	@Test
+	public void messageOverTheBudgetIsDiscarded() {
+		char[] fill = new char[BUDGET / 2 + 1];
+		Arrays.fill(fill, 'x');
+		String chunk = new String(fill);
+		assertNull(offer("a", 0, true, chunk, 0));
+		assertNull(offer("a", 1, true, chunk, 0));
+		assertEquals(1, reassembler.getDiscardedCount());
+		assertEquals(0, reassembler.getBufferedBytes());
+
+		assertNull(offer("a", 2, false, "z", 0));
+		assertEquals(1, reassembler.getDroppedCount());
+	}
+
+	@Test
+	public void compressedMessageIsDecompressed() {
+		byte[] text = new byte[2000];
+		for (int i = 0; i < text.length; i++) {
+			text[i] = (byte) ('a' + i % 7);
+		}
+		byte[] compressed = Lzss.compress(text);
+		FragmentReassembler large = new FragmentReassembler(1, TimeUnit.SECONDS, 4096);
+		int half = compressed.length / 2;
+		assertNull(large.offer("a", 0, true, true, ByteBuffer.wrap(compressed, 0, half), 0));
+		ByteBuffer message = large.offer("a", 1, false, true,
+				ByteBuffer.wrap(compressed, half, compressed.length - half), 0);
+
+		byte[] bytes = new byte[message.remaining()];
+		message.get(bytes);
+		assertArrayEquals(text, bytes);
+		assertEquals(1, large.getDecompressedCount());
+		assertEquals(1, large.getCompletedCount());
+	}
+
+	@Test
+	public void compressedMessageOverTheBudgetIsDiscarded() {
+		// Compresses well, but inflates beyond the budget.
+		byte[] compressed = Lzss.compress(new byte[BUDGET + 1]);
+		assertNull(reassembler.offer("a", 0, false, true, ByteBuffer.wrap(compressed), 0));
+		assertEquals(1, reassembler.getDiscardedCount());
+		assertEquals(0, reassembler.getDecompressedCount());
+	}
+
+}
@@ -0,0 +1,316 @@
+package com.github.tutertlob.subghz;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class FrameDispatcherTest {
+
+	private static final long WAIT_MS = 5000;
+
+	// A data frame standing for nothing but its sender and value.
+	private static final class TestFrame extends SubGHzFrame {
+
+		private final String sender;
+
+		private final int value;
+
+		private final PacketImplementation packet = new PacketImplementation() {
+
+			@Override
+			public byte[] getPacketBytes() {
+				return new byte[0];
+			}
+
+			@Override
+			public void writeTo(ByteBuffer dst) {
+			}
+
+			@Override
+			public int getPacketLength() {
+				return 0;
+			}
+
+			@Override
+			public PacketImplementation.Type getPacketType() {
+				return PacketImplementation.Type.DATA;
+			}
+
+			@Override
+			public boolean isFragmented() {
+				return false;
+			}
+
+			@Override
+			public boolean isResponseRequested() {
+				return false;
+			}
+
+			@Override
+			public boolean isCompressed() {
+				return false;
+			}
+
+			@Override
+			public boolean isTlvEncoded() {
+				return false;
+			}
+
+			@Override
+			public String toString() {
+				return "TestPacket";
+			}
+		};
+
+		TestFrame(String sender, int value) {
+			this.sender = sender;
+			this.value = value;
+		}
+
+		@Override
+		public byte[] getFrameBytes() {
+			return new byte[0];
+		}
+
+		@Override
+		public int getFrameLength() {
+			return 0;
+		}
+
+		@Override
+		public void writeTo(ByteBuffer dst) {
+		}
+
+		@Override
+		public byte[] getPayloadBytes() {
+			return new byte[0];
+		}
+
+		@Override
+		public ByteBuffer getPayloadBuffer() {
+			return ByteBuffer.allocate(0);
+		}
+
+		@Override
+		public int getPayloadLength() {
+			return 0;
+		}
+
+		@Override
+		public PacketImplementation getPacket() {
+			return packet;
+		}
+
+		@Override
+		public String getSender() {
+			return sender;
+		}
+
+		@Override
+		public int getRssi() {
+			return 0;
+		}
+
+		@Override
+		public String toString() {
+			return sender + ":" + value;
+		}
+	}
+
+	// Holds the tasks of the dispatcher until the test runs them.
+	private static final class ManualExecutor implements Executor {
+
+		final List<Runnable> tasks = new ArrayList<>();
+
+		@Override
+		public void execute(Runnable command) {
+			tasks.add(command);
+		}
+
+		void runAll() {
+			while (!tasks.isEmpty()) {
+				tasks.remove(0).run();
+			}
+		}
+	}
+
+	private FrameDispatcher<TestFrame> dispatcher;
+
+	private ExecutorService executor;
+
+	@After
+	public void tearDown() {
+		if (dispatcher != null)
+			dispatcher.close();
+		if (executor != null)
+			executor.shutdownNow();
+	}
+
+	private static void await(AtomicInteger counter, int expected) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WAIT_MS);
+		while (counter.get() < expected && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals(expected, counter.get());
+	}
+
+	@Test
+	public void framesOfASenderKeepTheirOrder() throws Exception {
+		executor = Executors.newFixedThreadPool(4);
+		dispatcher = new FrameDispatcher<>(executor);
+		String[] senders = { "a", "b", "c" };
+		int perSender = 200;
+		Map<String, List<Integer>> seen = new HashMap<>();
+		Map<String, AtomicInteger> inHandler = new HashMap<>();
+		for (String sender : senders) {
+			seen.put(sender, Collections.synchronizedList(new ArrayList<>()));
+			inHandler.put(sender, new AtomicInteger());
+		}
+		AtomicInteger overlaps = new AtomicInteger();
+		AtomicInteger handled = new AtomicInteger();
+		dispatcher.register(PacketImplementation.Type.DATA, null, null, frame -> {
+			AtomicInteger busy = inHandler.get(frame.getSender());
+			if (busy.incrementAndGet() > 1)
+				overlaps.incrementAndGet();
+			seen.get(frame.getSender()).add(frame.value);
+			busy.decrementAndGet();
+			handled.incrementAndGet();
+		}, senders.length * perSender);
+
+		for (int i = 0; i < perSender; i++) {
+			for (String sender : senders) {
+				assertEquals(1, dispatcher.dispatch(new TestFrame(sender, i)));
+			}
+		}
+		await(handled, senders.length * perSender);
+
+		List<Integer> expected = new ArrayList<>();
+		for (int i = 0; i < perSender; i++) {
+			expected.add(i);
+		}
+		for (String sender : senders) {
+			assertEquals(expected, seen.get(sender));
+		}
+		// A sender's frames are handled one at a time.
+		assertEquals(0, overlaps.get());
+	}
+
+	@Test
+	public void fullMailboxDropsForThatHandlerOnly() {
+		ManualExecutor manual = new ManualExecutor();
+		dispatcher = new FrameDispatcher<>(manual);
+		List<Integer> small = new ArrayList<>();
+		List<Integer> large = new ArrayList<>();
+		FrameDispatcher<TestFrame>.Registration smallBox = dispatcher.register(null, null, null,
+				frame -> small.add(frame.value), 2);
+		FrameDispatcher<TestFrame>.Registration largeBox = dispatcher.register(null, null, null,
+				frame -> large.add(frame.value), 8);
+
+		for (int i = 0; i < 4; i++) {
+			assertEquals(2, dispatcher.dispatch(new TestFrame("a", i)));
+		}
+		assertEquals(2, smallBox.getQueuedCount());
+		assertEquals(2, smallBox.getDroppedCount());
+		assertEquals(4, largeBox.getQueuedCount());
+		assertEquals(0, largeBox.getDroppedCount());
+
+		manual.runAll();
+		assertEquals(Arrays.asList(0, 1), small);
+		assertEquals(Arrays.asList(0, 1, 2, 3), large);
+		assertEquals(0, smallBox.getQueuedCount());
+		assertEquals(2, smallBox.getHandledCount());
+
+		// Room again once the mailbox is handled.
+		dispatcher.dispatch(new TestFrame("a", 4));
+		manual.runAll();
+		assertEquals(Arrays.asList(0, 1, 4), small);
+	}
+
+	@Test
+	public void failingHandlerKeepsItsLaneGoing() {
+		dispatcher = new FrameDispatcher<>(Runnable::run);
+		List<Integer> handled = new ArrayList<>();
+		FrameDispatcher<TestFrame>.Registration registration = dispatcher.register(PacketImplementation.Type.DATA,
+				frame -> {
+					if (frame.value == 1)
+						throw new IllegalStateException("Refused.");
+					handled.add(frame.value);
+				});
+
+		for (int i = 0; i < 3; i++) {
+			dispatcher.dispatch(new TestFrame("a", i));
+		}
+		assertEquals(Arrays.asList(0, 2), handled);
+		assertEquals(1, registration.getFailedCount());
+		assertEquals(2, registration.getHandledCount());
+		assertEquals(0, registration.getQueuedCount());
+	}
+
+	@Test
+	public void unmatchedFramesAreCounted() {
+		dispatcher = new FrameDispatcher<>(Runnable::run);
+		dispatcher.register(PacketImplementation.Type.COMMAND, frame -> {
+		});
+		assertEquals(0, dispatcher.dispatch(new TestFrame("a", 0)));
+		assertEquals(1, dispatcher.getUnmatchedCount());
+	}
+
+	@Test
+	public void readerStopsWhenTheSourceEnds() throws Exception {
+		dispatcher = new FrameDispatcher<>(Runnable::run);
+		AtomicInteger handled = new AtomicInteger();
+		dispatcher.register(PacketImplementation.Type.DATA, frame -> handled.incrementAndGet());
+		AtomicInteger reads = new AtomicInteger();
+		dispatcher.start(() -> {
+			int n = reads.incrementAndGet();
+			if (n <= 2)
+				return new TestFrame("a", n);
+			// As LazuriteUtils::readFrame reports a radio which has stopped.
+			throw new IllegalStateException("Stopped.", new EOFException("Closed."));
+		});
+
+		await(handled, 2);
+		Thread.sleep(100);
+		assertEquals(3, reads.get());
+		assertEquals(0, dispatcher.getReadFailureCount());
+	}
+
+	@Test
+	public void failingSourceIsReadLessOften() throws Exception {
+		dispatcher = new FrameDispatcher<>(Runnable::run);
+		AtomicInteger reads = new AtomicInteger();
+		dispatcher.start(() -> {
+			reads.incrementAndGet();
+			throw new IllegalStateException("Broken.");
+		});
+
+		Thread.sleep(300);
+		// 10, 20, 40, 80 and 160 ms apart.
+		assertTrue(reads.get() >= 2);
+		assertTrue(reads.get() <= 6);
+
+		// Closing interrupts the wait.
+		dispatcher.close();
+		int after = reads.get();
+		assertEquals(after, dispatcher.getReadFailureCount());
+		Thread.sleep(FrameDispatcher.READ_BACKOFF_MAX_MS / 4);
+		assertEquals(after, reads.get());
+	}
+
+}
@@ -0,0 +1,226 @@
+package com.github.tutertlob.subghz;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LzssTest {
+
+	private static final int MAX_LENGTH = 1 << 20;
+
+	private static byte[] roundTrip(byte[] src) {
+		byte[] compressed = Lzss.compress(src);
+		assertTrue(compressed.length <= Lzss.maxCompressedLength(src.length));
+		byte[] decompressed = Lzss.decompress(ByteBuffer.wrap(compressed), MAX_LENGTH);
+		assertArrayEquals(src, decompressed);
+		return compressed;
+	}
+
+	private static byte[] random(int length, long seed) {
+		byte[] bytes = new byte[length];
+		new Random(seed).nextBytes(bytes);
+		return bytes;
+	}
+
+	@Test
+	public void emptyInput() {
+		assertEquals(0, roundTrip(new byte[0]).length);
+	}
+
+	@Test
+	public void incompressibleInput() {
+		byte[] src = random(10000, 1);
+		assertTrue(roundTrip(src).length > src.length);
+	}
+
+	@Test
+	public void singleByte() {
+		roundTrip(new byte[] { 42 });
+	}
+
+	@Test
+	public void longRuns() {
+		byte[] src = new byte[100000];
+		for (int i = 0; i < src.length; i++) {
+			src[i] = (byte) (i / 5000);
+		}
+		byte[] compressed = roundTrip(src);
+		assertTrue(compressed.length < src.length / 20);
+	}
+
+	@Test
+	public void matchesOverlappingTheirOutput() {
+		// "ab" repeated is coded as a literal pair and matches 2 bytes back.
+		byte[] src = new byte[500];
+		for (int i = 0; i < src.length; i++) {
+			src[i] = (byte) ('a' + i % 2);
+		}
+		assertTrue(roundTrip(src).length < 30);
+	}
+
+	@Test
+	public void matchAtTheEdgeOfTheWindow() {
+		byte[] block = random(Lzss.MAX_MATCH, 2);
+		byte[] src = random(Lzss.WINDOW_SIZE + block.length, 3);
+		System.arraycopy(block, 0, src, 0, block.length);
+		System.arraycopy(block, 0, src, Lzss.WINDOW_SIZE, block.length);
+
+		// The block repeated exactly WINDOW_SIZE back is one match instead of MAX_MATCH literals.
+		int literals = Lzss.maxCompressedLength(src.length);
+		assertTrue(roundTrip(src).length <= literals - block.length + 2);
+	}
+
+	@Test
+	public void matchJustBeyondTheWindow() {
+		byte[] block = random(Lzss.MAX_MATCH, 4);
+		byte[] src = random(Lzss.WINDOW_SIZE + 1 + block.length, 5);
+		System.arraycopy(block, 0, src, 0, block.length);
+		System.arraycopy(block, 0, src, Lzss.WINDOW_SIZE + 1, block.length);
+
+		// Out of reach, so the block is left as literals.
+		assertTrue(roundTrip(src).length > Lzss.maxCompressedLength(src.length) - block.length);
+	}
+
+	@Test
+	public void channelReadInChunks() throws IOException {
+		byte[] src = mixed(50000, 6);
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try (ReadableByteChannel channel = Lzss.compressing(new TrickleChannel(src, 7))) {
+			ByteBuffer dst = ByteBuffer.allocate(5);
+			while (channel.read(dst) >= 0) {
+				dst.flip();
+				compressed.write(dst.array(), 0, dst.limit());
+				dst.clear();
+			}
+		}
+
+		byte[] bytes = compressed.toByteArray();
+		assertTrue(bytes.length < src.length);
+		assertArrayEquals(src, Lzss.decompress(ByteBuffer.wrap(bytes), MAX_LENGTH));
+	}
+
+	@Test
+	public void channelOfNothing() throws IOException {
+		ReadableByteChannel channel = Lzss.compressing(new TrickleChannel(new byte[0], 1));
+		assertEquals(-1, channel.read(ByteBuffer.allocate(16)));
+	}
+
+	@Test
+	public void channelMatchesCompress() throws IOException {
+		// Below one chunk the stream sees the same input at once, so it encodes the same way.
+		byte[] src = mixed(3000, 7);
+		ReadableByteChannel channel = Lzss.compressing(new TrickleChannel(src, src.length));
+		ByteBuffer dst = ByteBuffer.allocate(Lzss.maxCompressedLength(src.length) + 1);
+		while (channel.read(dst) >= 0) {
+		}
+		dst.flip();
+		byte[] bytes = new byte[dst.remaining()];
+		dst.get(bytes);
+		assertArrayEquals(Lzss.compress(src), bytes);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void matchBeforeTheStart() {
+		Lzss.decompress(ByteBuffer.wrap(new byte[] { 0x01, 0x00, 0x00 }), MAX_LENGTH);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void matchTooFarBack() {
+		// Two literals, then a match 3 bytes back.
+		Lzss.decompress(ByteBuffer.wrap(new byte[] { 0x04, 'a', 'b', 0x00, (byte) 0x80 }), MAX_LENGTH);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void truncatedMatch() {
+		byte[] compressed = Lzss.compress(new byte[100]);
+		// A literal zero, then a match of which only the first byte is left.
+		assertEquals(0x02, compressed[0] & 0x03);
+		Lzss.decompress(ByteBuffer.wrap(compressed, 0, 3), MAX_LENGTH);
+	}
+
+	@Test
+	public void truncatedAfterAnItem() {
+		// Cut between items, the compressed bytes decode to a prefix of the input.
+		byte[] src = "abcdefgh".getBytes();
+		byte[] compressed = Lzss.compress(src);
+		byte[] prefix = Lzss.decompress(ByteBuffer.wrap(compressed, 0, 5), MAX_LENGTH);
+		assertArrayEquals("abcd".getBytes(), prefix);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void exceedsTheMaximumLength() {
+		Lzss.decompress(ByteBuffer.wrap(Lzss.compress(new byte[1000])), 999);
+	}
+
+	@Test
+	public void fitsTheMaximumLength() {
+		assertEquals(1000, Lzss.decompress(ByteBuffer.wrap(Lzss.compress(new byte[1000])), 1000).length);
+	}
+
+	// Text-like bytes with repeats at every distance, spliced with random runs.
+	private static byte[] mixed(int length, long seed) {
+		Random random = new Random(seed);
+		String[] words = { "frame ", "packet ", "sender ", "sequence ", "ack ", "notice ", "0x3f ", "\r\n" };
+		byte[] src = new byte[length];
+		int n = 0;
+		while (n < length) {
+			byte[] piece;
+			if (random.nextInt(10) == 0) {
+				piece = new byte[random.nextInt(40)];
+				random.nextBytes(piece);
+			} else {
+				piece = words[random.nextInt(words.length)].getBytes();
+			}
+			int copy = Math.min(piece.length, length - n);
+			System.arraycopy(piece, 0, src, n, copy);
+			n += copy;
+		}
+		return src;
+	}
+
+	// Hands out at most chunk bytes per read.
+	private static final class TrickleChannel implements ReadableByteChannel {
+
+		private final ByteBuffer src;
+
+		private final int chunk;
+
+		private boolean open = true;
+
+		TrickleChannel(byte[] src, int chunk) {
+			this.src = ByteBuffer.wrap(src);
+			this.chunk = chunk;
+		}
+
+		@Override
+		public int read(ByteBuffer dst) {
+			if (!src.hasRemaining())
+				return -1;
+			int n = Math.min(chunk, Math.min(dst.remaining(), src.remaining()));
+			ByteBuffer slice = src.duplicate();
+			slice.limit(slice.position() + n);
+			dst.put(slice);
+			src.position(src.position() + n);
+			return n;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return open;
+		}
+
+		@Override
+		public void close() {
+			open = false;
+		}
+	}
+
+}
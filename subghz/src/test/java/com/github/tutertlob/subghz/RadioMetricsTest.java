@@ -0,0 +1,72 @@
+package com.github.tutertlob.subghz;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+public class RadioMetricsTest {
+
+	private static final String DOMAIN = "com.github.tutertlob.subghz.test";
+
+	private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+	private static ObjectName register(RadioMetrics metrics, String name) {
+		return RadioMetrics.register(metrics, RadioMetricsMXBean.class, DOMAIN, "RadioMetricsTest", name);
+	}
+
+	private long bytesSent(ObjectName objectName) throws Exception {
+		return (Long) server.getAttribute(objectName, "BytesSent");
+	}
+
+	@Test
+	public void takenNameGetsANumber() throws Exception {
+		RadioMetrics first = new RadioMetrics();
+		RadioMetrics second = new RadioMetrics();
+		first.frameSent((byte) 0, 10, 0);
+		second.frameSent((byte) 0, 20, 0);
+
+		ObjectName firstName = register(first, "port");
+		ObjectName secondName = register(second, "port");
+		try {
+			assertNotEquals(firstName, secondName);
+			assertEquals(ObjectName.quote("port#2"), secondName.getKeyProperty("name"));
+			assertEquals(10, bytesSent(firstName));
+			assertEquals(20, bytesSent(secondName));
+		} finally {
+			RadioMetrics.unregister(firstName, first);
+			RadioMetrics.unregister(secondName, second);
+		}
+		assertFalse(server.isRegistered(firstName));
+		assertFalse(server.isRegistered(secondName));
+	}
+
+	@Test
+	public void onlyTheOwnerUnregisters() throws Exception {
+		RadioMetrics old = new RadioMetrics();
+		RadioMetrics current = new RadioMetrics();
+		ObjectName oldName = register(old, "radio");
+		RadioMetrics.unregister(oldName, old);
+		// The name is free again and goes to the next radio.
+		ObjectName currentName = register(current, "radio");
+		try {
+			assertEquals(oldName, currentName);
+			// The old radio closing again must not take the name of the current one.
+			RadioMetrics.unregister(oldName, old);
+			assertTrue(server.isRegistered(currentName));
+			RadioMetrics.unregister(currentName, old);
+			assertTrue(server.isRegistered(currentName));
+		} finally {
+			RadioMetrics.unregister(currentName, current);
+		}
+		assertFalse(server.isRegistered(currentName));
+	}
+
+}
@@ -0,0 +1,163 @@
+package com.github.tutertlob.subghz;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReliableReceiverTest {
+
+	private static final String PEER = "peer";
+
+	private static final int SESSION = 0x1234;
+
+	private final List<Integer> delivered = new ArrayList<>();
+
+	// Each ACK as {session, cumulative, selective}.
+	private final List<long[]> acks = new ArrayList<>();
+
+	private ReliableReceiver<String, Integer> receiver;
+
+	@Before
+	public void setUp() {
+		// A long ACK delay, so only the ACKs sent at once are seen.
+		receiver = new ReliableReceiver<>(delivered::add,
+				(peer, session, cumulative, selective) -> acks.add(new long[] { session, cumulative, selective }),
+				1, TimeUnit.HOURS);
+	}
+
+	@After
+	public void tearDown() {
+		receiver.close();
+	}
+
+	private void segment(int seqNum, boolean more) {
+		assertTrue(receiver.onSegment(PEER, seqNum, more, seqNum));
+	}
+
+	private void assertLastAck(int cumulative, long selective) {
+		long[] ack = acks.get(acks.size() - 1);
+		assertArrayEquals(new long[] { SESSION, cumulative, selective }, ack);
+	}
+
+	@Test
+	public void segmentsWithoutASessionAreDropped() {
+		assertFalse(receiver.onSegment(PEER, 0, true, 0));
+		assertEquals(1, receiver.getDroppedCount());
+		assertTrue(delivered.isEmpty());
+	}
+
+	@Test
+	public void syncIsAnswered() {
+		receiver.onSync(PEER, SESSION, 100);
+		assertEquals(1, acks.size());
+		assertLastAck(100, 0);
+		assertTrue(receiver.isOpen(PEER));
+	}
+
+	@Test
+	public void inOrderSegmentsShareAnAck() {
+		receiver.onSync(PEER, SESSION, 10);
+		segment(10, true);
+		assertEquals(1, acks.size());
+		segment(11, true);
+		assertEquals(2, acks.size());
+		assertLastAck(12, 0);
+		assertEquals(Arrays.asList(10, 11), delivered);
+	}
+
+	@Test
+	public void lastFragmentIsAcknowledgedAtOnce() {
+		receiver.onSync(PEER, SESSION, 10);
+		segment(10, false);
+		assertLastAck(11, 0);
+	}
+
+	@Test
+	public void selectiveBitmapAcrossTheWrap() {
+		receiver.onSync(PEER, SESSION, 250);
+		segment(250, true);
+
+		// 251 is missing: bit i stands for 252 + i.
+		segment(252, true);
+		assertLastAck(251, 0x1);
+		segment(254, true);
+		assertLastAck(251, 0x5);
+		segment(0, true);
+		assertLastAck(251, 0x5 | 1L << 4);
+		assertEquals(Arrays.asList(250), delivered);
+		assertEquals(3, receiver.getOutOfOrderCount());
+
+		// Filling the gap delivers up to the next one.
+		segment(251, true);
+		assertLastAck(253, 0x5);
+		segment(253, true);
+		assertLastAck(255, 0x1);
+		segment(255, false);
+		assertLastAck(1, 0);
+		assertEquals(Arrays.asList(250, 251, 252, 253, 254, 255, 0), delivered);
+	}
+
+	@Test
+	public void duplicatesAreAcknowledgedAgain() {
+		receiver.onSync(PEER, SESSION, 255);
+		segment(255, true);
+		segment(0, true);
+		int before = acks.size();
+
+		// The ACK was lost and the sender retransmitted.
+		segment(255, true);
+		assertEquals(before + 1, acks.size());
+		assertLastAck(1, 0);
+		assertEquals(1, receiver.getDuplicateCount());
+		assertEquals(Arrays.asList(255, 0), delivered);
+	}
+
+	@Test
+	public void heldSegmentsAreDuplicatesToo() {
+		receiver.onSync(PEER, SESSION, 0);
+		segment(2, true);
+		segment(2, true);
+		assertLastAck(0, 0x2);
+		assertEquals(1, receiver.getDuplicateCount());
+		assertTrue(delivered.isEmpty());
+	}
+
+	@Test
+	public void segmentsBeyondTheWindowAreNotHeld() {
+		receiver.onSync(PEER, SESSION, 0);
+		segment(ReliableReceiver.WINDOW, true);
+		assertLastAck(0, 0);
+		assertEquals(1, receiver.getDuplicateCount());
+	}
+
+	@Test
+	public void repeatedSyncKeepsTheSession() {
+		receiver.onSync(PEER, SESSION, 0);
+		segment(0, true);
+		segment(1, true);
+		receiver.onSync(PEER, SESSION, 0);
+		assertLastAck(2, 0);
+	}
+
+	@Test
+	public void newSessionForgetsTheOldOne() {
+		receiver.onSync(PEER, SESSION, 0);
+		segment(2, true);
+		receiver.onSync(PEER, SESSION + 1, 40);
+		long[] ack = acks.get(acks.size() - 1);
+		assertArrayEquals(new long[] { SESSION + 1, 40, 0 }, ack);
+		assertTrue(receiver.onSegment(PEER, 40, false, 40));
+		assertEquals(Arrays.asList(40), delivered);
+	}
+
+}
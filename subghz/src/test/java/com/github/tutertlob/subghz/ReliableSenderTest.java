@@ -0,0 +1,271 @@
+package com.github.tutertlob.subghz;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+// The sender runs its timers on real time, so the short timeouts here only decide when, never what, is sent.
+public class ReliableSenderTest {
+
+	private static final long WAIT_MS = 2000;
+
+	// Records what the sender transmits; the test decides what the peer answers.
+	private static final class ScriptedLink implements ReliableSender.Transport {
+
+		final BlockingQueue<int[]> syncs = new LinkedBlockingQueue<>();
+
+		final BlockingQueue<Integer> segments = new LinkedBlockingQueue<>();
+
+		@Override
+		public void sendSegment(int seqNum, ByteBuffer segment, boolean more, boolean compressed) {
+			segment.position(segment.limit());
+			segments.add(seqNum);
+		}
+
+		@Override
+		public void sendSync(int session, int base) {
+			syncs.add(new int[] { session, base });
+		}
+
+		int nextSegment() throws InterruptedException {
+			Integer seqNum = segments.poll(WAIT_MS, TimeUnit.MILLISECONDS);
+			assertNotNull("No segment was sent.", seqNum);
+			return seqNum;
+		}
+	}
+
+	private final ScriptedLink link = new ScriptedLink();
+
+	private ReliableSender sender;
+
+	private int session;
+
+	private int base;
+
+	@After
+	public void tearDown() {
+		if (sender != null)
+			sender.close();
+	}
+
+	private static ByteBuffer payload(int value) {
+		return (ByteBuffer) ByteBuffer.allocate(4).putInt(value).flip();
+	}
+
+	// Answers the sync the first send() makes, which lets the segments waiting for it go.
+	private void acceptSession() throws InterruptedException {
+		int[] sync = link.syncs.poll(WAIT_MS, TimeUnit.MILLISECONDS);
+		assertNotNull("No sync was sent.", sync);
+		session = sync[0];
+		base = sync[1];
+		sender.onAck(session, base, 0);
+		assertTrue(sender.isSynced());
+	}
+
+	private int seq(int offset) {
+		return (base + offset) & ReliableControl.SEQUENCE_MASK;
+	}
+
+	@Test
+	public void segmentsWaitForTheSession() throws Exception {
+		sender = new ReliableSender(link, 4);
+		CompletableFuture<Void> first = sender.send(payload(0), true);
+		CompletableFuture<Void> second = sender.send(payload(1), false);
+		assertTrue(link.segments.isEmpty());
+
+		acceptSession();
+		assertEquals(seq(0), link.nextSegment());
+		assertEquals(seq(1), link.nextSegment());
+
+		sender.onAck(session, seq(2), 0);
+		first.get(WAIT_MS, TimeUnit.MILLISECONDS);
+		second.get(WAIT_MS, TimeUnit.MILLISECONDS);
+		assertEquals(0, sender.getInFlight());
+		assertEquals(2, sender.getSegmentsAcked());
+	}
+
+	@Test
+	public void acksOfOtherSessionsAreIgnored() throws Exception {
+		sender = new ReliableSender(link, 4);
+		CompletableFuture<Void> future = sender.send(payload(0), false);
+		acceptSession();
+		link.nextSegment();
+
+		sender.onAck(session ^ 1, seq(1), 0);
+		assertFalse(future.isDone());
+		assertEquals(1, sender.getInFlight());
+	}
+
+	@Test
+	public void unacknowledgedSegmentIsRetransmitted() throws Exception {
+		RttEstimator rtt = new RttEstimator(300, 300, 2000, TimeUnit.MILLISECONDS);
+		sender = new ReliableSender(link, 4, 8, rtt);
+		CompletableFuture<Void> first = sender.send(payload(0), true);
+		CompletableFuture<Void> second = sender.send(payload(1), false);
+		acceptSession();
+		assertEquals(seq(0), link.nextSegment());
+		assertEquals(seq(1), link.nextSegment());
+
+		// The second segment is lost.
+		sender.onAck(session, seq(1), 0);
+		first.get(WAIT_MS, TimeUnit.MILLISECONDS);
+		assertEquals(seq(1), link.nextSegment());
+		assertEquals(1, sender.getRetransmissions());
+
+		sender.onAck(session, seq(2), 0);
+		second.get(WAIT_MS, TimeUnit.MILLISECONDS);
+		assertNull(link.segments.poll(200, TimeUnit.MILLISECONDS));
+		// The sync and the first segment were sampled; the retransmitted one isn't (Karn's algorithm).
+		assertEquals(2, rtt.getSampleCount());
+	}
+
+	@Test
+	public void timeoutBacksOffUntilTheRetriesRunOut() throws Exception {
+		// The sync gets the initial timeout; its ACK brings the timeout down to the floor.
+		RttEstimator rtt = new RttEstimator(400, 50, 400, TimeUnit.MILLISECONDS);
+		sender = new ReliableSender(link, 1, 3, rtt);
+		CompletableFuture<Void> future = sender.send(payload(0), false);
+		acceptSession();
+		assertEquals(seq(0), link.nextSegment());
+		assertEquals(50, sender.getRetransmissionTimeout(TimeUnit.MILLISECONDS));
+
+		// Each timeout doubles the timeout before the segment is sent again.
+		long[] backedOff = { 100, 200, 400 };
+		for (long timeout : backedOff) {
+			assertEquals(seq(0), link.nextSegment());
+			assertEquals(timeout, sender.getRetransmissionTimeout(TimeUnit.MILLISECONDS));
+		}
+
+		try {
+			future.get(WAIT_MS, TimeUnit.MILLISECONDS);
+			fail("The segment should have failed.");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+		assertEquals(4, sender.getTimeouts());
+		assertEquals(3, sender.getRetransmissions());
+		assertFalse(sender.isSynced());
+		assertEquals(0, sender.getInFlight());
+	}
+
+	@Test
+	public void selectiveAcksTriggerFastRetransmit() throws Exception {
+		// A timeout far beyond the test, so any retransmission is a fast one.
+		RttEstimator rtt = new RttEstimator(10000, 10000, 10000, TimeUnit.MILLISECONDS);
+		sender = new ReliableSender(link, 8, 8, rtt);
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			futures.add(sender.send(payload(i), i < 4));
+		}
+		acceptSession();
+		for (int i = 0; i < 5; i++) {
+			assertEquals(seq(i), link.nextSegment());
+		}
+
+		// The first segment is lost; each ACK reports more of those after it.
+		long selective = 0;
+		for (int i = 0; i < ReliableSender.FAST_RETRANSMIT_SKIPS; i++) {
+			assertTrue(link.segments.isEmpty());
+			selective = selective << 1 | 1;
+			sender.onAck(session, seq(0), selective);
+		}
+		assertEquals(seq(0), link.nextSegment());
+		assertEquals(1, sender.getFastRetransmissions());
+		for (int i = 1; i <= ReliableSender.FAST_RETRANSMIT_SKIPS; i++) {
+			assertTrue(futures.get(i).isDone());
+		}
+		assertFalse(futures.get(0).isDone());
+
+		sender.onAck(session, seq(5), 0);
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(WAIT_MS, TimeUnit.MILLISECONDS);
+		assertTrue(link.segments.isEmpty());
+		assertEquals(1, sender.getRetransmissions());
+	}
+
+	@Test
+	public void lostSyncIsSentAgain() throws Exception {
+		RttEstimator rtt = new RttEstimator(50, 50, 400, TimeUnit.MILLISECONDS);
+		sender = new ReliableSender(link, 4, 8, rtt);
+		CompletableFuture<Void> future = sender.send(payload(0), false);
+		// The first sync is lost.
+		int[] first = link.syncs.poll(WAIT_MS, TimeUnit.MILLISECONDS);
+		assertNotNull(first);
+
+		acceptSession();
+		assertEquals(first[0], session);
+		assertEquals(first[1], base);
+		assertEquals(seq(0), link.nextSegment());
+		sender.onAck(session, seq(1), 0);
+		future.get(WAIT_MS, TimeUnit.MILLISECONDS);
+		// Only the segment is sampled, as the sync was sent twice.
+		assertEquals(1, rtt.getSampleCount());
+	}
+
+	// Connects a sender to a receiver, dropping every fifth segment and every seventh ACK.
+	@Test
+	public void lossyLinkDeliversInOrderAcrossTheWrap() throws Exception {
+		int count = 3 * (ReliableControl.SEQUENCE_MASK + 1);
+		List<Integer> delivered = Collections.synchronizedList(new ArrayList<>());
+		AtomicInteger segmentsOnAir = new AtomicInteger();
+		AtomicInteger acksOnAir = new AtomicInteger();
+		ReliableSender[] peer = new ReliableSender[1];
+		ReliableReceiver<String, Integer> receiver = new ReliableReceiver<>(delivered::add,
+				(key, ackSession, cumulative, selective) -> {
+					if (acksOnAir.incrementAndGet() % 7 != 0)
+						peer[0].onAck(ackSession, cumulative, selective);
+				}, 5, TimeUnit.MILLISECONDS);
+		RttEstimator rtt = new RttEstimator(50, 20, 200, TimeUnit.MILLISECONDS);
+		sender = new ReliableSender(new ReliableSender.Transport() {
+
+			@Override
+			public void sendSegment(int seqNum, ByteBuffer segment, boolean more, boolean compressed) {
+				int value = segment.getInt();
+				if (segmentsOnAir.incrementAndGet() % 5 != 0)
+					receiver.onSegment("sender", seqNum, more, value);
+			}
+
+			@Override
+			public void sendSync(int session, int base) {
+				receiver.onSync("sender", session, base);
+			}
+		}, 8, 20, rtt);
+		peer[0] = sender;
+
+		try {
+			List<CompletableFuture<Void>> futures = new ArrayList<>();
+			for (int i = 0; i < count; i++) {
+				futures.add(sender.send(payload(i), i < count - 1));
+			}
+			CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+		} finally {
+			receiver.close();
+		}
+
+		List<Integer> expected = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			expected.add(i);
+		}
+		assertEquals(expected, delivered);
+		assertTrue(sender.getRetransmissions() > 0);
+		assertEquals(count, sender.getSegmentsAcked());
+	}
+
+}
@@ -0,0 +1,81 @@
+package com.github.tutertlob.subghz;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class RttEstimatorTest {
+
+	private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	@Test
+	public void startsAtTheInitialTimeout() {
+		RttEstimator rtt = new RttEstimator(1000, 100, 10000, TimeUnit.MILLISECONDS);
+		assertEquals(1000, rtt.getTimeout(TimeUnit.MILLISECONDS));
+		assertEquals(-1, rtt.getSmoothedRtt(TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void firstSampleSetsTheTimeout() {
+		RttEstimator rtt = new RttEstimator(1000, 100, 10000, TimeUnit.MILLISECONDS);
+		rtt.sample(200 * MS);
+		// SRTT = 200, RTTVAR = 100, RTO = 200 + 4 * 100.
+		assertEquals(200, rtt.getSmoothedRtt(TimeUnit.MILLISECONDS));
+		assertEquals(100, rtt.getRttVariation(TimeUnit.MILLISECONDS));
+		assertEquals(600, rtt.getTimeout(TimeUnit.MILLISECONDS));
+
+		rtt.sample(200 * MS);
+		// RTTVAR = 100 + (0 - 100) / 4.
+		assertEquals(200, rtt.getSmoothedRtt(TimeUnit.MILLISECONDS));
+		assertEquals(75, rtt.getRttVariation(TimeUnit.MILLISECONDS));
+		assertEquals(500, rtt.getTimeout(TimeUnit.MILLISECONDS));
+		assertEquals(2, rtt.getSampleCount());
+	}
+
+	@Test
+	public void backoffDoublesUpToTheCeiling() {
+		RttEstimator rtt = new RttEstimator(1000, 100, 10000, TimeUnit.MILLISECONDS);
+		long[] expected = { 2000, 4000, 8000, 10000, 10000 };
+		for (long timeout : expected) {
+			rtt.backoff();
+			assertEquals(timeout, rtt.getTimeout(TimeUnit.MILLISECONDS));
+		}
+
+		// The next sample takes over from the backed off timeout.
+		rtt.sample(200 * MS);
+		assertEquals(600, rtt.getTimeout(TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void keptAboveTheFloor() {
+		RttEstimator rtt = new RttEstimator(1000, 100, 10000, TimeUnit.MILLISECONDS);
+		rtt.sample(1 * MS);
+		assertEquals(100, rtt.getTimeout(TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void negativeSamplesAreIgnored() {
+		RttEstimator rtt = new RttEstimator(1000, 100, 10000, TimeUnit.MILLISECONDS);
+		rtt.sample(-1);
+		assertEquals(0, rtt.getSampleCount());
+		assertEquals(1000, rtt.getTimeout(TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void resetForgetsTheSamples() {
+		RttEstimator rtt = new RttEstimator(1000, 100, 10000, TimeUnit.MILLISECONDS);
+		rtt.sample(200 * MS);
+		rtt.backoff();
+		rtt.reset();
+		assertEquals(1000, rtt.getTimeout(TimeUnit.MILLISECONDS));
+		assertEquals(-1, rtt.getSmoothedRtt(TimeUnit.MILLISECONDS));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void initialBelowTheFloor() {
+		new RttEstimator(50, 100, 10000, TimeUnit.MILLISECONDS);
+	}
+
+}